@@ -0,0 +1,124 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.recast4j.detour.FindNearestPolyResult;
+import org.recast4j.detour.FindPathResult;
+import org.recast4j.detour.FindPolysAroundResult;
+import org.recast4j.detour.MoveAlongSurfaceResult;
+import org.recast4j.detour.NavMeshQuery;
+import org.recast4j.detour.QueryFilter;
+import org.recast4j.detour.RaycastHit;
+import org.recast4j.detour.StraightPathItem;
+
+/**
+ * Average time of the main {@link NavMeshQuery} operations. Every invocation uses the next query of
+ * {@link NavMeshState}, so a measurement covers the whole set of start/end pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavMeshQueryBenchmark {
+
+	private static final float[] EXTENTS = { 2, 4, 2 };
+	private static final float RADIUS = 7.5f;
+
+	private NavMeshQuery query;
+	private QueryFilter filter;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(NavMeshState state) {
+		query = new NavMeshQuery(state.navMesh);
+		filter = new QueryFilter();
+	}
+
+	private int nextQuery() {
+		int i = next;
+		next = (i + 1) % NavMeshState.QUERY_COUNT;
+		return i;
+	}
+
+	@Benchmark
+	public FindPathResult findPath(NavMeshState state) {
+		int i = nextQuery();
+		return query.findPath(state.startRefs[i], state.endRefs[i], state.startPos[i], state.endPos[i], filter);
+	}
+
+	@Benchmark
+	public FindPathResult findPathAnyAngle(NavMeshState state) {
+		int i = nextQuery();
+		return query.findPath(state.startRefs[i], state.endRefs[i], state.startPos[i], state.endPos[i], filter,
+				NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+	}
+
+	/** String pulling of the corridors found by the regular search. Compare with findStraightPathAnyAngle. */
+	@Benchmark
+	public List<StraightPathItem> findStraightPath(NavMeshState state) {
+		int i = nextQuery();
+		return query.findStraightPath(state.startPos[i], state.endPos[i], state.paths[i], 256, 0);
+	}
+
+	/** String pulling of the corridors found by the any-angle search. */
+	@Benchmark
+	public List<StraightPathItem> findStraightPathAnyAngle(NavMeshState state) {
+		int i = nextQuery();
+		return query.findStraightPath(state.startPos[i], state.endPos[i], state.anyAnglePaths[i], 256, 0);
+	}
+
+	@Benchmark
+	public RaycastHit raycast(NavMeshState state) {
+		int i = nextQuery();
+		return query.raycast(state.startRefs[i], state.startPos[i], state.endPos[i], filter, 0, 0);
+	}
+
+	@Benchmark
+	public FindNearestPolyResult findNearestPoly(NavMeshState state) {
+		int i = nextQuery();
+		return query.findNearestPoly(state.startPos[i], EXTENTS, filter);
+	}
+
+	@Benchmark
+	public MoveAlongSurfaceResult moveAlongSurface(NavMeshState state) {
+		int i = nextQuery();
+		return query.moveAlongSurface(state.startRefs[i], state.startPos[i], state.endPos[i], filter);
+	}
+
+	@Benchmark
+	public FindPolysAroundResult findPolysAroundCircle(NavMeshState state) {
+		int i = nextQuery();
+		return query.findPolysAroundCircle(state.startRefs[i], state.startPos[i], RADIUS, filter);
+	}
+}
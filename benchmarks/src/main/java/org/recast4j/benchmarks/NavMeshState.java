@@ -0,0 +1,130 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.recast4j.detour.FindPathResult;
+import org.recast4j.detour.FindRandomPointResult;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.NavMeshQuery;
+import org.recast4j.detour.QueryFilter;
+import org.recast4j.detour.Status;
+import org.recast4j.detour.TestTiledNavMeshBuilder;
+import org.recast4j.detour.io.MeshSetReader;
+import org.recast4j.recast.ObjImporter;
+import org.recast4j.recast.RecastConstants.PartitionType;
+
+/**
+ * A navmesh shared by all benchmark threads together with a fixed set of query inputs.
+ *
+ * The query points are random points on the mesh drawn with a fixed seed, so every run of a benchmark sees the same
+ * workload. Only pairs connected by a complete path are kept.
+ */
+@State(Scope.Benchmark)
+public class NavMeshState {
+
+	public static final int QUERY_COUNT = 128;
+	private static final long SEED = 0x5eed;
+
+	@Param({ "dungeon", "nav_test", "all_tiles" })
+	public String mesh;
+
+	public NavMesh navMesh;
+	public final long[] startRefs = new long[QUERY_COUNT];
+	public final long[] endRefs = new long[QUERY_COUNT];
+	public final float[][] startPos = new float[QUERY_COUNT][];
+	public final float[][] endPos = new float[QUERY_COUNT][];
+	@SuppressWarnings("unchecked")
+	public final List<Long>[] paths = new List[QUERY_COUNT];
+	/** Corridors of the same queries found with NavMeshQuery.DT_FINDPATH_ANY_ANGLE. */
+	@SuppressWarnings("unchecked")
+	public final List<Long>[] anyAnglePaths = new List[QUERY_COUNT];
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		navMesh = loadNavMesh(mesh);
+		NavMeshQuery query = new NavMeshQuery(navMesh);
+		QueryFilter filter = new QueryFilter();
+		SeededRandom frand = new SeededRandom(SEED);
+		int i = 0;
+		int attempts = 0;
+		while (i < QUERY_COUNT) {
+			if (++attempts > QUERY_COUNT * 100) {
+				throw new IllegalStateException("Could not find " + QUERY_COUNT + " connected points on " + mesh);
+			}
+			FindRandomPointResult start = query.findRandomPoint(filter, frand);
+			FindRandomPointResult end = query.findRandomPoint(filter, frand);
+			if (start.getStatus() != Status.SUCCSESS || end.getStatus() != Status.SUCCSESS) {
+				continue;
+			}
+			FindPathResult path = query.findPath(start.getRandomRef(), end.getRandomRef(), start.getRandomPt(),
+					end.getRandomPt(), filter);
+			if (path.getStatus() != Status.SUCCSESS || path.getRefs().isEmpty()
+					|| path.getRefs().get(path.getRefs().size() - 1) != end.getRandomRef()) {
+				continue;
+			}
+			startRefs[i] = start.getRandomRef();
+			endRefs[i] = end.getRandomRef();
+			startPos[i] = start.getRandomPt();
+			endPos[i] = end.getRandomPt();
+			paths[i] = path.getRefs();
+			anyAnglePaths[i] = query.findPath(startRefs[i], endRefs[i], startPos[i], endPos[i], filter,
+					NavMeshQuery.DT_FINDPATH_ANY_ANGLE).getRefs();
+			i++;
+		}
+	}
+
+	static NavMesh loadNavMesh(String mesh) throws IOException {
+		switch (mesh) {
+		case "dungeon":
+			return new TestTiledNavMeshBuilder().getNavMesh();
+		case "nav_test":
+			return new TestTiledNavMeshBuilder(new ObjImporter().load(ObjImporter.class.getResourceAsStream("nav_test.obj")),
+					PartitionType.WATERSHED, 0.3f, 0.2f, 2.0f, 0.6f, 0.9f, 45.0f, 8, 20, 12.0f, 1.3f, 6, 6.0f, 1.0f, 32)
+							.getNavMesh();
+		case "all_tiles":
+			try (InputStream is = NavMeshState.class.getClassLoader().getResourceAsStream("all_tiles_navmesh.bin")) {
+				return new MeshSetReader().read(is, 6);
+			}
+		default:
+			throw new IllegalArgumentException("Unknown mesh " + mesh);
+		}
+	}
+
+	private static class SeededRandom extends NavMeshQuery.FRand {
+		private final Random random;
+
+		SeededRandom(long seed) {
+			random = new Random(seed);
+		}
+
+		@Override
+		public float frand() {
+			return random.nextFloat();
+		}
+	}
+}
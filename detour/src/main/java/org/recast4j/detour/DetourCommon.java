@@ -191,6 +191,12 @@ public class DetourCommon {
 		return dx * dx + dz * dz;
 	}
 
+	public static float vDist2DSqr(float[] p, float[] verts, int i) {
+		float dx = verts[i] - p[0];
+		float dz = verts[i + 2] - p[2];
+		return dx * dx + dz * dz;
+	}
+
 	/// Normalizes the vector.
 	/// @param[in,out] v The vector to normalize. [(x, y, z)]
 	public static void vNormalize(float[] v) {
@@ -216,6 +222,13 @@ public class DetourCommon {
 		return d < thr;
 	}
 
+	static boolean vEqual(float[] verts, int i, float[] p) {
+		float dx = p[0] - verts[i];
+		float dy = p[1] - verts[i + 1];
+		float dz = p[2] - verts[i + 2];
+		return dx * dx + dy * dy + dz * dz < thr;
+	}
+
 	/// Derives the dot product of two vectors on the xz-plane. (@p u . @p v)
 	/// @param[in] u A vector [(x, y, z)]
 	/// @param[in] v A vector [(x, y, z)]
@@ -344,6 +357,34 @@ public class DetourCommon {
 		return new Tupple2<>(false, null);
 	}
 
+	/// Allocation free version of closestHeightPointTriangle().
+	/// @param[in] tri The triangle vertices a, b, c. [(x, y, z) * 3]
+	/// @param[out] height The interpolated height if the point lies inside the triangle. [1]
+	/// @return True if the point lies inside the triangle.
+	static boolean closestHeightPointTriangle(float[] p, float[] tri, float[] height) {
+		float v0x = tri[6] - tri[0], v0y = tri[7] - tri[1], v0z = tri[8] - tri[2];
+		float v1x = tri[3] - tri[0], v1y = tri[4] - tri[1], v1z = tri[5] - tri[2];
+		float v2x = p[0] - tri[0], v2z = p[2] - tri[2];
+
+		float dot00 = v0x * v0x + v0z * v0z;
+		float dot01 = v0x * v1x + v0z * v1z;
+		float dot02 = v0x * v2x + v0z * v2z;
+		float dot11 = v1x * v1x + v1z * v1z;
+		float dot12 = v1x * v2x + v1z * v2z;
+
+		// Compute barycentric coordinates
+		float invDenom = 1.0f / (dot00 * dot11 - dot01 * dot01);
+		float u = (dot11 * dot02 - dot01 * dot12) * invDenom;
+		float v = (dot00 * dot12 - dot01 * dot02) * invDenom;
+
+		// If point lies inside the triangle, return interpolated ycoord.
+		if (u >= -EPS && v >= -EPS && (u + v) <= 1 + EPS) {
+			height[0] = tri[1] + v0y * u + v1y * v;
+			return true;
+		}
+		return false;
+	}
+
 	/// @par
 	///
 	/// All points are projected onto the xz-plane, so the y-values are ignored.
@@ -371,9 +412,23 @@ public class DetourCommon {
 			if (((verts[vi + 2] > pt[2]) != (verts[vj + 2] > pt[2])) && (pt[0] < (verts[vj + 0] - verts[vi + 0])
 					* (pt[2] - verts[vi + 2]) / (verts[vj + 2] - verts[vi + 2]) + verts[vi + 0]))
 				c = !c;
-			Tupple2<Float, Float> edet = distancePtSegSqr2D(pt, verts, vj, vi);
-			ed[j] = edet.first;
-			et[j] = edet.second;
+			// Inlined distancePtSegSqr2D(pt, verts, vj, vi), this is called for every candidate of a nearest poly query.
+			float pqx = verts[vi + 0] - verts[vj + 0];
+			float pqz = verts[vi + 2] - verts[vj + 2];
+			float dx = pt[0] - verts[vj + 0];
+			float dz = pt[2] - verts[vj + 2];
+			float d = pqx * pqx + pqz * pqz;
+			float t = pqx * dx + pqz * dz;
+			if (d > 0)
+				t /= d;
+			if (t < 0)
+				t = 0;
+			else if (t > 1)
+				t = 1;
+			dx = verts[vj + 0] + t * pqx - pt[0];
+			dz = verts[vj + 2] + t * pqz - pt[2];
+			ed[j] = dx * dx + dz * dz;
+			et[j] = t;
 		}
 		return c;
 	}
@@ -505,22 +560,36 @@ public class DetourCommon {
 	}
 
 	static IntersectResult intersectSegmentPoly2D(float[] p0, float[] p1, float[] verts, int nverts) {
-
 		IntersectResult result = new IntersectResult();
+		intersectSegmentPoly2D(p0, p1, verts, nverts, result);
+		return result;
+	}
+
+	/// Allocation free version of intersectSegmentPoly2D(), the result is reset and filled.
+	/// @return True if the segment intersects the polygon.
+	static boolean intersectSegmentPoly2D(float[] p0, float[] p1, float[] verts, int nverts, IntersectResult result) {
+		result.intersects = false;
+		result.tmin = 0;
+		result.tmax = 1f;
+		result.segMin = -1;
+		result.segMax = -1;
 		float EPS = 0.00000001f;
-		float[] dir = vSub(p1, p0);
+		float dirx = p1[0] - p0[0];
+		float dirz = p1[2] - p0[2];
 
-		VectorPtr p0v = new VectorPtr(p0);
 		for (int i = 0, j = nverts - 1; i < nverts; j = i++) {
-			VectorPtr vpj = new VectorPtr(verts, j * 3);
-			float[] edge = vSub(new VectorPtr(verts, i * 3), vpj);
-			float[] diff = vSub(p0v, vpj);
-			float n = vPerp2D(edge, diff);
-			float d = vPerp2D(dir, edge);
+			int vi = i * 3;
+			int vj = j * 3;
+			float edgex = verts[vi] - verts[vj];
+			float edgez = verts[vi + 2] - verts[vj + 2];
+			float diffx = p0[0] - verts[vj];
+			float diffz = p0[2] - verts[vj + 2];
+			float n = edgez * diffx - edgex * diffz;
+			float d = dirz * edgex - dirx * edgez;
 			if (Math.abs(d) < EPS) {
 				// S is nearly parallel to this edge
 				if (n < 0)
-					return result;
+					return false;
 				else
 					continue;
 			}
@@ -532,7 +601,7 @@ public class DetourCommon {
 					result.segMin = j;
 					// S enters after leaving polygon
 					if (result.tmin > result.tmax)
-						return result;
+						return false;
 				}
 			} else {
 				// segment S is leaving across this edge
@@ -541,12 +610,12 @@ public class DetourCommon {
 					result.segMax = j;
 					// S leaves before entering polygon
 					if (result.tmax < result.tmin)
-						return result;
+						return false;
 				}
 			}
 		}
 		result.intersects = true;
-		return result;
+		return true;
 	}
 
 	public static Tupple2<Float, Float> distancePtSegSqr2D(float[] pt, float[] verts, int p, int q) {
@@ -567,6 +636,50 @@ public class DetourCommon {
 		return new Tupple2<>(dx * dx + dz * dz, t);
 	}
 
+	/// Allocation free version of distancePtSegSqr2D().
+	/// @param[out] t The parameter of the closest point on the segment. [1]
+	/// @return The squared distance.
+	static float distancePtSegSqr2D(float[] pt, float[] verts, int p, int q, float[] t) {
+		float pqx = verts[q + 0] - verts[p + 0];
+		float pqz = verts[q + 2] - verts[p + 2];
+		float dx = pt[0] - verts[p + 0];
+		float dz = pt[2] - verts[p + 2];
+		float d = pqx * pqx + pqz * pqz;
+		float tt = pqx * dx + pqz * dz;
+		if (d > 0)
+			tt /= d;
+		if (tt < 0)
+			tt = 0;
+		else if (tt > 1)
+			tt = 1;
+		dx = verts[p + 0] + tt * pqx - pt[0];
+		dz = verts[p + 2] + tt * pqz - pt[2];
+		t[0] = tt;
+		return dx * dx + dz * dz;
+	}
+
+	/// Allocation free version of distancePtSegSqr2D().
+	/// @param[out] t The parameter of the closest point on the segment. [1]
+	/// @return The squared distance.
+	static float distancePtSegSqr2D(float[] pt, float[] p, float[] q, float[] t) {
+		float pqx = q[0] - p[0];
+		float pqz = q[2] - p[2];
+		float dx = pt[0] - p[0];
+		float dz = pt[2] - p[2];
+		float d = pqx * pqx + pqz * pqz;
+		float tt = pqx * dx + pqz * dz;
+		if (d > 0)
+			tt /= d;
+		if (tt < 0)
+			tt = 0;
+		else if (tt > 1)
+			tt = 1;
+		dx = p[0] + tt * pqx - pt[0];
+		dz = p[2] + tt * pqz - pt[2];
+		t[0] = tt;
+		return dx * dx + dz * dz;
+	}
+
 	static int oppositeTile(int side) {
 		return (side + 4) & 0x7;
 	}
@@ -576,15 +689,28 @@ public class DetourCommon {
 	}
 
 	static Tupple3<Boolean, Float, Float> intersectSegSeg2D(float[] ap, float[] aq, float[] bp, float[] bq) {
-		float[] u = vSub(aq, ap);
-		float[] v = vSub(bq, bp);
-		float[] w = vSub(ap, bp);
-		float d = vperpXZ(u, v);
-		if (Math.abs(d) < 1e-6f)
+		float[] st = new float[2];
+		if (!intersectSegSeg2D(ap, aq, bp, bq, st))
 			return new Tupple3<>(false, 0f, 0f);
-		float s = vperpXZ(v, w) / d;
-		float t = vperpXZ(u, w) / d;
-		return new Tupple3<>(true, s, t);
+		return new Tupple3<>(true, st[0], st[1]);
+	}
+
+	/// Allocation free version of intersectSegSeg2D().
+	/// @param[out] st The parameters of the intersection on both segments. [(s, t)]
+	/// @return True if the segments are not parallel.
+	static boolean intersectSegSeg2D(float[] ap, float[] aq, float[] bp, float[] bq, float[] st) {
+		float ux = aq[0] - ap[0];
+		float uz = aq[2] - ap[2];
+		float vx = bq[0] - bp[0];
+		float vz = bq[2] - bp[2];
+		float wx = ap[0] - bp[0];
+		float wz = ap[2] - bp[2];
+		float d = ux * vz - uz * vx;
+		if (Math.abs(d) < 1e-6f)
+			return false;
+		st[0] = (vx * wz - vz * wx) / d;
+		st[1] = (ux * wz - uz * wx) / d;
+		return true;
 	}
 
 	public static float[] vScale(float[] in, float scale) {
@@ -0,0 +1,45 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.List;
+
+/**
+ * The result of {@link NavMeshQuery#findPathToNearestGoal}: the path to the cheapest goal and which goal it leads to.
+ */
+public class FindNearestGoalResult extends FindPathResult {
+	private final int goal;
+	private final float cost;
+
+	public FindNearestGoalResult(Status status, List<Long> refs, int goal, float cost) {
+		super(status, refs);
+		this.goal = goal;
+		this.cost = cost;
+	}
+
+	/** The index of the goal the path leads to, or -1 if no goal was reached. */
+	public int getGoal() {
+		return goal;
+	}
+
+	/** The cost of the path to the goal position including the cost offset of the goal. */
+	public float getCost() {
+		return cost;
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.Arrays;
+
+/**
+ * A set of path requests and their results for {@link NavMeshQuery#findPaths(FindPathBatch)}.
+ *
+ * Requests and results are kept in flat arrays which are reused after {@link #clear()}, so a batch can be filled and
+ * executed every frame without allocation once it has reached its working size. The path of request i is stored in
+ * {@link #getPaths()} starting at i * {@link #getMaxPath()}.
+ */
+public class FindPathBatch {
+
+	private final int m_maxPath;
+	private int m_count;
+	private long[] m_startRefs;
+	private long[] m_endRefs;
+	private float[] m_startPos;
+	private float[] m_endPos;
+	private QueryFilter[] m_filters;
+	private long[] m_paths;
+	private int[] m_pathCounts;
+	private Status[] m_statuses;
+
+	/**
+	 * @param capacity
+	 *            The initial number of requests. The batch grows when more requests are added.
+	 * @param maxPath
+	 *            The maximum number of polygons stored for each path. [Limit: > 0]
+	 */
+	public FindPathBatch(int capacity, int maxPath) {
+		if (maxPath <= 0)
+			throw new IllegalArgumentException("Invalid max path " + maxPath);
+		m_maxPath = maxPath;
+		allocate(Math.max(1, capacity));
+	}
+
+	private void allocate(int capacity) {
+		m_startRefs = m_startRefs == null ? new long[capacity] : Arrays.copyOf(m_startRefs, capacity);
+		m_endRefs = m_endRefs == null ? new long[capacity] : Arrays.copyOf(m_endRefs, capacity);
+		m_startPos = m_startPos == null ? new float[capacity * 3] : Arrays.copyOf(m_startPos, capacity * 3);
+		m_endPos = m_endPos == null ? new float[capacity * 3] : Arrays.copyOf(m_endPos, capacity * 3);
+		m_filters = m_filters == null ? new QueryFilter[capacity] : Arrays.copyOf(m_filters, capacity);
+		m_paths = m_paths == null ? new long[capacity * m_maxPath] : Arrays.copyOf(m_paths, capacity * m_maxPath);
+		m_pathCounts = m_pathCounts == null ? new int[capacity] : Arrays.copyOf(m_pathCounts, capacity);
+		m_statuses = m_statuses == null ? new Status[capacity] : Arrays.copyOf(m_statuses, capacity);
+	}
+
+	/**
+	 * Adds a path request.
+	 *
+	 * @return The index of the request.
+	 * @throws IllegalArgumentException
+	 *             if the filter is null.
+	 */
+	public int add(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter) {
+		if (filter == null)
+			throw new IllegalArgumentException("Null filter");
+		if (m_count == m_startRefs.length)
+			allocate(m_count * 2);
+		int i = m_count++;
+		m_startRefs[i] = startRef;
+		m_endRefs[i] = endRef;
+		System.arraycopy(startPos, 0, m_startPos, i * 3, 3);
+		System.arraycopy(endPos, 0, m_endPos, i * 3, 3);
+		m_filters[i] = filter;
+		m_pathCounts[i] = 0;
+		m_statuses[i] = null;
+		return i;
+	}
+
+	/** Removes all requests. The buffers are kept. */
+	public void clear() {
+		Arrays.fill(m_filters, 0, m_count, null);
+		m_count = 0;
+	}
+
+	public int size() {
+		return m_count;
+	}
+
+	public int getMaxPath() {
+		return m_maxPath;
+	}
+
+	public long getStartRef(int i) {
+		return m_startRefs[i];
+	}
+
+	public long getEndRef(int i) {
+		return m_endRefs[i];
+	}
+
+	/** Start positions of all requests. [(x, y, z) * size()] */
+	public float[] getStartPositions() {
+		return m_startPos;
+	}
+
+	/** End positions of all requests. [(x, y, z) * size()] */
+	public float[] getEndPositions() {
+		return m_endPos;
+	}
+
+	public QueryFilter getFilter(int i) {
+		return m_filters[i];
+	}
+
+	/**
+	 * The status of request i: SUCCSESS, PARTIAL_RESULT if the end was not reached or the path did not fit into
+	 * getMaxPath(), FAILURE if the request was invalid, or null if the request has not been executed yet.
+	 */
+	public Status getStatus(int i) {
+		return m_statuses[i];
+	}
+
+	/** The number of polygons in the path of request i. */
+	public int getPathCount(int i) {
+		return m_pathCounts[i];
+	}
+
+	/** Returns the j-th polygon of the path of request i. */
+	public long getPathRef(int i, int j) {
+		return m_paths[i * m_maxPath + j];
+	}
+
+	/** The path buffer of all requests. Request i is stored at [i * getMaxPath(), i * getMaxPath() + getPathCount(i)). */
+	public long[] getPaths() {
+		return m_paths;
+	}
+
+	void setResult(int i, Status status, int pathCount) {
+		m_statuses[i] = status;
+		m_pathCounts[i] = pathCount;
+	}
+}
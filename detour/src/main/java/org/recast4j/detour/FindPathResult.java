@@ -38,4 +38,17 @@ public class FindPathResult {
 		return refs;
 	}
 
+	/**
+	 * Copies the path into the provided buffer.
+	 * 
+	 * @return The number of polygons copied. At most path.length.
+	 */
+	public int getRefs(long[] path) {
+		int n = Math.min(refs.size(), path.length);
+		for (int i = 0; i < n; i++) {
+			path[i] = refs.get(i);
+		}
+		return n;
+	}
+
 }
\ No newline at end of file
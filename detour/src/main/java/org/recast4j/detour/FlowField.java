@@ -0,0 +1,310 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import static org.recast4j.detour.DetourCommon.sqr;
+import static org.recast4j.detour.DetourCommon.vCopy;
+import static org.recast4j.detour.DetourCommon.vDist2DSqr;
+
+import java.util.Arrays;
+
+/**
+ * Flow field toward one goal over the polygons of a navigation mesh.
+ *
+ * The field is built with one backward Dijkstra search from the goal, see
+ * {@link NavMeshQuery#findCostField(long[], float[], float[], int, float, QueryFilter)}, and stores for every reached
+ * polygon the next polygon toward the goal, the cost to the goal and the point where the polygon is left. Agents
+ * heading to the same goal look up their way in the field instead of running a path query each.
+ *
+ * The data is kept in primitive arrays per covered tile together with the salt of the tile. Once a tile of the field has been
+ * replaced or removed, {@link #isValid()} returns false and the field has to be rebuilt. Adding a tile does not change
+ * the salts of the tiles the field covers but may open a shorter way; rebuild the field or call
+ * {@link FlowFieldCache#invalidateTilesAt(int, int)} after adding tiles.
+ *
+ * The field covers at most as many polygons as the node pool of the query used to build it can hold.
+ */
+public class FlowField {
+
+	/** The maximum number of polygons followed by findCorners(). */
+	private static final int MAX_CORNER_PATH = 32;
+
+	/** Scratch of findCorners(), owned by the query passed to it. */
+	static class CornerScratch {
+		final long[] path = new long[MAX_CORNER_PATH];
+		final float[] end = new float[3];
+		final int[] count = new int[1];
+	}
+
+	private final NavMesh m_nav;
+	private final long m_goalRef;
+	private final float[] m_goalPos = new float[3];
+	/// Per covered tile: the next polygon, the cost and the exit point (x, y, z) of each polygon, the index and the
+	/// salt of the tile. A negative cost for polygons the field does not reach.
+	private long[][] m_next = new long[4][];
+	private float[][] m_costs = new float[4][];
+	private float[][] m_exits = new float[4][];
+	private int[] m_tileIndices = new int[4];
+	private int[] m_salts = new int[4];
+	private int m_tileCount;
+	/// Covered tiles by tile index. Open addressing over NodePool.hashRef(), entries are the position in the covered
+	/// tile arrays plus one and zero is empty.
+	private int[] m_tileSlots = new int[8];
+	private int m_polyCount;
+
+	/**
+	 * Builds the flow field.
+	 *
+	 * @param query
+	 *            The query used to run the search. Its node pool limits the size of the field.
+	 * @param goalRef
+	 *            The reference id of the goal polygon.
+	 * @param goalPos
+	 *            The goal position within the goal polygon. [(x, y, z)]
+	 * @param maxCost
+	 *            Polygons with a higher cost to the goal are not part of the field.
+	 * @param filter
+	 *            The polygon filter to apply to the search.
+	 */
+	public FlowField(NavMeshQuery query, long goalRef, float[] goalPos, float maxCost, QueryFilter filter) {
+		m_nav = query.getAttachedNavMesh();
+		m_goalRef = goalRef;
+		vCopy(m_goalPos, goalPos);
+
+		query.searchCostField(new long[] { goalRef }, goalPos, null, 1, maxCost, filter, null, null, null);
+		NodePool pool = query.getNodePool();
+		for (int i = 1; i <= pool.getNodeCount(); i++) {
+			Node node = pool.getNodeAtIdx(i);
+			if ((node.flags & Node.DT_NODE_CLOSED) == 0)
+				continue;
+			int it = NavMesh.decodePolyIdTile(node.id);
+			int ip = NavMesh.decodePolyIdPoly(node.id);
+			int slot = findTile(it);
+			if (slot < 0)
+				slot = addTile(it, NavMesh.decodePolyIdSalt(node.id));
+			Node next = pool.getNodeAtIdx(node.pidx);
+			m_next[slot][ip] = next != null ? next.id : 0;
+			m_costs[slot][ip] = node.total;
+			System.arraycopy(node.pos, 0, m_exits[slot], ip * 3, 3);
+			m_polyCount++;
+		}
+	}
+
+	/** The position of the tile in the covered tile arrays, or -1 if the field does not cover it. */
+	private int findTile(int it) {
+		int mask = m_tileSlots.length - 1;
+		for (int i = NodePool.hashRef(it, mask);; i = (i + 1) & mask) {
+			int slot = m_tileSlots[i] - 1;
+			if (slot < 0 || m_tileIndices[slot] == it)
+				return slot;
+		}
+	}
+
+	private int addTile(int it, int salt) {
+		int slot = m_tileCount++;
+		if (slot == m_tileIndices.length) {
+			int capacity = slot * 2;
+			m_next = Arrays.copyOf(m_next, capacity);
+			m_costs = Arrays.copyOf(m_costs, capacity);
+			m_exits = Arrays.copyOf(m_exits, capacity);
+			m_tileIndices = Arrays.copyOf(m_tileIndices, capacity);
+			m_salts = Arrays.copyOf(m_salts, capacity);
+		}
+		int polyCount = m_nav.getTile(it).data.header.polyCount;
+		m_next[slot] = new long[polyCount];
+		m_costs[slot] = new float[polyCount];
+		Arrays.fill(m_costs[slot], -1);
+		m_exits[slot] = new float[polyCount * 3];
+		m_tileIndices[slot] = it;
+		m_salts[slot] = salt;
+		// Keep the table at most half full.
+		if (m_tileCount * 2 > m_tileSlots.length) {
+			m_tileSlots = new int[m_tileSlots.length * 2];
+			for (int i = 0; i < m_tileCount; i++) {
+				insertTileSlot(i);
+			}
+		} else {
+			insertTileSlot(slot);
+		}
+		return slot;
+	}
+
+	private void insertTileSlot(int slot) {
+		int mask = m_tileSlots.length - 1;
+		int i = NodePool.hashRef(m_tileIndices[slot], mask);
+		while (m_tileSlots[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		m_tileSlots[i] = slot + 1;
+	}
+
+	public long getGoalRef() {
+		return m_goalRef;
+	}
+
+	public float[] getGoalPos() {
+		return m_goalPos;
+	}
+
+	/** The number of polygons in the field. */
+	public int getPolyCount() {
+		return m_polyCount;
+	}
+
+	/** Returns false once one of the tiles the field covers has been replaced or removed. */
+	public boolean isValid() {
+		for (int i = 0; i < m_tileCount; i++) {
+			MeshTile tile = m_nav.getTile(m_tileIndices[i]);
+			if (tile.salt != m_salts[i] || tile.data == null || tile.data.header == null)
+				return false;
+		}
+		return true;
+	}
+
+	/** Returns true if the field covers a tile with the given index. */
+	boolean dependsOn(int tileIndex) {
+		return findTile(tileIndex) >= 0;
+	}
+
+	/** Returns true if the polygon is part of the field. */
+	public boolean contains(long ref) {
+		return findPoly(ref) >= 0;
+	}
+
+	/**
+	 * The position of the polygon's tile in the covered tile arrays.
+	 *
+	 * @return The position, or -1 if the polygon is not part of the field.
+	 */
+	private int findPoly(long ref) {
+		int slot = findTile(NavMesh.decodePolyIdTile(ref));
+		if (slot < 0 || NavMesh.decodePolyIdSalt(ref) != m_salts[slot])
+			return -1;
+		int ip = NavMesh.decodePolyIdPoly(ref);
+		return ip < m_costs[slot].length && m_costs[slot][ip] >= 0 ? slot : -1;
+	}
+
+	/**
+	 * The cost from the exit point of the polygon to the goal.
+	 *
+	 * @return The cost, or -1 if the polygon is not part of the field.
+	 */
+	public float getCost(long ref) {
+		int slot = findPoly(ref);
+		if (slot < 0)
+			return -1;
+		return m_costs[slot][NavMesh.decodePolyIdPoly(ref)];
+	}
+
+	/**
+	 * The next polygon on the way to the goal.
+	 *
+	 * @return The reference id of the next polygon, or zero for the goal polygon and polygons not in the field.
+	 */
+	public long getNextPoly(long ref) {
+		int slot = findPoly(ref);
+		if (slot < 0)
+			return 0;
+		return m_next[slot][NavMesh.decodePolyIdPoly(ref)];
+	}
+
+	/**
+	 * Writes the polygons from the given polygon toward the goal into the buffer. The result can be passed to
+	 * PathCorridor.setCorridor() together with the goal position.
+	 *
+	 * @param path
+	 *            The path buffer. [(polyRef) * maxPath]
+	 * @param maxPath
+	 *            The maximum number of polygons to write.
+	 * @return The number of polygons written, zero if the polygon is not part of the field.
+	 */
+	public int getPath(long ref, long[] path, int maxPath) {
+		if (!contains(ref))
+			return 0;
+		int n = 0;
+		while (ref != 0 && n < maxPath) {
+			path[n++] = ref;
+			ref = m_next[findTile(NavMesh.decodePolyIdTile(ref))][NavMesh.decodePolyIdPoly(ref)];
+		}
+		return n;
+	}
+
+	/**
+	 * Finds the next corners from the position toward the goal, like PathCorridor.findCorners() does for a corridor.
+	 *
+	 * The straight path is found over the next {@value #MAX_CORNER_PATH} polygons of the field. If the goal is further
+	 * away, the last corner is the exit point of the last of these polygons and it does not have the
+	 * {@link NavMeshQuery#DT_STRAIGHTPATH_END} flag. Corners too close to the position are skipped.
+	 *
+	 * The scratch buffers of the call belong to the query, so threads with their own queries can share a field.
+	 *
+	 * @param ref
+	 *            The polygon containing the position.
+	 * @param pos
+	 *            The current position. [(x, y, z)]
+	 * @param cornerVerts
+	 *            The corner vertices. [(x, y, z) * cornerCount] [Size: <= maxCorners]
+	 * @param cornerFlags
+	 *            The flag for each corner. [(flag) * cornerCount] [Size: <= maxCorners]
+	 * @param cornerPolys
+	 *            The polygon reference for each corner. [(polyRef) * cornerCount] [Size: <= maxCorners]
+	 * @param maxCorners
+	 *            The maximum number of corners the buffers can hold.
+	 * @param navquery
+	 *            The query used to find the straight path. It must not be used by another thread during the call.
+	 * @return The number of corners, zero if the polygon is not part of the field.
+	 */
+	public int findCorners(long ref, float[] pos, float[] cornerVerts, int[] cornerFlags, long[] cornerPolys,
+			int maxCorners, NavMeshQuery navquery) {
+		final float MIN_TARGET_DIST = sqr(0.01f);
+
+		CornerScratch scratch = navquery.flowFieldCornerScratch();
+		int npath = getPath(ref, scratch.path, MAX_CORNER_PATH);
+		if (npath == 0)
+			return 0;
+		long lastRef = scratch.path[npath - 1];
+		boolean reachesGoal = lastRef == m_goalRef;
+		if (reachesGoal) {
+			vCopy(scratch.end, m_goalPos);
+		} else {
+			vCopy(scratch.end, m_exits[findTile(NavMesh.decodePolyIdTile(lastRef))],
+					NavMesh.decodePolyIdPoly(lastRef) * 3);
+		}
+		navquery.findStraightPath(pos, scratch.end, scratch.path, npath, cornerVerts, cornerFlags, cornerPolys,
+				scratch.count, maxCorners, 0);
+		int ncorners = scratch.count[0];
+		if (!reachesGoal && ncorners > 0)
+			cornerFlags[ncorners - 1] &= ~NavMeshQuery.DT_STRAIGHTPATH_END;
+
+		// Prune points in the beginning of the path which are too close.
+		int pruned = 0;
+		while (pruned < ncorners) {
+			if ((cornerFlags[pruned] & NavMeshQuery.DT_STRAIGHTPATH_OFFMESH_CONNECTION) != 0
+					|| vDist2DSqr(pos, cornerVerts, pruned * 3) > MIN_TARGET_DIST)
+				break;
+			pruned++;
+		}
+		ncorners -= pruned;
+		if (pruned > 0 && ncorners > 0) {
+			System.arraycopy(cornerFlags, pruned, cornerFlags, 0, ncorners);
+			System.arraycopy(cornerPolys, pruned, cornerPolys, 0, ncorners);
+			System.arraycopy(cornerVerts, pruned * 3, cornerVerts, 0, ncorners * 3);
+		}
+		return ncorners;
+	}
+
+}
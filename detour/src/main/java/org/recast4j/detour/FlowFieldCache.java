@@ -0,0 +1,127 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import static org.recast4j.detour.DetourCommon.vEqual;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of flow fields by goal polygon.
+ *
+ * A field is reused as long as it is valid and was built for the same goal position, otherwise it is rebuilt. Fields
+ * of replaced or removed tiles become invalid through the tile salts, see {@link FlowField#isValid()}; after adding
+ * tiles call {@link #invalidateTilesAt(int, int)}. The least recently used fields are dropped when the cache holds more
+ * than its maximum number of fields.
+ *
+ * The cache keeps its own query object and must not be used by more than one thread at a time.
+ */
+public class FlowFieldCache {
+
+	private final NavMesh m_nav;
+	private final NavMeshQuery m_query;
+	private final QueryFilter m_filter;
+	private final float m_maxCost;
+	private final int m_maxFields;
+	private final LinkedHashMap<Long, FlowField> m_fields = new LinkedHashMap<>(16, 0.75f, true);
+	private MeshTile[] m_tiles = new MeshTile[32]; /// < Tiles of one grid cell, grown on demand.
+	private int m_buildCount;
+
+	/**
+	 * @param nav
+	 *            The navigation mesh.
+	 * @param filter
+	 *            The polygon filter applied when building the fields.
+	 * @param maxCost
+	 *            Polygons with a higher cost to the goal are not part of a field.
+	 * @param maxFields
+	 *            The maximum number of cached fields. [Limit: > 0]
+	 */
+	public FlowFieldCache(NavMesh nav, QueryFilter filter, float maxCost, int maxFields) {
+		if (maxFields <= 0)
+			throw new IllegalArgumentException("Invalid max fields " + maxFields);
+		m_nav = nav;
+		m_query = new NavMeshQuery(nav);
+		m_filter = filter;
+		m_maxCost = maxCost;
+		m_maxFields = maxFields;
+	}
+
+	/**
+	 * Returns the flow field toward the goal, building it if it is not cached or no longer valid.
+	 *
+	 * @param goalRef
+	 *            The reference id of the goal polygon.
+	 * @param goalPos
+	 *            The goal position within the goal polygon. [(x, y, z)]
+	 */
+	public FlowField getField(long goalRef, float[] goalPos) {
+		if (goalRef == 0 || !m_nav.isValidPolyRef(goalRef))
+			throw new IllegalArgumentException("Invalid goal ref");
+		FlowField field = m_fields.get(goalRef);
+		if (field != null && field.isValid() && vEqual(field.getGoalPos(), goalPos))
+			return field;
+		field = new FlowField(m_query, goalRef, goalPos, m_maxCost, m_filter);
+		m_buildCount++;
+		m_fields.put(goalRef, field);
+		Iterator<FlowField> it = m_fields.values().iterator();
+		while (m_fields.size() > m_maxFields) {
+			it.next();
+			it.remove();
+		}
+		return field;
+	}
+
+	/**
+	 * Drops the fields that cover the tiles at or next to the given tile location. Call after adding or removing tiles
+	 * there.
+	 */
+	public void invalidateTilesAt(int x, int y) {
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				int n = m_nav.getTilesAt(x + dx, y + dy, m_tiles, m_tiles.length);
+				if (n > m_tiles.length) {
+					m_tiles = new MeshTile[n];
+					n = m_nav.getTilesAt(x + dx, y + dy, m_tiles, m_tiles.length);
+				}
+				for (int i = 0; i < n; i++) {
+					int tileIndex = m_tiles[i].index;
+					m_tiles[i] = null;
+					m_fields.values().removeIf(field -> field.dependsOn(tileIndex));
+				}
+			}
+		}
+	}
+
+	/** Removes all cached fields. */
+	public void clear() {
+		m_fields.clear();
+	}
+
+	/** The number of cached fields. */
+	public int size() {
+		return m_fields.size();
+	}
+
+	/** The number of fields built so far. */
+	public int getBuildCount() {
+		return m_buildCount;
+	}
+
+}
@@ -0,0 +1,523 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import static org.recast4j.detour.DetourCommon.vCopy;
+import static org.recast4j.detour.DetourCommon.vDist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical path finder over a tiled navigation mesh.
+ *
+ * Every tile is a cluster. The polygons with links to other tiles are the portals of the cluster. The abstract graph
+ * connects the portals of a tile with the cost of the shortest path inside the tile, and the portals of adjacent tiles
+ * with the cost of crossing the tile border. A path query first searches the abstract graph and then refines the
+ * route between consecutive portals with {@link NavMeshQuery#findPath}, so only the polygons near the route are
+ * visited.
+ *
+ * The abstract graph follows tile changes lazily. Before a query, the data and salt of every tile are compared with
+ * the ones the graph was built from, and the clusters around added, removed or replaced tiles are rebuilt.
+ * {@link #updateTilesAt(int, int)} rebuilds the clusters of a tile location right away.
+ *
+ * The costs of the abstract graph are computed with the filter given at construction and are measured between polygon
+ * centers, so the resulting paths are close to, but not always the same as, the paths found by
+ * {@link NavMeshQuery#findPath}.
+ */
+public class HierarchicalPathfinder {
+
+	private static class Portal {
+		final long ref;
+		final float[] pos;
+		long[] neighbours = new long[4];
+		float[] costs = new float[4];
+		int neighbourCount;
+		/** Cost from the end position of the query with the same stamp. */
+		float endCost;
+		int endStamp;
+
+		Portal(long ref, float[] pos) {
+			this.ref = ref;
+			this.pos = pos;
+		}
+
+		void addEdge(long ref, float cost) {
+			if (neighbourCount == neighbours.length) {
+				neighbours = Arrays.copyOf(neighbours, neighbourCount * 2);
+				costs = Arrays.copyOf(costs, neighbourCount * 2);
+			}
+			neighbours[neighbourCount] = ref;
+			costs[neighbourCount] = cost;
+			neighbourCount++;
+		}
+	}
+
+	/** Costs from a position to the portals of its tile, filled by searchCluster(). */
+	private static class PortalCosts {
+		long[] refs = new long[16];
+		float[] costs = new float[16];
+		int count;
+
+		void add(long ref, float cost) {
+			if (count == refs.length) {
+				refs = Arrays.copyOf(refs, count * 2);
+				costs = Arrays.copyOf(costs, count * 2);
+			}
+			refs[count] = ref;
+			costs[count] = cost;
+			count++;
+		}
+	}
+
+	private final NavMesh m_nav;
+	private final NavMeshQuery m_query;
+	private final QueryFilter m_filter;
+	/** Shared by the cluster and route searches, grown to the size of the largest tile or the number of portals. */
+	private NodePool m_nodePool;
+	private final NodeQueue m_openList;
+	private final PortalCosts m_startCosts = new PortalCosts();
+	private final PortalCosts m_endCosts = new PortalCosts();
+	private final float[] m_center = new float[3];
+	private int m_queryStamp;
+	private boolean m_outOfNodes;
+	/** Portals keyed by polygon reference. */
+	private final Map<Long, Portal> m_portals = new HashMap<>();
+	/** Portals of all tiles at a tile location, keyed by the packed location. */
+	private final Map<Long, List<Portal>> m_clusters = new HashMap<>();
+	/** Data of each tile when its cluster was built, indexed by tile index. Null if the tile was empty. */
+	private final MeshData[] m_tileData;
+	/** Salt of each tile when its cluster was built, indexed by tile index. */
+	private final int[] m_tileSalts;
+
+	/**
+	 * Creates the path finder and builds the abstract graph of all tiles of the navigation mesh.
+	 *
+	 * @param query
+	 *            The query used to refine paths.
+	 * @param filter
+	 *            The polygon filter used to build the graph and to find paths.
+	 */
+	public HierarchicalPathfinder(NavMeshQuery query, QueryFilter filter) {
+		m_query = query;
+		m_nav = query.getAttachedNavMesh();
+		m_filter = filter;
+		m_nodePool = new NodePool(NodePool.DT_TINY_MAX_NODES);
+		m_openList = new NodeQueue();
+		m_tileData = new MeshData[m_nav.getMaxTiles()];
+		m_tileSalts = new int[m_nav.getMaxTiles()];
+		build();
+	}
+
+	/** Rebuilds the abstract graph of all tiles. */
+	public void build() {
+		m_portals.clear();
+		m_clusters.clear();
+		Arrays.fill(m_tileData, null);
+		for (int i = 0; i < m_nav.getMaxTiles(); i++) {
+			MeshTile tile = m_nav.getTile(i);
+			if (tile.data != null && tile.data.header != null) {
+				buildCluster(tile);
+			}
+		}
+	}
+
+	/**
+	 * Updates the abstract graph after tiles were added to or removed from the given tile location. The clusters of
+	 * the location and of its neighbours are rebuilt, because the border links of the neighbours change too.
+	 */
+	public void updateTilesAt(int x, int y) {
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				List<Portal> portals = m_clusters.remove(clusterKey(x + dx, y + dy));
+				if (portals != null) {
+					for (Portal portal : portals) {
+						m_portals.remove(portal.ref);
+					}
+				}
+			}
+		}
+		// Forget the tiles the removed clusters were built from, the current tiles are recorded again below.
+		for (int i = 0; i < m_tileData.length; i++) {
+			MeshData data = m_tileData[i];
+			if (data != null && Math.abs(data.header.x - x) <= 1 && Math.abs(data.header.y - y) <= 1)
+				m_tileData[i] = null;
+		}
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (MeshTile tile : m_nav.getTilesAt(x + dx, y + dy)) {
+					buildCluster(tile);
+				}
+			}
+		}
+	}
+
+	/** The number of portals in the abstract graph. */
+	public int getPortalCount() {
+		updateChangedTiles();
+		return m_portals.size();
+	}
+
+	/**
+	 * Tells whether a search of the last findPath() ran out of nodes. Only the searches of {@link NavMeshQuery#findPath}
+	 * have a bounded node pool, the abstract graph searches grow their pool as needed.
+	 *
+	 * @return True if polygons were skipped because a node pool was full, the path may then not be the cheapest one.
+	 */
+	public boolean isOutOfNodes() {
+		return m_outOfNodes;
+	}
+
+	/** Grows the node pool to hold at least the given number of nodes. */
+	private void reserveNodes(int maxNodes) {
+		if (m_nodePool.getMaxNodes() < maxNodes)
+			m_nodePool = new NodePool(Math.max(maxNodes, m_nodePool.getMaxNodes() * 2));
+	}
+
+	/** Rebuilds the clusters around the tiles that were added, removed or replaced since their cluster was built. */
+	private void updateChangedTiles() {
+		for (int i = 0; i < m_tileData.length; i++) {
+			if (!isChanged(i))
+				continue;
+			MeshData old = m_tileData[i];
+			if (old != null)
+				updateTilesAt(old.header.x, old.header.y);
+			// The new tile may be at another location.
+			if (isChanged(i)) {
+				MeshData data = m_nav.getTile(i).data;
+				updateTilesAt(data.header.x, data.header.y);
+			}
+		}
+	}
+
+	private boolean isChanged(int tileIndex) {
+		MeshTile tile = m_nav.getTile(tileIndex);
+		MeshData data = tile.data != null && tile.data.header != null ? tile.data : null;
+		return data != m_tileData[tileIndex] || (data != null && tile.salt != m_tileSalts[tileIndex]);
+	}
+
+	private static long clusterKey(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	private void buildCluster(MeshTile tile) {
+		m_tileData[tile.index] = tile.data;
+		m_tileSalts[tile.index] = tile.salt;
+		long base = m_nav.getPolyRefBase(tile);
+		List<Portal> portals = m_clusters.get(clusterKey(tile.data.header.x, tile.data.header.y));
+		if (portals == null) {
+			portals = new ArrayList<>();
+			m_clusters.put(clusterKey(tile.data.header.x, tile.data.header.y), portals);
+		}
+		int first = portals.size();
+
+		// Collect the polygons linked to other tiles.
+		for (int i = 0; i < tile.data.header.polyCount; i++) {
+			Poly poly = tile.data.polys[i];
+			long ref = base | i;
+			if (!m_filter.passFilter(ref, tile, poly))
+				continue;
+			for (int j = poly.firstLink; j != NavMesh.DT_NULL_LINK; j = tile.linkNext[j]) {
+				long neighbourRef = tile.linkRefs[j];
+				if (neighbourRef != 0 && NavMesh.decodePolyIdTile(neighbourRef) != tile.index) {
+					Portal portal = new Portal(ref, getPolyCenter(tile, poly, new float[3]));
+					portals.add(portal);
+					m_portals.put(ref, portal);
+					break;
+				}
+			}
+		}
+
+		PortalCosts costs = m_startCosts;
+		for (int i = first; i < portals.size(); i++) {
+			Portal portal = portals.get(i);
+			// Intra-tile edges.
+			searchCluster(portal.ref, portal.pos, costs);
+			for (int j = 0; j < costs.count; j++) {
+				if (costs.refs[j] != portal.ref) {
+					portal.addEdge(costs.refs[j], costs.costs[j]);
+				}
+			}
+			// Inter-tile edges.
+			Poly poly = tile.data.polys[NavMesh.decodePolyIdPoly(portal.ref)];
+			for (int j = poly.firstLink; j != NavMesh.DT_NULL_LINK; j = tile.linkNext[j]) {
+				long neighbourRef = tile.linkRefs[j];
+				if (neighbourRef == 0 || NavMesh.decodePolyIdTile(neighbourRef) == tile.index)
+					continue;
+				Tupple2<MeshTile, Poly> tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(neighbourRef);
+				MeshTile neighbourTile = tileAndPoly.first;
+				Poly neighbourPoly = tileAndPoly.second;
+				if (!m_filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+					continue;
+				float cost = m_filter.getCost(portal.pos, getPolyCenter(neighbourTile, neighbourPoly, m_center), 0, null,
+						null, portal.ref, tile, poly, neighbourRef, neighbourTile, neighbourPoly);
+				portal.addEdge(neighbourRef, cost);
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra search restricted to the tile of the start polygon. Stores the cost to every reached portal of the tile.
+	 */
+	private void searchCluster(long startRef, float[] startPos, PortalCosts portalCosts) {
+		int tileIndex = NavMesh.decodePolyIdTile(startRef);
+		portalCosts.count = 0;
+		reserveNodes(m_nav.getTile(tileIndex).data.header.polyCount);
+		m_nodePool.clear();
+		m_openList.clear();
+
+		Node startNode = m_nodePool.getNode(startRef);
+		vCopy(startNode.pos, startPos);
+		startNode.pidx = 0;
+		startNode.cost = 0;
+		startNode.total = 0;
+		startNode.id = startRef;
+		startNode.flags = Node.DT_NODE_OPEN;
+		m_openList.push(startNode);
+
+		while (!m_openList.isEmpty()) {
+			Node bestNode = m_openList.pop();
+			bestNode.flags &= ~Node.DT_NODE_OPEN;
+			bestNode.flags |= Node.DT_NODE_CLOSED;
+
+			long bestRef = bestNode.id;
+			if (m_portals.containsKey(bestRef)) {
+				portalCosts.add(bestRef, bestNode.cost);
+			}
+
+			Tupple2<MeshTile, Poly> tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(bestRef);
+			MeshTile bestTile = tileAndPoly.first;
+			Poly bestPoly = tileAndPoly.second;
+
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
+				if (neighbourRef == 0 || NavMesh.decodePolyIdTile(neighbourRef) != tileIndex)
+					continue;
+
+				tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(neighbourRef);
+				MeshTile neighbourTile = tileAndPoly.first;
+				Poly neighbourPoly = tileAndPoly.second;
+				if (!m_filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+					continue;
+
+				Node neighbourNode = m_nodePool.getNode(neighbourRef);
+				if (neighbourNode == null) {
+					m_outOfNodes = true;
+					continue;
+				}
+				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
+					continue;
+				if (neighbourNode.flags == 0) {
+					getPolyCenter(neighbourTile, neighbourPoly, neighbourNode.pos);
+				}
+
+				float cost = bestNode.cost + m_filter.getCost(bestNode.pos, neighbourNode.pos, 0, null, null, bestRef,
+						bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0 && cost >= neighbourNode.cost)
+					continue;
+
+				neighbourNode.id = neighbourRef;
+				neighbourNode.pidx = m_nodePool.getNodeIdx(bestNode);
+				neighbourNode.cost = cost;
+				neighbourNode.total = cost;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
+					m_openList.modify(neighbourNode);
+				} else {
+					neighbourNode.flags |= Node.DT_NODE_OPEN;
+					m_openList.push(neighbourNode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds a path from the start polygon to the end polygon using the abstract graph.
+	 *
+	 * Falls back to {@link NavMeshQuery#findPath} if both polygons are in the same tile or the abstract graph does not
+	 * connect them.
+	 *
+	 * @param startRef
+	 *            The reference id of the start polygon.
+	 * @param endRef
+	 *            The reference id of the end polygon.
+	 * @param startPos
+	 *            A position within the start polygon. [(x, y, z)]
+	 * @param endPos
+	 *            A position within the end polygon. [(x, y, z)]
+	 * @return Found path
+	 */
+	public FindPathResult findPath(long startRef, long endRef, float[] startPos, float[] endPos) {
+		if (startRef == 0 || endRef == 0)
+			throw new IllegalArgumentException("Start or end ref = 0");
+		if (!m_nav.isValidPolyRef(startRef) || !m_nav.isValidPolyRef(endRef))
+			throw new IllegalArgumentException("Invalid start or end ref");
+
+		updateChangedTiles();
+		m_outOfNodes = false;
+		if (NavMesh.decodePolyIdTile(startRef) == NavMesh.decodePolyIdTile(endRef))
+			return findPathDirect(startRef, endRef, startPos, endPos);
+
+		searchCluster(startRef, startPos, m_startCosts);
+		searchCluster(endRef, endPos, m_endCosts);
+
+		List<Long> route = findRoute(m_startCosts, m_endCosts, endPos);
+		if (route == null)
+			return findPathDirect(startRef, endRef, startPos, endPos);
+
+		// Refine the route.
+		List<Long> path = new ArrayList<>();
+		path.add(startRef);
+		Status status = Status.SUCCSESS;
+		long prevRef = startRef;
+		float[] prevPos = startPos;
+		for (int i = 0; i <= route.size(); i++) {
+			long ref = i < route.size() ? route.get(i) : endRef;
+			float[] pos = i < route.size() ? m_portals.get(ref).pos : endPos;
+			if (ref == prevRef)
+				continue;
+			if (NavMesh.decodePolyIdTile(ref) != NavMesh.decodePolyIdTile(prevRef)) {
+				// Portals of adjacent tiles are linked.
+				path.add(ref);
+			} else {
+				FindPathResult segment = findPathDirect(prevRef, ref, prevPos, pos);
+				List<Long> refs = segment.getRefs();
+				path.addAll(refs.subList(1, refs.size()));
+				if (refs.get(refs.size() - 1) != ref) {
+					status = Status.PARTIAL_RESULT;
+					break;
+				}
+			}
+			prevRef = ref;
+			prevPos = pos;
+		}
+		return new FindPathResult(status, path);
+	}
+
+	private FindPathResult findPathDirect(long startRef, long endRef, float[] startPos, float[] endPos) {
+		FindPathResult result = m_query.findPath(startRef, endRef, startPos, endPos, m_filter);
+		m_outOfNodes |= m_query.isOutOfNodes();
+		return result;
+	}
+
+	/**
+	 * A* search over the portals from the portals of the start tile to the portals of the end tile.
+	 *
+	 * @return The portals along the cheapest route, or null if there is no route.
+	 */
+	private List<Long> findRoute(PortalCosts startCosts, PortalCosts endCosts, float[] endPos) {
+		if (startCosts.count == 0 || endCosts.count == 0)
+			return null;
+
+		// Mark the portals of the end tile with their cost to the end position.
+		m_queryStamp++;
+		for (int i = 0; i < endCosts.count; i++) {
+			Portal portal = m_portals.get(endCosts.refs[i]);
+			portal.endCost = endCosts.costs[i];
+			portal.endStamp = m_queryStamp;
+		}
+
+		reserveNodes(m_portals.size());
+		m_nodePool.clear();
+		m_openList.clear();
+		for (int i = 0; i < startCosts.count; i++) {
+			Portal portal = m_portals.get(startCosts.refs[i]);
+			Node node = m_nodePool.getNode(portal.ref);
+			vCopy(node.pos, portal.pos);
+			node.pidx = 0;
+			node.cost = startCosts.costs[i];
+			node.total = node.cost + vDist(portal.pos, endPos) * NavMeshQuery.H_SCALE;
+			node.id = portal.ref;
+			node.flags = Node.DT_NODE_OPEN;
+			m_openList.push(node);
+		}
+
+		Node goalNode = null;
+		float goalCost = Float.MAX_VALUE;
+		while (!m_openList.isEmpty()) {
+			Node bestNode = m_openList.pop();
+			if (bestNode.total >= goalCost)
+				break;
+			bestNode.flags &= ~Node.DT_NODE_OPEN;
+			bestNode.flags |= Node.DT_NODE_CLOSED;
+
+			Portal portal = m_portals.get(bestNode.id);
+			if (portal.endStamp == m_queryStamp && bestNode.cost + portal.endCost < goalCost) {
+				goalCost = bestNode.cost + portal.endCost;
+				goalNode = bestNode;
+			}
+
+			for (int i = 0; i < portal.neighbourCount; i++) {
+				Portal neighbour = m_portals.get(portal.neighbours[i]);
+				if (neighbour == null)
+					continue;
+				Node neighbourNode = m_nodePool.getNode(neighbour.ref);
+				if (neighbourNode == null) {
+					m_outOfNodes = true;
+					continue;
+				}
+				if (neighbourNode.flags == 0) {
+					vCopy(neighbourNode.pos, neighbour.pos);
+				}
+				float cost = bestNode.cost + portal.costs[i];
+				float total = cost + vDist(neighbour.pos, endPos) * NavMeshQuery.H_SCALE;
+				if ((neighbourNode.flags & (Node.DT_NODE_OPEN | Node.DT_NODE_CLOSED)) != 0
+						&& total >= neighbourNode.total)
+					continue;
+
+				neighbourNode.id = neighbour.ref;
+				neighbourNode.pidx = m_nodePool.getNodeIdx(bestNode);
+				neighbourNode.flags &= ~Node.DT_NODE_CLOSED;
+				neighbourNode.cost = cost;
+				neighbourNode.total = total;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
+					m_openList.modify(neighbourNode);
+				} else {
+					neighbourNode.flags |= Node.DT_NODE_OPEN;
+					m_openList.push(neighbourNode);
+				}
+			}
+		}
+
+		if (goalNode == null)
+			return null;
+		List<Long> route = new ArrayList<>();
+		for (Node node = goalNode; node != null; node = m_nodePool.getNodeAtIdx(node.pidx)) {
+			route.add(0, node.id);
+		}
+		return route;
+	}
+
+	private static float[] getPolyCenter(MeshTile tile, Poly poly, float[] center) {
+		center[0] = 0;
+		center[1] = 0;
+		center[2] = 0;
+		for (int i = 0; i < poly.vertCount; i++) {
+			int v = poly.verts[i] * 3;
+			center[0] += tile.data.verts[v];
+			center[1] += tile.data.verts[v + 1];
+			center[2] += tile.data.verts[v + 2];
+		}
+		center[0] /= poly.vertCount;
+		center[1] /= poly.vertCount;
+		center[2] /= poly.vertCount;
+		return center;
+	}
+}
@@ -0,0 +1,267 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import static org.recast4j.detour.DetourCommon.vCopy;
+
+import java.util.Arrays;
+
+/**
+ * ALT (A*, landmarks and triangle inequality) heuristic.
+ *
+ * The distances from a set of landmark polygons to every polygon of the navigation mesh are precomputed with Dijkstra
+ * searches over the polygon link graph. For a node n and the end polygon g, every landmark L gives the lower bound
+ * |d(L, g) - d(L, n)| of the remaining cost, and the largest bound is used. On maps with walls and long corridors this
+ * is much tighter than the straight line distance, so findPath() visits fewer nodes.
+ *
+ * The distances are measured between polygon centers while the search measures between edge midpoints. On every link
+ * the two can differ by up to the size of the polygons, so the bound is not admissible. It is scaled down, which keeps
+ * it below the real cost on typical meshes but does not guarantee it. With this heuristic findPath() and the sliced
+ * queries may return a slightly more expensive path than the cheapest one. Shortening every link by the radii of its
+ * polygons would give an admissible bound, but on tiled meshes that bound is zero for most queries. Use the default
+ * straight line heuristic where optimal paths are required. {@link #isAdmissible()} returns false, so the bidirectional
+ * search and findPathToNearestGoal(), whose early stop needs an admissible bound, do not use this heuristic.
+ *
+ * The distances are stored per landmark and tile in float arrays indexed by the polygon index, tiles that a landmark
+ * cannot reach have no table.
+ *
+ * The heuristic only reads its tables during a search and can be shared by several queries. After adding or removing a
+ * tile, call {@link #updateTilesAt(int, int)}, which recomputes the landmarks whose tables are affected by the change.
+ */
+public class LandmarkHeuristic implements PathHeuristic {
+
+	/** Default scale of the landmark bound. The scaled bound is still not admissible, see the class comment. */
+	public static final float DEFAULT_SCALE = 0.9f;
+
+	private final NavMesh m_nav;
+	private final QueryFilter m_filter;
+	private final float m_scale;
+	private final long[] m_landmarks;
+	/** Distances indexed by landmark, tile index and polygon index. Null if the landmark did not reach the tile. */
+	private final float[][][] m_distances;
+	/** Salt of each tile when the landmark tables were computed, indexed by landmark and tile index. */
+	private final int[][] m_salts;
+
+	public LandmarkHeuristic(NavMesh nav, QueryFilter filter, long[] landmarks) {
+		this(nav, filter, landmarks, DEFAULT_SCALE);
+	}
+
+	/**
+	 * Creates the heuristic and computes the distance tables of all landmarks.
+	 *
+	 * @param nav
+	 *            The navigation mesh.
+	 * @param filter
+	 *            The polygon filter used to compute the distances. Should match the filter of the path queries.
+	 * @param landmarks
+	 *            The landmark polygons. A few polygons spread around the edges of the map work best.
+	 * @param scale
+	 *            The scale of the landmark bound. [Limit: 0 < value <= 1]
+	 */
+	public LandmarkHeuristic(NavMesh nav, QueryFilter filter, long[] landmarks, float scale) {
+		if (scale <= 0 || scale > 1)
+			throw new IllegalArgumentException("Invalid scale " + scale);
+		m_nav = nav;
+		m_filter = filter;
+		m_scale = scale;
+		m_landmarks = landmarks.clone();
+		m_distances = new float[landmarks.length][][];
+		m_salts = new int[landmarks.length][];
+		for (int i = 0; i < m_landmarks.length; i++) {
+			computeLandmark(i);
+		}
+	}
+
+	@Override
+	public float getCost(long ref, float[] pos, long endRef, float[] endPos) {
+		int it = NavMesh.decodePolyIdTile(ref);
+		int ip = NavMesh.decodePolyIdPoly(ref);
+		int salt = NavMesh.decodePolyIdSalt(ref);
+		int et = NavMesh.decodePolyIdTile(endRef);
+		int ep = NavMesh.decodePolyIdPoly(endRef);
+		int endSalt = NavMesh.decodePolyIdSalt(endRef);
+		float h = 0;
+		for (int i = 0; i < m_landmarks.length; i++) {
+			float[][] distances = m_distances[i];
+			int[] salts = m_salts[i];
+			if (distances[it] == null || distances[et] == null || salts[it] != salt || salts[et] != endSalt)
+				continue;
+			float d = distances[it][ip];
+			float endDist = distances[et][ep];
+			if (d == Float.MAX_VALUE || endDist == Float.MAX_VALUE)
+				continue;
+			h = Math.max(h, Math.abs(endDist - d));
+		}
+		return h * m_scale;
+	}
+
+	/** The landmark bound may overestimate the remaining cost, see the class comment. */
+	@Override
+	public boolean isAdmissible() {
+		return false;
+	}
+
+	/**
+	 * Recomputes the landmark tables affected by adding or removing tiles at the given tile location. A landmark is
+	 * recomputed if it reached a tile at the location, one of its neighbours, or a tile that has been removed or
+	 * replaced since the table was computed.
+	 *
+	 * @return The number of recomputed landmarks.
+	 */
+	public int updateTilesAt(int x, int y) {
+		boolean[] changed = new boolean[m_nav.getMaxTiles()];
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (MeshTile tile : m_nav.getTilesAt(x + dx, y + dy)) {
+					changed[tile.index] = true;
+				}
+			}
+		}
+		int count = 0;
+		for (int i = 0; i < m_landmarks.length; i++) {
+			boolean affected = false;
+			for (int t = 0; t < changed.length && !affected; t++) {
+				if (m_distances[i][t] == null)
+					continue;
+				MeshTile tile = m_nav.getTile(t);
+				affected = changed[t] || tile.data == null || tile.salt != m_salts[i][t];
+			}
+			if (affected) {
+				computeLandmark(i);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getLandmarkCount() {
+		return m_landmarks.length;
+	}
+
+	/**
+	 * Returns the distance from a landmark to the polygon, or Float.MAX_VALUE if the polygon is not reachable from the
+	 * landmark.
+	 */
+	public float getDistance(int landmark, long ref) {
+		int it = NavMesh.decodePolyIdTile(ref);
+		float[] distances = m_distances[landmark][it];
+		if (distances == null || m_salts[landmark][it] != NavMesh.decodePolyIdSalt(ref))
+			return Float.MAX_VALUE;
+		return distances[NavMesh.decodePolyIdPoly(ref)];
+	}
+
+	/** Dijkstra search from the landmark over the whole navigation mesh. */
+	private void computeLandmark(int landmark) {
+		float[][] distances = new float[m_nav.getMaxTiles()][];
+		int[] salts = new int[m_nav.getMaxTiles()];
+		m_distances[landmark] = distances;
+		m_salts[landmark] = salts;
+		long startRef = m_landmarks[landmark];
+		if (!m_nav.isValidPolyRef(startRef))
+			return;
+
+		int polyCount = 0;
+		for (int i = 0; i < m_nav.getMaxTiles(); i++) {
+			MeshTile tile = m_nav.getTile(i);
+			if (tile.data != null && tile.data.header != null)
+				polyCount += tile.data.header.polyCount;
+		}
+		NodePool nodePool = new NodePool(polyCount);
+		NodeQueue openList = new NodeQueue();
+
+		Tupple2<MeshTile, Poly> tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(startRef);
+		Node startNode = nodePool.getNode(startRef);
+		getPolyCenter(startNode.pos, tileAndPoly.first, tileAndPoly.second);
+		startNode.cost = 0;
+		startNode.total = 0;
+		startNode.id = startRef;
+		startNode.flags = Node.DT_NODE_OPEN;
+		openList.push(startNode);
+
+		while (!openList.isEmpty()) {
+			Node bestNode = openList.pop();
+			bestNode.flags &= ~Node.DT_NODE_OPEN;
+			bestNode.flags |= Node.DT_NODE_CLOSED;
+
+			long bestRef = bestNode.id;
+			tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(bestRef);
+			MeshTile bestTile = tileAndPoly.first;
+			Poly bestPoly = tileAndPoly.second;
+			float[] tileDistances = distances[bestTile.index];
+			if (tileDistances == null) {
+				tileDistances = new float[bestTile.data.header.polyCount];
+				Arrays.fill(tileDistances, Float.MAX_VALUE);
+				distances[bestTile.index] = tileDistances;
+				salts[bestTile.index] = bestTile.salt;
+			}
+			tileDistances[bestPoly.index] = bestNode.cost;
+
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
+				if (neighbourRef == 0)
+					continue;
+				tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(neighbourRef);
+				MeshTile neighbourTile = tileAndPoly.first;
+				Poly neighbourPoly = tileAndPoly.second;
+				if (!m_filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+					continue;
+
+				Node neighbourNode = nodePool.getNode(neighbourRef);
+				if (neighbourNode == null || (neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
+					continue;
+				if (neighbourNode.flags == 0) {
+					getPolyCenter(neighbourNode.pos, neighbourTile, neighbourPoly);
+				}
+
+				// The bound needs a symmetric distance, use the cheaper direction.
+				float cost = Math.min(
+						m_filter.getCost(bestNode.pos, neighbourNode.pos, 0, null, null, bestRef, bestTile, bestPoly,
+								neighbourRef, neighbourTile, neighbourPoly),
+						m_filter.getCost(neighbourNode.pos, bestNode.pos, 0, null, null, neighbourRef, neighbourTile,
+								neighbourPoly, bestRef, bestTile, bestPoly));
+				float total = bestNode.cost + cost;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0 && total >= neighbourNode.cost)
+					continue;
+
+				neighbourNode.id = neighbourRef;
+				neighbourNode.pidx = nodePool.getNodeIdx(bestNode);
+				neighbourNode.cost = total;
+				neighbourNode.total = total;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
+					openList.modify(neighbourNode);
+				} else {
+					neighbourNode.flags |= Node.DT_NODE_OPEN;
+					openList.push(neighbourNode);
+				}
+			}
+		}
+	}
+
+	private static void getPolyCenter(float[] center, MeshTile tile, Poly poly) {
+		vCopy(center, tile.data.verts, poly.verts[0] * 3);
+		for (int i = 1; i < poly.vertCount; i++) {
+			int v = poly.verts[i] * 3;
+			center[0] += tile.data.verts[v];
+			center[1] += tile.data.verts[v + 1];
+			center[2] += tile.data.verts[v + 2];
+		}
+		center[0] /= poly.vertCount;
+		center[1] /= poly.vertCount;
+		center[2] /= poly.vertCount;
+	}
+}
@@ -18,8 +18,7 @@ freely, subject to the following restrictions:
 */
 package org.recast4j.detour;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Defines a navigation mesh tile.
@@ -30,8 +29,24 @@ public class MeshTile {
 	int salt;
 	/** The tile data. */
 	public MeshData data;
-	/** The tile links. */
-	final List<Link> links = new ArrayList<>();
+	/*
+	 * The tile links, stored as parallel arrays indexed by the link index. A link connects a polygon to a neighbour
+	 * polygon. The links of a polygon form a list starting at Poly.firstLink.
+	 */
+	/** Neighbour reference. (The neighbor that is linked to.) */
+	long[] linkRefs = new long[0];
+	/** Index of the next link. */
+	int[] linkNext = new int[0];
+	/** Index of the polygon edge that owns the link. [Unsigned] */
+	byte[] linkEdges = new byte[0];
+	/** If a boundary link, defines on which side the link is. [Unsigned] */
+	byte[] linkSides = new byte[0];
+	/** If a boundary link, defines the minimum sub-edge area. [Unsigned] */
+	byte[] linkBmins = new byte[0];
+	/** If a boundary link, defines the maximum sub-edge area. [Unsigned] */
+	byte[] linkBmaxs = new byte[0];
+	/** Number of allocated links. */
+	int linkCount;
 	/** Index to the next free link. */
 	int linksFreeList = NavMesh.DT_NULL_LINK;
 	/** Tile flags. (See: #dtTileFlags) */
@@ -43,4 +58,42 @@ public class MeshTile {
 		this.index = index;
 	}
 
+	/** Grows the link arrays to hold at least the given number of links. */
+	void ensureLinkCapacity(int capacity) {
+		if (capacity > linkRefs.length) {
+			int n = Math.max(capacity, Math.max(16, linkRefs.length * 2));
+			linkRefs = Arrays.copyOf(linkRefs, n);
+			linkNext = Arrays.copyOf(linkNext, n);
+			linkEdges = Arrays.copyOf(linkEdges, n);
+			linkSides = Arrays.copyOf(linkSides, n);
+			linkBmins = Arrays.copyOf(linkBmins, n);
+			linkBmaxs = Arrays.copyOf(linkBmaxs, n);
+		}
+	}
+
+	/** Sets all fields of a link except the next index. */
+	void setLink(int link, long ref, int edge, int side, int bmin, int bmax) {
+		linkRefs[link] = ref;
+		linkEdges[link] = (byte) edge;
+		linkSides[link] = (byte) side;
+		linkBmins[link] = (byte) bmin;
+		linkBmaxs[link] = (byte) bmax;
+	}
+
+	int getLinkEdge(int link) {
+		return linkEdges[link] & 0xff;
+	}
+
+	int getLinkSide(int link) {
+		return linkSides[link] & 0xff;
+	}
+
+	int getLinkBmin(int link) {
+		return linkBmins[link] & 0xff;
+	}
+
+	int getLinkBmax(int link) {
+		return linkBmaxs[link] & 0xff;
+	}
+
 }
@@ -0,0 +1,39 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+/**
+ * Reusable moveAlongSurface result with a fixed capacity visited array. Filled by
+ * {@link NavMeshQuery#moveAlongSurface(long, float[], float[], QueryFilter, MoveAlongSurfaceBuffer)}.
+ */
+public class MoveAlongSurfaceBuffer {
+	/** The result position of the mover. [(x, y, z)] */
+	public final float[] resultPos = new float[3];
+	/** The reference ids of the polygons visited during the move. [visitedCount] */
+	public final long[] visited;
+	/** The number of polygons stored in visited. */
+	public int visitedCount;
+
+	/**
+	 * @param maxVisited
+	 *            The maximum number of visited polygons stored. [Limit: >= 0]
+	 */
+	public MoveAlongSurfaceBuffer(int maxVisited) {
+		visited = new long[maxVisited];
+	}
+}
@@ -155,7 +155,7 @@ public class NavMesh {
 	/// @note This function is generally meant for internal use only.
 	/// @param[in] ref The polygon reference.
 	/// @see #encodePolyId
-	static int decodePolyIdTile(long ref) {
+	public static int decodePolyIdTile(long ref) {
 		long tileMask = (1L << DT_TILE_BITS) - 1;
 		return (int) ((ref >> DT_POLY_BITS) & tileMask);
 	}
@@ -172,18 +172,18 @@ public class NavMesh {
 
 	private int allocLink(MeshTile tile) {
 		if (tile.linksFreeList == DT_NULL_LINK) {
-			Link link = new Link();
-			link.next = DT_NULL_LINK;
-			tile.links.add(link);
-			return tile.links.size() - 1;
+			tile.ensureLinkCapacity(tile.linkCount + 1);
+			int link = tile.linkCount++;
+			tile.linkNext[link] = DT_NULL_LINK;
+			return link;
 		}
 		int link = tile.linksFreeList;
-		tile.linksFreeList = tile.links.get(link).next;
+		tile.linksFreeList = tile.linkNext[link];
 		return link;
 	}
 
 	private void freeLink(MeshTile tile, int link) {
-		tile.links.get(link).next = tile.linksFreeList;
+		tile.linkNext[link] = tile.linksFreeList;
 		tile.linksFreeList = link;
 	}
 
@@ -200,6 +200,19 @@ public class NavMesh {
 		return new int[] { tx, ty };
 	}
 
+	/**
+	 * Calculates the tile grid location for the specified world position.
+	 * 
+	 * @param pos
+	 *            The world position for the query. [(x, y, z)]
+	 * @param tileLoc
+	 *            Receives the (tx,ty) tile location. [2]
+	 */
+	public void calcTileLoc(float[] pos, int[] tileLoc) {
+		tileLoc[0] = (int) Math.floor((pos[0] - m_orig[0]) / m_tileWidth);
+		tileLoc[1] = (int) Math.floor((pos[2] - m_orig[2]) / m_tileHeight);
+	}
+
 	public Tupple2<MeshTile, Poly> getTileAndPolyByRef(long ref) {
 		if (ref == 0) {
 			throw new IllegalArgumentException("ref = 0");
@@ -233,10 +246,9 @@ public class NavMesh {
 	boolean isValidPolyRef(long ref) {
 		if (ref == 0)
 			return false;
-		int[] saltitip = decodePolyId(ref);
-		int salt = saltitip[0];
-		int it = saltitip[1];
-		int ip = saltitip[2];
+		int salt = decodePolyIdSalt(ref);
+		int it = decodePolyIdTile(ref);
+		int ip = decodePolyIdPoly(ref);
 		if (it >= m_maxTiles)
 			return false;
 		if (m_tiles[it].salt != salt || m_tiles[it].data == null)
@@ -440,7 +452,8 @@ public class NavMesh {
 
 		tile.data = data;
 		tile.flags = flags;
-		tile.links.clear();
+		tile.linkCount = 0;
+		tile.linksFreeList = DT_NULL_LINK;
 
 		// Insert tile into the position lut.
 		int h = computeTileHash(header.x, header.y, m_tileLutMask);
@@ -548,7 +561,8 @@ public class NavMesh {
 		tile.data = null;
 
 		tile.flags = 0;
-		tile.links.clear();
+		tile.linkCount = 0;
+		tile.linksFreeList = DT_NULL_LINK;
 
 		// Update salt, salt should never be zero.
 		tile.salt = (tile.salt + 1) & ((1 << DT_SALT_BITS) - 1);
@@ -562,6 +576,45 @@ public class NavMesh {
 		return data;
 	}
 
+	/// Returns the tiles in use, ordered so that inserting them one after another
+	/// rebuilds the same tile lookup chains. Used by NavMeshSnapshotWriter.
+	List<MeshTile> getTilesInLookupOrder() {
+		List<MeshTile> tiles = new ArrayList<>();
+		for (int h = 0; h < m_tileLutSize; h++) {
+			int first = tiles.size();
+			for (MeshTile tile = m_posLookup[h]; tile != null; tile = tile.next) {
+				tiles.add(first, tile);
+			}
+		}
+		return tiles;
+	}
+
+	/// Restores the tile state saved by NavMeshSnapshotWriter into a new navigation mesh.
+	/// The tiles must be tiles of this mesh with their data, flags and links already set,
+	/// given in the order of #getTilesInLookupOrder. They are inserted without connecting
+	/// any links. All other tiles form the free list in the given order.
+	void restoreTiles(int[] salts, MeshTile[] tiles, int ntiles, int[] freeList, int nfree, int tileCount) {
+		for (int i = 0; i < m_maxTiles; i++) {
+			m_tiles[i].salt = salts[i];
+			m_tiles[i].next = null;
+		}
+		for (int i = 0; i < ntiles; i++) {
+			MeshTile tile = tiles[i];
+			if (tile.data.bvTree != null && tile.data.bvTree.length == 0)
+				tile.data.bvTree = null;
+			int h = computeTileHash(tile.data.header.x, tile.data.header.y, m_tileLutMask);
+			tile.next = m_posLookup[h];
+			m_posLookup[h] = tile;
+		}
+		m_nextFree = null;
+		for (int i = nfree - 1; i >= 0; i--) {
+			MeshTile tile = m_tiles[freeList[i]];
+			tile.next = m_nextFree;
+			m_nextFree = tile;
+		}
+		m_tileCount = tileCount;
+	}
+
 	/// Builds internal polygons links for a tile.
 	void connectIntLinks(MeshTile tile) {
 		if (tile == null)
@@ -584,13 +637,9 @@ public class NavMesh {
 					continue;
 
 				int idx = allocLink(tile);
-				Link link = tile.links.get(idx);
-				link.ref = base | (poly.neis[j] - 1);
-				link.edge = j;
-				link.side = 0xff;
-				link.bmin = link.bmax = 0;
+				tile.setLink(idx, base | (poly.neis[j] - 1), j, 0xff, 0, 0);
 				// Add to linked list.
-				link.next = poly.firstLink;
+				tile.linkNext[idx] = poly.firstLink;
 				poly.firstLink = idx;
 			}
 		}
@@ -607,19 +656,19 @@ public class NavMesh {
 			int j = poly.firstLink;
 			int pj = DT_NULL_LINK;
 			while (j != DT_NULL_LINK) {
-				if (decodePolyIdTile(tile.links.get(j).ref) == targetNum) {
+				if (decodePolyIdTile(tile.linkRefs[j]) == targetNum) {
 					// Remove link.
-					int nj = tile.links.get(j).next;
+					int nj = tile.linkNext[j];
 					if (pj == DT_NULL_LINK)
 						poly.firstLink = nj;
 					else
-						tile.links.get(pj).next = nj;
+						tile.linkNext[pj] = nj;
 					freeLink(tile, j);
 					j = nj;
 				} else {
 					// Advance
 					pj = j;
-					j = tile.links.get(j).next;
+					j = tile.linkNext[j];
 				}
 			}
 		}
@@ -656,12 +705,9 @@ public class NavMesh {
 				int nnei = connectedPolys.third;
 				for (int k = 0; k < nnei; ++k) {
 					int idx = allocLink(tile);
-					Link link = tile.links.get(idx);
-					link.ref = nei[k];
-					link.edge = j;
-					link.side = dir;
+					tile.setLink(idx, nei[k], j, dir, 0, 0);
 
-					link.next = poly.firstLink;
+					tile.linkNext[idx] = poly.firstLink;
 					poly.firstLink = idx;
 
 					// Compress portal limits to a byte value.
@@ -675,8 +721,8 @@ public class NavMesh {
 							tmin = tmax;
 							tmax = temp;
 						}
-						link.bmin = (int) (clamp(tmin, 0.0f, 1.0f) * 255.0f);
-						link.bmax = (int) (clamp(tmax, 0.0f, 1.0f) * 255.0f);
+						tile.linkBmins[idx] = (byte) (clamp(tmin, 0.0f, 1.0f) * 255.0f);
+						tile.linkBmaxs[idx] = (byte) (clamp(tmax, 0.0f, 1.0f) * 255.0f);
 					} else if (dir == 2 || dir == 6) {
 						float tmin = (neia[k * 2 + 0] - tile.data.verts[va])
 								/ (tile.data.verts[vb] - tile.data.verts[va]);
@@ -687,8 +733,8 @@ public class NavMesh {
 							tmin = tmax;
 							tmax = temp;
 						}
-						link.bmin = (int) (clamp(tmin, 0.0f, 1.0f) * 255.0f);
-						link.bmax = (int) (clamp(tmax, 0.0f, 1.0f) * 255.0f);
+						tile.linkBmins[idx] = (byte) (clamp(tmin, 0.0f, 1.0f) * 255.0f);
+						tile.linkBmaxs[idx] = (byte) (clamp(tmax, 0.0f, 1.0f) * 255.0f);
 					}
 				}
 			}
@@ -738,13 +784,9 @@ public class NavMesh {
 
 			// Link off-mesh connection to target poly.
 			int idx = allocLink(target);
-			Link link = target.links.get(idx);
-			link.ref = ref;
-			link.edge = 1;
-			link.side = oppositeSide;
-			link.bmin = link.bmax = 0;
+			target.setLink(idx, ref, 1, oppositeSide, 0, 0);
 			// Add to linked list.
-			link.next = targetPoly.firstLink;
+			target.linkNext[idx] = targetPoly.firstLink;
 			targetPoly.firstLink = idx;
 
 			// Link target poly to off-mesh connection.
@@ -752,13 +794,9 @@ public class NavMesh {
 				int tidx = allocLink(tile);
 				int landPolyIdx = decodePolyIdPoly(ref);
 				Poly landPoly = tile.data.polys[landPolyIdx];
-				link = tile.links.get(tidx);
-				link.ref = getPolyRefBase(target) | (targetCon.poly);
-				link.edge = 0xff;
-				link.side = (side == -1 ? 0xff : side);
-				link.bmin = link.bmax = 0;
+				tile.setLink(tidx, getPolyRefBase(target) | (targetCon.poly), 0xff, (side == -1 ? 0xff : side), 0, 0);
 				// Add to linked list.
-				link.next = landPoly.firstLink;
+				tile.linkNext[tidx] = landPoly.firstLink;
 				landPoly.firstLink = tidx;
 			}
 		}
@@ -920,26 +958,18 @@ public class NavMesh {
 
 			// Link off-mesh connection to target poly.
 			int idx = allocLink(tile);
-			Link link = tile.links.get(idx);
-			link.ref = ref;
-			link.edge = 0;
-			link.side = 0xff;
-			link.bmin = link.bmax = 0;
+			tile.setLink(idx, ref, 0, 0xff, 0, 0);
 			// Add to linked list.
-			link.next = poly.firstLink;
+			tile.linkNext[idx] = poly.firstLink;
 			poly.firstLink = idx;
 
 			// Start end-point is always connect back to off-mesh connection.
 			int tidx = allocLink(tile);
 			int landPolyIdx = decodePolyIdPoly(ref);
 			Poly landPoly = tile.data.polys[landPolyIdx];
-			link = tile.links.get(tidx);
-			link.ref = base | (con.poly);
-			link.edge = 0xff;
-			link.side = 0xff;
-			link.bmin = link.bmax = 0;
+			tile.setLink(tidx, base | (con.poly), 0xff, 0xff, 0, 0);
 			// Add to linked list.
-			link.next = landPoly.firstLink;
+			tile.linkNext[tidx] = landPoly.firstLink;
 			landPoly.firstLink = tidx;
 		}
 	}
@@ -1122,6 +1152,31 @@ public class NavMesh {
 		return tiles;
 	}
 
+	/**
+	 * Gets all tile layers at the specified grid location without allocating a list.
+	 * 
+	 * @param tiles
+	 *            Receives the tiles found.
+	 * @param maxTiles
+	 *            The maximum number of tiles the array can hold.
+	 * @return The number of tiles at the location. Only the first maxTiles of them are written to the array.
+	 */
+	public int getTilesAt(int x, int y, MeshTile[] tiles, int maxTiles) {
+		int n = 0;
+		// Find tile based on hash.
+		int h = computeTileHash(x, y, m_tileLutMask);
+		MeshTile tile = m_posLookup[h];
+		while (tile != null) {
+			if (tile.data.header != null && tile.data.header.x == x && tile.data.header.y == y) {
+				if (n < maxTiles)
+					tiles[n] = tile;
+				n++;
+			}
+			tile = tile.next;
+		}
+		return n;
+	}
+
 	public long getTileRefAt(int x, int y, int layer) {
 		// Find tile based on hash.
 		int h = computeTileHash(x, y, m_tileLutMask);
@@ -1202,9 +1257,9 @@ public class NavMesh {
 		int idx0 = 0, idx1 = 1;
 
 		// Find link that points to first vertex.
-		for (int i = poly.firstLink; i != DT_NULL_LINK; i = tile.links.get(i).next) {
-			if (tile.links.get(i).edge == 0) {
-				if (tile.links.get(i).ref != prevRef) {
+		for (int i = poly.firstLink; i != DT_NULL_LINK; i = tile.linkNext[i]) {
+			if (tile.getLinkEdge(i) == 0) {
+				if (tile.linkRefs[i] != prevRef) {
 					idx0 = 1;
 					idx1 = 0;
 				}
@@ -31,15 +31,12 @@ import static org.recast4j.detour.DetourCommon.pointInPolygon;
 import static org.recast4j.detour.DetourCommon.randomPointInConvexPoly;
 import static org.recast4j.detour.DetourCommon.sqr;
 import static org.recast4j.detour.DetourCommon.triArea2D;
-import static org.recast4j.detour.DetourCommon.vAdd;
 import static org.recast4j.detour.DetourCommon.vCopy;
 import static org.recast4j.detour.DetourCommon.vDist;
 import static org.recast4j.detour.DetourCommon.vDist2D;
 import static org.recast4j.detour.DetourCommon.vDistSqr;
 import static org.recast4j.detour.DetourCommon.vEqual;
-import static org.recast4j.detour.DetourCommon.vLenSqr;
 import static org.recast4j.detour.DetourCommon.vLerp;
-import static org.recast4j.detour.DetourCommon.vMad;
 import static org.recast4j.detour.DetourCommon.vMax;
 import static org.recast4j.detour.DetourCommon.vMin;
 import static org.recast4j.detour.DetourCommon.vNormalize;
@@ -48,6 +45,7 @@ import static org.recast4j.detour.Node.DT_NODE_CLOSED;
 import static org.recast4j.detour.Node.DT_NODE_OPEN;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -58,10 +56,27 @@ public class NavMeshQuery {
 
 	/**
 	 * Use raycasts during pathfind to "shortcut" (raycast still consider costs)
-	 * Options for NavMeshQuery::initSlicedFindPath and updateSlicedFindPath
+	 * Options for NavMeshQuery::initSlicedFindPath, updateSlicedFindPath and findPath
+	 * 
+	 * With this option the parent of a search node may be any earlier node in direct line of sight (Theta*), so the
+	 * path cost follows straight lines instead of polygon edge midpoints. The corridor has about as many polygons and
+	 * straight path corners as the one of the regular search, so corridors that follow an agent still need
+	 * PathCorridor.optimizePathVisibility().
 	 */
 	public static final int DT_FINDPATH_ANY_ANGLE = 0x02;
 
+	/**
+	 * Search from both ends of the path at the same time. Option for NavMeshQuery::findPath
+	 * 
+	 * A backward search from the end polygon follows the links in reverse, including one way off-mesh connections,
+	 * and the searches stop when no open node of either search can improve the best path through a polygon reached
+	 * by both. The position of a node is fixed when the polygon is first reached, from the start for the forward
+	 * search and from the end for the backward search, so the path can differ slightly in cost from the one of the
+	 * regular search. The search also stops once either side runs out of open nodes, so an end polygon in a small
+	 * closed off area fails early.
+	 */
+	public static final int DT_FINDPATH_BIDIRECTIONAL = 0x04;
+
 	/** Raycast should calculate movement cost along the ray and fill RaycastHit::cost */
 	public static final int DT_RAYCAST_USE_COSTS = 0x01;
 
@@ -77,19 +92,102 @@ public class NavMeshQuery {
 	public static final int DT_STRAIGHTPATH_AREA_CROSSINGS = 0x01; ///< Add a vertex at every polygon edge crossing where area changes.
 	public static final int DT_STRAIGHTPATH_ALL_CROSSINGS = 0x02; ///< Add a vertex at every polygon edge crossing.
 
+	/// The maximum number of nodes the search bridging a broken run of a corridor may expand in the repairPath()
+	/// overload without an iteration budget.
+	public static final int DT_REPAIR_MAX_BRIDGE_NODES = 256;
+
 	static float H_SCALE = 0.999f; // Search heuristic scale.
+	private static final int MAX_QUERY_TILES = 32;
 
 	private final NavMesh m_nav;
 	private final NodePool m_nodePool;
 	private final NodePool m_tinyNodePool;
 	private final NodeQueue m_openList;
 	private QueryData m_query; /// < Sliced query state.
+	private PathHeuristic m_heuristic; /// < Optional search heuristic, straight line distance if null.
+	private boolean m_outOfNodes; /// < Set by the last path search if the node pool ran out, see isOutOfNodes().
+	private int m_searchIterations; /// < Number of nodes expanded by the last searchPath().
+	private final float[] m_queryBmin = new float[3];
+	private final float[] m_queryBmax = new float[3];
+	private final int[] m_queryQuantBmin = new int[3];
+	private final int[] m_queryQuantBmax = new int[3];
+	private final int[] m_queryTileLoc = new int[2];
+	private MeshTile[] m_queryTiles = new MeshTile[MAX_QUERY_TILES]; /// < Tiles of one grid cell, grown on demand.
+	private final float[] m_polyBmin = new float[3];
+	private final float[] m_polyBmax = new float[3];
+	private final float[] m_polyVerts;
+	private final float[] m_polyEdgeDist;
+	private final float[] m_polyEdgeT;
+	private final float[] m_detailTri = new float[9];
+	private final float[] m_detailHeight = new float[1];
+	private final NearestPolyQuery m_nearestQuery = new NearestPolyQuery();
+	private final float[] m_segT = new float[1];
+	/// Scratch state of the individual queries, each created on first use of its query.
+	private StraightPathScratch m_straightPath;
+	private BatchScratch m_batch;
+	private ReverseLinks m_reverseLinks;
+	private BidirectionalSearch m_bidirectional;
+	private GoalSearch m_goalSearch;
+	private RepairScratch m_repair;
+	private MoveAlongSurfaceScratch m_moveAlongSurface;
+	private AnyAngleSearch m_anyAngle;
+	private RaycastScratch m_raycast;
+	private FlowField.CornerScratch m_flowFieldCorners;
 
 	public NavMeshQuery(NavMesh nav) {
+		this(nav, NodePool.DT_DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * @param nav
+	 *            The navigation mesh the query will use.
+	 * @param maxNodes
+	 *            Maximum number of search nodes. [Limits: 0 < value <= 65535]
+	 */
+	public NavMeshQuery(NavMesh nav, int maxNodes) {
 		m_nav = nav;
-		m_nodePool = new NodePool();
-		m_tinyNodePool = new NodePool();
+		m_nodePool = new NodePool(maxNodes);
+		m_tinyNodePool = new NodePool(NodePool.DT_TINY_MAX_NODES);
 		m_openList = new NodeQueue();
+		m_polyVerts = new float[nav.getMaxVertsPerPoly() * 3];
+		m_polyEdgeDist = new float[nav.getMaxVertsPerPoly()];
+		m_polyEdgeT = new float[nav.getMaxVertsPerPoly()];
+	}
+
+	/**
+	 * Sets the heuristic used by findPath() and the sliced path queries.
+	 * 
+	 * The paths are only guaranteed to be the cheapest ones if the heuristic never overestimates the remaining cost.
+	 * {@link LandmarkHeuristic} does not guarantee that and trades path cost for fewer visited nodes. The
+	 * bidirectional search and findPathToNearestGoal() need that guarantee to stop early and only use the heuristic if
+	 * {@link PathHeuristic#isAdmissible()} returns true.
+	 * 
+	 * @param heuristic
+	 *            The heuristic, or null to use the straight line distance to the end position.
+	 */
+	public void setHeuristic(PathHeuristic heuristic) {
+		m_heuristic = heuristic;
+	}
+
+	public PathHeuristic getHeuristic() {
+		return m_heuristic;
+	}
+
+	private float heuristic(long ref, float[] pos, long endRef, float[] endPos) {
+		float h = vDist(pos, endPos) * H_SCALE;
+		if (m_heuristic != null) {
+			h = Math.max(h, m_heuristic.getCost(ref, pos, endRef, endPos));
+		}
+		return h;
+	}
+
+	/** Same as heuristic(), but ignores a heuristic that may overestimate the remaining cost. */
+	private float admissibleHeuristic(long ref, float[] pos, long endRef, float[] endPos) {
+		float h = vDist(pos, endPos) * H_SCALE;
+		if (m_heuristic != null && m_heuristic.isAdmissible()) {
+			h = Math.max(h, m_heuristic.getCost(ref, pos, endRef, endPos));
+		}
+		return h;
 	}
 
 	public static class FRand {
@@ -266,9 +364,8 @@ public class NavMeshQuery {
 				Poly parentPoly = parentTilePoly.second;
 			}
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				Link link = bestTile.links.get(i);
-				long neighbourRef = link.ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 				// Skip invalid neighbours and do not follow back to parent.
 				if (neighbourRef == 0 || neighbourRef == parentRef)
 					continue;
@@ -295,6 +392,8 @@ public class NavMeshQuery {
 					continue;
 
 				Node neighbourNode = m_nodePool.getNode(neighbourRef);
+				if (neighbourNode == null)
+					continue;
 
 				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
 					continue;
@@ -361,9 +460,15 @@ public class NavMeshQuery {
 	/// @returns The status flags for the query.
 	public ClosesPointOnPolyResult closestPointOnPoly(long ref, float[] pos) {
 		Tupple2<MeshTile, Poly> tileAndPoly = m_nav.getTileAndPolyByRef(ref);
-		MeshTile tile = tileAndPoly.first;
-		Poly poly = tileAndPoly.second;
+		float[] closest = new float[3];
+		boolean posOverPoly = closestPointOnPoly(tileAndPoly.first, tileAndPoly.second, pos, closest);
+		return new ClosesPointOnPolyResult(posOverPoly, closest);
+	}
 
+	/// Finds the closest point on the specified polygon using the scratch buffers of this query.
+	///  @param[out]	closest		The closest point. [(x, y, z)]
+	/// @returns True if the position is over the polygon.
+	boolean closestPointOnPoly(MeshTile tile, Poly poly, float[] pos, float[] closest) {
 		// Off-mesh connections don't have detail polygons.
 		if (poly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION) {
 			int v0 = poly.verts[0] * 3;
@@ -371,21 +476,21 @@ public class NavMeshQuery {
 			float d0 = vDist(pos, tile.data.verts, v0);
 			float d1 = vDist(pos, tile.data.verts, v1);
 			float u = d0 / (d0 + d1);
-			float[] closest = vLerp(tile.data.verts, v0, v1, u);
-			return new ClosesPointOnPolyResult(false, closest);
+			for (int i = 0; i < 3; i++) {
+				closest[i] = tile.data.verts[v0 + i] + (tile.data.verts[v1 + i] - tile.data.verts[v0 + i]) * u;
+			}
+			return false;
 		}
 
 		// Clamp point to be inside the polygon.
-		float[] verts = new float[m_nav.getMaxVertsPerPoly() * 3];
-		float[] edged = new float[m_nav.getMaxVertsPerPoly()];
-		float[] edget = new float[m_nav.getMaxVertsPerPoly()];
+		float[] verts = m_polyVerts;
+		float[] edged = m_polyEdgeDist;
+		float[] edget = m_polyEdgeT;
 		int nv = poly.vertCount;
 		for (int i = 0; i < nv; ++i)
 			System.arraycopy(tile.data.verts, poly.verts[i] * 3, verts, i * 3, 3);
 
-		boolean posOverPoly = false;
-		float[] closest = new float[3];
-		vCopy(closest, pos);
+		boolean posOverPoly;
 		if (!distancePtPolyEdgesSqr(pos, verts, nv, edged, edget)) {
 			// Point is outside the polygon, dtClamp to nearest edge.
 			float dmin = edged[0];
@@ -398,9 +503,12 @@ public class NavMeshQuery {
 			}
 			int va = imin * 3;
 			int vb = ((imin + 1) % nv) * 3;
-			closest = vLerp(verts, va, vb, edget[imin]);
+			for (int i = 0; i < 3; i++) {
+				closest[i] = verts[va + i] + (verts[vb + i] - verts[va + i]) * edget[imin];
+			}
 			posOverPoly = false;
 		} else {
+			vCopy(closest, pos);
 			posOverPoly = true;
 		}
 		int ip = poly.index;
@@ -409,26 +517,22 @@ public class NavMeshQuery {
 			// Find height at the location.
 			for (int j = 0; j < pd.triCount; ++j) {
 				int t = (pd.triBase + j) * 4;
-				float[][] v = new float[3][];
 				for (int k = 0; k < 3; ++k) {
 					if (tile.data.detailTris[t + k] < poly.vertCount) {
 						int index = poly.verts[tile.data.detailTris[t + k]] * 3;
-						v[k] = new float[] { tile.data.verts[index], tile.data.verts[index + 1],
-								tile.data.verts[index + 2] };
+						System.arraycopy(tile.data.verts, index, m_detailTri, k * 3, 3);
 					} else {
 						int index = (pd.vertBase + (tile.data.detailTris[t + k] - poly.vertCount)) * 3;
-						v[k] = new float[] { tile.data.detailVerts[index], tile.data.detailVerts[index + 1],
-								tile.data.detailVerts[index + 2] };
+						System.arraycopy(tile.data.detailVerts, index, m_detailTri, k * 3, 3);
 					}
 				}
-				Tupple2<Boolean, Float> heightResult = closestHeightPointTriangle(closest, v[0], v[1], v[2]);
-				if (heightResult.first) {
-					closest[1] = heightResult.second;
+				if (closestHeightPointTriangle(closest, m_detailTri, m_detailHeight)) {
+					closest[1] = m_detailHeight[0];
 					break;
 				}
 			}
 		}
-		return new ClosesPointOnPolyResult(posOverPoly, closest);
+		return posOverPoly;
 	}
 
 	/// @par
@@ -449,22 +553,29 @@ public class NavMeshQuery {
 	///  @param[out]	closest		The closest point. [(x, y, z)]
 	/// @returns The status flags for the query.
 	public float[] closestPointOnPolyBoundary(long ref, float[] pos) {
+		float[] closest = new float[3];
+		closestPointOnPolyBoundary(ref, pos, closest);
+		return closest;
+	}
 
-		Tupple2<MeshTile,Poly> tileAndPoly = m_nav.getTileAndPolyByRef(ref);
-		MeshTile tile = tileAndPoly.first;
-		Poly poly = tileAndPoly.second;
+	/// Finds the closest point on the boundary of the specified polygon using the scratch buffers of this query.
+	///  @param[out]	closest		The closest point. [(x, y, z)]
+	private void closestPointOnPolyBoundary(long ref, float[] pos, float[] closest) {
+		if (!m_nav.isValidPolyRef(ref))
+			throw new IllegalArgumentException("Invalid poly ref " + ref);
+		MeshTile tile = m_nav.getTile(NavMesh.decodePolyIdTile(ref));
+		Poly poly = tile.data.polys[NavMesh.decodePolyIdPoly(ref)];
 
 		// Collect vertices.
-		float[] verts = new float[m_nav.getMaxVertsPerPoly() * 3];
-		float[] edged = new float[m_nav.getMaxVertsPerPoly()];
-		float[] edget = new float[m_nav.getMaxVertsPerPoly()];
+		float[] verts = m_polyVerts;
+		float[] edged = m_polyEdgeDist;
+		float[] edget = m_polyEdgeT;
 		int nv = poly.vertCount;
 		for (int i = 0; i < nv; ++i)
 			System.arraycopy(tile.data.verts, poly.verts[i] * 3, verts, i * 3, 3);
 
-		float[] closest;
 		if (distancePtPolyEdgesSqr(pos, verts, nv, edged, edget)) {
-			closest = vCopy(pos);
+			vCopy(closest, pos);
 		} else {
 			// Point is outside the polygon, dtClamp to nearest edge.
 			float dmin = edged[0];
@@ -477,9 +588,10 @@ public class NavMeshQuery {
 			}
 			int va = imin * 3;
 			int vb = ((imin + 1) % nv) * 3;
-			closest = vLerp(verts, va, vb, edget[imin]);
+			for (int i = 0; i < 3; i++) {
+				closest[i] = verts[va + i] + (verts[vb + i] - verts[va + i]) * edget[imin];
+			}
 		}
-		return closest;
 	}
 
 	/// @par
@@ -547,69 +659,301 @@ public class NavMeshQuery {
 	///  @param[in]		filter		The polygon filter to apply to the query.
 	/// @returns The status flags for the query.
 	public FindNearestPolyResult findNearestPoly(float[] center, float[] extents, QueryFilter filter) {
+		float[] nearestPt = new float[3];
+		long nearest = findNearestPoly(center, extents, filter, nearestPt);
+		return new FindNearestPolyResult(nearest, nearest != 0 ? nearestPt : null);
+	}
 
-		float[] nearestPt = null;
+	/**
+	 * Finds the polygon nearest to the specified center point without allocating.
+	 * 
+	 * @param center
+	 *            The center of the search box. [(x, y, z)]
+	 * @param extents
+	 *            The search distance along each axis. [(x, y, z)]
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param nearestPt
+	 *            Receives the nearest point on the polygon. Left unchanged if no polygon is found. [(x, y, z)]
+	 * @return The reference id of the nearest polygon, or zero if the search box does not intersect any polygons.
+	 */
+	public long findNearestPoly(float[] center, float[] extents, QueryFilter filter, float[] nearestPt) {
+		NearestPolyQuery query = m_nearestQuery;
+		query.m_center = center;
+		query.m_nearestPt = nearestPt;
+		query.m_nearestOffset = 0;
+		query.m_nearestRef = 0;
+		query.m_nearestDistanceSqr = Float.MAX_VALUE;
+		queryPolygons(center, extents, filter, query);
+		query.m_center = null;
+		query.m_nearestPt = null;
+		return query.m_nearestRef;
+	}
 
-		// Get nearby polygons from proximity grid.从邻近网格获取附近的多边形。
-		List<Long> polys = queryPolygons(center, extents, filter);
+	/// Keeps the polygon closest to m_center, see findNearestPoly().
+	private class NearestPolyQuery implements PolyQuery {
+		private final float[] m_closest = new float[3];
+		private float[] m_center;
+		private float[] m_nearestPt;
+		private int m_nearestOffset;
+		private long m_nearestRef;
+		private float m_nearestDistanceSqr;
 
-		// Find nearest polygon amongst the nearby polygons.
-		long nearest = 0;
-		float nearestDistanceSqr = Float.MAX_VALUE;
-		for (int i = 0; i < polys.size(); ++i) {
-			long ref = polys.get(i);
-			ClosesPointOnPolyResult closest = closestPointOnPoly(ref, center);
-			boolean posOverPoly = closest.isPosOverPoly();
-			float[] closestPtPoly = closest.getClosest();
+		@Override
+		public void process(MeshTile tile, Poly poly, long ref) {
+			boolean posOverPoly = closestPointOnPoly(tile, poly, m_center, m_closest);
 
 			// If a point is directly over a polygon and closer than
 			// climb height, favor that instead of straight line nearest point.
-			float d = 0;
-			float[] diff = vSub(center, closestPtPoly);
+			float d;
 			if (posOverPoly) {
-				Tupple2<MeshTile, Poly> tilaAndPoly = m_nav.getTileAndPolyByRefUnsafe(polys.get(i));
-				MeshTile tile = tilaAndPoly.first;
-				d = Math.abs(diff[1]) - tile.data.header.walkableClimb;
+				d = Math.abs(m_center[1] - m_closest[1]) - tile.data.header.walkableClimb;
 				d = d > 0 ? d * d : 0;
 			} else {
-				d = vLenSqr(diff);
+				d = vDistSqr(m_center, m_closest);
 			}
 
-			if (d < nearestDistanceSqr) {
-				nearestPt = closestPtPoly;
-				nearestDistanceSqr = d;
-				nearest = ref;
+			if (d < m_nearestDistanceSqr) {
+				System.arraycopy(m_closest, 0, m_nearestPt, m_nearestOffset, 3);
+				m_nearestDistanceSqr = d;
+				m_nearestRef = ref;
 			}
 		}
+	}
 
-		return new FindNearestPolyResult(nearest, nearestPt);
+	/**
+	 * Finds the nearest polygon of many points.
+	 * 
+	 * The points are bucketed by the tiles their search boxes touch. The tiles of a bucket are looked up once, and the
+	 * BV-tree of each tile is traversed once for the whole bucket instead of once per point. The results are the same
+	 * as calling {@link #findNearestPoly(float[], float[], QueryFilter, float[])} for every point.
+	 * 
+	 * @param positions
+	 *            The center points. [(x, y, z) * count]
+	 * @param count
+	 *            The number of points.
+	 * @param extents
+	 *            The search distance along each axis, shared by all points. [(x, y, z)]
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param refs
+	 *            Receives the nearest polygon of each point, or zero if none was found. [count]
+	 * @param nearestPts
+	 *            Receives the nearest point of each point. Left unchanged for points without a polygon. [(x, y, z) *
+	 *            count]
+	 */
+	public void findNearestPolys(float[] positions, int count, float[] extents, QueryFilter filter, long[] refs,
+			float[] nearestPts) {
+		BatchScratch scratch = batchScratch();
+		if (scratch.order.length < count) {
+			scratch.keys = new long[count];
+			scratch.order = new int[count];
+		}
+		sortByTileRange(positions, count, extents, scratch.keys, scratch.order);
+		findNearestPolys(positions, scratch.order, 0, count, extents, filter, refs, nearestPts);
+	}
+
+	/// Sorts the points by the tile range of their search boxes so that points sharing tiles are adjacent.
+	/// The range key packs the four tile coordinates with 16 bits each, which leaves no room for the point index,
+	/// so the distinct keys are sorted first and the points are then sorted by the rank of their key.
+	///  @param[in]		keys	Scratch buffer. [count]
+	///  @param[out]	order	Receives the point indices in bucket order. [count]
+	void sortByTileRange(float[] positions, int count, float[] extents, long[] keys, int[] order) {
+		for (int i = 0; i < count; i++) {
+			keys[i] = tileRangeKey(positions, i, extents);
+		}
+		Arrays.sort(keys, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || keys[i] != keys[distinct - 1])
+				keys[distinct++] = keys[i];
+		}
+		for (int i = 0; i < count; i++) {
+			order[i] = Arrays.binarySearch(keys, 0, distinct, tileRangeKey(positions, i, extents));
+		}
+		for (int i = 0; i < count; i++) {
+			keys[i] = (long) order[i] << 32 | i;
+		}
+		Arrays.sort(keys, 0, count);
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keys[i];
+		}
+	}
+
+	private long tileRangeKey(float[] positions, int point, float[] extents) {
+		BatchScratch scratch = batchScratch();
+		calcTileRange(positions, point, extents, scratch.tileRange);
+		return (scratch.tileRange[0] & 0xffffL) << 48 | (scratch.tileRange[1] & 0xffffL) << 32
+				| (scratch.tileRange[2] & 0xffffL) << 16 | (scratch.tileRange[3] & 0xffffL);
+	}
+
+	/// Finds the nearest polygons of the points order[from..to). Consecutive points with the same tile range are
+	/// processed as one bucket, see findNearestPolys().
+	void findNearestPolys(float[] positions, int[] order, int from, int to, float[] extents, QueryFilter filter,
+			long[] refs, float[] nearestPts) {
+		BatchScratch scratch = batchScratch();
+		int n = to - from;
+		if (scratch.tileRanges.length < n * 4) {
+			scratch.tileRanges = new int[n * 4];
+			scratch.quantBounds = new int[n * 6];
+			scratch.distanceSqr = new float[n];
+		}
+		int[] ranges = scratch.tileRanges;
+		for (int i = 0; i < n; i++) {
+			calcTileRange(positions, order[from + i], extents, scratch.tileRange);
+			System.arraycopy(scratch.tileRange, 0, ranges, i * 4, 4);
+			refs[order[from + i]] = 0;
+			scratch.distanceSqr[i] = Float.MAX_VALUE;
+		}
+		int first = 0;
+		while (first < n) {
+			int last = first + 1;
+			while (last < n && ranges[last * 4] == ranges[first * 4] && ranges[last * 4 + 1] == ranges[first * 4 + 1]
+					&& ranges[last * 4 + 2] == ranges[first * 4 + 2] && ranges[last * 4 + 3] == ranges[first * 4 + 3])
+				last++;
+			for (int y = ranges[first * 4 + 1]; y <= ranges[first * 4 + 3]; ++y) {
+				for (int x = ranges[first * 4]; x <= ranges[first * 4 + 2]; ++x) {
+					int nt = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+					if (nt > m_queryTiles.length) {
+						m_queryTiles = new MeshTile[nt];
+						nt = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+					}
+					for (int j = 0; j < nt; ++j) {
+						findNearestPolysInTile(m_queryTiles[j], positions, order, from, first, last, extents, filter,
+								refs, nearestPts);
+						m_queryTiles[j] = null;
+					}
+				}
+			}
+			first = last;
+		}
+		m_nearestQuery.m_center = null;
+		m_nearestQuery.m_nearestPt = null;
+	}
+
+	/// Updates the nearest polygons of the bucket order[from+first..from+last) with the polygons of one tile.
+	private void findNearestPolysInTile(MeshTile tile, float[] positions, int[] order, int from, int first, int last,
+			float[] extents, QueryFilter filter, long[] refs, float[] nearestPts) {
+		BatchScratch scratch = batchScratch();
+		if (tile.data.bvTree == null) {
+			for (int i = first; i < last; i++) {
+				setBatchPoint(positions, order[from + i], extents);
+				beginNearest(order[from + i], i, refs, nearestPts);
+				queryPolygonsInTile(tile, m_queryBmin, m_queryBmax, filter, m_nearestQuery);
+				endNearest(order[from + i], i, refs);
+			}
+			return;
+		}
+		// Quantize the box of every point and their union.
+		int[] quant = scratch.quantBounds;
+		int[] bmin = m_queryQuantBmin;
+		int[] bmax = m_queryQuantBmax;
+		for (int i = first; i < last; i++) {
+			setBatchPoint(positions, order[from + i], extents);
+			quantizeBounds(tile.data.header, m_queryBmin, m_queryBmax, bmin, bmax);
+			System.arraycopy(bmin, 0, quant, i * 6, 3);
+			System.arraycopy(bmax, 0, quant, i * 6 + 3, 3);
+		}
+		System.arraycopy(quant, first * 6, bmin, 0, 3);
+		System.arraycopy(quant, first * 6 + 3, bmax, 0, 3);
+		for (int i = first + 1; i < last; i++) {
+			for (int k = 0; k < 3; k++) {
+				bmin[k] = Math.min(bmin[k], quant[i * 6 + k]);
+				bmax[k] = Math.max(bmax[k], quant[i * 6 + 3 + k]);
+			}
+		}
+
+		// Traverse the tree once for the union of the boxes.
+		long base = m_nav.getPolyRefBase(tile);
+		int nodeIndex = 0;
+		int end = tile.data.header.bvNodeCount;
+		while (nodeIndex < end) {
+			BVNode node = tile.data.bvTree[nodeIndex];
+			boolean overlap = overlapQuantBounds(bmin, bmax, node.bmin, node.bmax);
+			boolean isLeafNode = node.i >= 0;
+
+			if (isLeafNode && overlap) {
+				long ref = base | node.i;
+				Poly p = tile.data.polys[node.i];
+				if (filter.passFilter(ref, tile, p)) {
+					for (int i = first; i < last; i++) {
+						int q = i * 6;
+						if (quant[q] > node.bmax[0] || quant[q + 3] < node.bmin[0] || quant[q + 1] > node.bmax[1]
+								|| quant[q + 4] < node.bmin[1] || quant[q + 2] > node.bmax[2]
+								|| quant[q + 5] < node.bmin[2])
+							continue;
+						int point = order[from + i];
+						System.arraycopy(positions, point * 3, scratch.center, 0, 3);
+						beginNearest(point, i, refs, nearestPts);
+						m_nearestQuery.process(tile, p, ref);
+						endNearest(point, i, refs);
+					}
+				}
+			}
+
+			if (overlap || isLeafNode)
+				nodeIndex++;
+			else {
+				int escapeIndex = -node.i;
+				nodeIndex += escapeIndex;
+			}
+		}
+	}
+
+	/// Loads the center and search box of a point into scratch.center, m_queryBmin and m_queryBmax.
+	private void setBatchPoint(float[] positions, int point, float[] extents) {
+		BatchScratch scratch = batchScratch();
+		for (int k = 0; k < 3; k++) {
+			scratch.center[k] = positions[point * 3 + k];
+			m_queryBmin[k] = scratch.center[k] - extents[k];
+			m_queryBmax[k] = scratch.center[k] + extents[k];
+		}
+	}
+
+	private void beginNearest(int point, int i, long[] refs, float[] nearestPts) {
+		BatchScratch scratch = batchScratch();
+		NearestPolyQuery query = m_nearestQuery;
+		query.m_center = scratch.center;
+		query.m_nearestPt = nearestPts;
+		query.m_nearestOffset = point * 3;
+		query.m_nearestRef = refs[point];
+		query.m_nearestDistanceSqr = scratch.distanceSqr[i];
+	}
+
+	private void endNearest(int point, int i, long[] refs) {
+		BatchScratch scratch = batchScratch();
+		refs[point] = m_nearestQuery.m_nearestRef;
+		scratch.distanceSqr[i] = m_nearestQuery.m_nearestDistanceSqr;
+	}
+
+	/// Calculates the tile range (minx, miny, maxx, maxy) touched by the search box of a point.
+	private void calcTileRange(float[] positions, int point, float[] extents, int[] range) {
+		for (int k = 0; k < 3; k++) {
+			m_queryBmin[k] = positions[point * 3 + k] - extents[k];
+			m_queryBmax[k] = positions[point * 3 + k] + extents[k];
+		}
+		m_nav.calcTileLoc(m_queryBmin, m_queryTileLoc);
+		range[0] = m_queryTileLoc[0];
+		range[1] = m_queryTileLoc[1];
+		m_nav.calcTileLoc(m_queryBmax, m_queryTileLoc);
+		range[2] = m_queryTileLoc[0];
+		range[3] = m_queryTileLoc[1];
 	}
 
 	// FIXME: (PP) duplicate?
 	protected List<Long> queryPolygonsInTile(MeshTile tile, float[] qmin, float[] qmax, QueryFilter filter) {
 		List<Long> polys = new ArrayList<>();
+		queryPolygonsInTile(tile, qmin, qmax, filter, (t, p, ref) -> polys.add(ref));
+		return polys;
+	}
+
+	private void queryPolygonsInTile(MeshTile tile, float[] qmin, float[] qmax, QueryFilter filter, PolyQuery query) {
 		if (tile.data.bvTree != null) {
 			int nodeIndex = 0;
-			float[] tbmin = tile.data.header.bmin;
-			float[] tbmax = tile.data.header.bmax;
-			float qfac = tile.data.header.bvQuantFactor;
 			// Calculate quantized box
-			int[] bmin = new int[3];
-			int[] bmax = new int[3];
-			// dtClamp query box to world box.
-			float minx = clamp(qmin[0], tbmin[0], tbmax[0]) - tbmin[0];
-			float miny = clamp(qmin[1], tbmin[1], tbmax[1]) - tbmin[1];
-			float minz = clamp(qmin[2], tbmin[2], tbmax[2]) - tbmin[2];
-			float maxx = clamp(qmax[0], tbmin[0], tbmax[0]) - tbmin[0];
-			float maxy = clamp(qmax[1], tbmin[1], tbmax[1]) - tbmin[1];
-			float maxz = clamp(qmax[2], tbmin[2], tbmax[2]) - tbmin[2];
-			// Quantize
-			bmin[0] = (int) (qfac * minx) & 0xfffe;
-			bmin[1] = (int) (qfac * miny) & 0xfffe;
-			bmin[2] = (int) (qfac * minz) & 0xfffe;
-			bmax[0] = (int) (qfac * maxx + 1) | 1;
-			bmax[1] = (int) (qfac * maxy + 1) | 1;
-			bmax[2] = (int) (qfac * maxz + 1) | 1;
+			int[] bmin = m_queryQuantBmin;
+			int[] bmax = m_queryQuantBmax;
+			quantizeBounds(tile.data.header, qmin, qmax, bmin, bmax);
 
 			// Traverse tree
 			long base = m_nav.getPolyRefBase(tile);
@@ -621,8 +965,9 @@ public class NavMeshQuery {
 
 				if (isLeafNode && overlap) {
 					long ref = base | node.i;
-					if (filter.passFilter(ref, tile, tile.data.polys[node.i])) {
-						polys.add(ref);
+					Poly p = tile.data.polys[node.i];
+					if (filter.passFilter(ref, tile, p)) {
+						query.process(tile, p, ref);
 					}
 				}
 
@@ -633,10 +978,9 @@ public class NavMeshQuery {
 					nodeIndex += escapeIndex;
 				}
 			}
-			return polys;
 		} else {
-			float[] bmin = new float[3];
-			float[] bmax = new float[3];
+			float[] bmin = m_polyBmin;
+			float[] bmax = m_polyBmax;
 			long base = m_nav.getPolyRefBase(tile);
 			for (int i = 0; i < tile.data.header.polyCount; ++i) {
 				Poly p = tile.data.polys[i];
@@ -656,13 +1000,33 @@ public class NavMeshQuery {
 					vMax(bmax, tile.data.verts, v);
 				}
 				if (overlapBounds(qmin, qmax, bmin, bmax)) {
-					polys.add(ref);
+					query.process(tile, p, ref);
 				}
 			}
-			return polys;
 		}
 	}
 
+	/// Clamps the query box to the tile bounds and quantizes it to the BV-tree space of the tile.
+	private static void quantizeBounds(MeshHeader header, float[] qmin, float[] qmax, int[] bmin, int[] bmax) {
+		float[] tbmin = header.bmin;
+		float[] tbmax = header.bmax;
+		float qfac = header.bvQuantFactor;
+		// dtClamp query box to world box.
+		float minx = clamp(qmin[0], tbmin[0], tbmax[0]) - tbmin[0];
+		float miny = clamp(qmin[1], tbmin[1], tbmax[1]) - tbmin[1];
+		float minz = clamp(qmin[2], tbmin[2], tbmax[2]) - tbmin[2];
+		float maxx = clamp(qmax[0], tbmin[0], tbmax[0]) - tbmin[0];
+		float maxy = clamp(qmax[1], tbmin[1], tbmax[1]) - tbmin[1];
+		float maxz = clamp(qmax[2], tbmin[2], tbmax[2]) - tbmin[2];
+		// Quantize
+		bmin[0] = (int) (qfac * minx) & 0xfffe;
+		bmin[1] = (int) (qfac * miny) & 0xfffe;
+		bmin[2] = (int) (qfac * minz) & 0xfffe;
+		bmax[0] = (int) (qfac * maxx + 1) | 1;
+		bmax[1] = (int) (qfac * maxy + 1) | 1;
+		bmax[2] = (int) (qfac * maxz + 1) | 1;
+	}
+
 	/**
 	 * Finds polygons that overlap the search box.查找与搜索框重叠的多边形。
 	 * 
@@ -677,28 +1041,56 @@ public class NavMeshQuery {
 	 * @return The reference ids of the polygons that overlap the query box.
 	 */
 	public List<Long> queryPolygons(float[] center, float[] extents, QueryFilter filter) {
-		float[] bmin = vSub(center, extents);
-		float[] bmax = vAdd(center, extents);
-		// Find tiles the query touches.
-		int[] minxy = m_nav.calcTileLoc(bmin);
-		int minx = minxy[0];
-		int miny = minxy[1];
-		int[] maxxy = m_nav.calcTileLoc(bmax);
-		int maxx = maxxy[0];
-		int maxy = maxxy[1];
 		List<Long> polys = new ArrayList<>();
+		queryPolygons(center, extents, filter, (tile, poly, ref) -> polys.add(ref));
+		return polys;
+	}
+
+	/**
+	 * Finds polygons that overlap the search box and passes them to the query object.
+	 * 
+	 * Unlike {@link #queryPolygons(float[], float[], QueryFilter)} no result list is built and the traversal uses the
+	 * scratch buffers of this query, so the call does not allocate. The query object must not call back into the
+	 * polygon queries of this NavMeshQuery.
+	 * 
+	 * @param center
+	 *            The center of the search box. [(x, y, z)]
+	 * @param extents
+	 *            The search distance along each axis. [(x, y, z)]
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param query
+	 *            The query object receiving the polygons that overlap the query box.
+	 */
+	public void queryPolygons(float[] center, float[] extents, QueryFilter filter, PolyQuery query) {
+		float[] bmin = m_queryBmin;
+		float[] bmax = m_queryBmax;
+		for (int i = 0; i < 3; i++) {
+			bmin[i] = center[i] - extents[i];
+			bmax[i] = center[i] + extents[i];
+		}
+		// Find tiles the query touches.
+		m_nav.calcTileLoc(bmin, m_queryTileLoc);
+		int minx = m_queryTileLoc[0];
+		int miny = m_queryTileLoc[1];
+		m_nav.calcTileLoc(bmax, m_queryTileLoc);
+		int maxx = m_queryTileLoc[0];
+		int maxy = m_queryTileLoc[1];
 		for (int y = miny; y <= maxy; ++y) {
 			for (int x = minx; x <= maxx; ++x) {
-				List<MeshTile> neis = m_nav.getTilesAt(x, y);
-				for (int j = 0; j < neis.size(); ++j) {
-					List<Long> polysInTile = queryPolygonsInTile(neis.get(j), bmin, bmax, filter);
-					polys.addAll(polysInTile);
+				int n = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+				if (n > m_queryTiles.length) {
+					m_queryTiles = new MeshTile[n];
+					n = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+				}
+				for (int j = 0; j < n; ++j) {
+					queryPolygonsInTile(m_queryTiles[j], bmin, bmax, filter, query);
+					m_queryTiles[j] = null;
 				}
 			}
 		}
-		return polys;
 	}
-	
+
 	/**
 	 * Finds a path from the start polygon to the end polygon.
 	 * 
@@ -734,6 +1126,100 @@ public class NavMeshQuery {
 			return new FindPathResult(Status.SUCCSESS, path);
 		}
 
+		Node lastBestNode = searchPath(startRef, endRef, startPos, endPos, filter);
+		List<Long> path = getPathToNode(lastBestNode);
+
+		Status status = Status.SUCCSESS;
+		if (lastBestNode.id != endRef)
+			status = Status.PARTIAL_RESULT;
+
+		return new FindPathResult(status, path);
+	}
+
+	/**
+	 * Finds a path from the start polygon to the end polygon using the given search options.
+	 * 
+	 * With {@link #DT_FINDPATH_ANY_ANGLE} the search shortcuts through raycasts like the sliced query does and the
+	 * returned corridor follows the straight lines between the shortcut nodes. The search runs on its own node pool and
+	 * query state, so a sliced query in progress is not affected. With {@link #DT_FINDPATH_BIDIRECTIONAL} the path is
+	 * searched from both ends. The two options can not be combined.
+	 * 
+	 * @param options
+	 *            query options (see: #FindPathOptions)
+	 * @return Found path
+	 * @see #findPath(long, long, float[], float[], QueryFilter)
+	 */
+	public FindPathResult findPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter,
+			int options) {
+		if ((options & DT_FINDPATH_BIDIRECTIONAL) != 0) {
+			if ((options & DT_FINDPATH_ANY_ANGLE) != 0)
+				throw new IllegalArgumentException("Any-angle search can not be bidirectional");
+			return findPathBidirectional(startRef, endRef, startPos, endPos, filter);
+		}
+		if ((options & DT_FINDPATH_ANY_ANGLE) == 0)
+			return findPath(startRef, endRef, startPos, endPos, filter);
+		AnyAngleSearch anyAngle = anyAngleSearch();
+		QueryData query = new QueryData();
+		initFindPath(query, anyAngle.nodePool, anyAngle.openList, startRef, endRef, startPos, endPos, filter,
+				options);
+		updateFindPath(query, anyAngle.nodePool, anyAngle.openList, Integer.MAX_VALUE);
+		return finalizeFindPath(query, anyAngle.nodePool);
+	}
+
+	/**
+	 * Finds a path from the start polygon to the end polygon and writes it into the provided buffer.
+	 * 
+	 * Works like {@link #findPath(long, long, float[], float[], QueryFilter)} without allocating the result list. If
+	 * the path does not fit into the buffer, the buffer is filled from the start polygon and PARTIAL_RESULT is
+	 * returned.
+	 * 
+	 * @param path
+	 *            An ordered list of polygon references representing the path. (Start to end.) [(polyRef) *
+	 *            pathCount[0]]
+	 * @param pathCount
+	 *            The number of polygons written to the path buffer. [out, length >= 1]
+	 * @param maxPath
+	 *            The maximum number of polygons the path buffer can hold. [Limit: > 0]
+	 * @return The status of the query.
+	 */
+	public Status findPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter,
+			long[] path, int[] pathCount, int maxPath) {
+		pathCount[0] = 0;
+		if (startRef == 0 || endRef == 0)
+			throw new IllegalArgumentException("Start or end ref = 0");
+		if (!m_nav.isValidPolyRef(startRef) || !m_nav.isValidPolyRef(endRef))
+			throw new IllegalArgumentException("Invalid start or end ref");
+		if (maxPath <= 0)
+			throw new IllegalArgumentException("Invalid max path " + maxPath);
+
+		if (startRef == endRef) {
+			path[0] = startRef;
+			pathCount[0] = 1;
+			return Status.SUCCSESS;
+		}
+
+		Node lastBestNode = searchPath(startRef, endRef, startPos, endPos, filter);
+		int n = getPathToNode(lastBestNode, path, 0, maxPath);
+		pathCount[0] = Math.abs(n);
+		if (lastBestNode.id != endRef || n < 0)
+			return Status.PARTIAL_RESULT;
+		return Status.SUCCSESS;
+	}
+
+	private Node searchPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter) {
+		return searchPath(startRef, endRef, startPos, endPos, filter, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs the A* search of findPath() on the main node pool. Sets m_outOfNodes if the node pool ran out and
+	 * m_searchIterations to the number of nodes expanded.
+	 * 
+	 * @param maxIter
+	 *            The maximum number of nodes to expand.
+	 * @return The end node if it was reached, otherwise the node nearest to the end polygon.
+	 */
+	private Node searchPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter,
+			int maxIter) {
 		m_nodePool.clear();
 		m_openList.clear();
 
@@ -741,17 +1227,19 @@ public class NavMeshQuery {
 		vCopy(startNode.pos, startPos);
 		startNode.pidx = 0;
 		startNode.cost = 0;
-		startNode.total = vDist(startPos, endPos) * H_SCALE;
+		startNode.total = heuristic(startRef, startPos, endRef, endPos);
 		startNode.id = startRef;
 		startNode.flags = Node.DT_NODE_OPEN;
 		m_openList.push(startNode);
 
 		Node lastBestNode = startNode;
 		float lastBestNodeCost = startNode.total;
+		m_outOfNodes = false;
+		m_searchIterations = 0;
 
-		Status status = Status.SUCCSESS;
+		while (m_searchIterations < maxIter && !m_openList.isEmpty()) {
+			m_searchIterations++;
 
-		while (!m_openList.isEmpty()) {
 			// Remove node from open list and put it in closed list.
 			Node bestNode = m_openList.pop();
 			bestNode.flags &= ~Node.DT_NODE_OPEN;
@@ -782,8 +1270,8 @@ public class NavMeshQuery {
 				parentPoly = tileAndPoly.second;
 			}
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				long neighbourRef = bestTile.links.get(i).ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 
 				// Skip invalid ids and do not expand back to where we came from.
 				if (neighbourRef == 0 || neighbourRef == parentRef)
@@ -800,11 +1288,15 @@ public class NavMeshQuery {
 
 				// deal explicitly with crossing tile boundaries
 				int crossSide = 0;
-				if (bestTile.links.get(i).side != 0xff)
-					crossSide = bestTile.links.get(i).side >> 1;
+				if (bestTile.getLinkSide(i) != 0xff)
+					crossSide = bestTile.getLinkSide(i) >> 1;
 
 				// get the node
 				Node neighbourNode = m_nodePool.getNode(neighbourRef, crossSide);
+				if (neighbourNode == null) {
+					m_outOfNodes = true;
+					continue;
+				}
 
 				// If the node is visited the first time, calculate node position.
 				if (neighbourNode.flags == 0) {
@@ -831,7 +1323,7 @@ public class NavMeshQuery {
 					float curCost = filter.getCost(bestNode.pos, neighbourNode.pos, parentRef, parentTile, parentPoly,
 							bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
 					cost = bestNode.cost + curCost;
-					heuristic = vDist(neighbourNode.pos, endPos) * H_SCALE;
+					heuristic = heuristic(neighbourRef, neighbourNode.pos, endRef, endPos);
 				}
 
 				float total = cost + heuristic;
@@ -867,12 +1359,920 @@ public class NavMeshQuery {
 			}
 		}
 
-		List<Long> path = getPathToNode(lastBestNode);
+		return lastBestNode;
+	}
 
-		if (lastBestNode.id != endRef)
-			status = Status.PARTIAL_RESULT;
+	/**
+	 * Finds the path from the start polygon to the cheapest of several goals.
+	 * 
+	 * This replaces running findPath() once per goal. The cost of reaching a goal is the path cost to its position
+	 * plus its cost offset, which can be used to prefer some goals over others. A single A* search is run toward all
+	 * goals at once, using the smallest heuristic over the goals, and it stops as soon as the cheapest goal reached so
+	 * far can not be beaten by any open node. The heuristic is evaluated for every goal, so each expanded node costs
+	 * O(ngoals).
+	 * 
+	 * @param startRef
+	 *            The refrence id of the start polygon.
+	 * @param startPos
+	 *            A position within the start polygon. [(x, y, z)]
+	 * @param goalRefs
+	 *            The reference ids of the goal polygons. [(polyRef) * ngoals]
+	 * @param goalPos
+	 *            A position within each goal polygon. [(x, y, z) * ngoals]
+	 * @param goalCostOffsets
+	 *            The cost added to the path to each goal. [(cost) * ngoals] [Limit: >= 0] [opt]
+	 * @param ngoals
+	 *            The number of goals. [Limit: > 0]
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @return The path to the cheapest goal. If no goal can be reached, the path leads to the polygon nearest to a
+	 *         goal, the goal index is -1 and the status is PARTIAL_RESULT.
+	 */
+	public FindNearestGoalResult findPathToNearestGoal(long startRef, float[] startPos, long[] goalRefs, float[] goalPos,
+			float[] goalCostOffsets, int ngoals, QueryFilter filter) {
+		GoalSearch goals = goalSearch();
+		if (startRef == 0 || !m_nav.isValidPolyRef(startRef))
+			throw new IllegalArgumentException("Invalid start ref");
+		validateGoals(goalRefs, goalPos, goalCostOffsets, ngoals);
 
-		return new FindPathResult(status, path);
+		if (goals.refs.length < ngoals)
+			goals.refs = new long[ngoals];
+		System.arraycopy(goalRefs, 0, goals.refs, 0, ngoals);
+		Arrays.sort(goals.refs, 0, ngoals);
+
+		m_nodePool.clear();
+		m_openList.clear();
+
+		Node startNode = m_nodePool.getNode(startRef);
+		vCopy(startNode.pos, startPos);
+		startNode.pidx = 0;
+		startNode.cost = 0;
+		startNode.total = goalHeuristic(startRef, startPos, goalRefs, goalPos, goalCostOffsets, ngoals);
+		startNode.id = startRef;
+		startNode.flags = Node.DT_NODE_OPEN;
+		m_openList.push(startNode);
+
+		Node lastBestNode = startNode;
+		float lastBestNodeCost = startNode.total;
+		m_outOfNodes = false;
+		goals.node = null;
+		goals.index = -1;
+		goals.cost = Float.MAX_VALUE;
+		if (Arrays.binarySearch(goals.refs, 0, ngoals, startRef) >= 0) {
+			MeshTile startTile = m_nav.getTile(NavMesh.decodePolyIdTile(startRef));
+			reachGoals(startNode, 0, null, null, startTile, startTile.data.polys[NavMesh.decodePolyIdPoly(startRef)],
+					goalRefs, goalPos, goalCostOffsets, ngoals, filter);
+		}
+
+		while (!m_openList.isEmpty()) {
+			// The best goal reached so far is settled once no open node can lead to a cheaper one.
+			if (m_openList.top().total >= goals.cost)
+				break;
+
+			Node bestNode = m_openList.pop();
+			bestNode.flags &= ~Node.DT_NODE_OPEN;
+			bestNode.flags |= Node.DT_NODE_CLOSED;
+
+			long bestRef = bestNode.id;
+			MeshTile bestTile = m_nav.getTile(NavMesh.decodePolyIdTile(bestRef));
+			Poly bestPoly = bestTile.data.polys[NavMesh.decodePolyIdPoly(bestRef)];
+
+			long parentRef = 0;
+			MeshTile parentTile = null;
+			Poly parentPoly = null;
+			if (bestNode.pidx != 0) {
+				parentRef = m_nodePool.getNodeAtIdx(bestNode.pidx).id;
+				parentTile = m_nav.getTile(NavMesh.decodePolyIdTile(parentRef));
+				parentPoly = parentTile.data.polys[NavMesh.decodePolyIdPoly(parentRef)];
+			}
+
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
+				if (neighbourRef == 0 || neighbourRef == parentRef)
+					continue;
+				MeshTile neighbourTile = m_nav.getTile(NavMesh.decodePolyIdTile(neighbourRef));
+				Poly neighbourPoly = neighbourTile.data.polys[NavMesh.decodePolyIdPoly(neighbourRef)];
+				if (!filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+					continue;
+
+				int crossSide = 0;
+				if (bestTile.getLinkSide(i) != 0xff)
+					crossSide = bestTile.getLinkSide(i) >> 1;
+				Node neighbourNode = m_nodePool.getNode(neighbourRef, crossSide);
+				if (neighbourNode == null) {
+					m_outOfNodes = true;
+					continue;
+				}
+				if (neighbourNode.flags == 0) {
+					neighbourNode.pos = getEdgeMidPoint(bestRef, bestPoly, bestTile, neighbourRef, neighbourPoly,
+							neighbourTile);
+				}
+
+				float cost = bestNode.cost + filter.getCost(bestNode.pos, neighbourNode.pos, parentRef, parentTile,
+						parentPoly, bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
+				float heuristic = goalHeuristic(neighbourRef, neighbourNode.pos, goalRefs, goalPos, goalCostOffsets,
+						ngoals);
+				float total = cost + heuristic;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0 && total >= neighbourNode.total)
+					continue;
+				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0 && total >= neighbourNode.total)
+					continue;
+
+				neighbourNode.pidx = m_nodePool.getNodeIdx(bestNode);
+				neighbourNode.id = neighbourRef;
+				neighbourNode.flags = (neighbourNode.flags & ~Node.DT_NODE_CLOSED);
+				neighbourNode.cost = cost;
+				neighbourNode.total = total;
+				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
+					m_openList.modify(neighbourNode);
+				} else {
+					neighbourNode.flags |= Node.DT_NODE_OPEN;
+					m_openList.push(neighbourNode);
+				}
+
+				// Goal polygons are expanded like any other polygon, a cheaper goal may lie behind them.
+				if (Arrays.binarySearch(goals.refs, 0, ngoals, neighbourRef) >= 0) {
+					reachGoals(neighbourNode, bestRef, bestTile, bestPoly, neighbourTile, neighbourPoly, goalRefs,
+							goalPos, goalCostOffsets, ngoals, filter);
+				}
+
+				if (heuristic < lastBestNodeCost) {
+					lastBestNodeCost = heuristic;
+					lastBestNode = neighbourNode;
+				}
+			}
+		}
+
+		if (goals.node == null)
+			return new FindNearestGoalResult(Status.PARTIAL_RESULT, getPathToNode(lastBestNode), -1, 0);
+		return new FindNearestGoalResult(Status.SUCCSESS, getPathToNode(goals.node), goals.index, goals.cost);
+	}
+
+	private void validateGoals(long[] goalRefs, float[] goalPos, float[] goalCostOffsets, int ngoals) {
+		if (ngoals <= 0 || goalRefs.length < ngoals || goalPos.length < ngoals * 3
+				|| (goalCostOffsets != null && goalCostOffsets.length < ngoals))
+			throw new IllegalArgumentException("Invalid goal count " + ngoals);
+		for (int i = 0; i < ngoals; i++) {
+			if (goalRefs[i] == 0 || !m_nav.isValidPolyRef(goalRefs[i]))
+				throw new IllegalArgumentException("Invalid goal ref " + goalRefs[i]);
+			if (goalCostOffsets != null && !(goalCostOffsets[i] >= 0))
+				throw new IllegalArgumentException("Invalid goal cost offset " + goalCostOffsets[i]);
+		}
+	}
+
+	/**
+	 * The smallest heuristic over all goals including their cost offsets. The minimum of consistent heuristics is
+	 * consistent.
+	 */
+	private float goalHeuristic(long ref, float[] pos, long[] goalRefs, float[] goalPos, float[] goalCostOffsets,
+			int ngoals) {
+		GoalSearch goals = goalSearch();
+		float h = Float.MAX_VALUE;
+		for (int i = 0; i < ngoals; i++) {
+			if (goalRefs[i] == ref && (goalCostOffsets == null || goalCostOffsets[i] == 0))
+				return 0;
+			vCopy(goals.pos, goalPos, i * 3);
+			float offset = goalCostOffsets != null ? goalCostOffsets[i] : 0;
+			h = Math.min(h, admissibleHeuristic(ref, pos, goalRefs[i], goals.pos) + offset);
+		}
+		return h;
+	}
+
+	/** Records the goals in the polygon of the node if the path through the node is the cheapest so far. */
+	private void reachGoals(Node node, long parentRef, MeshTile parentTile, Poly parentPoly, MeshTile tile, Poly poly,
+			long[] goalRefs, float[] goalPos, float[] goalCostOffsets, int ngoals, QueryFilter filter) {
+		GoalSearch goals = goalSearch();
+		for (int i = 0; i < ngoals; i++) {
+			if (goalRefs[i] != node.id)
+				continue;
+			vCopy(goals.pos, goalPos, i * 3);
+			float cost = node.cost + filter.getCost(node.pos, goals.pos, parentRef, parentTile, parentPoly, node.id,
+					tile, poly, 0L, null, null);
+			if (goalCostOffsets != null)
+				cost += goalCostOffsets[i];
+			if (cost < goals.cost) {
+				goals.cost = cost;
+				goals.index = i;
+				goals.node = node;
+			}
+		}
+	}
+
+	private FindPathResult findPathBidirectional(long startRef, long endRef, float[] startPos, float[] endPos,
+			QueryFilter filter) {
+		BidirectionalSearch bidir = bidirectionalSearch();
+		if (startRef == 0 || endRef == 0)
+			throw new IllegalArgumentException("Start or end ref = 0");
+		if (!m_nav.isValidPolyRef(startRef) || !m_nav.isValidPolyRef(endRef))
+			throw new IllegalArgumentException("Invalid start or end ref");
+
+		if (startRef == endRef) {
+			List<Long> path = new ArrayList<>(1);
+			path.add(startRef);
+			return new FindPathResult(Status.SUCCSESS, path);
+		}
+
+		searchPathBidirectional(startRef, endRef, startPos, endPos, filter);
+		if (bidir.meetForward == null) {
+			// The searches did not meet, return the path to the node nearest to the end.
+			return new FindPathResult(Status.PARTIAL_RESULT, getPathToNode(bidir.lastBestNode));
+		}
+		// The searches meet in a polygon or on the link between two polygons.
+		List<Long> path = getPathToNode(bidir.meetForward);
+		Node node = bidir.meetBackward.id == bidir.meetForward.id ? bidir.nodePool.getNodeAtIdx(bidir.meetBackward.pidx)
+				: bidir.meetBackward;
+		for (; node != null; node = bidir.nodePool.getNodeAtIdx(node.pidx)) {
+			path.add(node.id);
+		}
+		return new FindPathResult(Status.SUCCSESS, path);
+	}
+
+	/**
+	 * Runs a forward search from the start polygon on the main node pool and a backward search from the end polygon on
+	 * the reverse node pool, always expanding the side with the smaller key. A polygon already expanded by the other
+	 * search is neither expanded nor given a node again, the path through it is recorded when it is reached.
+	 * 
+	 * The cost of a node is measured to its position: the entry point of the polygon for the forward search and the
+	 * exit point for the backward search. Whenever a polygon has been reached by both searches the path through it is
+	 * recorded in the meetForward, meetBackward and meetCost of the BidirectionalSearch.
+	 * 
+	 * Both searches order their nodes by the average of the heuristics toward both ends, see forwardPotential(). The
+	 * potentials of the two searches add up to a constant, so the search can stop as soon as the smallest keys of the
+	 * two open lists together reach the best path found plus that constant. This stops much earlier than waiting for
+	 * one search to reach the best path on its own, which would let the frontiers pass each other.
+	 */
+	private void searchPathBidirectional(long startRef, long endRef, float[] startPos, float[] endPos,
+			QueryFilter filter) {
+		BidirectionalSearch bidir = bidirectionalSearch();
+		resetOffMeshLandings();
+		m_nodePool.clear();
+		m_openList.clear();
+		bidir.nodePool.clear();
+		bidir.openList.clear();
+
+		Node startNode = m_nodePool.getNode(startRef);
+		vCopy(startNode.pos, startPos);
+		startNode.pidx = 0;
+		startNode.cost = 0;
+		bidir.startHeuristic = admissibleHeuristic(startRef, startPos, endRef, endPos);
+		bidir.endHeuristic = admissibleHeuristic(endRef, endPos, startRef, startPos);
+		startNode.total = forwardPotential(bidir.startHeuristic, 0);
+		startNode.id = startRef;
+		startNode.flags = Node.DT_NODE_OPEN;
+		m_openList.push(startNode);
+
+		Node endNode = bidir.nodePool.getNode(endRef);
+		vCopy(endNode.pos, endPos);
+		endNode.pidx = 0;
+		endNode.cost = 0;
+		endNode.id = endRef;
+		endNode.total = backwardPotential(0, bidir.endHeuristic);
+		endNode.flags = Node.DT_NODE_OPEN;
+		bidir.openList.push(endNode);
+
+		bidir.meetForward = null;
+		bidir.meetBackward = null;
+		bidir.meetCost = Float.MAX_VALUE;
+		bidir.lastBestNode = startNode;
+		bidir.lastBestNodeCost = bidir.startHeuristic;
+		m_outOfNodes = false;
+		float potentialSum = (bidir.startHeuristic + bidir.endHeuristic) * 0.5f;
+
+		while (!m_openList.isEmpty() && !bidir.openList.isEmpty()) {
+			// Every path not found yet passes an open node of both searches.
+			if (bidir.meetCost != Float.MAX_VALUE
+					&& m_openList.top().total + bidir.openList.top().total >= bidir.meetCost + potentialSum)
+				break;
+			if (m_openList.top().total <= bidir.openList.top().total) {
+				expandForward(startRef, startPos, endRef, endPos, filter);
+			} else {
+				expandBackward(startRef, startPos, endRef, endPos, filter);
+			}
+		}
+	}
+
+	/**
+	 * The key offset of a forward search node: half the difference of the heuristics toward the end and from the
+	 * start, shifted to be zero at the end polygon. The average of two consistent heuristics is consistent.
+	 */
+	private float forwardPotential(float endHeuristic, float startHeuristic) {
+		return (endHeuristic - startHeuristic + bidirectionalSearch().endHeuristic) * 0.5f;
+	}
+
+	/** The key offset of a backward search node, zero at the start polygon. */
+	private float backwardPotential(float endHeuristic, float startHeuristic) {
+		return (startHeuristic - endHeuristic + bidirectionalSearch().startHeuristic) * 0.5f;
+	}
+
+	/**
+	 * The other search has expanded the polygon, so the cheapest path through it has been recorded when this search
+	 * reached it and there is no need to expand it again.
+	 */
+	private static boolean isClosed(Node node) {
+		return node != null && (node.flags & Node.DT_NODE_CLOSED) != 0;
+	}
+
+	private void expandForward(long startRef, float[] startPos, long endRef, float[] endPos, QueryFilter filter) {
+		BidirectionalSearch bidir = bidirectionalSearch();
+		Node bestNode = m_openList.pop();
+		bestNode.flags &= ~Node.DT_NODE_OPEN;
+		bestNode.flags |= Node.DT_NODE_CLOSED;
+
+		long bestRef = bestNode.id;
+		if (isClosed(bidir.nodePool.findNode(bestRef)))
+			return;
+		MeshTile bestTile = m_nav.getTile(NavMesh.decodePolyIdTile(bestRef));
+		Poly bestPoly = bestTile.data.polys[NavMesh.decodePolyIdPoly(bestRef)];
+
+		long parentRef = 0;
+		MeshTile parentTile = null;
+		Poly parentPoly = null;
+		if (bestNode.pidx != 0) {
+			parentRef = m_nodePool.getNodeAtIdx(bestNode.pidx).id;
+			parentTile = m_nav.getTile(NavMesh.decodePolyIdTile(parentRef));
+			parentPoly = parentTile.data.polys[NavMesh.decodePolyIdPoly(parentRef)];
+		}
+
+		for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+			long neighbourRef = bestTile.linkRefs[i];
+			if (neighbourRef == 0 || neighbourRef == parentRef)
+				continue;
+			MeshTile neighbourTile = m_nav.getTile(NavMesh.decodePolyIdTile(neighbourRef));
+			Poly neighbourPoly = neighbourTile.data.polys[NavMesh.decodePolyIdPoly(neighbourRef)];
+			if (!filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+				continue;
+
+			Node other = bidir.nodePool.findNode(neighbourRef);
+			if (isClosed(other) && m_nodePool.findNode(neighbourRef) == null) {
+				// The backward search has expanded the neighbour, join it over the link instead of adding a node that
+				// would not be expanded.
+				float[] entry = getEdgeMidPoint(bestRef, bestPoly, bestTile, neighbourRef, neighbourPoly, neighbourTile);
+				float cost = bestNode.cost + filter.getCost(bestNode.pos, entry, parentRef, parentTile, parentPoly,
+						bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
+				joinBackward(bestNode, bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly, entry,
+						cost, other, filter);
+				continue;
+			}
+
+			Node neighbourNode = m_nodePool.getNode(neighbourRef);
+			if (neighbourNode == null) {
+				m_outOfNodes = true;
+				continue;
+			}
+			if (neighbourNode.flags == 0) {
+				neighbourNode.pos = getEdgeMidPoint(bestRef, bestPoly, bestTile, neighbourRef, neighbourPoly,
+						neighbourTile);
+			}
+
+			float cost = bestNode.cost + filter.getCost(bestNode.pos, neighbourNode.pos, parentRef, parentTile,
+					parentPoly, bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
+			float heuristic = neighbourRef == endRef ? 0
+					: admissibleHeuristic(neighbourRef, neighbourNode.pos, endRef, endPos);
+			float startHeuristic = neighbourRef == startRef ? 0
+					: admissibleHeuristic(neighbourRef, neighbourNode.pos, startRef, startPos);
+			float total = cost + forwardPotential(heuristic, startHeuristic);
+			if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0 && total >= neighbourNode.total)
+				continue;
+			if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0 && total >= neighbourNode.total)
+				continue;
+
+			neighbourNode.pidx = m_nodePool.getNodeIdx(bestNode);
+			neighbourNode.id = neighbourRef;
+			neighbourNode.flags = (neighbourNode.flags & ~Node.DT_NODE_CLOSED);
+			neighbourNode.cost = cost;
+			neighbourNode.total = total;
+			if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
+				m_openList.modify(neighbourNode);
+			} else {
+				neighbourNode.flags |= Node.DT_NODE_OPEN;
+				m_openList.push(neighbourNode);
+			}
+			if (heuristic < bidir.lastBestNodeCost) {
+				bidir.lastBestNodeCost = heuristic;
+				bidir.lastBestNode = neighbourNode;
+			}
+
+			if (other != null && other.flags != 0) {
+				joinBackward(neighbourNode, bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly,
+						neighbourNode.pos, cost, other, filter);
+			}
+		}
+	}
+
+	/**
+	 * Records the path through a polygon reached by both searches if it is the cheapest so far, moving from the entry
+	 * to the exit point of the polygon.
+	 * 
+	 * @param forward
+	 *            The forward search node, either of the polygon or of its parent if the polygon only has a backward
+	 *            node.
+	 * @param entry
+	 *            The entry point of the polygon.
+	 * @param cost
+	 *            The cost of the forward path to the entry point.
+	 * @param backward
+	 *            The backward search node of the polygon.
+	 */
+	private void joinBackward(Node forward, long parentRef, MeshTile parentTile, Poly parentPoly, long ref,
+			MeshTile tile, Poly poly, float[] entry, float cost, Node backward, QueryFilter filter) {
+		BidirectionalSearch bidir = bidirectionalSearch();
+		long nextRef = 0;
+		MeshTile nextTile = null;
+		Poly nextPoly = null;
+		if (backward.pidx != 0) {
+			nextRef = bidir.nodePool.getNodeAtIdx(backward.pidx).id;
+			nextTile = m_nav.getTile(NavMesh.decodePolyIdTile(nextRef));
+			nextPoly = nextTile.data.polys[NavMesh.decodePolyIdPoly(nextRef)];
+		}
+		float meetCost = cost + backward.cost + filter.getCost(entry, backward.pos, parentRef, parentTile, parentPoly,
+				ref, tile, poly, nextRef, nextTile, nextPoly);
+		if (meetCost < bidir.meetCost) {
+			bidir.meetCost = meetCost;
+			bidir.meetForward = forward;
+			bidir.meetBackward = backward;
+		}
+	}
+
+	private void expandBackward(long startRef, float[] startPos, long endRef, float[] endPos, QueryFilter filter) {
+		ReverseLinks links = reverseLinks();
+		BidirectionalSearch bidir = bidirectionalSearch();
+		Node bestNode = bidir.openList.pop();
+		bestNode.flags &= ~Node.DT_NODE_OPEN;
+		bestNode.flags |= Node.DT_NODE_CLOSED;
+
+		long bestRef = bestNode.id;
+		if (isClosed(m_nodePool.findNode(bestRef)))
+			return;
+		MeshTile bestTile = m_nav.getTile(NavMesh.decodePolyIdTile(bestRef));
+		Poly bestPoly = bestTile.data.polys[NavMesh.decodePolyIdPoly(bestRef)];
+
+		// The polygon the backward search came from is the next polygon on the path.
+		long nextRef = 0;
+		MeshTile nextTile = null;
+		Poly nextPoly = null;
+		if (bestNode.pidx != 0) {
+			nextRef = bidir.nodePool.getNodeAtIdx(bestNode.pidx).id;
+			nextTile = m_nav.getTile(NavMesh.decodePolyIdTile(nextRef));
+			nextPoly = nextTile.data.polys[NavMesh.decodePolyIdPoly(nextRef)];
+		}
+
+		int npred = getPredecessors(bestRef, bestTile, bestPoly);
+		for (int i = 0; i < npred; i++) {
+			long prevRef = links.predecessors[i];
+			if (prevRef == nextRef)
+				continue;
+			MeshTile prevTile = m_nav.getTile(NavMesh.decodePolyIdTile(prevRef));
+			Poly prevPoly = prevTile.data.polys[NavMesh.decodePolyIdPoly(prevRef)];
+			if (!filter.passFilter(prevRef, prevTile, prevPoly))
+				continue;
+
+			Node other = m_nodePool.findNode(prevRef);
+			if (isClosed(other) && bidir.nodePool.findNode(prevRef) == null) {
+				// The forward search has expanded the predecessor, join it over the link instead of adding a node
+				// that would not be expanded.
+				float[] exit = getEdgeMidPoint(prevRef, prevPoly, prevTile, bestRef, bestPoly, bestTile);
+				float cost = bestNode.cost + filter.getCost(exit, bestNode.pos, prevRef, prevTile, prevPoly, bestRef,
+						bestTile, bestPoly, nextRef, nextTile, nextPoly);
+				joinForward(other, prevRef, prevTile, prevPoly, exit, bestRef, bestTile, bestPoly, cost, bestNode,
+						filter);
+				continue;
+			}
+
+			Node prevNode = bidir.nodePool.getNode(prevRef);
+			if (prevNode == null) {
+				m_outOfNodes = true;
+				continue;
+			}
+			if (prevNode.flags == 0) {
+				prevNode.pos = getEdgeMidPoint(prevRef, prevPoly, prevTile, bestRef, bestPoly, bestTile);
+			}
+
+			float cost = bestNode.cost + filter.getCost(prevNode.pos, bestNode.pos, prevRef, prevTile, prevPoly,
+					bestRef, bestTile, bestPoly, nextRef, nextTile, nextPoly);
+			float heuristic = prevRef == startRef ? 0 : admissibleHeuristic(prevRef, prevNode.pos, startRef, startPos);
+			float endHeuristic = prevRef == endRef ? 0 : admissibleHeuristic(prevRef, prevNode.pos, endRef, endPos);
+			float total = cost + backwardPotential(endHeuristic, heuristic);
+			if ((prevNode.flags & Node.DT_NODE_OPEN) != 0 && total >= prevNode.total)
+				continue;
+			if ((prevNode.flags & Node.DT_NODE_CLOSED) != 0 && total >= prevNode.total)
+				continue;
+
+			prevNode.pidx = bidir.nodePool.getNodeIdx(bestNode);
+			prevNode.id = prevRef;
+			prevNode.flags = (prevNode.flags & ~Node.DT_NODE_CLOSED);
+			prevNode.cost = cost;
+			prevNode.total = total;
+			if ((prevNode.flags & Node.DT_NODE_OPEN) != 0) {
+				bidir.openList.modify(prevNode);
+			} else {
+				prevNode.flags |= Node.DT_NODE_OPEN;
+				bidir.openList.push(prevNode);
+			}
+
+			if (other != null && other.flags != 0) {
+				joinForward(other, prevRef, prevTile, prevPoly, prevNode.pos, bestRef, bestTile, bestPoly, cost,
+						prevNode, filter);
+			}
+		}
+	}
+
+	/**
+	 * Records the path through a polygon reached by both searches if it is the cheapest so far, moving from the entry
+	 * to the exit point of the polygon.
+	 * 
+	 * @param forward
+	 *            The forward search node of the polygon.
+	 * @param exit
+	 *            The exit point of the polygon.
+	 * @param cost
+	 *            The cost of the backward path from the exit point.
+	 * @param backward
+	 *            The backward search node, either of the polygon or of its next polygon if the polygon only has a
+	 *            forward node.
+	 */
+	private void joinForward(Node forward, long ref, MeshTile tile, Poly poly, float[] exit, long nextRef,
+			MeshTile nextTile, Poly nextPoly, float cost, Node backward, QueryFilter filter) {
+		BidirectionalSearch bidir = bidirectionalSearch();
+		long parentRef = 0;
+		MeshTile parentTile = null;
+		Poly parentPoly = null;
+		if (forward.pidx != 0) {
+			parentRef = m_nodePool.getNodeAtIdx(forward.pidx).id;
+			parentTile = m_nav.getTile(NavMesh.decodePolyIdTile(parentRef));
+			parentPoly = parentTile.data.polys[NavMesh.decodePolyIdPoly(parentRef)];
+		}
+		float meetCost = forward.cost + cost + filter.getCost(forward.pos, exit, parentRef, parentTile, parentPoly,
+				ref, tile, poly, nextRef, nextTile, nextPoly);
+		if (meetCost < bidir.meetCost) {
+			bidir.meetCost = meetCost;
+			bidir.meetForward = forward;
+			bidir.meetBackward = backward;
+		}
+	}
+
+	/**
+	 * Collects the polygons that link to the given polygon into links.predecessors.
+	 * 
+	 * Links between ground polygons go both ways. An off-mesh connection links to both of its end points but only its
+	 * start point, or both for bidirectional connections, links back to it. The connections landing on a ground
+	 * polygon are found through the landing buckets filled by registerOffMeshLandings().
+	 * 
+	 * @return The number of predecessors.
+	 */
+	private int getPredecessors(long ref, MeshTile tile, Poly poly) {
+		ReverseLinks links = reverseLinks();
+		int n = 0;
+		if (poly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION) {
+			int polyIdx = NavMesh.decodePolyIdPoly(ref);
+			OffMeshConnection con = tile.data.offMeshCons[polyIdx - tile.data.header.offMeshBase];
+			boolean bidir = (con.flags & NavMesh.DT_OFFMESH_CON_BIDIR) != 0;
+			for (int i = poly.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.linkNext[i]) {
+				// Edge 0 leads to the start point, edge 1 to the end point.
+				if (tile.getLinkEdge(i) == 0 || bidir)
+					n = addPredecessor(n, tile.linkRefs[i]);
+			}
+			return n;
+		}
+		for (int i = poly.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.linkNext[i]) {
+			long neighbourRef = tile.linkRefs[i];
+			MeshTile neighbourTile = m_nav.getTile(NavMesh.decodePolyIdTile(neighbourRef));
+			Poly neighbourPoly = neighbourTile.data.polys[NavMesh.decodePolyIdPoly(neighbourRef)];
+			if (neighbourPoly.getType() != Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+				n = addPredecessor(n, neighbourRef);
+		}
+		registerOffMeshLandings(tile);
+		for (int i = links.landingFirst[NodePool.hashRef(ref, links.landingFirst.length - 1)]; i != 0; i = links.landingNext[i]) {
+			if (links.landingRefs[i] == ref)
+				n = addPredecessor(n, links.landingCons[i]);
+		}
+		return n;
+	}
+
+	/** Starts a new search stamp for getPredecessors(). */
+	private void resetOffMeshLandings() {
+		ReverseLinks links = reverseLinks();
+		if (links.offMeshScanned == null || links.offMeshScanned.length < m_nav.getMaxTiles()) {
+			links.offMeshScanned = new int[m_nav.getMaxTiles()];
+			links.offMeshRegistered = new int[m_nav.getMaxTiles()];
+			links.offMeshStamp = 0;
+		}
+		if (++links.offMeshStamp == 0) {
+			Arrays.fill(links.offMeshScanned, 0);
+			Arrays.fill(links.offMeshRegistered, 0);
+			links.offMeshStamp = 1;
+		}
+		// Only the buckets touched by the last search need to be reset.
+		int mask = links.landingFirst.length - 1;
+		for (int i = 1; i <= links.landingCount; i++) {
+			links.landingFirst[NodePool.hashRef(links.landingRefs[i], mask)] = 0;
+		}
+		links.landingCount = 0;
+	}
+
+	private void addOffMeshLanding(long ref, long conRef) {
+		ReverseLinks links = reverseLinks();
+		if (links.landingCount + 1 == links.landingRefs.length) {
+			int capacity = links.landingRefs.length * 2;
+			links.landingNext = Arrays.copyOf(links.landingNext, capacity);
+			links.landingRefs = Arrays.copyOf(links.landingRefs, capacity);
+			links.landingCons = Arrays.copyOf(links.landingCons, capacity);
+		}
+		if (links.landingCount == links.landingFirst.length) {
+			// Keep the chains short, rehash the entries into twice as many buckets.
+			links.landingFirst = new int[links.landingFirst.length * 2];
+			int mask = links.landingFirst.length - 1;
+			for (int i = 1; i <= links.landingCount; i++) {
+				int bucket = NodePool.hashRef(links.landingRefs[i], mask);
+				links.landingNext[i] = links.landingFirst[bucket];
+				links.landingFirst[bucket] = i;
+			}
+		}
+		int i = ++links.landingCount;
+		int bucket = NodePool.hashRef(ref, links.landingFirst.length - 1);
+		links.landingRefs[i] = ref;
+		links.landingCons[i] = conRef;
+		links.landingNext[i] = links.landingFirst[bucket];
+		links.landingFirst[bucket] = i;
+	}
+
+	private int addPredecessor(int n, long ref) {
+		ReverseLinks links = reverseLinks();
+		if (n == links.predecessors.length)
+			links.predecessors = Arrays.copyOf(links.predecessors, n * 2);
+		links.predecessors[n] = ref;
+		return n + 1;
+	}
+
+	/**
+	 * Registers the off-mesh connections that may land on the given tile. Connections only land on their own tile or
+	 * on tiles next to it.
+	 */
+	private void registerOffMeshLandings(MeshTile tile) {
+		ReverseLinks links = reverseLinks();
+		if (links.offMeshScanned[tile.index] == links.offMeshStamp)
+			return;
+		links.offMeshScanned[tile.index] = links.offMeshStamp;
+		for (int y = tile.data.header.y - 1; y <= tile.data.header.y + 1; y++) {
+			for (int x = tile.data.header.x - 1; x <= tile.data.header.x + 1; x++) {
+				int n = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+				if (n > m_queryTiles.length) {
+					m_queryTiles = new MeshTile[n];
+					n = m_nav.getTilesAt(x, y, m_queryTiles, m_queryTiles.length);
+				}
+				for (int j = 0; j < n; ++j) {
+					MeshTile conTile = m_queryTiles[j];
+					m_queryTiles[j] = null;
+					if (links.offMeshRegistered[conTile.index] == links.offMeshStamp)
+						continue;
+					links.offMeshRegistered[conTile.index] = links.offMeshStamp;
+					long base = m_nav.getPolyRefBase(conTile);
+					for (int k = 0; k < conTile.data.header.offMeshConCount; k++) {
+						Poly conPoly = conTile.data.polys[conTile.data.offMeshCons[k].poly];
+						long conRef = base | conTile.data.offMeshCons[k].poly;
+						for (int l = conPoly.firstLink; l != NavMesh.DT_NULL_LINK; l = conTile.linkNext[l]) {
+							addOffMeshLanding(conTile.linkRefs[l], conRef);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Repairs a path corridor after parts of the navigation mesh have changed.
+	 * 
+	 * Polygons that are no longer valid, do not pass the filter or lie in one of the changed tiles are treated as
+	 * broken. Each run of broken polygons is replaced by a search from the last usable polygon before it to the first
+	 * usable polygon after it, and the rest of the corridor is kept. Each of these local searches expands at most
+	 * {@link #DT_REPAIR_MAX_BRIDGE_NODES} nodes. If a run can not be bridged within that, for example because a door
+	 * was closed, the corridor is searched again from the last usable polygon to its end, which costs as much as a
+	 * findPath() from there on top of the failed local search. Either way the search starts where the corridor is
+	 * still intact instead of at the agent.
+	 * 
+	 * @param path
+	 *            The corridor to repair. [(polyRef) * npath]
+	 * @param npath
+	 *            The number of polygons in the corridor.
+	 * @param changedTiles
+	 *            References of the tiles that have been rebuilt, before or after the change. [opt]
+	 * @param nchanged
+	 *            The number of changed tile references.
+	 * @param startPos
+	 *            A position within the first polygon of the corridor. [(x, y, z)]
+	 * @param endPos
+	 *            A position within the last polygon of the corridor. [(x, y, z)]
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param result
+	 *            Receives the repaired corridor. Must not be the path array. [(polyRef) * resultCount[0]]
+	 * @param resultCount
+	 *            The number of polygons written to result. [out, length >= 1]
+	 * @param maxResult
+	 *            The maximum number of polygons the result can hold. [Limit: > 0]
+	 * @return SUCCSESS if the corridor reaches its last polygon again, PARTIAL_RESULT if it ends early because the
+	 *         end could not be reached or the result buffer is too small, FAILURE if the first polygon is broken.
+	 */
+	public Status repairPath(long[] path, int npath, long[] changedTiles, int nchanged, float[] startPos,
+			float[] endPos, QueryFilter filter, long[] result, int[] resultCount, int maxResult) {
+		return repairPath(path, npath, changedTiles, nchanged, startPos, endPos, filter, Integer.MAX_VALUE, null,
+				result, resultCount, maxResult, true);
+	}
+
+	/**
+	 * Repairs a path corridor with a bounded amount of search work.
+	 * 
+	 * Works like {@link #repairPath(long[], int, long[], int, float[], float[], QueryFilter, long[], int[], int)},
+	 * but the local searches together expand at most maxIterations nodes and a run that can not be bridged is not
+	 * searched again to the end of the corridor. In that case the result ends at the last usable polygon before the
+	 * run and PARTIAL_RESULT is returned, so the caller can fall back to a sliced or queued path request.
+	 * 
+	 * @param maxIterations
+	 *            The maximum number of nodes the local searches may expand. [Limit: > 0]
+	 * @param doneIterations
+	 *            Receives the number of nodes expanded. [out, opt, length >= 1]
+	 * @return SUCCSESS if the corridor reaches its last polygon again, PARTIAL_RESULT if it ends early because a run
+	 *         could not be bridged within the budget, the end is gone or the result buffer is too small, FAILURE if
+	 *         the first polygon is broken.
+	 */
+	public Status repairPath(long[] path, int npath, long[] changedTiles, int nchanged, float[] startPos,
+			float[] endPos, QueryFilter filter, int maxIterations, int[] doneIterations, long[] result,
+			int[] resultCount, int maxResult) {
+		if (maxIterations <= 0)
+			throw new IllegalArgumentException("Invalid max iterations " + maxIterations);
+		return repairPath(path, npath, changedTiles, nchanged, startPos, endPos, filter, maxIterations,
+				doneIterations, result, resultCount, maxResult, false);
+	}
+
+	/**
+	 * @param searchToEnd
+	 *            True to search to the end of the corridor if a run can not be bridged. The local searches are then
+	 *            bounded by DT_REPAIR_MAX_BRIDGE_NODES, so that an unbridgeable run does not flood its whole connected
+	 *            area before the search to the end.
+	 */
+	private Status repairPath(long[] path, int npath, long[] changedTiles, int nchanged, float[] startPos,
+			float[] endPos, QueryFilter filter, int maxIterations, int[] doneIterations, long[] result,
+			int[] resultCount, int maxResult, boolean searchToEnd) {
+		RepairScratch repair = repairScratch();
+		resultCount[0] = 0;
+		if (doneIterations != null)
+			doneIterations[0] = 0;
+		if (maxResult <= 0)
+			throw new IllegalArgumentException("Invalid max result " + maxResult);
+		if (npath <= 0 || !isUsable(path[0], changedTiles, nchanged, filter))
+			return Status.FAILURE;
+
+		int n = 0;
+		int i = 0;
+		int iterations = 0;
+		boolean outOfNodes = false;
+		Status status = Status.SUCCSESS;
+		while (i < npath) {
+			if (isUsable(path[i], changedTiles, nchanged, filter)) {
+				if (n == maxResult) {
+					status = Status.PARTIAL_RESULT;
+					break;
+				}
+				result[n++] = path[i++];
+				continue;
+			}
+
+			// Find the end of the broken run.
+			int j = i + 1;
+			while (j < npath && !isUsable(path[j], changedTiles, nchanged, filter))
+				j++;
+			if (j == npath) {
+				// The end of the corridor is gone.
+				status = Status.PARTIAL_RESULT;
+				break;
+			}
+
+			long anchorRef = result[n - 1];
+			if (n == 1)
+				vCopy(repair.startPos, startPos);
+			else
+				getPolyCenter(anchorRef, repair.startPos);
+			if (j == npath - 1)
+				vCopy(repair.endPos, endPos);
+			else
+				getPolyCenter(path[j], repair.endPos);
+			if (iterations == maxIterations) {
+				status = Status.PARTIAL_RESULT;
+				break;
+			}
+			int bridgeIterations = maxIterations - iterations;
+			if (searchToEnd)
+				bridgeIterations = Math.min(bridgeIterations, DT_REPAIR_MAX_BRIDGE_NODES);
+			Node lastNode = searchPath(anchorRef, path[j], repair.startPos, repair.endPos, filter,
+					bridgeIterations);
+			iterations += m_searchIterations;
+			outOfNodes |= m_outOfNodes;
+			boolean bridged = lastNode.id == path[j];
+			if (!bridged) {
+				// The gap can not be crossed locally, search to the end of the corridor.
+				long endRef = path[npath - 1];
+				if (!searchToEnd || !isUsable(endRef, changedTiles, nchanged, filter)) {
+					status = Status.PARTIAL_RESULT;
+					break;
+				}
+				lastNode = searchPath(anchorRef, endRef, repair.startPos, endPos, filter);
+				iterations += m_searchIterations;
+				outOfNodes |= m_outOfNodes;
+			}
+
+			// Append the new section, replacing its first polygon which is the anchor.
+			int k = getPathToNode(lastNode, result, n - 1, maxResult - n + 1);
+			n += Math.abs(k) - 1;
+			if (k < 0) {
+				status = Status.PARTIAL_RESULT;
+				break;
+			}
+			if (!bridged) {
+				if (lastNode.id != path[npath - 1])
+					status = Status.PARTIAL_RESULT;
+				break;
+			}
+			i = j + 1;
+		}
+		resultCount[0] = n;
+		if (doneIterations != null)
+			doneIterations[0] = iterations;
+		m_outOfNodes = outOfNodes;
+		return status;
+	}
+
+	private boolean isUsable(long ref, long[] changedTiles, int nchanged, QueryFilter filter) {
+		if (!m_nav.isValidPolyRef(ref))
+			return false;
+		int it = NavMesh.decodePolyIdTile(ref);
+		for (int i = 0; i < nchanged; i++) {
+			if (NavMesh.decodePolyIdTile(changedTiles[i]) == it)
+				return false;
+		}
+		MeshTile tile = m_nav.getTile(it);
+		return filter.passFilter(ref, tile, tile.data.polys[NavMesh.decodePolyIdPoly(ref)]);
+	}
+
+	private void getPolyCenter(long ref, float[] center) {
+		MeshTile tile = m_nav.getTile(NavMesh.decodePolyIdTile(ref));
+		Poly poly = tile.data.polys[NavMesh.decodePolyIdPoly(ref)];
+		center[0] = center[1] = center[2] = 0;
+		for (int i = 0; i < poly.vertCount; i++) {
+			int v = poly.verts[i] * 3;
+			center[0] += tile.data.verts[v];
+			center[1] += tile.data.verts[v + 1];
+			center[2] += tile.data.verts[v + 2];
+		}
+		center[0] /= poly.vertCount;
+		center[1] /= poly.vertCount;
+		center[2] /= poly.vertCount;
+	}
+
+	/**
+	 * Finds the paths of all requests in the batch.
+	 * 
+	 * The node pool and open list of this query are reused for every request and the resulting paths are written
+	 * into the batch buffers, so no per-request result objects are created. Invalid requests get a FAILURE status
+	 * instead of aborting the batch.
+	 * 
+	 * @param batch
+	 *            The path requests and result buffers.
+	 */
+	public void findPaths(FindPathBatch batch) {
+		findPaths(batch, 0, batch.size());
+	}
+
+	/**
+	 * Finds the paths of the requests [from, to) in the batch.
+	 * 
+	 * @see #findPaths(FindPathBatch)
+	 */
+	public void findPaths(FindPathBatch batch, int from, int to) {
+		BatchScratch scratch = batchScratch();
+		float[] startPositions = batch.getStartPositions();
+		float[] endPositions = batch.getEndPositions();
+		for (int i = from; i < to; i++) {
+			long startRef = batch.getStartRef(i);
+			long endRef = batch.getEndRef(i);
+			if (!m_nav.isValidPolyRef(startRef) || !m_nav.isValidPolyRef(endRef)) {
+				batch.setResult(i, Status.FAILURE, 0);
+				continue;
+			}
+			int offset = i * batch.getMaxPath();
+			if (startRef == endRef) {
+				batch.getPaths()[offset] = startRef;
+				batch.setResult(i, Status.SUCCSESS, 1);
+				continue;
+			}
+			vCopy(scratch.startPos, startPositions, i * 3);
+			vCopy(scratch.endPos, endPositions, i * 3);
+			Node lastBestNode = searchPath(startRef, endRef, scratch.startPos, scratch.endPos, batch.getFilter(i));
+			int n = getPathToNode(lastBestNode, batch.getPaths(), offset, batch.getMaxPath());
+			Status status = Status.SUCCSESS;
+			if (lastBestNode.id != endRef || n < 0) {
+				status = Status.PARTIAL_RESULT;
+			}
+			batch.setResult(i, status, Math.abs(n));
+		}
 	}
 
 	/**
@@ -897,16 +2297,22 @@ public class NavMeshQuery {
 	 */
 	public Status initSlicedFindPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter,
 			int options) {
-		// Init path state.
 		m_query = new QueryData();
-		m_query.status = Status.FAILURE;
-		m_query.startRef = startRef;
-		m_query.endRef = endRef;
-		vCopy(m_query.startPos, startPos);
-		vCopy(m_query.endPos, endPos);
-		m_query.filter = filter;
-		m_query.options = options;
-		m_query.raycastLimitSqr = Float.MAX_VALUE;
+		return initFindPath(m_query, m_nodePool, m_openList, startRef, endRef, startPos, endPos, filter, options);
+	}
+
+	/** Initializes a path search on the given state, see initSlicedFindPath(). */
+	private Status initFindPath(QueryData query, NodePool nodePool, NodeQueue openList, long startRef, long endRef,
+			float[] startPos, float[] endPos, QueryFilter filter, int options) {
+		// Init path state.
+		query.status = Status.FAILURE;
+		query.startRef = startRef;
+		query.endRef = endRef;
+		vCopy(query.startPos, startPos);
+		vCopy(query.endPos, endPos);
+		query.filter = filter;
+		query.options = options;
+		query.raycastLimitSqr = Float.MAX_VALUE;
 
 		if (startRef == 0 || endRef == 0)
 			throw new IllegalArgumentException("Start or end ref = 0");
@@ -921,31 +2327,31 @@ public class NavMeshQuery {
 			// so it is enough to compute it from the first tile.
 			MeshTile tile = m_nav.getTileByRef(startRef);
 			float agentRadius = tile.data.header.walkableRadius;
-			m_query.raycastLimitSqr = sqr(agentRadius * NavMesh.DT_RAY_CAST_LIMIT_PROPORTIONS);
+			query.raycastLimitSqr = sqr(agentRadius * NavMesh.DT_RAY_CAST_LIMIT_PROPORTIONS);
 		}
 
 		if (startRef == endRef) {
-			m_query.status = Status.SUCCSESS;
+			query.status = Status.SUCCSESS;
 			return Status.SUCCSESS;
 		}
 
-		m_nodePool.clear();
-		m_openList.clear();
+		nodePool.clear();
+		openList.clear();
 
-		Node startNode = m_nodePool.getNode(startRef);
+		Node startNode = nodePool.getNode(startRef);
 		vCopy(startNode.pos, startPos);
 		startNode.pidx = 0;
 		startNode.cost = 0;
-		startNode.total = vDist(startPos, endPos) * H_SCALE;
+		startNode.total = heuristic(startRef, startPos, endRef, endPos);
 		startNode.id = startRef;
 		startNode.flags = Node.DT_NODE_OPEN;
-		m_openList.push(startNode);
+		openList.push(startNode);
 
-		m_query.status = Status.IN_PROGRESS;
-		m_query.lastBestNode = startNode;
-		m_query.lastBestNodeCost = startNode.total;
+		query.status = Status.IN_PROGRESS;
+		query.lastBestNode = startNode;
+		query.lastBestNodeCost = startNode.total;
 
-		return m_query.status;
+		return query.status;
 	}
 
 	/**
@@ -956,29 +2362,35 @@ public class NavMeshQuery {
 	 * @return The status flags for the query.
 	 */
 	public UpdateSlicedPathResult updateSlicedFindPath(int maxIter) {
-		if (!m_query.status.isInProgress())
-			return new UpdateSlicedPathResult(m_query.status, 0);
+		return updateFindPath(m_query, m_nodePool, m_openList, maxIter);
+	}
+
+	/** Runs the given number of iterations of a path search on the given state, see updateSlicedFindPath(). */
+	private UpdateSlicedPathResult updateFindPath(QueryData query, NodePool nodePool, NodeQueue openList,
+			int maxIter) {
+		if (!query.status.isInProgress())
+			return new UpdateSlicedPathResult(query.status, 0);
 
 		// Make sure the request is still valid.
-		if (!m_nav.isValidPolyRef(m_query.startRef) || !m_nav.isValidPolyRef(m_query.endRef)) {
-			m_query.status = Status.FAILURE;
-			return new UpdateSlicedPathResult(m_query.status, 0);
+		if (!m_nav.isValidPolyRef(query.startRef) || !m_nav.isValidPolyRef(query.endRef)) {
+			query.status = Status.FAILURE;
+			return new UpdateSlicedPathResult(query.status, 0);
 		}
 
 		int iter = 0;
-		while (iter < maxIter && !m_openList.isEmpty()) {
+		while (iter < maxIter && !openList.isEmpty()) {
 			iter++;
 
 			// Remove node from open list and put it in closed list.
-			Node bestNode = m_openList.pop();
+			Node bestNode = openList.pop();
 			bestNode.flags &= ~Node.DT_NODE_OPEN;
 			bestNode.flags |= Node.DT_NODE_CLOSED;
 
 			// Reached the goal, stop searching.
-			if (bestNode.id == m_query.endRef) {
-				m_query.lastBestNode = bestNode;
-				m_query.status = Status.SUCCSESS;
-				return new UpdateSlicedPathResult(m_query.status, iter);
+			if (bestNode.id == query.endRef) {
+				query.lastBestNode = bestNode;
+				query.status = Status.SUCCSESS;
+				return new UpdateSlicedPathResult(query.status, iter);
 			}
 
 			// Get current poly and tile.
@@ -989,9 +2401,9 @@ public class NavMeshQuery {
 			try {
 				tileAndPoly = m_nav.getTileAndPolyByRef(bestRef);
 			} catch (IllegalArgumentException e) {
-				m_query.status = Status.FAILURE;
+				query.status = Status.FAILURE;
 				// The polygon has disappeared during the sliced query, fail.
-				return new UpdateSlicedPathResult(m_query.status, iter);
+				return new UpdateSlicedPathResult(query.status, iter);
 			}
 			MeshTile bestTile = tileAndPoly.first;
 			Poly bestPoly = tileAndPoly.second;
@@ -1001,10 +2413,10 @@ public class NavMeshQuery {
 			Poly parentPoly = null;
 			Node parentNode = null;
 			if (bestNode.pidx != 0) {
-				parentNode = m_nodePool.getNodeAtIdx(bestNode.pidx);
+				parentNode = nodePool.getNodeAtIdx(bestNode.pidx);
 				parentRef = parentNode.id;
 				if (parentNode.pidx != 0)
-					grandpaRef = m_nodePool.getNodeAtIdx(parentNode.pidx).id;
+					grandpaRef = nodePool.getNodeAtIdx(parentNode.pidx).id;
 			}
 			if (parentRef != 0) {
 				boolean invalidParent = false;
@@ -1018,20 +2430,20 @@ public class NavMeshQuery {
 				if (invalidParent || (grandpaRef != 0 && !m_nav.isValidPolyRef(grandpaRef))) {
 					// The polygon has disappeared during the sliced query,
 					// fail.
-					m_query.status = Status.FAILURE;
-					return new UpdateSlicedPathResult(m_query.status, iter);
+					query.status = Status.FAILURE;
+					return new UpdateSlicedPathResult(query.status, iter);
 				}
 			}
 
 			// decide whether to test raycast to previous nodes
 			boolean tryLOS = false;
-			if ((m_query.options & DT_FINDPATH_ANY_ANGLE) != 0) {
-				if ((parentRef != 0) && (vDistSqr(parentNode.pos, bestNode.pos) < m_query.raycastLimitSqr))
+			if ((query.options & DT_FINDPATH_ANY_ANGLE) != 0) {
+				if ((parentRef != 0) && (vDistSqr(parentNode.pos, bestNode.pos) < query.raycastLimitSqr))
 					tryLOS = true;
 			}
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				long neighbourRef = bestTile.links.get(i).ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 
 				// Skip invalid ids and do not expand back to where we came
 				// from.
@@ -1045,11 +2457,15 @@ public class NavMeshQuery {
 				MeshTile neighbourTile = tileAndPolyUns.first;
 				Poly neighbourPoly = tileAndPolyUns.second;
 
-				if (!m_query.filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
+				if (!query.filter.passFilter(neighbourRef, neighbourTile, neighbourPoly))
 					continue;
 
 				// get the neighbor node
-				Node neighbourNode = m_nodePool.getNode(neighbourRef, 0);
+				Node neighbourNode = nodePool.getNode(neighbourRef, 0);
+				if (neighbourNode == null) {
+					query.outOfNodes = true;
+					continue;
+				}
 
 				// do not expand to nodes that were already visited from the
 				// same parent
@@ -1070,33 +2486,40 @@ public class NavMeshQuery {
 				// raycast parent
 				boolean foundShortCut = false;
 				if (tryLOS) {
-					RaycastHit rayHit = raycast(parentRef, parentNode.pos, neighbourNode.pos, m_query.filter,
-							DT_RAYCAST_USE_COSTS, grandpaRef);
-					foundShortCut = rayHit.t >= 1.0f;
-					if (foundShortCut) {
-						// shortcut found using raycast. Using shorter cost
-						// instead
-						cost = parentNode.cost + rayHit.pathCost;
+					// Siblings of the best node check the same rays to their common neighbours, skip known walls.
+					long losKey = ((long) bestNode.pidx << 32) | nodePool.getNodeIdx(neighbourNode);
+					if (!query.isLosBlocked(losKey)) {
+						RaycastHitBuffer losHit = anyAngleSearch().losHit;
+						raycast(parentRef, parentNode.pos, neighbourNode.pos, query.filter, DT_RAYCAST_USE_COSTS,
+								grandpaRef, losHit);
+						foundShortCut = losHit.t >= 1.0f;
+						if (foundShortCut) {
+							// shortcut found using raycast. Using shorter cost
+							// instead
+							cost = parentNode.cost + losHit.pathCost;
+						} else {
+							query.addLosBlocked(losKey);
+						}
 					}
 				}
 
 				// update move cost
 				if (!foundShortCut) {
 					// No shortcut found.
-					float curCost = m_query.filter.getCost(bestNode.pos, neighbourNode.pos, parentRef, parentTile,
+					float curCost = query.filter.getCost(bestNode.pos, neighbourNode.pos, parentRef, parentTile,
 							parentPoly, bestRef, bestTile, bestPoly, neighbourRef, neighbourTile, neighbourPoly);
 					cost = bestNode.cost + curCost;
 				}
 
 				// Special case for last node.
-				if (neighbourRef == m_query.endRef) {
-					float endCost = m_query.filter.getCost(neighbourNode.pos, m_query.endPos, bestRef, bestTile,
+				if (neighbourRef == query.endRef) {
+					float endCost = query.filter.getCost(neighbourNode.pos, query.endPos, bestRef, bestTile,
 							bestPoly, neighbourRef, neighbourTile, neighbourPoly, 0, null, null);
 
 					cost = cost + endCost;
 					heuristic = 0;
 				} else {
-					heuristic = vDist(neighbourNode.pos, m_query.endPos) * H_SCALE;
+					heuristic = heuristic(neighbourRef, neighbourNode.pos, query.endRef, query.endPos);
 				}
 
 				float total = cost + heuristic;
@@ -1111,7 +2534,7 @@ public class NavMeshQuery {
 					continue;
 
 				// Add or update the node.
-				neighbourNode.pidx = foundShortCut ? bestNode.pidx : m_nodePool.getNodeIdx(bestNode);
+				neighbourNode.pidx = foundShortCut ? bestNode.pidx : nodePool.getNodeIdx(bestNode);
 				neighbourNode.id = neighbourRef;
 				neighbourNode.flags = (neighbourNode.flags & ~(Node.DT_NODE_CLOSED | Node.DT_NODE_PARENT_DETACHED));
 				neighbourNode.cost = cost;
@@ -1121,27 +2544,27 @@ public class NavMeshQuery {
 
 				if ((neighbourNode.flags & Node.DT_NODE_OPEN) != 0) {
 					// Already in open, update node location.
-					m_openList.modify(neighbourNode);
+					openList.modify(neighbourNode);
 				} else {
 					// Put the node in open list.
 					neighbourNode.flags |= Node.DT_NODE_OPEN;
-					m_openList.push(neighbourNode);
+					openList.push(neighbourNode);
 				}
 
 				// Update nearest node to target so far.
-				if (heuristic < m_query.lastBestNodeCost) {
-					m_query.lastBestNodeCost = heuristic;
-					m_query.lastBestNode = neighbourNode;
+				if (heuristic < query.lastBestNodeCost) {
+					query.lastBestNodeCost = heuristic;
+					query.lastBestNode = neighbourNode;
 				}
 			}
 		}
 
 		// Exhausted all nodes, but could not find path.
-		if (m_openList.isEmpty()) {
-			m_query.status = Status.PARTIAL_RESULT;
+		if (openList.isEmpty()) {
+			query.status = Status.PARTIAL_RESULT;
 		}
 
-		return new UpdateSlicedPathResult(m_query.status, iter);
+		return new UpdateSlicedPathResult(query.status, iter);
 	}
 	
 	/// Finalizes and returns the results of a sliced path query.完成并返回切片路径查询的结果。
@@ -1149,28 +2572,33 @@ public class NavMeshQuery {
 	///  							[(polyRef) * @p pathCount]
 	/// @returns The status flags for the query.
 	public FindPathResult finalizeSlicedFindPath() {
+		FindPathResult result = finalizeFindPath(m_query, m_nodePool);
+		// Reset query.
+		m_query = new QueryData();
+		return result;
+	}
 
+	/** Returns the path found by a path search on the given state, see finalizeSlicedFindPath(). */
+	private FindPathResult finalizeFindPath(QueryData query, NodePool nodePool) {
 		List<Long> path = new ArrayList<>(64);
-		if (m_query.status.isFailed()) {
-			// Reset query.
-			m_query = new QueryData();
+		if (query.status.isFailed()) {
 			return new FindPathResult(Status.FAILURE, path);
 		}
 
-		if (m_query.startRef == m_query.endRef) {
+		if (query.startRef == query.endRef) {
 			// Special case: the search starts and ends at same poly.
-			path.add(m_query.startRef);
+			path.add(query.startRef);
 		} else {
 			// Reverse the path.
-			if (m_query.lastBestNode.id != m_query.endRef)
-				m_query.status = Status.PARTIAL_RESULT;
+			if (query.lastBestNode.id != query.endRef)
+				query.status = Status.PARTIAL_RESULT;
 
 			Node prev = null;
-			Node node = m_query.lastBestNode;
+			Node node = query.lastBestNode;
 			int prevRay = 0;
 			do {
-				Node next = m_nodePool.getNodeAtIdx(node.pidx);
-				node.pidx = m_nodePool.getNodeIdx(prev);
+				Node next = nodePool.getNodeAtIdx(node.pidx);
+				node.pidx = nodePool.getNodeIdx(prev);
 				prev = node;
 				int nextRay = node.flags & Node.DT_NODE_PARENT_DETACHED; // keep track of whether parent is not adjacent (i.e. due to raycast shortcut)
 				node.flags = (node.flags & ~Node.DT_NODE_PARENT_DETACHED) | prevRay; // and store it in the reversed path's node
@@ -1181,9 +2609,9 @@ public class NavMeshQuery {
 			// Store path
 			node = prev;
 			do {
-				Node next = m_nodePool.getNodeAtIdx(node.pidx);
+				Node next = nodePool.getNodeAtIdx(node.pidx);
 				if ((node.flags & Node.DT_NODE_PARENT_DETACHED) != 0) {
-					RaycastHit iresult = raycast(node.id, node.pos, next.pos, m_query.filter, 0, 0);
+					RaycastHit iresult = raycast(node.id, node.pos, next.pos, query.filter, 0, 0);
 					path.addAll(iresult.path);
 					// raycast ends on poly boundary and the path might include the next poly boundary.
 					if (path.get(path.size() - 1) == next.id)
@@ -1196,11 +2624,8 @@ public class NavMeshQuery {
 			} while (node != null);
 		}
 
-		Status status = m_query.status;
-		// Reset query.
-		m_query = new QueryData();
-
-		return new FindPathResult(status, path);
+		m_outOfNodes = query.outOfNodes;
+		return new FindPathResult(query.status, path);
 	}
 
 	/// Finalizes and returns the results of an incomplete sliced path query, returning the path to the furthest
@@ -1272,12 +2697,20 @@ public class NavMeshQuery {
 			} while (node != null);
 		}
 		Status status = m_query.status;
+		m_outOfNodes = m_query.outOfNodes;
 		// Reset query.
 		m_query = new QueryData();
 
 		return new FindPathResult(status, path);
 	}	
 	
+	/**
+	 * Appends a vertex to a list based straight path.
+	 * 
+	 * @deprecated findStraightPath() writes into primitive buffers and no longer calls this method, it is kept for
+	 *             subclasses that build their own list based straight paths.
+	 */
+	@Deprecated
 	protected Status appendVertex(float[] pos, int flags, long ref, List<StraightPathItem> straightPath, int maxStraightPath) {
 		if (straightPath.size() > 0 && vEqual(straightPath.get(straightPath.size() - 1).pos, pos)) {
 			// The vertices are equal, update flags and poly.
@@ -1296,6 +2729,13 @@ public class NavMeshQuery {
 		return Status.IN_PROGRESS;
 	}
 
+	/**
+	 * Appends the polygon edge crossings between two corners to a list based straight path.
+	 * 
+	 * @deprecated findStraightPath() writes into primitive buffers and no longer calls this method, it is kept for
+	 *             subclasses that build their own list based straight paths.
+	 */
+	@Deprecated
 	protected Status appendPortals(int startIdx, int endIdx, float[] endPos, List<Long> path, List<StraightPathItem> straightPath,
 			int maxStraightPath, int options) {
 		float[] startPos = straightPath.get(straightPath.size() - 1).pos;
@@ -1362,22 +2802,202 @@ public class NavMeshQuery {
 	///  @param[in]		options				Query options. (see: #dtStraightPathOptions)
 	/// @returns The status flags for the query.
 	public List<StraightPathItem> findStraightPath(float[] startPos, float[] endPos, List<Long> path, int maxStraightPath, int options) {
+		StraightPathScratch straight = straightPathScratch();
 		if (path.isEmpty()) {
 			throw new IllegalArgumentException("Empty path");
 		}
-		// TODO: Should this be callers responsibility?
-		float[] closestStartPos = closestPointOnPolyBoundary(path.get(0), startPos);
-		float[] closestEndPos = closestPointOnPolyBoundary(path.get(path.size() - 1), endPos);
 		List<StraightPathItem> straightPath = new ArrayList<>();
-		// Add start point.
-		Status stat = appendVertex(closestStartPos, DT_STRAIGHTPATH_START, path.get(0), straightPath, maxStraightPath);
-		if (!stat.isInProgress())
+		if (maxStraightPath <= 0)
 			return straightPath;
+		int npath = path.size();
+		if (straight.corridor.length < npath)
+			straight.corridor = new long[npath];
+		for (int i = 0; i < npath; i++) {
+			straight.corridor[i] = path.get(i);
+		}
+		// Every portal adds at most one corner and one crossing, grow the buffers if that does not hold.
+		int capacity = (int) Math.min(maxStraightPath, npath * 2L + 2);
+		while (true) {
+			if (straight.points.length < capacity) {
+				straight.points = new float[capacity * 3];
+				straight.flags = new int[capacity];
+				straight.refs = new long[capacity];
+			}
+			findStraightPath(startPos, endPos, straight.corridor, npath, straight.points, straight.flags,
+					straight.refs, straight.resultCount, capacity, options);
+			if (straight.resultCount[0] < capacity || capacity == maxStraightPath)
+				break;
+			capacity = (int) Math.min(maxStraightPath, capacity * 2L);
+		}
+		for (int i = 0; i < straight.resultCount[0]; i++) {
+			straightPath.add(new StraightPathItem(Arrays.copyOfRange(straight.points, i * 3, i * 3 + 3),
+					straight.flags[i], straight.refs[i]));
+		}
+		return straightPath;
+	}
+
+	private Status appendVertex(float[] pos, int flags, long ref, float[] straightPath, int[] straightPathFlags,
+			long[] straightPathRefs, int maxStraightPath) {
+		StraightPathScratch straight = straightPathScratch();
+		int n = straight.count;
+		if (n > 0 && vEqual(straightPath, (n - 1) * 3, pos)) {
+			// The vertices are equal, update flags and poly.
+			if (straightPathFlags != null)
+				straightPathFlags[n - 1] = flags;
+			if (straightPathRefs != null)
+				straightPathRefs[n - 1] = ref;
+		} else {
+			// There is no space to append the vertex.
+			if (n >= maxStraightPath)
+				return Status.PARTIAL_RESULT;
+			// Append new vertex.
+			straightPath[n * 3] = pos[0];
+			straightPath[n * 3 + 1] = pos[1];
+			straightPath[n * 3 + 2] = pos[2];
+			if (straightPathFlags != null)
+				straightPathFlags[n] = flags;
+			if (straightPathRefs != null)
+				straightPathRefs[n] = ref;
+			straight.count = ++n;
+			// If reached end of path or there is no space to append more vertices, return.
+			if (flags == DT_STRAIGHTPATH_END)
+				return Status.SUCCSESS;
+			if (n >= maxStraightPath)
+				return Status.PARTIAL_RESULT;
+		}
+		return Status.IN_PROGRESS;
+	}
+
+	private Status appendPortals(int startIdx, int endIdx, float[] endPos, long[] path, float[] straightPath,
+			int[] straightPathFlags, long[] straightPathRefs, int maxStraightPath, int options) {
+		StraightPathScratch straight = straightPathScratch();
+		int last = (straight.count - 1) * 3;
+		float[] startPos = straight.portalStart;
+		startPos[0] = straightPath[last];
+		startPos[1] = straightPath[last + 1];
+		startPos[2] = straightPath[last + 2];
+		float[] left = straight.crossingLeft;
+		float[] right = straight.crossingRight;
+		// Append or update last vertex
+		Status stat = null;
+		for (int i = startIdx; i < endIdx; i++) {
+			// Calculate portal
+			// The portals up to endIdx have been found already, the references are valid.
+			long from = path[i];
+			MeshTile fromTile = m_nav.getTile(NavMesh.decodePolyIdTile(from));
+			Poly fromPoly = fromTile.data.polys[NavMesh.decodePolyIdPoly(from)];
+
+			long to = path[i + 1];
+			MeshTile toTile = m_nav.getTile(NavMesh.decodePolyIdTile(to));
+			Poly toPoly = toTile.data.polys[NavMesh.decodePolyIdPoly(to)];
+
+			if ((options & DT_STRAIGHTPATH_AREA_CROSSINGS) != 0) {
+				// Skip intersection if only area crossings are requested.
+				if (fromPoly.getArea() == toPoly.getArea())
+					continue;
+			}
+			getPortalPoints(from, fromPoly, fromTile, to, toPoly, toTile, left, right);
+
+			// Append intersection
+			if (intersectSegSeg2D(startPos, endPos, left, right, straight.crossingT)) {
+				float t = straight.crossingT[1];
+				float[] pt = straight.crossing;
+				pt[0] = left[0] + (right[0] - left[0]) * t;
+				pt[1] = left[1] + (right[1] - left[1]) * t;
+				pt[2] = left[2] + (right[2] - left[2]) * t;
+				stat = appendVertex(pt, 0, path[i + 1], straightPath, straightPathFlags, straightPathRefs,
+						maxStraightPath);
+				if (!stat.isInProgress())
+					return stat;
+			}
+		}
+		return Status.IN_PROGRESS;
+	}
+
+	/**
+	 * Finds the straight path from the start to the end position within the polygon corridor and writes it into the
+	 * provided buffers.
+	 * 
+	 * Works like {@link #findStraightPath(float[], float[], List, int, int)}, which delegates to this method, and does
+	 * not allocate.
+	 * 
+	 * @param startPos
+	 *            Path start position. [(x, y, z)]
+	 * @param endPos
+	 *            Path end position. [(x, y, z)]
+	 * @param path
+	 *            An array of polygon references that represent the path corridor.
+	 * @param pathSize
+	 *            The number of polygons in the path array.
+	 * @param straightPath
+	 *            Points describing the straight path. [(x, y, z) * straightPathCount]
+	 * @param straightPathFlags
+	 *            Flags describing each point. (See: #DT_STRAIGHTPATH_START) [opt]
+	 * @param straightPathRefs
+	 *            The reference id of the polygon that is being entered at each point. [opt]
+	 * @param straightPathCount
+	 *            The number of points in the straight path. [out, length >= 1]
+	 * @param maxStraightPath
+	 *            The maximum number of points the straight path arrays can hold. [Limit: > 0]
+	 * @param options
+	 *            Query options. (see: #DT_STRAIGHTPATH_AREA_CROSSINGS)
+	 * @return SUCCSESS if the straight path reaches the end position, PARTIAL_RESULT if the buffers are too small or
+	 *         the corridor is broken and the straight path ends early.
+	 */
+	public Status findStraightPath(float[] startPos, float[] endPos, long[] path, int pathSize, float[] straightPath,
+			int[] straightPathFlags, long[] straightPathRefs, int[] straightPathCount, int maxStraightPath,
+			int options) {
+		StraightPathScratch straight = straightPathScratch();
+		if (pathSize <= 0) {
+			throw new IllegalArgumentException("Empty path");
+		}
+		if (maxStraightPath <= 0) {
+			throw new IllegalArgumentException("Invalid max straight path " + maxStraightPath);
+		}
+		straight.count = 0;
+		Status status = pullStraightPath(startPos, endPos, path, pathSize, straightPath, straightPathFlags,
+				straightPathRefs, maxStraightPath, options);
+		straightPathCount[0] = straight.count;
+		return status;
+	}
+
+	/**
+	 * Finds the straight path from the start to the end position within the polygon corridor and writes it into the
+	 * provided buffers.
+	 * 
+	 * Same as {@link #findStraightPath(float[], float[], long[], int, float[], int[], long[], int[], int, int)}, but
+	 * returns the number of points instead of the status.
+	 * 
+	 * @return The number of points in the straight path.
+	 */
+	public int findStraightPath(float[] startPos, float[] endPos, long[] path, int pathSize, float[] straightPath,
+			int[] straightPathFlags, long[] straightPathRefs, int maxStraightPath, int options) {
+		StraightPathScratch straight = straightPathScratch();
+		findStraightPath(startPos, endPos, path, pathSize, straightPath, straightPathFlags, straightPathRefs,
+				straight.resultCount, maxStraightPath, options);
+		return straight.resultCount[0];
+	}
 
-		if (path.size() > 1) {
-			float[] portalApex = vCopy(closestStartPos);
-			float[] portalLeft = vCopy(portalApex);
-			float[] portalRight = vCopy(portalApex);
+	private Status pullStraightPath(float[] startPos, float[] endPos, long[] path, int pathSize, float[] straightPath,
+			int[] straightPathFlags, long[] straightPathRefs, int maxStraightPath, int options) {
+		StraightPathScratch straight = straightPathScratch();
+		float[] closestStartPos = straight.startPos;
+		float[] closestEndPos = straight.endPos;
+		closestPointOnPolyBoundary(path[0], startPos, closestStartPos);
+		closestPointOnPolyBoundary(path[pathSize - 1], endPos, closestEndPos);
+		// Add start point.
+		Status stat = appendVertex(closestStartPos, DT_STRAIGHTPATH_START, path[0], straightPath, straightPathFlags,
+				straightPathRefs, maxStraightPath);
+		if (!stat.isInProgress())
+			return stat;
+
+		if (pathSize > 1) {
+			float[] portalApex = straight.portalApex;
+			float[] portalLeft = straight.portalLeft;
+			float[] portalRight = straight.portalRight;
+			vCopy(portalApex, closestStartPos);
+			vCopy(portalLeft, portalApex);
+			vCopy(portalRight, portalApex);
 			int apexIndex = 0;
 			int leftIndex = 0;
 			int rightIndex = 0;
@@ -1385,62 +3005,62 @@ public class NavMeshQuery {
 			int leftPolyType = 0;
 			int rightPolyType = 0;
 
-			long leftPolyRef = path.get(0);
-			long rightPolyRef = path.get(0);
+			long leftPolyRef = path[0];
+			long rightPolyRef = path[0];
 
-			for (int i = 0; i < path.size(); ++i) {
+			for (int i = 0; i < pathSize; ++i) {
 				float[] left;
 				float[] right;
 				int toType;
 
-				if (i + 1 < path.size()) {
+				if (i + 1 < pathSize) {
 					// Next portal.
-					try {
-						PortalResult portalPoints = getPortalPoints(path.get(i), path.get(i + 1));
-						left = portalPoints.left;
-						right = portalPoints.right;
-						toType = portalPoints.toType;
-					} catch (Exception e) {
-						closestEndPos = closestPointOnPolyBoundary(path.get(i), endPos);
+					left = straight.nextLeft;
+					right = straight.nextRight;
+					toType = getPortalPoints(path[i], path[i + 1], left, right);
+					if (toType < 0) {
+						closestPointOnPolyBoundary(path[i], endPos, closestEndPos);
 						// Append portals along the current straight path segment.
 						if ((options & (DT_STRAIGHTPATH_AREA_CROSSINGS | DT_STRAIGHTPATH_ALL_CROSSINGS)) != 0) {
-							stat = appendPortals(apexIndex, i, closestEndPos, path, straightPath, options, maxStraightPath);
+							stat = appendPortals(apexIndex, i, closestEndPos, path, straightPath, straightPathFlags,
+									straightPathRefs, maxStraightPath, options);
 							if (!stat.isInProgress())
-								return straightPath;
+								return Status.PARTIAL_RESULT;
 						}
-						appendVertex(closestEndPos, 0, path.get(i), straightPath, maxStraightPath);
-						return straightPath;
+						appendVertex(closestEndPos, 0, path[i], straightPath, straightPathFlags, straightPathRefs,
+								maxStraightPath);
+						return Status.PARTIAL_RESULT;
 					}
 
 					// If starting really close the portal, advance.
 					if (i == 0) {
-						Tupple2<Float,Float> dt = distancePtSegSqr2D(portalApex, left, right);
-						if (dt.first < sqr(0.001f))
+						if (distancePtSegSqr2D(portalApex, left, right, m_segT) < sqr(0.001f))
 							continue;
 					}
 				} else {
 					// End of the path.
-					left = vCopy(closestEndPos);
-					right = vCopy(closestEndPos);
+					left = closestEndPos;
+					right = closestEndPos;
 					toType = Poly.DT_POLYTYPE_GROUND;
 				}
 
 				// Right vertex.
 				if (triArea2D(portalApex, portalRight, right) <= 0.0f) {
 					if (vEqual(portalApex, portalRight) || triArea2D(portalApex, portalLeft, right) > 0.0f) {
-						portalRight = vCopy(right);
-						rightPolyRef = (i + 1 < path.size()) ? path.get(i + 1) : 0;
+						vCopy(portalRight, right);
+						rightPolyRef = (i + 1 < pathSize) ? path[i + 1] : 0;
 						rightPolyType = toType;
 						rightIndex = i;
 					} else {
 						// Append portals along the current straight path segment.
 						if ((options & (DT_STRAIGHTPATH_AREA_CROSSINGS | DT_STRAIGHTPATH_ALL_CROSSINGS)) != 0) {
-							stat = appendPortals(apexIndex, leftIndex, portalLeft, path, straightPath, options, maxStraightPath);
+							stat = appendPortals(apexIndex, leftIndex, portalLeft, path, straightPath,
+									straightPathFlags, straightPathRefs, maxStraightPath, options);
 							if (!stat.isInProgress())
-								return straightPath;
+								return stat;
 						}
 
-						portalApex = vCopy(portalLeft);
+						vCopy(portalApex, portalLeft);
 						apexIndex = leftIndex;
 
 						int flags = 0;
@@ -1451,12 +3071,13 @@ public class NavMeshQuery {
 						long ref = leftPolyRef;
 
 						// Append or update vertex
-						stat = appendVertex(portalApex, flags, ref, straightPath, maxStraightPath);
+						stat = appendVertex(portalApex, flags, ref, straightPath, straightPathFlags, straightPathRefs,
+								maxStraightPath);
 						if (!stat.isInProgress())
-							return straightPath;
+							return stat;
 
-						portalLeft = vCopy(portalApex);
-						portalRight = vCopy(portalApex);
+						vCopy(portalLeft, portalApex);
+						vCopy(portalRight, portalApex);
 						leftIndex = apexIndex;
 						rightIndex = apexIndex;
 
@@ -1470,19 +3091,20 @@ public class NavMeshQuery {
 				// Left vertex.
 				if (triArea2D(portalApex, portalLeft, left) >= 0.0f) {
 					if (vEqual(portalApex, portalLeft) || triArea2D(portalApex, portalRight, left) < 0.0f) {
-						portalLeft = vCopy(left);
-						leftPolyRef = (i + 1 < path.size()) ? path.get(i + 1) : 0;
+						vCopy(portalLeft, left);
+						leftPolyRef = (i + 1 < pathSize) ? path[i + 1] : 0;
 						leftPolyType = toType;
 						leftIndex = i;
 					} else {
 						// Append portals along the current straight path segment.
 						if ((options & (DT_STRAIGHTPATH_AREA_CROSSINGS | DT_STRAIGHTPATH_ALL_CROSSINGS)) != 0) {
-							stat = appendPortals(apexIndex, rightIndex, portalRight, path, straightPath, options, maxStraightPath);
+							stat = appendPortals(apexIndex, rightIndex, portalRight, path, straightPath,
+									straightPathFlags, straightPathRefs, maxStraightPath, options);
 							if (!stat.isInProgress())
-								return straightPath;
+								return stat;
 						}
 
-						portalApex = vCopy(portalRight);
+						vCopy(portalApex, portalRight);
 						apexIndex = rightIndex;
 
 						int flags = 0;
@@ -1493,12 +3115,13 @@ public class NavMeshQuery {
 						long ref = rightPolyRef;
 
 						// Append or update vertex
-						stat = appendVertex(portalApex, flags, ref, straightPath, maxStraightPath);
+						stat = appendVertex(portalApex, flags, ref, straightPath, straightPathFlags, straightPathRefs,
+								maxStraightPath);
 						if (!stat.isInProgress())
-							return straightPath;
+							return stat;
 
-						portalLeft = vCopy(portalApex);
-						portalRight = vCopy(portalApex);
+						vCopy(portalLeft, portalApex);
+						vCopy(portalRight, portalApex);
 						leftIndex = apexIndex;
 						rightIndex = apexIndex;
 
@@ -1512,15 +3135,17 @@ public class NavMeshQuery {
 
 			// Append portals along the current straight path segment.
 			if ((options & (DT_STRAIGHTPATH_AREA_CROSSINGS | DT_STRAIGHTPATH_ALL_CROSSINGS)) != 0) {
-				stat = appendPortals(apexIndex, path.size() - 1, closestEndPos, path, straightPath, options, maxStraightPath);
+				stat = appendPortals(apexIndex, pathSize - 1, closestEndPos, path, straightPath, straightPathFlags,
+						straightPathRefs, maxStraightPath, options);
 				if (!stat.isInProgress())
-					return straightPath;
+					return stat;
 			}
 		}
 
-		appendVertex(closestEndPos, DT_STRAIGHTPATH_END, 0, straightPath, maxStraightPath);
-
-		return straightPath;
+		stat = appendVertex(closestEndPos, DT_STRAIGHTPATH_END, 0, straightPath, straightPathFlags, straightPathRefs,
+				maxStraightPath);
+		// An end point equal to the last vertex only updates its flags.
+		return stat.isInProgress() ? Status.SUCCSESS : stat;
 	}
 
 	/// @par
@@ -1550,6 +3175,28 @@ public class NavMeshQuery {
 	///  @param[in]		filter			The polygon filter to apply to the query.
 	/// @returns Path
 	public MoveAlongSurfaceResult moveAlongSurface(long startRef, float[] startPos, float[] endPos, QueryFilter filter) {
+		MoveAlongSurfaceScratch move = moveAlongSurfaceScratch();
+		// The visited polygons are limited by the tiny node pool, so the scratch result always has enough room.
+		MoveAlongSurfaceBuffer result = move.result;
+		moveAlongSurface(startRef, startPos, endPos, filter, result);
+		List<Long> visited = new ArrayList<>(result.visitedCount);
+		for (int i = 0; i < result.visitedCount; i++)
+			visited.add(result.visited[i]);
+		return new MoveAlongSurfaceResult(vCopy(result.resultPos), visited);
+	}
+
+	/**
+	 * Moves from the start to the end position constrained to the navigation mesh, writing into a reusable result.
+	 * 
+	 * Behaves like {@link #moveAlongSurface(long, float[], float[], QueryFilter)} but does not allocate. If the visited
+	 * array of the result is too small, it is filled as far as possible from the start position toward the end
+	 * position.
+	 * 
+	 * @return SUCCSESS, or PARTIAL_RESULT if the visited polygons did not fit into the result.
+	 */
+	public Status moveAlongSurface(long startRef, float[] startPos, float[] endPos, QueryFilter filter,
+			MoveAlongSurfaceBuffer result) {
+		MoveAlongSurfaceScratch move = moveAlongSurfaceScratch();
 
 		// Validate input
 		if (startRef == 0)
@@ -1566,30 +3213,35 @@ public class NavMeshQuery {
 		startNode.total = 0;
 		startNode.id = startRef;
 		startNode.flags = Node.DT_NODE_CLOSED;
-		LinkedList<Node> stack = new LinkedList<>();
-		stack.add(startNode);
+		// Nodes are queued at most once, so the queue never holds more than the tiny node pool.
+		Node[] queue = move.queue;
+		int queueHead = 0;
+		int queueTail = 0;
+		queue[queueTail++] = startNode;
 
-		float[] bestPos = new float[3];
+		float[] bestPos = result.resultPos;
 		float bestDist = Float.MAX_VALUE;
 		Node bestNode = null;
 		vCopy(bestPos, startPos);
 
 		// Search constraints
-		float[] searchPos = vLerp(startPos, endPos, 0.5f);
+		float[] searchPos = move.searchPos;
+		for (int i = 0; i < 3; i++)
+			searchPos[i] = startPos[i] + (endPos[i] - startPos[i]) * 0.5f;
 		float searchRadSqr = sqr(vDist(startPos, endPos) / 2.0f + 0.001f);
 
-		float[] verts = new float[m_nav.getMaxVertsPerPoly() * 3];
+		float[] verts = m_polyVerts;
 
-		while (!stack.isEmpty()) {
+		while (queueHead < queueTail) {
 			// Pop front.
-			Node curNode = stack.pop();
+			Node curNode = queue[queueHead];
+			queue[queueHead++] = null;
 
 			// Get poly and tile.
 			// The API input has been cheked already, skip checking internal data.
 			long curRef = curNode.id;
-			Tupple2<MeshTile, Poly> tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(curRef);
-			MeshTile curTile = tileAndPoly.first;
-			Poly curPoly = tileAndPoly.second;
+			MeshTile curTile = m_nav.getTile(NavMesh.decodePolyIdTile(curRef));
+			Poly curPoly = curTile.data.polys[NavMesh.decodePolyIdPoly(curRef)];
 
 			// Collect vertices.
 			int nverts = curPoly.vertCount;
@@ -1608,20 +3260,19 @@ public class NavMeshQuery {
 				// Find links to neighbours.
 				int MAX_NEIS = 8;
 				int nneis = 0;
-				long[] neis = new long[MAX_NEIS];
+				long[] neis = move.neis;
 
 				if ((curPoly.neis[j] & NavMesh.DT_EXT_LINK) != 0) {
 					// Tile border.
-					for (int k = curPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = curTile.links.get(k).next) {
-						Link link = curTile.links.get(k);
-						if (link.edge == j) {
-							if (link.ref != 0) {
-								tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(link.ref);
-								MeshTile neiTile = tileAndPoly.first;
-								Poly neiPoly = tileAndPoly.second;
-								if (filter.passFilter(link.ref, neiTile, neiPoly)) {
+					for (int k = curPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = curTile.linkNext[k]) {
+						if (curTile.getLinkEdge(k) == j) {
+							long linkRef = curTile.linkRefs[k];
+							if (linkRef != 0) {
+								MeshTile neiTile = m_nav.getTile(NavMesh.decodePolyIdTile(linkRef));
+								Poly neiPoly = neiTile.data.polys[NavMesh.decodePolyIdPoly(linkRef)];
+								if (filter.passFilter(linkRef, neiTile, neiPoly)) {
 									if (nneis < MAX_NEIS)
-										neis[nneis++] = link.ref;
+										neis[nneis++] = linkRef;
 								}
 							}
 						}
@@ -1639,12 +3290,12 @@ public class NavMeshQuery {
 					// Wall edge, calc distance.
 					int vj = j * 3;
 					int vi = i * 3;
-					Tupple2<Float, Float> distSeg = distancePtSegSqr2D(endPos, verts, vj, vi);
-					float distSqr = distSeg.first;
-					float tseg = distSeg.second;
+					float distSqr = distancePtSegSqr2D(endPos, verts, vj, vi, m_segT);
+					float tseg = m_segT[0];
 					if (distSqr < bestDist) {
 						// Update nearest distance.
-						bestPos = vLerp(verts, vj, vi, tseg);
+						for (int v = 0; v < 3; v++)
+							bestPos[v] = verts[vj + v] + (verts[vi + v] - verts[vj + v]) * tseg;
 						bestDist = distSqr;
 						bestNode = curNode;
 					}
@@ -1662,21 +3313,23 @@ public class NavMeshQuery {
 						// TODO: Maybe should use getPortalPoints(), but this one is way faster.
 						int vj = j * 3;
 						int vi = i * 3;
-						Tupple2<Float, Float> distseg = distancePtSegSqr2D(searchPos, verts, vj, vi);
-						float distSqr = distseg.first;
+						float distSqr = distancePtSegSqr2D(searchPos, verts, vj, vi, m_segT);
 						if (distSqr > searchRadSqr)
 							continue;
 
 						// Mark as the node as visited and push to queue.
 						neighbourNode.pidx = m_tinyNodePool.getNodeIdx(curNode);
 						neighbourNode.flags |= Node.DT_NODE_CLOSED;
-						stack.add(neighbourNode);
+						queue[queueTail++] = neighbourNode;
 					}
 				}
 			}
 		}
+		while (queueHead < queueTail)
+			queue[queueHead++] = null;
 
-		List<Long> visited = new ArrayList<>();
+		Status status = Status.SUCCSESS;
+		result.visitedCount = 0;
 		if (bestNode != null) {
 			// Reverse the path.
 			Node prev = null;
@@ -1690,12 +3343,19 @@ public class NavMeshQuery {
 
 			// Store result
 			node = prev;
+			int n = 0;
 			do {
-				visited.add(node.id);
+				if (n < result.visited.length) {
+					result.visited[n++] = node.id;
+				} else {
+					status = Status.PARTIAL_RESULT;
+					break;
+				}
 				node = m_tinyNodePool.getNodeAtIdx(node.pidx);
 			} while (node != null);
+			result.visitedCount = n;
 		}
-		return new MoveAlongSurfaceResult(bestPos, visited);
+		return status;
 	}
 	
 	static class PortalResult {
@@ -1732,63 +3392,90 @@ public class NavMeshQuery {
 			int fromType, int toType) {
 		float[] left = new float[3];
 		float[] right = new float[3];
+		if (!getPortalPoints(from, fromPoly, fromTile, to, toPoly, toTile, left, right))
+			throw new IllegalArgumentException("Null link");
+		return new PortalResult(left, right, fromType, toType);
+	}
+
+	/// Finds the portal points between two polygons without allocating.
+	/// @return The type of the 'to' polygon, or -1 if either reference is invalid or the polygons are not linked.
+	private int getPortalPoints(long from, long to, float[] left, float[] right) {
+		if (!m_nav.isValidPolyRef(from) || !m_nav.isValidPolyRef(to))
+			return -1;
+		MeshTile fromTile = m_nav.getTile(NavMesh.decodePolyIdTile(from));
+		Poly fromPoly = fromTile.data.polys[NavMesh.decodePolyIdPoly(from)];
+		MeshTile toTile = m_nav.getTile(NavMesh.decodePolyIdTile(to));
+		Poly toPoly = toTile.data.polys[NavMesh.decodePolyIdPoly(to)];
+		if (!getPortalPoints(from, fromPoly, fromTile, to, toPoly, toTile, left, right))
+			return -1;
+		return toPoly.getType();
+	}
+
+	/// Writes the portal points between two polygons into left and right.
+	/// @return False if the polygons are not linked.
+	private boolean getPortalPoints(long from, Poly fromPoly, MeshTile fromTile, long to, Poly toPoly,
+			MeshTile toTile, float[] left, float[] right) {
 		// Find the link that points to the 'to' polygon.
-		Link link = null;
-		for (int i = fromPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = fromTile.links.get(i).next) {
-			if (fromTile.links.get(i).ref == to) {
-				link = fromTile.links.get(i);
+		int link = NavMesh.DT_NULL_LINK;
+		for (int i = fromPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = fromTile.linkNext[i]) {
+			if (fromTile.linkRefs[i] == to) {
+				link = i;
 				break;
 			}
 		}
-		if (link == null)
-			throw new IllegalArgumentException("Null link");
+		if (link == NavMesh.DT_NULL_LINK)
+			return false;
 
 		// Handle off-mesh connections.
 		if (fromPoly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION) {
 			// Find link that points to first vertex.
-			for (int i = fromPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = fromTile.links.get(i).next) {
-				if (fromTile.links.get(i).ref == to) {
-					int v = fromTile.links.get(i).edge;
+			for (int i = fromPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = fromTile.linkNext[i]) {
+				if (fromTile.linkRefs[i] == to) {
+					int v = fromTile.getLinkEdge(i);
 					System.arraycopy(fromTile.data.verts, fromPoly.verts[v] * 3, left, 0, 3);
 					System.arraycopy(fromTile.data.verts, fromPoly.verts[v] * 3, right, 0, 3);
-					return new PortalResult(left, right, fromType, toType);
+					return true;
 				}
 			}
-			throw new IllegalArgumentException("Invalid offmesh from connection");
+			return false;
 		}
 
 		if (toPoly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION) {
-			for (int i = toPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = toTile.links.get(i).next) {
-				if (toTile.links.get(i).ref == from) {
-					int v = toTile.links.get(i).edge;
+			for (int i = toPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = toTile.linkNext[i]) {
+				if (toTile.linkRefs[i] == from) {
+					int v = toTile.getLinkEdge(i);
 					System.arraycopy(toTile.data.verts, toPoly.verts[v] * 3, left, 0, 3);
 					System.arraycopy(toTile.data.verts, toPoly.verts[v] * 3, right, 0, 3);
-					return new PortalResult(left, right, fromType, toType);
+					return true;
 				}
 			}
-			throw new IllegalArgumentException("Invalid offmesh to connection");
+			return false;
 		}
 
 		// Find portal vertices.
-		int v0 = fromPoly.verts[link.edge];
-		int v1 = fromPoly.verts[(link.edge + 1) % fromPoly.vertCount];
+		int v0 = fromPoly.verts[fromTile.getLinkEdge(link)];
+		int v1 = fromPoly.verts[(fromTile.getLinkEdge(link) + 1) % fromPoly.vertCount];
 		System.arraycopy(fromTile.data.verts, v0 * 3, left, 0, 3);
 		System.arraycopy(fromTile.data.verts, v1 * 3, right, 0, 3);
 
 		// If the link is at tile boundary, dtClamp the vertices to
 		// the link width.
-		if (link.side != 0xff) {
+		if (fromTile.getLinkSide(link) != 0xff) {
 			// Unpack portal limits.
-			if (link.bmin != 0 || link.bmax != 255) {
+			if (fromTile.getLinkBmin(link) != 0 || fromTile.getLinkBmax(link) != 255) {
 				float s = 1.0f / 255.0f;
-				float tmin = link.bmin * s;
-				float tmax = link.bmax * s;
-				left = vLerp(fromTile.data.verts, v0 * 3, v1 * 3, tmin);
-				right = vLerp(fromTile.data.verts, v0 * 3, v1 * 3, tmax);
+				float tmin = fromTile.getLinkBmin(link) * s;
+				float tmax = fromTile.getLinkBmax(link) * s;
+				for (int i = 0; i < 3; i++) {
+					float a = fromTile.data.verts[v0 * 3 + i];
+					float b = fromTile.data.verts[v1 * 3 + i];
+					left[i] = a + (b - a) * tmin;
+					right[i] = a + (b - a) * tmax;
+				}
 			}
 		}
 
-		return new PortalResult(left, right, fromType, toType);
+		return true;
 	}
 
 	// Returns edge mid point between two polygons.
@@ -1873,36 +3560,67 @@ public class NavMeshQuery {
 	///  @param[in]		maxPath		The maximum number of polygons the @p path array can hold.@p路径数组可以容纳的最大多边形数。
 	/// @returns The status flags for the query.
 	public RaycastHit raycast(long startRef, float[] startPos, float[] endPos, QueryFilter filter, int options, long prevRef) {
+		RaycastScratch ray = raycastScratch();
+		RaycastHit hit = new RaycastHit();
+		RaycastHitBuffer result = ray.hit;
+		raycast(startRef, startPos, endPos, filter, options, prevRef, result, hit.path);
+		hit.t = result.t;
+		vCopy(hit.hitNormal, result.hitNormal);
+		hit.pathCost = result.pathCost;
+		hit.hitEdgeIndex = result.hitEdgeIndex;
+		return hit;
+	}
+
+	/**
+	 * Casts a 'walkability' ray along the surface of the navigation mesh, writing into a reusable result.
+	 * 
+	 * Behaves like {@link #raycast(long, float[], float[], QueryFilter, int, long)} but does not allocate. If the path
+	 * array of the result is too small, it is filled as far as possible from the start position toward the end
+	 * position.
+	 * 
+	 * @return SUCCSESS, or PARTIAL_RESULT if the visited polygons did not fit into the result.
+	 */
+	public Status raycast(long startRef, float[] startPos, float[] endPos, QueryFilter filter, int options,
+			long prevRef, RaycastHitBuffer hit) {
+		return raycast(startRef, startPos, endPos, filter, options, prevRef, hit, null);
+	}
+
+	/// Stores the visited polygons in @p pathList if given, otherwise in the path array of @p hit.
+	private Status raycast(long startRef, float[] startPos, float[] endPos, QueryFilter filter, int options,
+			long prevRef, RaycastHitBuffer hit, List<Long> pathList) {
+		RaycastScratch ray = raycastScratch();
 		// Validate input
 		if (startRef == 0 || !m_nav.isValidPolyRef(startRef))
 			throw new IllegalArgumentException("Invalid start ref");
 		if (prevRef != 0 && !m_nav.isValidPolyRef(prevRef))
 			throw new IllegalArgumentException("Invalid pref ref");
 
-		RaycastHit hit = new RaycastHit();
+		hit.clear();
+		Status status = Status.SUCCSESS;
 
-		float[] verts = new float[m_nav.getMaxVertsPerPoly() * 3 + 3];
+		float[] verts = ray.verts;
 
-		float[] curPos = new float[3], lastPos = new float[3];
+		float[] curPos = ray.curPos, lastPos = ray.lastPos;
 
 		vCopy(curPos, startPos);
-		float[] dir = vSub(endPos, startPos);
+		float[] dir = ray.dir;
+		for (int i = 0; i < 3; i++)
+			dir[i] = endPos[i] - startPos[i];
 
 		MeshTile prevTile, tile, nextTile;
 		Poly prevPoly, poly, nextPoly;
 
 		// The API input has been checked already, skip checking internal data.
 		long curRef = startRef;
-		Tupple2<MeshTile, Poly> tileAndPolyUns = m_nav.getTileAndPolyByRefUnsafe(curRef);
-		tile = tileAndPolyUns.first;
-		poly = tileAndPolyUns.second;
+		tile = m_nav.getTile(NavMesh.decodePolyIdTile(curRef));
+		poly = tile.data.polys[NavMesh.decodePolyIdPoly(curRef)];
 		nextTile = prevTile = tile;
 		nextPoly = prevPoly = poly;
 		if (prevRef != 0) {
-			tileAndPolyUns = m_nav.getTileAndPolyByRefUnsafe(prevRef);
-			prevTile = tileAndPolyUns.first;
-			prevPoly = tileAndPolyUns.second;
+			prevTile = m_nav.getTile(NavMesh.decodePolyIdTile(prevRef));
+			prevPoly = prevTile.data.polys[NavMesh.decodePolyIdPoly(prevRef)];
 		}
+		IntersectResult iresult = ray.intersect;
 		while (curRef != 0) {
 			// Cast ray against current polygon.
 
@@ -1913,10 +3631,9 @@ public class NavMeshQuery {
 				nv++;
 			}
 
-			IntersectResult iresult = intersectSegmentPoly2D(startPos, endPos, verts, nv);
-			if (!iresult.intersects) {
+			if (!intersectSegmentPoly2D(startPos, endPos, verts, nv, iresult)) {
 				// Could not hit the polygon, keep the old t and report hit.
-				return hit;
+				return status;
 			}
 
 			hit.hitEdgeIndex = iresult.segMax;
@@ -1926,7 +3643,13 @@ public class NavMeshQuery {
 				hit.t = iresult.tmax;
 
 			// Store visited polygons.
-			hit.path.add(curRef);
+			if (pathList != null) {
+				pathList.add(curRef);
+			} else if (hit.pathCount < hit.path.length) {
+				hit.path[hit.pathCount++] = curRef;
+			} else {
+				status = Status.PARTIAL_RESULT;
+			}
 
 			// Ray end is completely inside the polygon.
 			if (iresult.segMax == -1) {
@@ -1936,58 +3659,56 @@ public class NavMeshQuery {
 				if ((options & DT_RAYCAST_USE_COSTS) != 0)
 					hit.pathCost += filter.getCost(curPos, endPos, prevRef, prevTile, prevPoly, curRef, tile, poly,
 							curRef, tile, poly);
-				return hit;
+				return status;
 			}
 
 			// Follow neighbours.
 			long nextRef = 0;
 
-			for (int i = poly.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.links.get(i).next) {
-				Link link = tile.links.get(i);
+			for (int i = poly.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.linkNext[i]) {
 
 				// Find link which contains this edge.
-				if (link.edge != iresult.segMax)
+				if (tile.getLinkEdge(i) != iresult.segMax)
 					continue;
 
 				// Get pointer to the next polygon.
-				tileAndPolyUns = m_nav.getTileAndPolyByRefUnsafe(link.ref);
-				nextTile = tileAndPolyUns.first;
-				nextPoly = tileAndPolyUns.second;
+				nextTile = m_nav.getTile(NavMesh.decodePolyIdTile(tile.linkRefs[i]));
+				nextPoly = nextTile.data.polys[NavMesh.decodePolyIdPoly(tile.linkRefs[i])];
 				// Skip off-mesh connections.
 				if (nextPoly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
 					continue;
 
 				// Skip links based on filter.
-				if (!filter.passFilter(link.ref, nextTile, nextPoly))
+				if (!filter.passFilter(tile.linkRefs[i], nextTile, nextPoly))
 					continue;
 
 				// If the link is internal, just return the ref.
-				if (link.side == 0xff) {
-					nextRef = link.ref;
+				if (tile.getLinkSide(i) == 0xff) {
+					nextRef = tile.linkRefs[i];
 					break;
 				}
 
 				// If the link is at tile boundary,
 
 				// Check if the link spans the whole edge, and accept.
-				if (link.bmin == 0 && link.bmax == 255) {
-					nextRef = link.ref;
+				if (tile.getLinkBmin(i) == 0 && tile.getLinkBmax(i) == 255) {
+					nextRef = tile.linkRefs[i];
 					break;
 				}
 
 				// Check for partial edge links.
-				int v0 = poly.verts[link.edge];
-				int v1 = poly.verts[(link.edge + 1) % poly.vertCount];
+				int v0 = poly.verts[tile.getLinkEdge(i)];
+				int v1 = poly.verts[(tile.getLinkEdge(i) + 1) % poly.vertCount];
 				int left = v0 * 3;
 				int right = v1 * 3;
 
 				// Check that the intersection lies inside the link portal.
-				if (link.side == 0 || link.side == 4) {
+				if (tile.getLinkSide(i) == 0 || tile.getLinkSide(i) == 4) {
 					// Calculate link size.
 					float lmin = tile.data.verts[left + 2]
-							+ (tile.data.verts[right + 2] - tile.data.verts[left + 2]) * (link.bmin * s);
+							+ (tile.data.verts[right + 2] - tile.data.verts[left + 2]) * (tile.getLinkBmin(i) * s);
 					float lmax = tile.data.verts[left + 2]
-							+ (tile.data.verts[right + 2] - tile.data.verts[left + 2]) * (link.bmax * s);
+							+ (tile.data.verts[right + 2] - tile.data.verts[left + 2]) * (tile.getLinkBmax(i) * s);
 					if (lmin > lmax) {
 						float temp = lmin;
 						lmin = lmax;
@@ -1997,13 +3718,13 @@ public class NavMeshQuery {
 					// Find Z intersection.
 					float z = startPos[2] + (endPos[2] - startPos[2]) * iresult.tmax;
 					if (z >= lmin && z <= lmax) {
-						nextRef = link.ref;
+						nextRef = tile.linkRefs[i];
 						break;
 					}
-				} else if (link.side == 2 || link.side == 6) {
+				} else if (tile.getLinkSide(i) == 2 || tile.getLinkSide(i) == 6) {
 					// Calculate link size.
-					float lmin = tile.data.verts[left] + (tile.data.verts[right] - tile.data.verts[left]) * (link.bmin * s);
-					float lmax = tile.data.verts[left] + (tile.data.verts[right] - tile.data.verts[left]) * (link.bmax * s);
+					float lmin = tile.data.verts[left] + (tile.data.verts[right] - tile.data.verts[left]) * (tile.getLinkBmin(i) * s);
+					float lmax = tile.data.verts[left] + (tile.data.verts[right] - tile.data.verts[left]) * (tile.getLinkBmax(i) * s);
 					if (lmin > lmax) {
 						float temp = lmin;
 						lmin = lmax;
@@ -2013,7 +3734,7 @@ public class NavMeshQuery {
 					// Find X intersection.
 					float x = startPos[0] + (endPos[0] - startPos[0]) * iresult.tmax;
 					if (x >= lmin && x <= lmax) {
-						nextRef = link.ref;
+						nextRef = tile.linkRefs[i];
 						break;
 					}
 				}
@@ -2024,13 +3745,15 @@ public class NavMeshQuery {
 				// compute the intersection point at the furthest end of the polygon
 				// and correct the height (since the raycast moves in 2d)
 				vCopy(lastPos, curPos);
-				curPos = vMad(startPos, dir, hit.t);
-				VectorPtr e1 = new VectorPtr(verts, iresult.segMax * 3);
-				VectorPtr e2 = new VectorPtr(verts, ((iresult.segMax + 1) % nv) * 3);
-				float[] eDir = vSub(e2, e1);
-				float[] diff = vSub(new VectorPtr(curPos), e1);
-				float s = sqr(eDir[0]) > sqr(eDir[2]) ? diff[0] / eDir[0] : diff[2] / eDir[2];
-				curPos[1] = e1.get(1) + eDir[1] * s;
+				for (int i = 0; i < 3; i++)
+					curPos[i] = startPos[i] + dir[i] * hit.t;
+				int e1 = iresult.segMax * 3;
+				int e2 = ((iresult.segMax + 1) % nv) * 3;
+				float eDirX = verts[e2] - verts[e1];
+				float eDirY = verts[e2 + 1] - verts[e1 + 1];
+				float eDirZ = verts[e2 + 2] - verts[e1 + 2];
+				float s = sqr(eDirX) > sqr(eDirZ) ? (curPos[0] - verts[e1]) / eDirX : (curPos[2] - verts[e1 + 2]) / eDirZ;
+				curPos[1] = verts[e1 + 1] + eDirY * s;
 
 				hit.pathCost += filter.getCost(lastPos, curPos, prevRef, prevTile, prevPoly, curRef, tile, poly,
 						nextRef, nextTile, nextPoly);
@@ -2050,7 +3773,7 @@ public class NavMeshQuery {
 				hit.hitNormal[1] = 0;
 				hit.hitNormal[2] = -dx;
 				vNormalize(hit.hitNormal);
-				return hit;
+				return status;
 			}
 
 			// No hit, advance to neighbour polygon.
@@ -2062,7 +3785,7 @@ public class NavMeshQuery {
 			poly = nextPoly;
 		}
 
-		return hit;
+		return status;
 	}
 
 	/// @par
@@ -2163,9 +3886,8 @@ public class NavMeshQuery {
 			resultParent.add(parentRef);
 			resultCost.add(bestNode.total);
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				Link link = bestTile.links.get(i);
-				long neighbourRef = link.ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 				// Skip invalid neighbours and do not follow back to parent.
 				if (neighbourRef == 0 || neighbourRef == parentRef)
 					continue;
@@ -2191,7 +3913,9 @@ public class NavMeshQuery {
 				if (distSqr > radiusSqr)
 					continue;
 
-				Node neighbourNode = m_nodePool.getNode(neighbourRef); 
+				Node neighbourNode = m_nodePool.getNode(neighbourRef);
+				if (neighbourNode == null)
+					continue;
 
 				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
 					continue;
@@ -2320,9 +4044,8 @@ public class NavMeshQuery {
 			resultParent.add(parentRef);
 			resultCost.add(bestNode.total);
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				Link link = bestTile.links.get(i);
-				long neighbourRef = link.ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 				// Skip invalid neighbours and do not follow back to parent.
 				if (neighbourRef == 0 || neighbourRef == parentRef)
 					continue;
@@ -2350,6 +4073,8 @@ public class NavMeshQuery {
 					continue;
 
 				Node neighbourNode = m_nodePool.getNode(neighbourRef);
+				if (neighbourNode == null)
+					continue;
 
 				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
 					continue;
@@ -2455,9 +4180,8 @@ public class NavMeshQuery {
 			MeshTile curTile = tileAndPoly.first;
 			Poly curPoly = tileAndPoly.second;
 
-			for (int i = curPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = curTile.links.get(i).next) {
-				Link link = curTile.links.get(i);
-				long neighbourRef = link.ref;
+			for (int i = curPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = curTile.linkNext[i]) {
+				long neighbourRef = curTile.linkRefs[i];
 				// Skip invalid neighbours.
 				if (neighbourRef == 0)
 					continue;
@@ -2513,8 +4237,8 @@ public class NavMeshQuery {
 
 					// Connected polys do not overlap.
 					boolean connected = false;
-					for (int k = curPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = curTile.links.get(k).next) {
-						if (curTile.links.get(k).ref == pastRef) {
+					for (int k = curPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = curTile.linkNext[k]) {
+						if (curTile.linkRefs[k] == pastRef) {
 							connected = true;
 							break;
 						}
@@ -2607,15 +4331,14 @@ public class NavMeshQuery {
 			ints.clear();
 			if ((poly.neis[j] & NavMesh.DT_EXT_LINK) != 0) {
 				// Tile border.
-				for (int k = poly.firstLink; k != NavMesh.DT_NULL_LINK; k = tile.links.get(k).next) {
-					Link link = tile.links.get(k);
-					if (link.edge == j) {
-						if (link.ref != 0) {
-							tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(link.ref);
+				for (int k = poly.firstLink; k != NavMesh.DT_NULL_LINK; k = tile.linkNext[k]) {
+					if (tile.getLinkEdge(k) == j) {
+						if (tile.linkRefs[k] != 0) {
+							tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(tile.linkRefs[k]);
 							MeshTile neiTile = tileAndPoly.first;
 							Poly neiPoly = tileAndPoly.second;
-							if (filter.passFilter(link.ref, neiTile, neiPoly)) {
-								insertInterval(ints, link.bmin, link.bmax, link.ref);
+							if (filter.passFilter(tile.linkRefs[k], neiTile, neiPoly)) {
+								insertInterval(ints, tile.getLinkBmin(k), tile.getLinkBmax(k), tile.linkRefs[k]);
 							}
 						}
 					}
@@ -2751,14 +4474,13 @@ public class NavMeshQuery {
 				if ((bestPoly.neis[j] & NavMesh.DT_EXT_LINK) != 0) {
 					// Tile border.
 					boolean solid = true;
-					for (int k = bestPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = bestTile.links.get(k).next) {
-						Link link = bestTile.links.get(k);
-						if (link.edge == j) {
-							if (link.ref != 0) {
-								tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(link.ref);
+					for (int k = bestPoly.firstLink; k != NavMesh.DT_NULL_LINK; k = bestTile.linkNext[k]) {
+						if (bestTile.getLinkEdge(k) == j) {
+							if (bestTile.linkRefs[k] != 0) {
+								tileAndPoly = m_nav.getTileAndPolyByRefUnsafe(bestTile.linkRefs[k]);
 								MeshTile neiTile = tileAndPoly.first;
 								Poly neiPoly = tileAndPoly.second;
-								if (filter.passFilter(link.ref, neiTile, neiPoly))
+								if (filter.passFilter(bestTile.linkRefs[k], neiTile, neiPoly))
 									solid = false;
 							}
 							break;
@@ -2793,9 +4515,8 @@ public class NavMeshQuery {
 				hitPos[2] = bestTile.data.verts[vj + 2] + (bestTile.data.verts[vi + 2] - bestTile.data.verts[vj + 2]) * tseg;
 			}
 
-			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.links.get(i).next) {
-				Link link = bestTile.links.get(i);
-				long neighbourRef = link.ref;
+			for (int i = bestPoly.firstLink; i != NavMesh.DT_NULL_LINK; i = bestTile.linkNext[i]) {
+				long neighbourRef = bestTile.linkRefs[i];
 				// Skip invalid neighbours and do not follow back to parent.
 				if (neighbourRef == 0 || neighbourRef == parentRef)
 					continue;
@@ -2810,8 +4531,8 @@ public class NavMeshQuery {
 					continue;
 
 				// Calc distance to the edge.
-				int va = bestPoly.verts[link.edge] * 3;
-				int vb = bestPoly.verts[(link.edge + 1) % bestPoly.vertCount] * 3;
+				int va = bestPoly.verts[bestTile.getLinkEdge(i)] * 3;
+				int vb = bestPoly.verts[(bestTile.getLinkEdge(i) + 1) % bestPoly.vertCount] * 3;
 				Tupple2<Float, Float> distseg = distancePtSegSqr2D(centerPos, bestTile.data.verts, va, vb);
 				float distSqr = distseg.first;
 				// If the circle is not touching the next polygon, skip it.
@@ -2822,6 +4543,8 @@ public class NavMeshQuery {
 					continue;
 
 				Node neighbourNode = m_nodePool.getNode(neighbourRef);
+				if (neighbourNode == null)
+					continue;
 
 				if ((neighbourNode.flags & Node.DT_NODE_CLOSED) != 0)
 					continue;
@@ -2879,6 +4602,20 @@ public class NavMeshQuery {
 	public NavMesh getAttachedNavMesh() {
 		return m_nav;
 	}
+
+	/// Tells whether the node pool ran out during the last path search (findPath(), findPaths(),
+	/// findPathToNearestGoal(), repairPath() or a finalized sliced query).
+	/// The status of such a search is still SUCCSESS when the end polygon was reached, but the path may
+	/// not be the cheapest one because some polygons could not be explored.
+	/// @return True if polygons were skipped because the node pool was full.
+	public boolean isOutOfNodes() {
+		return m_outOfNodes;
+	}
+
+	/// The node pool holding the state of the last search.
+	NodePool getNodePool() {
+		return m_nodePool;
+	}
 	
 	/*
 	/// @par
@@ -2907,6 +4644,136 @@ public class NavMeshQuery {
 	
 	*/
 
+	/**
+	 * Fills a cost field with the cost of reaching the nearest goal from every polygon around the goals.
+	 * 
+	 * Runs a Dijkstra search backward from all goals at once: links are followed against their direction, so one-way
+	 * off-mesh connections are only used the way an agent can traverse them. Each goal starts with its cost offset. If
+	 * several goals share a polygon, the one with the smallest offset is used.
+	 * 
+	 * The parent of each result polygon is the next polygon on the way to its nearest goal, zero for the goal polygons
+	 * themselves. Afterwards {@link #getPathFromDijkstraSearch(long)} returns the path from the nearest goal to a result
+	 * polygon, which is walked in reverse order.
+	 * 
+	 * @param goalRefs
+	 *            The reference ids of the goal polygons. [(polyRef) * ngoals]
+	 * @param goalPos
+	 *            A position within each goal polygon. [(x, y, z) * ngoals]
+	 * @param goalCostOffsets
+	 *            The cost added to reaching each goal. [(cost) * ngoals] [Limit: >= 0] [opt]
+	 * @param ngoals
+	 *            The number of goals. [Limit: > 0]
+	 * @param maxCost
+	 *            Polygons with a higher cost are not part of the field.
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @return The polygons of the field in order of increasing cost, the next polygon toward the nearest goal and the
+	 *         cost from the polygon to that goal. The field is also limited by the size of the node pool.
+	 */
+	public FindPolysAroundResult findCostField(long[] goalRefs, float[] goalPos, float[] goalCostOffsets, int ngoals,
+			float maxCost, QueryFilter filter) {
+		List<Long> resultRef = new ArrayList<>();
+		List<Long> resultParent = new ArrayList<>();
+		List<Float> resultCost = new ArrayList<>();
+		searchCostField(goalRefs, goalPos, goalCostOffsets, ngoals, maxCost, filter, resultRef, resultParent,
+				resultCost);
+		return new FindPolysAroundResult(resultRef, resultParent, resultCost);
+	}
+
+	/**
+	 * Runs the search of findCostField() and leaves the field in the node pool: the closed nodes are the polygons of
+	 * the field, their parents the next polygons toward the goals. The results are also added to the given lists in
+	 * order of increasing cost. [opt]
+	 */
+	void searchCostField(long[] goalRefs, float[] goalPos, float[] goalCostOffsets, int ngoals, float maxCost,
+			QueryFilter filter, List<Long> resultRef, List<Long> resultParent, List<Float> resultCost) {
+		ReverseLinks links = reverseLinks();
+		validateGoals(goalRefs, goalPos, goalCostOffsets, ngoals);
+
+		resetOffMeshLandings();
+		m_nodePool.clear();
+		m_openList.clear();
+
+		for (int i = 0; i < ngoals; i++) {
+			float offset = goalCostOffsets != null ? goalCostOffsets[i] : 0;
+			Node goalNode = m_nodePool.getNode(goalRefs[i]);
+			if (goalNode == null || (goalNode.flags != 0 && goalNode.total <= offset))
+				continue;
+			vCopy(goalNode.pos, goalPos, i * 3);
+			goalNode.pidx = 0;
+			goalNode.cost = offset;
+			goalNode.total = offset;
+			goalNode.id = goalRefs[i];
+			if ((goalNode.flags & Node.DT_NODE_OPEN) != 0) {
+				m_openList.modify(goalNode);
+			} else {
+				goalNode.flags = Node.DT_NODE_OPEN;
+				m_openList.push(goalNode);
+			}
+		}
+
+		while (!m_openList.isEmpty()) {
+			Node bestNode = m_openList.pop();
+			if (bestNode.total > maxCost)
+				break;
+			bestNode.flags &= ~Node.DT_NODE_OPEN;
+			bestNode.flags |= Node.DT_NODE_CLOSED;
+
+			long bestRef = bestNode.id;
+			MeshTile bestTile = m_nav.getTile(NavMesh.decodePolyIdTile(bestRef));
+			Poly bestPoly = bestTile.data.polys[NavMesh.decodePolyIdPoly(bestRef)];
+
+			// The polygon the search came from is the next polygon toward the goal.
+			long nextRef = 0;
+			MeshTile nextTile = null;
+			Poly nextPoly = null;
+			if (bestNode.pidx != 0) {
+				nextRef = m_nodePool.getNodeAtIdx(bestNode.pidx).id;
+				nextTile = m_nav.getTile(NavMesh.decodePolyIdTile(nextRef));
+				nextPoly = nextTile.data.polys[NavMesh.decodePolyIdPoly(nextRef)];
+			}
+
+			if (resultRef != null) {
+				resultRef.add(bestRef);
+				resultParent.add(nextRef);
+				resultCost.add(bestNode.total);
+			}
+
+			int npred = getPredecessors(bestRef, bestTile, bestPoly);
+			for (int i = 0; i < npred; i++) {
+				long prevRef = links.predecessors[i];
+				if (prevRef == nextRef)
+					continue;
+				MeshTile prevTile = m_nav.getTile(NavMesh.decodePolyIdTile(prevRef));
+				Poly prevPoly = prevTile.data.polys[NavMesh.decodePolyIdPoly(prevRef)];
+				if (!filter.passFilter(prevRef, prevTile, prevPoly))
+					continue;
+
+				Node prevNode = m_nodePool.getNode(prevRef);
+				if (prevNode == null || (prevNode.flags & Node.DT_NODE_CLOSED) != 0)
+					continue;
+				if (prevNode.flags == 0)
+					prevNode.pos = getEdgeMidPoint(prevRef, prevPoly, prevTile, bestRef, bestPoly, bestTile);
+
+				float total = bestNode.total + filter.getCost(prevNode.pos, bestNode.pos, prevRef, prevTile, prevPoly,
+						bestRef, bestTile, bestPoly, nextRef, nextTile, nextPoly);
+				if ((prevNode.flags & Node.DT_NODE_OPEN) != 0 && total >= prevNode.total)
+					continue;
+
+				prevNode.id = prevRef;
+				prevNode.pidx = m_nodePool.getNodeIdx(bestNode);
+				prevNode.cost = total;
+				prevNode.total = total;
+				if ((prevNode.flags & Node.DT_NODE_OPEN) != 0) {
+					m_openList.modify(prevNode);
+				} else {
+					prevNode.flags = Node.DT_NODE_OPEN;
+					m_openList.push(prevNode);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Gets a path from the explored nodes in the previous search.
 	 * 
@@ -2914,7 +4781,8 @@ public class NavMeshQuery {
 	 *            The reference id of the end polygon.
 	 * @returns An ordered list of polygon references representing the path. (Start to end.)
 	 * @remarks The result of this function depends on the state of the query object. For that reason it should only be
-	 *          used immediately after one of the two Dijkstra searches, findPolysAroundCircle or findPolysAroundShape.
+	 *          used immediately after one of the Dijkstra searches, findPolysAroundCircle, findPolysAroundShape or
+	 *          findCostField.
 	 */
 	public List<Long> getPathFromDijkstraSearch(long endRef) {
 		if (!m_nav.isValidPolyRef(endRef))
@@ -2928,6 +4796,33 @@ public class NavMeshQuery {
 		return getPathToNode(endNode);
 	}
 
+	/**
+	 * Writes the path to the node into the buffer. If the path is longer than maxPath, only its first maxPath polygons
+	 * are written.
+	 * 
+	 * @return The number of polygons written, negated if the path was truncated.
+	 */
+	private int getPathToNode(Node endNode, long[] path, int offset, int maxPath) {
+		int length = 0;
+		Node curNode = endNode;
+		do {
+			length++;
+			curNode = m_nodePool.getNodeAtIdx(curNode.pidx);
+		} while (curNode != null);
+
+		// Skip the nodes which do not fit into the buffer.
+		curNode = endNode;
+		for (int i = length; i > maxPath; i--) {
+			curNode = m_nodePool.getNodeAtIdx(curNode.pidx);
+		}
+		int count = Math.min(length, maxPath);
+		for (int i = count - 1; i >= 0; i--) {
+			path[offset + i] = curNode.id;
+			curNode = m_nodePool.getNodeAtIdx(curNode.pidx);
+		}
+		return length > maxPath ? -count : count;
+	}
+
 	/**
 	 * Gets the path leading to the specified end node.
 	 */
@@ -2942,4 +4837,184 @@ public class NavMeshQuery {
 
 		return path;
 	}
-}
\ No newline at end of file
+
+	/// Scratch of findStraightPath().
+	private static class StraightPathScratch {
+		int count; /// < Number of points written by the primitive findStraightPath().
+		final float[] startPos = new float[3];
+		final float[] endPos = new float[3];
+		final float[] portalApex = new float[3];
+		final float[] portalLeft = new float[3];
+		final float[] portalRight = new float[3];
+		final float[] portalStart = new float[3];
+		final float[] nextLeft = new float[3];
+		final float[] nextRight = new float[3];
+		final float[] crossingLeft = new float[3];
+		final float[] crossingRight = new float[3];
+		final float[] crossingT = new float[2];
+		final float[] crossing = new float[3];
+		/// Buffers of the list based findStraightPath(), grown on demand.
+		long[] corridor = new long[0];
+		float[] points = new float[0];
+		int[] flags = new int[0];
+		long[] refs = new long[0];
+		final int[] resultCount = new int[1];
+	}
+
+	/// Scratch of the batch queries findNearestPolys() and findPaths().
+	private static class BatchScratch {
+		final float[] startPos = new float[3];
+		final float[] endPos = new float[3];
+		final float[] center = new float[3];
+		final int[] tileRange = new int[4];
+		long[] keys = new long[0]; /// < Sort keys of findNearestPolys(), grown on demand.
+		int[] order = new int[0];
+		int[] tileRanges = new int[0]; /// < (minx, miny, maxx, maxy) per point of a findNearestPolys() run.
+		int[] quantBounds = new int[0]; /// < Quantized (bmin, bmax) per point of a bucket.
+		float[] distanceSqr = new float[0];
+	}
+
+	/// Reverse links of the bidirectional search and the cost field, see getPredecessors().
+	private static class ReverseLinks {
+		long[] predecessors = new long[8];
+		/// Off-mesh connections by the reference of the polygons they land on, for the tiles registered in the current
+		/// bidirectional search or cost field. Hash buckets in the same way as NodePool, entry indices are 1-based and
+		/// zero ends a chain. Tiles are marked with the search stamp in offMeshScanned (neighbourhood scanned) and
+		/// offMeshRegistered (connections registered).
+		int[] landingFirst = new int[16];
+		int[] landingNext = new int[17];
+		long[] landingRefs = new long[17];
+		long[] landingCons = new long[17];
+		int landingCount;
+		int[] offMeshScanned;
+		int[] offMeshRegistered;
+		int offMeshStamp;
+	}
+
+	/// Backward search state of bidirectional findPath().
+	private static class BidirectionalSearch {
+		final NodePool nodePool;
+		final NodeQueue openList = new NodeQueue();
+		Node meetForward;
+		Node meetBackward;
+		float meetCost;
+		float startHeuristic; /// < Heuristic from the start to the end polygon.
+		float endHeuristic; /// < Heuristic from the end to the start polygon.
+		Node lastBestNode;
+		float lastBestNodeCost;
+
+		BidirectionalSearch(int maxNodes) {
+			nodePool = new NodePool(maxNodes);
+		}
+	}
+
+	/// Goal state of findPathToNearestGoal(). refs holds the goal polygons in sorted order.
+	private static class GoalSearch {
+		long[] refs = new long[0];
+		final float[] pos = new float[3];
+		Node node;
+		int index;
+		float cost;
+	}
+
+	/// Scratch of repairPath().
+	private static class RepairScratch {
+		final float[] startPos = new float[3];
+		final float[] endPos = new float[3];
+	}
+
+	/// Scratch of moveAlongSurface().
+	private static class MoveAlongSurfaceScratch {
+		final long[] neis = new long[8];
+		final Node[] queue = new Node[NodePool.DT_TINY_MAX_NODES];
+		final float[] searchPos = new float[3];
+		final MoveAlongSurfaceBuffer result = new MoveAlongSurfaceBuffer(NodePool.DT_TINY_MAX_NODES);
+	}
+
+	/// Node pool and open list of any-angle findPath(). The search runs on its own state so that it does not abort a
+	/// sliced query in progress.
+	private static class AnyAngleSearch {
+		final NodePool nodePool;
+		final NodeQueue openList = new NodeQueue();
+		final RaycastHitBuffer losHit = new RaycastHitBuffer(0); /// < Line of sight checks of any-angle searches.
+
+		AnyAngleSearch(int maxNodes) {
+			nodePool = new NodePool(maxNodes);
+		}
+	}
+
+	/// Scratch of raycast().
+	private static class RaycastScratch {
+		final float[] verts;
+		final float[] curPos = new float[3];
+		final float[] lastPos = new float[3];
+		final float[] dir = new float[3];
+		final RaycastHitBuffer hit = new RaycastHitBuffer(0);
+		final IntersectResult intersect = new IntersectResult();
+
+		RaycastScratch(int maxVertsPerPoly) {
+			verts = new float[maxVertsPerPoly * 3 + 3];
+		}
+	}
+
+	private StraightPathScratch straightPathScratch() {
+		if (m_straightPath == null)
+			m_straightPath = new StraightPathScratch();
+		return m_straightPath;
+	}
+
+	private BatchScratch batchScratch() {
+		if (m_batch == null)
+			m_batch = new BatchScratch();
+		return m_batch;
+	}
+
+	private ReverseLinks reverseLinks() {
+		if (m_reverseLinks == null)
+			m_reverseLinks = new ReverseLinks();
+		return m_reverseLinks;
+	}
+
+	private BidirectionalSearch bidirectionalSearch() {
+		if (m_bidirectional == null)
+			m_bidirectional = new BidirectionalSearch(m_nodePool.getMaxNodes());
+		return m_bidirectional;
+	}
+
+	private GoalSearch goalSearch() {
+		if (m_goalSearch == null)
+			m_goalSearch = new GoalSearch();
+		return m_goalSearch;
+	}
+
+	private RepairScratch repairScratch() {
+		if (m_repair == null)
+			m_repair = new RepairScratch();
+		return m_repair;
+	}
+
+	private MoveAlongSurfaceScratch moveAlongSurfaceScratch() {
+		if (m_moveAlongSurface == null)
+			m_moveAlongSurface = new MoveAlongSurfaceScratch();
+		return m_moveAlongSurface;
+	}
+
+	private AnyAngleSearch anyAngleSearch() {
+		if (m_anyAngle == null)
+			m_anyAngle = new AnyAngleSearch(m_nodePool.getMaxNodes());
+		return m_anyAngle;
+	}
+
+	private RaycastScratch raycastScratch() {
+		if (m_raycast == null)
+			m_raycast = new RaycastScratch(m_nav.getMaxVertsPerPoly());
+		return m_raycast;
+	}
+
+	/** Scratch of FlowField.findCorners(), which runs on this query. */
+	FlowField.CornerScratch flowFieldCornerScratch() {
+		if (m_flowFieldCorners == null)
+			m_flowFieldCorners = new FlowField.CornerScratch();
+		return m_flowFieldCorners;
+	}
+}
@@ -0,0 +1,341 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of {@link NavMeshQuery} objects sharing one {@link NavMesh}.
+ *
+ * A NavMeshQuery keeps per search state (node pool, open list, sliced query) and must not be used by more than one
+ * thread at a time. The pool hands out at most {@link #getCapacity()} queries; they are created on demand and reused
+ * after being released. When all queries are leased, {@link #acquire()} blocks until one is returned.
+ *
+ * The navigation mesh itself is only read by the queries. Tiles must not be added or removed while queries are leased.
+ */
+public class NavMeshQueryPool {
+
+	private final NavMesh m_nav;
+	private final int m_maxNodes;
+	private final int m_capacity;
+	private final BlockingQueue<NavMeshQuery> m_idle;
+	/// Queries created by this pool.
+	private final Set<NavMeshQuery> m_owned = Collections
+			.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	/// Queries currently leased from this pool.
+	private final Set<NavMeshQuery> m_leasedQueries = Collections
+			.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	private final AtomicInteger m_created = new AtomicInteger();
+	private final AtomicInteger m_leased = new AtomicInteger();
+	private final AtomicInteger m_waiting = new AtomicInteger();
+	private final AtomicLong m_acquireCount = new AtomicLong();
+	private final AtomicLong m_saturatedCount = new AtomicLong();
+
+	public NavMeshQueryPool(NavMesh nav, int capacity) {
+		this(nav, capacity, NodePool.DT_DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * @param nav
+	 *            The navigation mesh shared by all queries.
+	 * @param capacity
+	 *            The maximum number of queries leased at the same time. [Limit: > 0]
+	 * @param maxNodes
+	 *            The maximum number of search nodes of each query.
+	 */
+	public NavMeshQueryPool(NavMesh nav, int capacity, int maxNodes) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		m_nav = nav;
+		m_capacity = capacity;
+		m_maxNodes = maxNodes;
+		m_idle = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Leases a query, waiting until one is available.
+	 *
+	 * The wait is a {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker) managed block}, so a fork-join worker
+	 * waiting for a query lets its pool start a compensating thread instead of losing parallelism.
+	 *
+	 * @throws IllegalStateException
+	 *             if the thread is interrupted while waiting.
+	 */
+	public NavMeshQuery acquire() {
+		NavMeshQuery query = poll();
+		if (query == null) {
+			m_saturatedCount.incrementAndGet();
+			m_waiting.incrementAndGet();
+			try {
+				IdleQueryBlocker blocker = new IdleQueryBlocker();
+				ForkJoinPool.managedBlock(blocker);
+				query = blocker.query;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a query", e);
+			} finally {
+				m_waiting.decrementAndGet();
+			}
+		}
+		m_leasedQueries.add(query);
+		m_leased.incrementAndGet();
+		return query;
+	}
+
+	/** Waits for an idle query, see acquire(). */
+	private class IdleQueryBlocker implements ForkJoinPool.ManagedBlocker {
+		NavMeshQuery query;
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (query == null)
+				query = m_idle.take();
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (query == null)
+				query = m_idle.poll();
+			return query != null;
+		}
+	}
+
+	/**
+	 * Leases a query, waiting up to the given time until one is available.
+	 *
+	 * @return The query, or null if none became available in time.
+	 */
+	public NavMeshQuery tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		NavMeshQuery query = poll();
+		if (query == null) {
+			m_saturatedCount.incrementAndGet();
+			m_waiting.incrementAndGet();
+			try {
+				query = m_idle.poll(timeout, unit);
+			} finally {
+				m_waiting.decrementAndGet();
+			}
+			if (query == null)
+				return null;
+		}
+		m_leasedQueries.add(query);
+		m_leased.incrementAndGet();
+		return query;
+	}
+
+	private NavMeshQuery poll() {
+		m_acquireCount.incrementAndGet();
+		NavMeshQuery query = m_idle.poll();
+		if (query != null)
+			return query;
+		// Create a new query while under capacity.
+		for (;;) {
+			int created = m_created.get();
+			if (created >= m_capacity)
+				return m_idle.poll();
+			if (m_created.compareAndSet(created, created + 1)) {
+				NavMeshQuery newQuery = new NavMeshQuery(m_nav, m_maxNodes);
+				m_owned.add(newQuery);
+				return newQuery;
+			}
+		}
+	}
+
+	/**
+	 * Returns a query leased from this pool.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the query was not created by this pool.
+	 * @throws IllegalStateException
+	 *             if the query is not currently leased, e.g. it has already been released.
+	 */
+	public void release(NavMeshQuery query) {
+		if (!m_owned.contains(query))
+			throw new IllegalArgumentException("Query does not belong to this pool");
+		if (!m_leasedQueries.remove(query))
+			throw new IllegalStateException("Query released more than once");
+		m_leased.decrementAndGet();
+		m_idle.offer(query);
+	}
+
+	/**
+	 * Finds the paths of all requests in the batch in parallel.
+	 *
+	 * The batch is split into chunks of at most chunkSize requests, and each chunk is run on the fork-join pool with a
+	 * query leased from this pool. A task waiting for a query blocks in a managed block, see {@link #acquire()}. The
+	 * call returns when all paths have been found.
+	 *
+	 * @param batch
+	 *            The path requests and result buffers.
+	 * @param forkJoinPool
+	 *            The pool running the chunks. Parallelism beyond the capacity of this pool only adds waiting tasks.
+	 * @param chunkSize
+	 *            The maximum number of requests run by one task. [Limit: > 0]
+	 */
+	public void findPaths(FindPathBatch batch, ForkJoinPool forkJoinPool, int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		forkJoinPool.invoke(new FindPathsTask(batch, 0, batch.size(), chunkSize));
+	}
+
+	private class FindPathsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final FindPathBatch batch;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+
+		FindPathsTask(FindPathBatch batch, int from, int to, int chunkSize) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				NavMeshQuery query = acquire();
+				try {
+					query.findPaths(batch, from, to);
+				} finally {
+					release(query);
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new FindPathsTask(batch, from, mid, chunkSize), new FindPathsTask(batch, mid, to, chunkSize));
+			}
+		}
+	}
+
+	/**
+	 * Finds the nearest polygon of many points in parallel.
+	 *
+	 * The points are sorted by the tiles their search boxes touch and the sorted sequence is split into chunks of at
+	 * most chunkSize points, so each task works on its own group of tiles. See
+	 * {@link NavMeshQuery#findNearestPolys(float[], int, float[], QueryFilter, long[], float[])} for the parameters.
+	 *
+	 * @param forkJoinPool
+	 *            The pool running the chunks. Parallelism beyond the capacity of this pool only adds waiting tasks.
+	 * @param chunkSize
+	 *            The maximum number of points handled by one task. [Limit: > 0]
+	 */
+	public void findNearestPolys(float[] positions, int count, float[] extents, QueryFilter filter, long[] refs,
+			float[] nearestPts, ForkJoinPool forkJoinPool, int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		int[] order = new int[count];
+		NavMeshQuery query = acquire();
+		try {
+			query.sortByTileRange(positions, count, extents, new long[count], order);
+		} finally {
+			release(query);
+		}
+		forkJoinPool.invoke(new FindNearestPolysTask(positions, order, 0, count, extents, filter, refs, nearestPts,
+				chunkSize));
+	}
+
+	private class FindNearestPolysTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final float[] positions;
+		private final int[] order;
+		private final int from;
+		private final int to;
+		private final float[] extents;
+		private final QueryFilter filter;
+		private final long[] refs;
+		private final float[] nearestPts;
+		private final int chunkSize;
+
+		FindNearestPolysTask(float[] positions, int[] order, int from, int to, float[] extents, QueryFilter filter,
+				long[] refs, float[] nearestPts, int chunkSize) {
+			this.positions = positions;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.extents = extents;
+			this.filter = filter;
+			this.refs = refs;
+			this.nearestPts = nearestPts;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				NavMeshQuery query = acquire();
+				try {
+					query.findNearestPolys(positions, order, from, to, extents, filter, refs, nearestPts);
+				} finally {
+					release(query);
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(
+						new FindNearestPolysTask(positions, order, from, mid, extents, filter, refs, nearestPts,
+								chunkSize),
+						new FindNearestPolysTask(positions, order, mid, to, extents, filter, refs, nearestPts,
+								chunkSize));
+			}
+		}
+	}
+
+	public NavMesh getNavMesh() {
+		return m_nav;
+	}
+
+	/** The maximum number of queries that can be leased at the same time. */
+	public int getCapacity() {
+		return m_capacity;
+	}
+
+	/** The number of currently leased queries. */
+	public int getLeasedCount() {
+		return m_leased.get();
+	}
+
+	/** The number of threads currently waiting for a query. */
+	public int getWaitingCount() {
+		return m_waiting.get();
+	}
+
+	/** The total number of lease requests. */
+	public long getAcquireCount() {
+		return m_acquireCount.get();
+	}
+
+	/** The total number of lease requests that found the pool exhausted and had to wait. */
+	public long getSaturatedCount() {
+		return m_saturatedCount.get();
+	}
+
+	/** The fraction of the pool currently leased. [0..1] */
+	public float getUtilization() {
+		return (float) m_leased.get() / m_capacity;
+	}
+}
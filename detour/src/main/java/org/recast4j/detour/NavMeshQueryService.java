@@ -0,0 +1,118 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Thread-safe query facade over a shared {@link NavMesh}.
+ *
+ * Every call leases a {@link NavMeshQuery} from a {@link NavMeshQueryPool}, runs the query and returns it to the pool.
+ * The blocking methods run on the calling thread, the asynchronous ones on the service executor. Any executor can be
+ * used, e.g. a virtual thread per task executor on newer JVMs; the pool capacity bounds the number of queries that run
+ * at the same time.
+ */
+public class NavMeshQueryService {
+
+	private final NavMeshQueryPool m_pool;
+	private final Executor m_executor;
+	private final ExecutorService m_ownedExecutor;
+
+	/**
+	 * Creates a service running asynchronous queries on its own fixed thread pool with one thread per pooled query.
+	 */
+	public NavMeshQueryService(NavMesh nav, int poolSize) {
+		m_pool = new NavMeshQueryPool(nav, poolSize);
+		m_ownedExecutor = Executors.newFixedThreadPool(poolSize, r -> {
+			Thread t = new Thread(r, "navmesh-query");
+			t.setDaemon(true);
+			return t;
+		});
+		m_executor = m_ownedExecutor;
+	}
+
+	/**
+	 * Creates a service running asynchronous queries on the given executor. The executor is not shut down by
+	 * {@link #shutdown()}.
+	 */
+	public NavMeshQueryService(NavMeshQueryPool pool, Executor executor) {
+		m_pool = pool;
+		m_executor = executor;
+		m_ownedExecutor = null;
+	}
+
+	/** Runs an arbitrary query on a leased NavMeshQuery on the calling thread. */
+	public <T> T execute(Function<NavMeshQuery, T> task) {
+		NavMeshQuery query = m_pool.acquire();
+		try {
+			return task.apply(query);
+		} finally {
+			m_pool.release(query);
+		}
+	}
+
+	/** Runs an arbitrary query on a leased NavMeshQuery on the service executor. */
+	public <T> CompletableFuture<T> submit(Function<NavMeshQuery, T> task) {
+		return CompletableFuture.supplyAsync(() -> execute(task), m_executor);
+	}
+
+	/** @see NavMeshQuery#findPath(long, long, float[], float[], QueryFilter) */
+	public FindPathResult findPath(long startRef, long endRef, float[] startPos, float[] endPos, QueryFilter filter) {
+		return execute(q -> q.findPath(startRef, endRef, startPos, endPos, filter));
+	}
+
+	public CompletableFuture<FindPathResult> findPathAsync(long startRef, long endRef, float[] startPos,
+			float[] endPos, QueryFilter filter) {
+		return submit(q -> q.findPath(startRef, endRef, startPos, endPos, filter));
+	}
+
+	/** @see NavMeshQuery#raycast(long, float[], float[], QueryFilter, int, long) */
+	public RaycastHit raycast(long startRef, float[] startPos, float[] endPos, QueryFilter filter, int options,
+			long prevRef) {
+		return execute(q -> q.raycast(startRef, startPos, endPos, filter, options, prevRef));
+	}
+
+	public CompletableFuture<RaycastHit> raycastAsync(long startRef, float[] startPos, float[] endPos,
+			QueryFilter filter, int options, long prevRef) {
+		return submit(q -> q.raycast(startRef, startPos, endPos, filter, options, prevRef));
+	}
+
+	/** @see NavMeshQuery#findNearestPoly(float[], float[], QueryFilter) */
+	public FindNearestPolyResult findNearestPoly(float[] center, float[] extents, QueryFilter filter) {
+		return execute(q -> q.findNearestPoly(center, extents, filter));
+	}
+
+	public CompletableFuture<FindNearestPolyResult> findNearestPolyAsync(float[] center, float[] extents,
+			QueryFilter filter) {
+		return submit(q -> q.findNearestPoly(center, extents, filter));
+	}
+
+	public NavMeshQueryPool getPool() {
+		return m_pool;
+	}
+
+	/** Stops the executor created by this service, if any. */
+	public void shutdown() {
+		if (m_ownedExecutor != null)
+			m_ownedExecutor.shutdown();
+	}
+}
@@ -0,0 +1,178 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.recast4j.detour.io.IOUtils;
+import org.recast4j.detour.io.MeshDataReader;
+import org.recast4j.detour.io.NavMeshParamReader;
+
+/**
+ * Reads the snapshots written by {@link NavMeshSnapshotWriter}.
+ *
+ * The tiles are decoded with their links from bulk copies of the buffer, optionally in parallel, and inserted into
+ * the navigation mesh without connecting any links, so reading a snapshot costs about as much as decoding the tiles.
+ */
+public class NavMeshSnapshotReader {
+
+	private final MeshDataReader meshReader = new MeshDataReader();
+	private final NavMeshParamReader paramReader = new NavMeshParamReader();
+
+	/**
+	 * Maps the snapshot file read-only and reads it. The mapping is released once the navigation mesh is restored.
+	 *
+	 * @param executor
+	 *            The executor decoding the tiles, or null to decode them on the calling thread.
+	 */
+	public NavMesh read(File file, Executor executor) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Snapshot too large to map: " + channel.size());
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), executor);
+		}
+	}
+
+	public NavMesh read(ByteBuffer bb) throws IOException {
+		return read(bb, null);
+	}
+
+	public NavMesh read(ByteBuffer bb, Executor executor) throws IOException {
+		int magic = bb.getInt();
+		if (magic != NavMeshSnapshotWriter.SNAPSHOT_MAGIC) {
+			magic = IOUtils.swapEndianness(magic);
+			if (magic != NavMeshSnapshotWriter.SNAPSHOT_MAGIC) {
+				throw new IOException("Invalid magic");
+			}
+			bb.order(bb.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		}
+		if (bb.getInt() != NavMeshSnapshotWriter.SNAPSHOT_VERSION) {
+			throw new IOException("Invalid version");
+		}
+		NavMeshParams params = paramReader.read(bb);
+		int maxVertsPerPoly = bb.getInt();
+		int tileCount = bb.getInt();
+		NavMesh mesh = new NavMesh(params, maxVertsPerPoly);
+		int[] salts = readInts(bb, mesh.getMaxTiles());
+		int[] freeList = readIndices(bb, mesh);
+		int ntiles = bb.getInt();
+		if (ntiles < 0 || ntiles > mesh.getMaxTiles()) {
+			throw new IOException("Invalid tile count " + ntiles);
+		}
+		MeshTile[] tiles = new MeshTile[ntiles];
+		int[] sizes = new int[ntiles];
+		for (int i = 0; i < ntiles; i++) {
+			int index = bb.getInt();
+			if (index < 0 || index >= mesh.getMaxTiles()) {
+				throw new IOException("Invalid tile index " + index);
+			}
+			tiles[i] = mesh.getTile(index);
+			tiles[i].flags = bb.getInt();
+			sizes[i] = bb.getInt();
+		}
+
+		@SuppressWarnings("unchecked")
+		CompletableFuture<Void>[] decoded = new CompletableFuture[ntiles];
+		for (int i = 0; i < ntiles; i++) {
+			if (sizes[i] < 0 || sizes[i] > bb.remaining()) {
+				throw new IOException("Truncated tile " + i);
+			}
+			ByteBuffer block = bb.slice().order(bb.order());
+			block.limit(sizes[i]);
+			bb.position(bb.position() + sizes[i]);
+			MeshTile tile = tiles[i];
+			if (executor == null) {
+				readTile(block, tile, maxVertsPerPoly);
+			} else {
+				decoded[i] = CompletableFuture.runAsync(() -> {
+					try {
+						readTile(block, tile, maxVertsPerPoly);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, executor);
+			}
+		}
+		if (executor != null) {
+			try {
+				CompletableFuture.allOf(decoded).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException)
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				throw e;
+			}
+		}
+		mesh.restoreTiles(salts, tiles, ntiles, freeList, freeList.length, tileCount);
+		return mesh;
+	}
+
+	private void readTile(ByteBuffer bb, MeshTile tile, int maxVertsPerPoly) throws IOException {
+		tile.data = meshReader.read(bb, maxVertsPerPoly);
+		int linkCount = bb.getInt();
+		if (linkCount < 0 || linkCount > bb.remaining()) {
+			throw new IOException("Invalid link count " + linkCount);
+		}
+		tile.linkCount = linkCount;
+		tile.linksFreeList = bb.getInt();
+		tile.linkRefs = new long[linkCount];
+		bb.slice().order(bb.order()).asLongBuffer().get(tile.linkRefs);
+		bb.position(bb.position() + linkCount * 8);
+		tile.linkNext = readInts(bb, linkCount);
+		tile.linkEdges = readBytes(bb, linkCount);
+		tile.linkSides = readBytes(bb, linkCount);
+		tile.linkBmins = readBytes(bb, linkCount);
+		tile.linkBmaxs = readBytes(bb, linkCount);
+	}
+
+	private static int[] readInts(ByteBuffer bb, int count) {
+		int[] values = new int[count];
+		bb.slice().order(bb.order()).asIntBuffer().get(values);
+		bb.position(bb.position() + count * 4);
+		return values;
+	}
+
+	private static byte[] readBytes(ByteBuffer bb, int count) {
+		byte[] values = new byte[count];
+		bb.get(values);
+		return values;
+	}
+
+	private static int[] readIndices(ByteBuffer bb, NavMesh mesh) throws IOException {
+		int n = bb.getInt();
+		if (n < 0 || n > mesh.getMaxTiles()) {
+			throw new IOException("Invalid free tile count " + n);
+		}
+		int[] indices = readInts(bb, n);
+		for (int index : indices) {
+			if (index < 0 || index >= mesh.getMaxTiles()) {
+				throw new IOException("Invalid tile index " + index);
+			}
+		}
+		return indices;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.recast4j.detour.io.DetourWriter;
+import org.recast4j.detour.io.MeshDataWriter;
+import org.recast4j.detour.io.NavMeshParamWriter;
+
+/**
+ * Writes a snapshot of a navigation mesh, read by {@link NavMeshSnapshotReader}.
+ *
+ * A navigation mesh set only holds the tiles, so reading one connects all links again, which is the part of loading
+ * that can not run in parallel. A snapshot also holds the links of every tile, the salt of every tile slot, the free
+ * list and the order of the tile lookup, so reading it restores an identical navigation mesh without linking: the
+ * same polygon references, the same links and the same references for tiles added afterwards. Snapshots are meant for
+ * restarts with the same version of the library, not for distributing navigation meshes.
+ */
+public class NavMeshSnapshotWriter extends DetourWriter {
+
+	static final int SNAPSHOT_MAGIC = 'M' << 24 | 'S' << 16 | 'N' << 8 | 'P'; // 'MSNP';
+	static final int SNAPSHOT_VERSION = 1;
+
+	private final MeshDataWriter writer = new MeshDataWriter();
+	private final NavMeshParamWriter paramWriter = new NavMeshParamWriter();
+
+	public void write(OutputStream stream, NavMesh mesh, ByteOrder order) throws IOException {
+		List<MeshTile> tiles = mesh.getTilesInLookupOrder();
+		byte[][] blocks = new byte[tiles.size()][];
+		for (int i = 0; i < tiles.size(); i++) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			writer.write(baos, tiles.get(i).data, order, false);
+			writeLinks(baos, tiles.get(i), order);
+			blocks[i] = baos.toByteArray();
+		}
+
+		write(stream, SNAPSHOT_MAGIC, order);
+		write(stream, SNAPSHOT_VERSION, order);
+		paramWriter.write(stream, mesh.getParams(), order);
+		write(stream, mesh.getMaxVertsPerPoly(), order);
+		write(stream, mesh.getTileCount(), order);
+		for (int i = 0; i < mesh.getMaxTiles(); i++) {
+			write(stream, mesh.getTile(i).salt, order);
+		}
+		int nfree = 0;
+		for (MeshTile tile = mesh.m_nextFree; tile != null; tile = tile.next) {
+			nfree++;
+		}
+		write(stream, nfree, order);
+		for (MeshTile tile = mesh.m_nextFree; tile != null; tile = tile.next) {
+			write(stream, tile.index, order);
+		}
+		write(stream, tiles.size(), order);
+		for (int i = 0; i < tiles.size(); i++) {
+			write(stream, tiles.get(i).index, order);
+			write(stream, tiles.get(i).flags, order);
+			write(stream, blocks[i].length, order);
+		}
+		for (byte[] block : blocks) {
+			stream.write(block);
+		}
+	}
+
+	private void writeLinks(OutputStream stream, MeshTile tile, ByteOrder order) throws IOException {
+		write(stream, tile.linkCount, order);
+		write(stream, tile.linksFreeList, order);
+		for (int i = 0; i < tile.linkCount; i++) {
+			write(stream, tile.linkRefs[i], order);
+		}
+		for (int i = 0; i < tile.linkCount; i++) {
+			write(stream, tile.linkNext[i], order);
+		}
+		stream.write(tile.linkEdges, 0, tile.linkCount);
+		stream.write(tile.linkSides, 0, tile.linkCount);
+		stream.write(tile.linkBmins, 0, tile.linkCount);
+		stream.write(tile.linkBmaxs, 0, tile.linkCount);
+	}
+
+}
@@ -0,0 +1,335 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams the tiles of a {@link NavMeshTileSource} into a navigation mesh around a set of interest points, such as the
+ * positions of players.
+ *
+ * Each {@link #update(float[], int)} loads the tiles within the load range of the interest points. Tiles further away
+ * stay loaded while the number of resident tiles is within the residency budget; beyond it the tiles used least
+ * recently are removed. A tile counts as used when it is within the load range during an update or when
+ * {@link #touch(long)} is called for one of its polygons, e.g. after a query. Tiles within the prefetch range around
+ * the load range are decoded on a background thread ahead of time, so moving into them does not stall the update.
+ *
+ * Memory use follows the active area: the budget, or the tiles within the load range if those alone exceed it, plus
+ * the decoded tiles within the prefetch range. The navigation mesh must only be changed on the thread calling
+ * update(); only the tile decoding runs in the background. The tiles streamed in must not be removed by other code.
+ */
+public class NavMeshStreamer {
+
+	private final NavMesh m_nav;
+	private final NavMeshTileSource m_source;
+	private final int m_loadRange;
+	private final int m_prefetchRange;
+	private final int m_maxResidentTiles;
+	private final Executor m_executor;
+	private final ExecutorService m_ownedExecutor;
+	/// Per source tile: the reference in the navigation mesh (zero if not resident), the update it was last used in
+	/// and the update it was last required in.
+	private final long[] m_tileRefs;
+	private final long[] m_lastUse;
+	private final long[] m_required;
+	/// The resident source tiles and the position of each source tile in that list.
+	private final int[] m_resident;
+	private final int[] m_residentPos;
+	private int m_residentCount;
+	/// The source tile of each navigation mesh tile index, -1 if the tile was not streamed in.
+	private final int[] m_sourceTiles;
+	/// Tiles decoded in the background, or being decoded, which have not been added yet.
+	private final Map<Integer, CompletableFuture<MeshData>> m_prefetched = new HashMap<>();
+	private final long[] m_prefetchWanted;
+	private long m_clock;
+	private final float[] m_point = new float[3];
+	private final int[] m_tileLoc = new int[2];
+	private int[] m_cellTiles = new int[8];
+	private long[] m_evictKeys = new long[16];
+	private int m_loadCount;
+	private int m_prefetchHitCount;
+	private int m_evictionCount;
+
+	/**
+	 * Creates a streamer decoding prefetched tiles on its own background thread.
+	 *
+	 * @param nav
+	 *            The navigation mesh the tiles are added to. Its parameters must match the source.
+	 * @param source
+	 *            The tile source.
+	 * @param loadRange
+	 *            The number of tiles around the tile of an interest point that are loaded. [Limit: >= 0]
+	 * @param prefetchRange
+	 *            The number of tiles beyond the load range that are decoded in the background. [Limit: >= 0]
+	 * @param maxResidentTiles
+	 *            The residency budget in tiles. [Limit: > 0]
+	 */
+	public NavMeshStreamer(NavMesh nav, NavMeshTileSource source, int loadRange, int prefetchRange,
+			int maxResidentTiles) {
+		this(nav, source, loadRange, prefetchRange, maxResidentTiles, null, Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "navmesh-prefetch");
+			t.setDaemon(true);
+			return t;
+		}));
+	}
+
+	/**
+	 * Creates a streamer decoding prefetched tiles on the given executor. The executor is not shut down by
+	 * {@link #shutdown()}.
+	 *
+	 * @param executor
+	 *            The executor used for prefetching, or null to load the tiles on the calling thread only when they
+	 *            are needed.
+	 */
+	public NavMeshStreamer(NavMesh nav, NavMeshTileSource source, int loadRange, int prefetchRange,
+			int maxResidentTiles, Executor executor) {
+		this(nav, source, loadRange, prefetchRange, maxResidentTiles, executor, null);
+	}
+
+	private NavMeshStreamer(NavMesh nav, NavMeshTileSource source, int loadRange, int prefetchRange,
+			int maxResidentTiles, Executor executor, ExecutorService ownedExecutor) {
+		if (loadRange < 0 || prefetchRange < 0)
+			throw new IllegalArgumentException("Invalid range " + loadRange + ", " + prefetchRange);
+		if (maxResidentTiles <= 0)
+			throw new IllegalArgumentException("Invalid max resident tiles " + maxResidentTiles);
+		m_nav = nav;
+		m_source = source;
+		m_loadRange = loadRange;
+		m_prefetchRange = prefetchRange;
+		m_maxResidentTiles = maxResidentTiles;
+		m_ownedExecutor = ownedExecutor;
+		m_executor = ownedExecutor != null ? ownedExecutor : executor;
+		int tileCount = source.getTileCount();
+		m_tileRefs = new long[tileCount];
+		m_lastUse = new long[tileCount];
+		m_required = new long[tileCount];
+		m_prefetchWanted = new long[tileCount];
+		m_resident = new int[tileCount];
+		m_residentPos = new int[tileCount];
+		m_sourceTiles = new int[nav.getMaxTiles()];
+		Arrays.fill(m_sourceTiles, -1);
+	}
+
+	/**
+	 * Loads the tiles around the interest points, starts prefetching the tiles around those and evicts the least
+	 * recently used tiles beyond the residency budget.
+	 *
+	 * @param points
+	 *            The interest points. [(x, y, z) * npoints]
+	 * @param npoints
+	 *            The number of interest points.
+	 * @throws IOException
+	 *             If a tile could not be read. The tiles loaded so far stay resident.
+	 */
+	public void update(float[] points, int npoints) throws IOException {
+		m_clock++;
+		int prefetchRange = m_executor != null ? m_prefetchRange : 0;
+		// Load the required tiles of all points first so that they are not evicted for each other.
+		for (int pass = 0; pass < 2; pass++) {
+			int range = pass == 0 ? m_loadRange : m_loadRange + prefetchRange;
+			for (int p = 0; p < npoints; p++) {
+				m_point[0] = points[p * 3];
+				m_point[1] = points[p * 3 + 1];
+				m_point[2] = points[p * 3 + 2];
+				m_nav.calcTileLoc(m_point, m_tileLoc);
+				int px = m_tileLoc[0];
+				int py = m_tileLoc[1];
+				for (int y = py - range; y <= py + range; y++) {
+					for (int x = px - range; x <= px + range; x++) {
+						int n = findTilesAt(x, y);
+						for (int i = 0; i < n; i++) {
+							if (pass == 0)
+								require(m_cellTiles[i]);
+							else
+								prefetch(m_cellTiles[i]);
+						}
+					}
+				}
+			}
+		}
+
+		// Drop the prefetched tiles nobody is heading to anymore.
+		for (Iterator<Map.Entry<Integer, CompletableFuture<MeshData>>> it = m_prefetched.entrySet().iterator(); it
+				.hasNext();) {
+			Map.Entry<Integer, CompletableFuture<MeshData>> e = it.next();
+			if (m_prefetchWanted[e.getKey()] != m_clock) {
+				e.getValue().cancel(false);
+				it.remove();
+			}
+		}
+		evict();
+	}
+
+	private int findTilesAt(int x, int y) {
+		int n = m_source.findTilesAt(x, y, m_cellTiles, m_cellTiles.length);
+		if (n > m_cellTiles.length) {
+			m_cellTiles = new int[n];
+			n = m_source.findTilesAt(x, y, m_cellTiles, m_cellTiles.length);
+		}
+		return n;
+	}
+
+	private void require(int t) throws IOException {
+		m_required[t] = m_clock;
+		m_lastUse[t] = m_clock;
+		if (m_tileRefs[t] == 0)
+			loadTile(t);
+	}
+
+	private void prefetch(int t) {
+		m_prefetchWanted[t] = m_clock;
+		if (m_tileRefs[t] != 0 || m_prefetched.containsKey(t))
+			return;
+		m_prefetched.put(t, CompletableFuture.supplyAsync(() -> {
+			try {
+				return m_source.readTile(t);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, m_executor));
+	}
+
+	private void loadTile(int t) throws IOException {
+		MeshData data;
+		CompletableFuture<MeshData> future = m_prefetched.remove(t);
+		if (future != null) {
+			if (future.isDone() && !future.isCompletedExceptionally())
+				m_prefetchHitCount++;
+			try {
+				data = future.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException)
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				throw e;
+			}
+		} else {
+			data = m_source.readTile(t);
+		}
+		long ref = m_nav.addTile(data, 0, m_source.getTileRef(t));
+		m_tileRefs[t] = ref;
+		m_sourceTiles[NavMesh.decodePolyIdTile(ref)] = t;
+		m_residentPos[t] = m_residentCount;
+		m_resident[m_residentCount++] = t;
+		m_loadCount++;
+	}
+
+	private void unloadTile(int t) {
+		m_nav.removeTile(m_tileRefs[t]);
+		m_sourceTiles[NavMesh.decodePolyIdTile(m_tileRefs[t])] = -1;
+		m_tileRefs[t] = 0;
+		int last = m_resident[--m_residentCount];
+		m_resident[m_residentPos[t]] = last;
+		m_residentPos[last] = m_residentPos[t];
+	}
+
+	/** Removes the least recently used tiles that are not required until the budget is met. */
+	private void evict() {
+		int excess = m_residentCount - m_maxResidentTiles;
+		if (excess <= 0)
+			return;
+		if (m_evictKeys.length < m_residentCount)
+			m_evictKeys = new long[Math.max(m_residentCount, m_evictKeys.length * 2)];
+		int n = 0;
+		for (int i = 0; i < m_residentCount; i++) {
+			int t = m_resident[i];
+			if (m_required[t] != m_clock)
+				m_evictKeys[n++] = (Math.min(m_lastUse[t], Integer.MAX_VALUE) << 32) | t;
+		}
+		Arrays.sort(m_evictKeys, 0, n);
+		for (int i = 0; i < Math.min(n, excess); i++) {
+			unloadTile((int) m_evictKeys[i]);
+			m_evictionCount++;
+		}
+	}
+
+	/**
+	 * Marks the tile of the polygon as used now, so that it is evicted after the tiles which have not been used
+	 * since.
+	 */
+	public void touch(long ref) {
+		int it = NavMesh.decodePolyIdTile(ref);
+		if (it >= m_sourceTiles.length || m_sourceTiles[it] < 0)
+			return;
+		int t = m_sourceTiles[it];
+		if (NavMesh.decodePolyIdSalt(m_tileRefs[t]) == NavMesh.decodePolyIdSalt(ref))
+			m_lastUse[t] = m_clock;
+	}
+
+	/** Removes all streamed tiles and drops the prefetched ones. */
+	public void clear() {
+		for (CompletableFuture<MeshData> future : m_prefetched.values())
+			future.cancel(false);
+		m_prefetched.clear();
+		while (m_residentCount > 0)
+			unloadTile(m_resident[m_residentCount - 1]);
+	}
+
+	/** Drops the prefetched tiles and shuts down the background thread if the streamer created it. */
+	public void shutdown() {
+		for (CompletableFuture<MeshData> future : m_prefetched.values())
+			future.cancel(false);
+		m_prefetched.clear();
+		if (m_ownedExecutor != null)
+			m_ownedExecutor.shutdown();
+	}
+
+	public NavMesh getNavMesh() {
+		return m_nav;
+	}
+
+	/** Returns true if tile i of the source is in the navigation mesh. */
+	public boolean isResident(int i) {
+		return m_tileRefs[i] != 0;
+	}
+
+	/** The number of tiles in the navigation mesh. */
+	public int getResidentTileCount() {
+		return m_residentCount;
+	}
+
+	/** The number of tiles decoded in the background or being decoded which have not been added yet. */
+	public int getPrefetchedTileCount() {
+		return m_prefetched.size();
+	}
+
+	/** The number of tiles added so far. */
+	public int getLoadCount() {
+		return m_loadCount;
+	}
+
+	/** The number of added tiles which had been decoded in the background before they were needed. */
+	public int getPrefetchHitCount() {
+		return m_prefetchHitCount;
+	}
+
+	/** The number of tiles evicted so far. */
+	public int getEvictionCount() {
+		return m_evictionCount;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.io.IOException;
+
+/**
+ * A source of navigation mesh tiles for {@link NavMeshStreamer}, such as a navigation mesh set file.
+ *
+ * Tiles are identified by an index in [0, getTileCount()). {@link #readTile(int)} may be called from a background
+ * thread while the other methods are used by the streaming thread.
+ *
+ * @see org.recast4j.detour.io.MappedMeshSetReader
+ */
+public interface NavMeshTileSource {
+
+	/** The number of tiles in the source. */
+	int getTileCount();
+
+	/**
+	 * Finds the tiles at the given tile location.
+	 *
+	 * @param tiles
+	 *            Receives the indices of the tiles. [Size: maxTiles]
+	 * @return The number of tiles at the location. If this is larger than maxTiles, only maxTiles indices are written.
+	 */
+	int findTilesAt(int x, int y, int[] tiles, int maxTiles);
+
+	/** The reference the tile should be added with to keep its polygon references stable, or zero. */
+	long getTileRef(int i);
+
+	/** Decodes the tile. Must be thread-safe. */
+	MeshData readTile(int i) throws IOException;
+
+}
@@ -18,76 +18,160 @@ freely, subject to the following restrictions:
 */
 package org.recast4j.detour;
 
+import static org.recast4j.detour.DetourCommon.nextPow2;
+
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Bounded pool of search nodes.
+ *
+ * Nodes are looked up by (polygon reference, state) through hash buckets in the same way as dtNodePool. The lookup keys
+ * are kept in primitive arrays and the node records are recycled between searches, so once the pool has grown to the
+ * size required by the queries it no longer allocates.
+ *
+ * Node indices are 1-based, zero is used as the null index.
+ */
 public class NodePool {
 
-	Map<Long, List<Node>> m_map = new HashMap<>();
-	ArrayList<Node> m_nodes = new ArrayList<Node>();
+	/** The default maximum number of nodes of the main search pool. */
+	public static final int DT_DEFAULT_MAX_NODES = 65535;
+	/** The maximum number of nodes of the pool used by the small local searches. */
+	public static final int DT_TINY_MAX_NODES = 64;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int m_maxNodes;
+	private final int m_hashMask;
+	/** Index of the first node in each hash bucket. */
+	private final int[] m_first;
+	/** Index of the next node in the same hash bucket. [Size: capacity + 1] */
+	private int[] m_next;
+	/** Polygon reference of each node. [Size: capacity + 1] */
+	private long[] m_ids;
+	/** Extra state of each node. [Size: capacity + 1] */
+	private int[] m_states;
+	/** Node records, kept between searches. [Size: capacity + 1] */
+	private Node[] m_nodes;
+	private int m_nodeCount;
 
 	public NodePool() {
+		this(DT_DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * @param maxNodes
+	 *            The maximum number of nodes the pool can hold. [Limit: > 0]
+	 */
+	public NodePool(int maxNodes) {
+		if (maxNodes <= 0)
+			throw new IllegalArgumentException("Invalid max nodes " + maxNodes);
+		m_maxNodes = maxNodes;
+		int hashSize = Math.max(1, nextPow2(maxNodes / 4));
+		m_hashMask = hashSize - 1;
+		m_first = new int[hashSize];
+		allocate(Math.min(maxNodes, INITIAL_CAPACITY));
+	}
 
+	private void allocate(int capacity) {
+		m_next = m_next == null ? new int[capacity + 1] : Arrays.copyOf(m_next, capacity + 1);
+		m_ids = m_ids == null ? new long[capacity + 1] : Arrays.copyOf(m_ids, capacity + 1);
+		m_states = m_states == null ? new int[capacity + 1] : Arrays.copyOf(m_states, capacity + 1);
+		m_nodes = m_nodes == null ? new Node[capacity + 1] : Arrays.copyOf(m_nodes, capacity + 1);
+	}
+
+	static int hashRef(long a, int mask) {
+		a = (~a) + (a << 18);
+		a = a ^ (a >>> 31);
+		a = a * 21;
+		a = a ^ (a >>> 11);
+		a = a + (a << 6);
+		a = a ^ (a >>> 22);
+		return (int) a & mask;
 	}
 
 	public void clear() {
-		m_nodes.clear();
-		m_map.clear();
+		// Only the buckets touched by the last search need to be reset.
+		for (int i = 1; i <= m_nodeCount; i++) {
+			m_first[hashRef(m_ids[i], m_hashMask)] = 0;
+		}
+		m_nodeCount = 0;
 	}
 
 	List<Node> findNodes(long id) {
-		List<Node> nodes = m_map.get(id);
-		if (nodes == null) {
-			nodes = new ArrayList<>();
+		List<Node> nodes = new ArrayList<>();
+		int i = m_first[hashRef(id, m_hashMask)];
+		while (i != 0) {
+			if (m_ids[i] == id) {
+				nodes.add(m_nodes[i]);
+			}
+			i = m_next[i];
 		}
 		return nodes;
 	}
 
 	Node findNode(long id) {
-		List<Node> nodes = m_map.get(id);
-		if (nodes != null && !nodes.isEmpty()) {
-			return nodes.get(0);
+		int i = m_first[hashRef(id, m_hashMask)];
+		while (i != 0) {
+			if (m_ids[i] == id) {
+				return m_nodes[i];
+			}
+			i = m_next[i];
 		}
 		return null;
 	}
 
 	Node findNode(long id, int state) {
-		List<Node> nodes = m_map.get(id);
-		if (nodes != null) {
-			for (Node node : nodes) {
-				if (node.state == state) {
-					return node;
-				}
+		int i = m_first[hashRef(id, m_hashMask)];
+		while (i != 0) {
+			if (m_ids[i] == id && m_states[i] == state) {
+				return m_nodes[i];
 			}
+			i = m_next[i];
 		}
 		return null;
 	}
 
+	/**
+	 * Returns the node for the given polygon reference and state, creating it if it does not exist yet.
+	 *
+	 * @return The node, or null if the pool is out of nodes.
+	 */
 	Node getNode(long id, int state) {
-		List<Node> nodes = m_map.get(id);
-		if (nodes != null) {
-			for (Node node : nodes) {
-				if (node.state == state) {
-					return node;
-				}
+		int bucket = hashRef(id, m_hashMask);
+		int i = m_first[bucket];
+		while (i != 0) {
+			if (m_ids[i] == id && m_states[i] == state) {
+				return m_nodes[i];
 			}
+			i = m_next[i];
 		}
-		return create(id, state);
+		if (m_nodeCount >= m_maxNodes)
+			return null;
+		return create(id, state, bucket);
 	}
 
-	protected Node create(long id, int state) {
-		Node node = new Node(m_nodes.size() + 1);
+	private Node create(long id, int state, int bucket) {
+		int i = ++m_nodeCount;
+		if (i >= m_nodes.length) {
+			allocate(Math.min(m_maxNodes, (m_nodes.length - 1) * 2));
+		}
+		Node node = m_nodes[i];
+		if (node == null) {
+			node = new Node(i);
+			m_nodes[i] = node;
+		}
+		node.pidx = 0;
+		node.cost = 0;
+		node.total = 0;
 		node.id = id;
 		node.state = state;
-		m_nodes.add(node);
-		List<Node> nodes = m_map.get(id);
-		if (nodes == null) {
-			nodes = new ArrayList<>();
-			m_map.put(id, nodes);
-		}
-		nodes.add(node);
+		node.flags = 0;
+		m_ids[i] = id;
+		m_states[i] = state;
+		m_next[i] = m_first[bucket];
+		m_first[bucket] = i;
 		return node;
 	}
 
@@ -96,21 +180,19 @@ public class NodePool {
 	}
 
 	public Node getNodeAtIdx(int idx) {
-		return idx != 0 ? m_nodes.get(idx - 1) : null;
+		return idx != 0 ? m_nodes[idx] : null;
 	}
 
 	public int getNodeCount() {
-		return m_nodes.size();
+		return m_nodeCount;
+	}
+
+	public int getMaxNodes() {
+		return m_maxNodes;
 	}
 
 	public Node getNode(long ref) {
 		return getNode(ref, 0);
 	}
 
-	/*
-	
-	inline int getMaxNodes() const { return m_maxNodes; }
-	inline dtNodeIndex getFirst(int bucket) const { return m_first[bucket]; }
-	inline dtNodeIndex getNext(int i) const { return m_next[i]; }
-	*/
 }
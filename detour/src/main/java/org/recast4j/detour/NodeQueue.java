@@ -18,34 +18,118 @@ freely, subject to the following restrictions:
 */
 package org.recast4j.detour;
 
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
+/**
+ * Open list of the A* and Dijkstra searches.
+ *
+ * A binary min-heap of nodes ordered by the node total cost. The heap position of every queued node is tracked by
+ * {@link Node#index}, so {@link #modify(Node)} is a O(log n) decrease-key instead of a linear search. The nodes queued
+ * at the same time must have distinct indices, as the nodes of one {@link NodePool} have. The arrays are kept between
+ * searches.
+ */
 public class NodeQueue {
 
-	private final PriorityQueue<Node> m_heap = new PriorityQueue<>((n1, n2) -> Float.compare(n1.total, n2.total));
-	
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Nodes in heap order. */
+	private Node[] m_heap = new Node[INITIAL_CAPACITY];
+	/** Total cost of the node at the same heap position. */
+	private float[] m_keys = new float[INITIAL_CAPACITY];
+	/** Heap position + 1 of each node, indexed by node index. Zero if the node is not in the heap. */
+	private int[] m_positions = new int[INITIAL_CAPACITY + 1];
+	private int m_size;
+
 	public void clear() {
-		m_heap.clear();
+		for (int i = 0; i < m_size; i++) {
+			m_positions[m_heap[i].index] = 0;
+			m_heap[i] = null;
+		}
+		m_size = 0;
 	}
-	
+
 	public Node top() {
-		return m_heap.peek();
+		return m_size > 0 ? m_heap[0] : null;
 	}
 
 	public Node pop() {
-		return m_heap.poll();
+		if (m_size == 0)
+			return null;
+		Node result = m_heap[0];
+		m_positions[result.index] = 0;
+		m_size--;
+		if (m_size > 0) {
+			trickleDown(0, m_heap[m_size], m_keys[m_size]);
+		}
+		m_heap[m_size] = null;
+		return result;
 	}
-	
+
 	public void push(Node node) {
-		m_heap.offer(node);
+		int idx = node.index;
+		if (m_size == m_heap.length) {
+			m_heap = Arrays.copyOf(m_heap, m_size * 2);
+			m_keys = Arrays.copyOf(m_keys, m_size * 2);
+		}
+		if (idx >= m_positions.length) {
+			m_positions = Arrays.copyOf(m_positions, Math.max(idx + 1, m_positions.length * 2));
+		}
+		m_size++;
+		bubbleUp(m_size - 1, node, node.total);
 	}
 
+	/** Restores the heap order after the total cost of a queued node has been lowered. */
 	public void modify(Node node) {
-		m_heap.remove(node);
-		m_heap.offer(node);
+		int idx = node.index;
+		int pos = idx < m_positions.length ? m_positions[idx] - 1 : -1;
+		if (pos < 0) {
+			push(node);
+			return;
+		}
+		if (node.total <= m_keys[pos]) {
+			bubbleUp(pos, node, node.total);
+		} else {
+			trickleDown(pos, node, node.total);
+		}
 	}
 
 	public boolean isEmpty() {
-		return m_heap.isEmpty();
+		return m_size == 0;
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	private void bubbleUp(int i, Node node, float key) {
+		int parent = (i - 1) / 2;
+		while ((i > 0) && (m_keys[parent] > key)) {
+			set(i, m_heap[parent], m_keys[parent]);
+			i = parent;
+			parent = (i - 1) / 2;
+		}
+		set(i, node, key);
+	}
+
+	private void trickleDown(int i, Node node, float key) {
+		int child = (i * 2) + 1;
+		while (child < m_size) {
+			if (((child + 1) < m_size) && (m_keys[child] > m_keys[child + 1])) {
+				child++;
+			}
+			if (m_keys[child] >= key) {
+				break;
+			}
+			set(i, m_heap[child], m_keys[child]);
+			i = child;
+			child = (i * 2) + 1;
+		}
+		set(i, node, key);
+	}
+
+	private void set(int i, Node node, float key) {
+		m_heap[i] = node;
+		m_keys[i] = key;
+		m_positions[node.index] = i + 1;
 	}
 }
@@ -0,0 +1,181 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of polygon corridors in front of {@link NavMeshQuery#findPath}.
+ *
+ * Paths are keyed by start polygon, end polygon and filter instance. Only complete paths are cached. A cached path is
+ * validated on every hit: a polygon reference encodes the salt of its tile, which changes when the tile is removed or
+ * re-added, so a path is dropped exactly when a tile along it has changed. Changes to other tiles do not invalidate
+ * cached paths, even if they would open a shorter route.
+ *
+ * The cache is thread-safe and can be shared by queries running on different threads.
+ */
+public class PathCache {
+
+	private static class Key {
+		final long startRef;
+		final long endRef;
+		final QueryFilter filter;
+
+		Key(long startRef, long endRef, QueryFilter filter) {
+			this.startRef = startRef;
+			this.endRef = endRef;
+			this.filter = filter;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = Long.hashCode(startRef);
+			h = 31 * h + Long.hashCode(endRef);
+			return 31 * h + System.identityHashCode(filter);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return startRef == other.startRef && endRef == other.endRef && filter == other.filter;
+		}
+	}
+
+	private final NavMesh m_nav;
+	private final int m_capacity;
+	private final LinkedHashMap<Key, long[]> m_paths;
+	private long m_hitCount;
+	private long m_missCount;
+	private long m_evictionCount;
+	private long m_invalidationCount;
+
+	/**
+	 * @param nav
+	 *            The navigation mesh of the cached paths.
+	 * @param capacity
+	 *            The maximum number of cached paths. [Limit: > 0]
+	 */
+	public PathCache(NavMesh nav, int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		m_nav = nav;
+		m_capacity = capacity;
+		m_paths = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+				if (size() > m_capacity) {
+					m_evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached path, or finds the path with the query and caches it if it is complete.
+	 *
+	 * @see NavMeshQuery#findPath(long, long, float[], float[], QueryFilter)
+	 */
+	public FindPathResult findPath(NavMeshQuery query, long startRef, long endRef, float[] startPos, float[] endPos,
+			QueryFilter filter) {
+		if (query.getAttachedNavMesh() != m_nav)
+			throw new IllegalArgumentException("Query does not use the navigation mesh of the cache");
+		Key key = new Key(startRef, endRef, filter);
+		long[] cached = get(key);
+		if (cached != null) {
+			List<Long> refs = new ArrayList<>(cached.length);
+			for (long ref : cached) {
+				refs.add(ref);
+			}
+			return new FindPathResult(Status.SUCCSESS, refs);
+		}
+		FindPathResult result = query.findPath(startRef, endRef, startPos, endPos, filter);
+		if (result.getStatus() == Status.SUCCSESS) {
+			List<Long> refs = result.getRefs();
+			long[] path = new long[refs.size()];
+			for (int i = 0; i < path.length; i++) {
+				path[i] = refs.get(i);
+			}
+			put(key, path);
+		}
+		return result;
+	}
+
+	private synchronized long[] get(Key key) {
+		long[] path = m_paths.get(key);
+		if (path == null) {
+			m_missCount++;
+			return null;
+		}
+		for (long ref : path) {
+			if (!m_nav.isValidPolyRef(ref)) {
+				m_paths.remove(key);
+				m_invalidationCount++;
+				m_missCount++;
+				return null;
+			}
+		}
+		m_hitCount++;
+		return path;
+	}
+
+	private synchronized void put(Key key, long[] path) {
+		m_paths.put(key, path);
+	}
+
+	/** Removes all cached paths. The counters are kept. */
+	public synchronized void clear() {
+		m_paths.clear();
+	}
+
+	public synchronized int size() {
+		return m_paths.size();
+	}
+
+	public int getCapacity() {
+		return m_capacity;
+	}
+
+	/** The number of lookups answered from the cache. */
+	public synchronized long getHitCount() {
+		return m_hitCount;
+	}
+
+	/** The number of lookups that had to run a path query, including invalidated entries. */
+	public synchronized long getMissCount() {
+		return m_missCount;
+	}
+
+	/** The number of paths dropped to keep the cache within its capacity. */
+	public synchronized long getEvictionCount() {
+		return m_evictionCount;
+	}
+
+	/** The number of paths dropped because a tile along the path has changed. */
+	public synchronized long getInvalidationCount() {
+		return m_invalidationCount;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+/**
+ * Estimates the remaining cost of a path search.
+ *
+ * NavMeshQuery uses the larger of this estimate and the scaled straight line distance, so an implementation only
+ * needs to be better than the straight line distance where it has information.
+ *
+ * @see NavMeshQuery#setHeuristic(PathHeuristic)
+ */
+public interface PathHeuristic {
+
+	/**
+	 * Returns the estimated cost from a search node to the end of the path. The estimate should not exceed the real
+	 * cost, otherwise the search may return longer paths.
+	 *
+	 * @param ref
+	 *            The polygon of the search node.
+	 * @param pos
+	 *            The position of the search node. [(x, y, z)]
+	 * @param endRef
+	 *            The end polygon of the search.
+	 * @param endPos
+	 *            The end position of the search. [(x, y, z)]
+	 */
+	float getCost(long ref, float[] pos, long endRef, float[] endPos);
+
+	/**
+	 * Returns true if getCost() never exceeds the real remaining cost.
+	 *
+	 * The bidirectional search and findPathToNearestGoal() stop as soon as no open node can lead to a cheaper path,
+	 * which only holds for admissible estimates. They ignore a heuristic that returns false here and use the straight
+	 * line distance instead.
+	 */
+	default boolean isAdmissible() {
+		return true;
+	}
+}
@@ -1,5 +1,4 @@
 /*
-Copyright (c) 2009-2010 Mikko Mononen memon@inside.org
 Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
 
 This software is provided 'as-is', without any express or implied
@@ -19,23 +18,21 @@ freely, subject to the following restrictions:
 package org.recast4j.detour;
 
 /**
- * Defines a link between polygons.
- * 
- * @note This structure is rarely if ever used by the end user.
- * @see MeshTile
+ * Receives the polygons found by {@link NavMeshQuery#queryPolygons(float[], float[], QueryFilter, PolyQuery)}.
+ *
+ * The polygons are streamed out of the tile BV-tree traversal, so no result collection is built.
  */
-public class Link {
-	/** Neighbour reference. (The neighbor that is linked to.) */
-	long ref;
-	/** Index of the next link. */
-	int next;
-	/** Index of the polygon edge that owns this link. */
-	int edge;
-	/** If a boundary link, defines on which side the link is. */
-	int side;
-	/** If a boundary link, defines the minimum sub-edge area. */
-	int bmin;
-	/** If a boundary link, defines the maximum sub-edge area. */
-	int bmax;
+public interface PolyQuery {
 
+	/**
+	 * Called for each polygon which overlaps the query box and passes the filter.
+	 *
+	 * @param tile
+	 *            The tile containing the polygon.
+	 * @param poly
+	 *            The polygon.
+	 * @param ref
+	 *            The reference id of the polygon.
+	 */
+	void process(MeshTile tile, Poly poly, long ref);
 }
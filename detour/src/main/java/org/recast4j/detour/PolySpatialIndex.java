@@ -0,0 +1,282 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+/**
+ * Mesh wide spatial index for nearest polygon lookups that are not limited to a search box.
+ *
+ * The index uses the tile grid of the navigation mesh as a uniform grid and keeps the bounds of every ground polygon
+ * per tile. A query visits the grid in rings of growing distance around the query point and stops as soon as the ring
+ * is farther away than the k-th best polygon found so far, or than the search radius. Inside a tile, polygons are
+ * rejected by their bounds before the exact closest point is computed. This finds polygons far away from the query
+ * point without retrying findNearestPoly() with growing extents.
+ *
+ * The polygon bounds of a tile are computed on first use and recomputed when the tile salt changes, so replaced tiles
+ * are picked up automatically. The extent of the grid is taken from the tiles present when the index is created; after
+ * adding tiles outside of it call {@link #updateTilesAt(int, int)}.
+ *
+ * The index keeps scratch buffers and must not be used by more than one thread at a time.
+ */
+public class PolySpatialIndex {
+
+	private final NavMesh m_nav;
+	private final NavMeshQuery m_query;
+	private final float m_tileWidth;
+	private final float m_tileHeight;
+	/** Polygon bounds (bmin, bmax) indexed by tile index and polygon index. Empty boxes for off-mesh connections. */
+	private final float[][] m_polyBounds;
+	/** Salt of each tile when its bounds were computed. */
+	private final int[] m_salts;
+	private int m_minX = Integer.MAX_VALUE;
+	private int m_minY = Integer.MAX_VALUE;
+	private int m_maxX = Integer.MIN_VALUE;
+	private int m_maxY = Integer.MIN_VALUE;
+	private final int[] m_tileLoc = new int[2];
+	private MeshTile[] m_tiles = new MeshTile[32];
+	private final float[] m_closest = new float[3];
+	private long[] m_refs = new long[1];
+	private float[] m_points = new float[3];
+	private float[] m_distancesSqr = new float[1];
+
+	public PolySpatialIndex(NavMesh nav) {
+		m_nav = nav;
+		m_query = new NavMeshQuery(nav, NodePool.DT_TINY_MAX_NODES);
+		m_tileWidth = nav.getParams().tileWidth;
+		m_tileHeight = nav.getParams().tileHeight;
+		m_polyBounds = new float[nav.getMaxTiles()][];
+		m_salts = new int[nav.getMaxTiles()];
+		for (int i = 0; i < nav.getMaxTiles(); i++) {
+			MeshTile tile = nav.getTile(i);
+			if (tile.data != null && tile.data.header != null) {
+				extendGrid(tile.data.header.x, tile.data.header.y);
+			}
+		}
+	}
+
+	/**
+	 * Updates the index after tiles have been added or removed at the given tile location.
+	 */
+	public void updateTilesAt(int x, int y) {
+		extendGrid(x, y);
+		int n = getTilesAt(x, y);
+		for (int i = 0; i < n; i++) {
+			getPolyBounds(m_tiles[i]);
+			m_tiles[i] = null;
+		}
+	}
+
+	private void extendGrid(int x, int y) {
+		m_minX = Math.min(m_minX, x);
+		m_minY = Math.min(m_minY, y);
+		m_maxX = Math.max(m_maxX, x);
+		m_maxY = Math.max(m_maxY, y);
+	}
+
+	/**
+	 * Finds the polygon nearest to the given position.
+	 *
+	 * @param pos
+	 *            The query position. [(x, y, z)]
+	 * @param maxDistance
+	 *            The search radius, Float.POSITIVE_INFINITY for no limit.
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param nearestPt
+	 *            Receives the nearest point on the polygon. Left unchanged if no polygon is found. [(x, y, z)]
+	 * @return The reference id of the nearest polygon, or zero if there is no polygon within the radius.
+	 */
+	public long findNearestPoly(float[] pos, float maxDistance, QueryFilter filter, float[] nearestPt) {
+		if (findNearestPolys(pos, 1, maxDistance, filter, m_refs, m_points, null) == 0)
+			return 0;
+		System.arraycopy(m_points, 0, nearestPt, 0, 3);
+		return m_refs[0];
+	}
+
+	/**
+	 * Finds the k polygons nearest to the given position, ordered by distance.
+	 *
+	 * The distance is the 3D distance between the position and the closest point on the polygon, including the height
+	 * detail. Off-mesh connections are not returned.
+	 *
+	 * @param pos
+	 *            The query position. [(x, y, z)]
+	 * @param k
+	 *            The maximum number of polygons to return. [Limit: > 0]
+	 * @param maxDistance
+	 *            The search radius, Float.POSITIVE_INFINITY for no limit.
+	 * @param filter
+	 *            The polygon filter to apply to the query.
+	 * @param refs
+	 *            Receives the polygon references. [k]
+	 * @param nearestPts
+	 *            Receives the closest point on each polygon. [(x, y, z) * k]
+	 * @param distances
+	 *            Receives the distance to each polygon. [opt] [k]
+	 * @return The number of polygons found.
+	 */
+	public int findNearestPolys(float[] pos, int k, float maxDistance, QueryFilter filter, long[] refs,
+			float[] nearestPts, float[] distances) {
+		if (k <= 0)
+			throw new IllegalArgumentException("Invalid k " + k);
+		if (m_distancesSqr.length < k)
+			m_distancesSqr = new float[k];
+		if (m_minX > m_maxX)
+			return 0;
+		float limitSqr = maxDistance * maxDistance;
+		int count = 0;
+		m_nav.calcTileLoc(pos, m_tileLoc);
+		int cx = m_tileLoc[0];
+		int cy = m_tileLoc[1];
+		int maxRing = Math.max(Math.max(cx - m_minX, m_maxX - cx), Math.max(cy - m_minY, m_maxY - cy));
+		for (int r = 0; r <= maxRing; r++) {
+			// All cells of ring r lie outside the square of cells within r - 1 of the center cell.
+			float bound = ringDistance(pos, cx, cy, r);
+			float worstSqr = count == k ? Math.min(limitSqr, m_distancesSqr[k - 1]) : limitSqr;
+			if (bound * bound > worstSqr)
+				break;
+			for (int y = cy - r; y <= cy + r; y++) {
+				if (y < m_minY || y > m_maxY)
+					continue;
+				int step = (y == cy - r || y == cy + r) ? 1 : Math.max(1, 2 * r);
+				for (int x = cx - r; x <= cx + r; x += step) {
+					if (x < m_minX || x > m_maxX)
+						continue;
+					int n = getTilesAt(x, y);
+					for (int i = 0; i < n; i++) {
+						count = searchTile(m_tiles[i], pos, k, count, limitSqr, filter, refs, nearestPts);
+						m_tiles[i] = null;
+					}
+				}
+			}
+		}
+		if (distances != null) {
+			for (int i = 0; i < count; i++)
+				distances[i] = (float) Math.sqrt(m_distancesSqr[i]);
+		}
+		return count;
+	}
+
+	private int searchTile(MeshTile tile, float[] pos, int k, int count, float limitSqr, QueryFilter filter,
+			long[] refs, float[] nearestPts) {
+		float worstSqr = count == k ? Math.min(limitSqr, m_distancesSqr[k - 1]) : limitSqr;
+		if (boxDistanceSqr(pos, tile.data.header.bmin, 0, tile.data.header.bmax, 0) > worstSqr)
+			return count;
+		float[] bounds = getPolyBounds(tile);
+		long base = m_nav.getPolyRefBase(tile);
+		for (int i = 0; i < tile.data.header.polyCount; i++) {
+			Poly poly = tile.data.polys[i];
+			if (poly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+				continue;
+			if (boxDistanceSqr(pos, bounds, i * 6, bounds, i * 6 + 3) > worstSqr)
+				continue;
+			long ref = base | i;
+			if (!filter.passFilter(ref, tile, poly))
+				continue;
+			m_query.closestPointOnPoly(tile, poly, pos, m_closest);
+			float dx = m_closest[0] - pos[0];
+			float dy = m_closest[1] - pos[1];
+			float dz = m_closest[2] - pos[2];
+			float d = dx * dx + dy * dy + dz * dz;
+			if (d > worstSqr)
+				continue;
+			// Insert sorted by distance.
+			int j = count < k ? count++ : k - 1;
+			while (j > 0 && m_distancesSqr[j - 1] > d) {
+				m_distancesSqr[j] = m_distancesSqr[j - 1];
+				refs[j] = refs[j - 1];
+				System.arraycopy(nearestPts, (j - 1) * 3, nearestPts, j * 3, 3);
+				j--;
+			}
+			m_distancesSqr[j] = d;
+			refs[j] = ref;
+			System.arraycopy(m_closest, 0, nearestPts, j * 3, 3);
+			worstSqr = count == k ? Math.min(limitSqr, m_distancesSqr[k - 1]) : limitSqr;
+		}
+		return count;
+	}
+
+	/** Returns the polygon bounds of the tile, computing them if the tile is new or has been replaced. */
+	private float[] getPolyBounds(MeshTile tile) {
+		float[] bounds = m_polyBounds[tile.index];
+		if (bounds != null && m_salts[tile.index] == tile.salt && bounds.length == tile.data.header.polyCount * 6)
+			return bounds;
+		MeshData data = tile.data;
+		bounds = new float[data.header.polyCount * 6];
+		for (int i = 0; i < data.header.polyCount; i++) {
+			Poly p = data.polys[i];
+			int b = i * 6;
+			if (p.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+				continue; // Never searched.
+			System.arraycopy(data.verts, p.verts[0] * 3, bounds, b, 3);
+			System.arraycopy(data.verts, p.verts[0] * 3, bounds, b + 3, 3);
+			for (int v = 1; v < p.vertCount; v++) {
+				int vi = p.verts[v] * 3;
+				for (int j = 0; j < 3; j++) {
+					bounds[b + j] = Math.min(bounds[b + j], data.verts[vi + j]);
+					bounds[b + 3 + j] = Math.max(bounds[b + 3 + j], data.verts[vi + j]);
+				}
+			}
+			// The height detail can leave the polygon bounds vertically.
+			if (data.detailMeshes != null && data.detailMeshes.length > i) {
+				PolyDetail pd = data.detailMeshes[i];
+				for (int v = 0; v < pd.vertCount; v++) {
+					float y = data.detailVerts[(pd.vertBase + v) * 3 + 1];
+					bounds[b + 1] = Math.min(bounds[b + 1], y);
+					bounds[b + 4] = Math.max(bounds[b + 4], y);
+				}
+			}
+		}
+		m_polyBounds[tile.index] = bounds;
+		m_salts[tile.index] = tile.salt;
+		return bounds;
+	}
+
+	private int getTilesAt(int x, int y) {
+		int n = m_nav.getTilesAt(x, y, m_tiles, m_tiles.length);
+		if (n > m_tiles.length) {
+			m_tiles = new MeshTile[n];
+			n = m_nav.getTilesAt(x, y, m_tiles, m_tiles.length);
+		}
+		return n;
+	}
+
+	/** Lower bound of the horizontal distance from pos to any cell of ring r around the cell (cx, cy). */
+	private float ringDistance(float[] pos, int cx, int cy, int r) {
+		if (r == 0)
+			return 0;
+		float[] orig = m_nav.getParams().orig;
+		float minx = orig[0] + (cx - r + 1) * m_tileWidth;
+		float maxx = orig[0] + (cx + r) * m_tileWidth;
+		float minz = orig[2] + (cy - r + 1) * m_tileHeight;
+		float maxz = orig[2] + (cy + r) * m_tileHeight;
+		return Math.max(0, Math.min(Math.min(pos[0] - minx, maxx - pos[0]), Math.min(pos[2] - minz, maxz - pos[2])));
+	}
+
+	private static float boxDistanceSqr(float[] pos, float[] bmin, int mi, float[] bmax, int ma) {
+		float d = 0;
+		for (int j = 0; j < 3; j++) {
+			float v = pos[j];
+			if (v < bmin[mi + j]) {
+				d += (bmin[mi + j] - v) * (bmin[mi + j] - v);
+			} else if (v > bmax[ma + j]) {
+				d += (v - bmax[ma + j]) * (v - bmax[ma + j]);
+			}
+		}
+		return d;
+	}
+}
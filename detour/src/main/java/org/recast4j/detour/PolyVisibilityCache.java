@@ -0,0 +1,299 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Memory bounded cache of polygon to polygon visibility built on
+ * {@link NavMeshQuery#raycast(long, float[], float[], QueryFilter, int, long, RaycastHitBuffer)}.
+ *
+ * Polygon B is visible from polygon A if a ray cast from the center of A toward the center of B reaches B without
+ * hitting a wall. Results are stored in one block of bits per ordered pair of tiles, two bits per polygon pair (known
+ * and visible), so a cached answer costs a map lookup and a bit test. Unknown pairs fall back to a raycast and are
+ * stored. The least recently used blocks are evicted when the cache grows beyond its memory budget.
+ *
+ * Each block remembers the salts of the tiles the cached rays passed through and is dropped when one of them changes,
+ * so replaced or removed tiles invalidate the affected results automatically. Adding a tile does not change the salts
+ * of its neighbours but may open a wall a cached ray has hit; after adding tiles call
+ * {@link #invalidateTilesAt(int, int)}.
+ *
+ * The visibility is sampled between polygon centers and is meant for coarse checks such as perception. Use a raycast
+ * between the actual positions where exact results are needed. The cache keeps scratch buffers and must not be used
+ * by more than one thread at a time.
+ */
+public class PolyVisibilityCache {
+
+	private static final int MAX_RAY_PATH = 256;
+
+	private final NavMesh m_nav;
+	private final NavMeshQuery m_query;
+	private final QueryFilter m_filter;
+	private final long m_memoryBudget;
+	private long m_memoryUsage;
+	private final LinkedHashMap<Long, Block> m_blocks = new LinkedHashMap<>(16, 0.75f, true);
+	private final RaycastHitBuffer m_hit = new RaycastHitBuffer(MAX_RAY_PATH);
+	private final float[] m_startPos = new float[3];
+	private final float[] m_endPos = new float[3];
+	private MeshTile[] m_tiles = new MeshTile[32]; /// < Tiles of one grid cell, grown on demand.
+	private int m_hits;
+	private int m_misses;
+
+	/**
+	 * @param nav
+	 *            The navigation mesh.
+	 * @param filter
+	 *            The polygon filter applied to the raycasts.
+	 * @param memoryBudget
+	 *            The approximate maximum size of the cached data in bytes. [Limit: > 0]
+	 */
+	public PolyVisibilityCache(NavMesh nav, QueryFilter filter, long memoryBudget) {
+		if (memoryBudget <= 0)
+			throw new IllegalArgumentException("Invalid memory budget " + memoryBudget);
+		m_nav = nav;
+		m_query = new NavMeshQuery(nav, NodePool.DT_TINY_MAX_NODES);
+		m_filter = filter;
+		m_memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Returns true if polygon B is visible from polygon A, casting a ray if the pair is not cached.
+	 *
+	 * @param fromRef
+	 *            The reference id of polygon A.
+	 * @param toRef
+	 *            The reference id of polygon B.
+	 */
+	public boolean isVisible(long fromRef, long toRef) {
+		if (!m_nav.isValidPolyRef(fromRef) || !m_nav.isValidPolyRef(toRef))
+			throw new IllegalArgumentException("Invalid poly ref");
+		if (fromRef == toRef)
+			return true;
+		MeshTile fromTile = m_nav.getTile(NavMesh.decodePolyIdTile(fromRef));
+		MeshTile toTile = m_nav.getTile(NavMesh.decodePolyIdTile(toRef));
+		int bit = NavMesh.decodePolyIdPoly(fromRef) * toTile.data.header.polyCount + NavMesh.decodePolyIdPoly(toRef);
+		Block block = getBlock(fromTile, toTile);
+		if (block.isKnown(bit)) {
+			m_hits++;
+			return block.isVisible(bit);
+		}
+		m_misses++;
+		return castRay(block, bit, fromRef, fromTile, toRef, toTile);
+	}
+
+	/**
+	 * Computes and caches the visibility between all polygons of two tiles.
+	 */
+	public void precompute(MeshTile fromTile, MeshTile toTile) {
+		Block block = getBlock(fromTile, toTile);
+		long fromBase = m_nav.getPolyRefBase(fromTile);
+		long toBase = m_nav.getPolyRefBase(toTile);
+		int toCount = toTile.data.header.polyCount;
+		for (int i = 0; i < fromTile.data.header.polyCount; i++) {
+			if (fromTile.data.polys[i].getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+				continue;
+			for (int j = 0; j < toCount; j++) {
+				int bit = i * toCount + j;
+				if (fromTile == toTile && i == j || block.isKnown(bit))
+					continue;
+				if (toTile.data.polys[j].getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+					continue;
+				castRay(block, bit, fromBase | i, fromTile, toBase | j, toTile);
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached results that depend on the tiles at or next to the given tile location. Call after adding or
+	 * removing tiles there.
+	 */
+	public void invalidateTilesAt(int x, int y) {
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				int n = m_nav.getTilesAt(x + dx, y + dy, m_tiles, m_tiles.length);
+				if (n > m_tiles.length) {
+					m_tiles = new MeshTile[n];
+					n = m_nav.getTilesAt(x + dx, y + dy, m_tiles, m_tiles.length);
+				}
+				for (int i = 0; i < n; i++) {
+					invalidateTile(m_tiles[i].index);
+					m_tiles[i] = null;
+				}
+			}
+		}
+	}
+
+	private void invalidateTile(int tileIndex) {
+		for (Iterator<Block> it = m_blocks.values().iterator(); it.hasNext();) {
+			Block block = it.next();
+			if (block.dependsOn(tileIndex)) {
+				m_memoryUsage -= block.size();
+				it.remove();
+			}
+		}
+	}
+
+	/** Removes all cached results. */
+	public void clear() {
+		m_blocks.clear();
+		m_memoryUsage = 0;
+	}
+
+	/** The approximate size of the cached data in bytes. */
+	public long getMemoryUsage() {
+		return m_memoryUsage;
+	}
+
+	/** The number of queries answered from the cache. */
+	public int getHitCount() {
+		return m_hits;
+	}
+
+	/** The number of queries that needed a raycast. */
+	public int getMissCount() {
+		return m_misses;
+	}
+
+	private Block getBlock(MeshTile fromTile, MeshTile toTile) {
+		long key = (long) fromTile.index * m_nav.getMaxTiles() + toTile.index;
+		Block block = m_blocks.get(key);
+		if (block != null && !block.isValid()) {
+			m_blocks.remove(key);
+			m_memoryUsage -= block.size();
+			block = null;
+		}
+		if (block == null) {
+			block = new Block(fromTile.data.header.polyCount * toTile.data.header.polyCount);
+			block.addDependency(fromTile);
+			block.addDependency(toTile);
+			m_blocks.put(key, block);
+			m_memoryUsage += block.size();
+			evict(block);
+		}
+		return block;
+	}
+
+	/** Evicts the least recently used blocks, except the given one, until the cache fits its budget. */
+	private void evict(Block keep) {
+		for (Iterator<Block> it = m_blocks.values().iterator(); m_memoryUsage > m_memoryBudget && it.hasNext();) {
+			Block block = it.next();
+			if (block != keep) {
+				m_memoryUsage -= block.size();
+				it.remove();
+			}
+		}
+	}
+
+	private boolean castRay(Block block, int bit, long fromRef, MeshTile fromTile, long toRef, MeshTile toTile) {
+		getPolyCenter(m_startPos, fromTile, fromTile.data.polys[NavMesh.decodePolyIdPoly(fromRef)]);
+		getPolyCenter(m_endPos, toTile, toTile.data.polys[NavMesh.decodePolyIdPoly(toRef)]);
+		Status status = m_query.raycast(fromRef, m_startPos, m_endPos, m_filter, 0, 0, m_hit);
+		if (status != Status.SUCCSESS) {
+			// The ray passed through more polygons than recorded, its dependencies are unknown.
+			return m_hit.t == Float.MAX_VALUE;
+		}
+		boolean visible = m_hit.t == Float.MAX_VALUE && m_hit.path[m_hit.pathCount - 1] == toRef;
+		int size = block.size();
+		for (int i = 0; i < m_hit.pathCount; i++) {
+			block.addDependency(m_nav.getTile(NavMesh.decodePolyIdTile(m_hit.path[i])));
+		}
+		m_memoryUsage += block.size() - size;
+		block.set(bit, visible);
+		return visible;
+	}
+
+	private static void getPolyCenter(float[] center, MeshTile tile, Poly poly) {
+		center[0] = center[1] = center[2] = 0;
+		for (int i = 0; i < poly.vertCount; i++) {
+			int v = poly.verts[i] * 3;
+			center[0] += tile.data.verts[v];
+			center[1] += tile.data.verts[v + 1];
+			center[2] += tile.data.verts[v + 2];
+		}
+		center[0] /= poly.vertCount;
+		center[1] /= poly.vertCount;
+		center[2] /= poly.vertCount;
+	}
+
+	/** Visibility bits of one ordered tile pair and the salts of the tiles they depend on. */
+	private final class Block {
+		/** Known and visible bits, interleaved per polygon pair. */
+		private final long[] m_bits;
+		private int[] m_depTiles = new int[4];
+		private int[] m_depSalts = new int[4];
+		private int m_depCount;
+
+		Block(int pairCount) {
+			m_bits = new long[(pairCount * 2 + 63) >>> 6];
+		}
+
+		boolean isKnown(int bit) {
+			int b = bit * 2;
+			return (m_bits[b >>> 6] & (1L << b)) != 0;
+		}
+
+		boolean isVisible(int bit) {
+			int b = bit * 2 + 1;
+			return (m_bits[b >>> 6] & (1L << b)) != 0;
+		}
+
+		void set(int bit, boolean visible) {
+			int b = bit * 2;
+			m_bits[b >>> 6] |= 1L << b;
+			if (visible)
+				m_bits[b >>> 6] |= 1L << (b + 1);
+		}
+
+		void addDependency(MeshTile tile) {
+			if (dependsOn(tile.index))
+				return;
+			if (m_depCount == m_depTiles.length) {
+				m_depTiles = Arrays.copyOf(m_depTiles, m_depCount * 2);
+				m_depSalts = Arrays.copyOf(m_depSalts, m_depCount * 2);
+			}
+			m_depTiles[m_depCount] = tile.index;
+			m_depSalts[m_depCount] = tile.salt;
+			m_depCount++;
+		}
+
+		boolean dependsOn(int tileIndex) {
+			for (int i = 0; i < m_depCount; i++) {
+				if (m_depTiles[i] == tileIndex)
+					return true;
+			}
+			return false;
+		}
+
+		/** Returns false if one of the tiles the cached rays passed through has been replaced or removed. */
+		boolean isValid() {
+			for (int i = 0; i < m_depCount; i++) {
+				MeshTile tile = m_nav.getTile(m_depTiles[i]);
+				if (tile.salt != m_depSalts[i] || tile.data == null)
+					return false;
+			}
+			return true;
+		}
+
+		/** Approximate size in bytes. */
+		int size() {
+			return m_bits.length * 8 + m_depTiles.length * 8 + 64;
+		}
+	}
+}
@@ -28,4 +28,46 @@ class QueryData {
 	QueryFilter filter;
 	int options;
 	float raycastLimitSqr;
+	boolean outOfNodes;
+	/// Keys (parent node index, neighbour node index) of line of sight checks that hit a wall during an any-angle
+	/// search. Node positions do not change during a search, so the checks are not repeated. Open addressing, zero is
+	/// empty, created on the first blocked check.
+	private long[] losBlocked;
+	private int losBlockedCount;
+
+	boolean isLosBlocked(long key) {
+		if (losBlocked == null)
+			return false;
+		int mask = losBlocked.length - 1;
+		for (int i = losHash(key) & mask; losBlocked[i] != 0; i = (i + 1) & mask) {
+			if (losBlocked[i] == key)
+				return true;
+		}
+		return false;
+	}
+
+	void addLosBlocked(long key) {
+		if (losBlocked == null) {
+			losBlocked = new long[64];
+		} else if (losBlockedCount * 2 >= losBlocked.length) {
+			long[] keys = losBlocked;
+			losBlocked = new long[keys.length * 2];
+			losBlockedCount = 0;
+			for (long k : keys) {
+				if (k != 0)
+					addLosBlocked(k);
+			}
+		}
+		int mask = losBlocked.length - 1;
+		int i = losHash(key) & mask;
+		while (losBlocked[i] != 0)
+			i = (i + 1) & mask;
+		losBlocked[i] = key;
+		losBlockedCount++;
+	}
+
+	private static int losHash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+/**
+ * Reusable raycast result with a fixed capacity path. Filled by
+ * {@link NavMeshQuery#raycast(long, float[], float[], QueryFilter, int, long, RaycastHitBuffer)}.
+ */
+public class RaycastHitBuffer {
+	/** The hit parameter. (Float.MAX_VALUE if no wall hit.) */
+	public float t;
+	/** hitNormal The normal of the nearest wall hit. [(x, y, z)] */
+	public final float[] hitNormal = new float[3];
+	/** Visited polygons. [pathCount] */
+	public final long[] path;
+	/** The number of visited polygons stored in path. */
+	public int pathCount;
+	/** The cost of the path until hit. */
+	public float pathCost;
+	/** The index of the edge on the final polygon where the wall was hit. */
+	public int hitEdgeIndex;
+
+	/**
+	 * @param maxPath
+	 *            The maximum number of visited polygons stored. [Limit: >= 0]
+	 */
+	public RaycastHitBuffer(int maxPath) {
+		path = new long[maxPath];
+	}
+
+	/** Resets the result before a raycast. */
+	public void clear() {
+		t = 0;
+		hitNormal[0] = hitNormal[1] = hitNormal[2] = 0;
+		pathCount = 0;
+		pathCost = 0;
+		hitEdgeIndex = 0;
+	}
+}
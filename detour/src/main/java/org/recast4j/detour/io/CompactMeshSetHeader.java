@@ -0,0 +1,39 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour.io;
+
+import org.recast4j.detour.NavMeshParams;
+
+public class CompactMeshSetHeader {
+
+	static final int COMPACTSET_MAGIC = 'M' << 24 | 'S' << 16 | 'C' << 8 | 'P'; // 'MSCP';
+	static final int COMPACTSET_VERSION = 1;
+	/// Size of the header: magic, version, tile count, navmesh params, cs and ch.
+	static final int HEADER_SIZE = 3 * 4 + 7 * 4 + 2 * 4;
+	/// Size of a tile table entry: x, y, layer, tile ref, data offset, stored size, raw size and checksum.
+	static final int TILE_ENTRY_SIZE = 3 * 4 + 8 + 8 + 3 * 4;
+
+	int magic;
+	int version;
+	int numTiles;
+	NavMeshParams params = new NavMeshParams();
+	/// The grid the vertices were quantized to, zero if they are stored as floats.
+	float cs;
+	float ch;
+
+}
@@ -0,0 +1,288 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour.io;
+
+import static org.recast4j.detour.DetourCommon.nextPow2;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.recast4j.detour.MeshData;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.NavMeshParams;
+import org.recast4j.detour.NavMeshTileSource;
+
+/**
+ * Reads navigation mesh sets written by {@link CompactMeshSetWriter}.
+ *
+ * Only the header and the tile table are read when the set is opened. A tile is then read directly at its offset, so
+ * the cost of reading a tile does not depend on its position in the set. The checksums of the table and of each tile
+ * are verified when they are read. Tiles keep the references they were written with.
+ *
+ * The reader is a {@link NavMeshTileSource}, so the tiles can be streamed with a
+ * {@link org.recast4j.detour.NavMeshStreamer}. Tiles can be read from several threads.
+ */
+public class CompactMeshSetReader implements NavMeshTileSource, Closeable {
+
+	private final NavMeshParamReader paramReader = new NavMeshParamReader();
+	private final MeshDataReader meshReader = new MeshDataReader();
+	private final int m_maxVertPerPoly;
+	private final MeshDataCompressor m_compressor;
+	private final FileChannel m_channel;
+	private final ByteBuffer m_buffer;
+	private ByteOrder m_order;
+	private CompactMeshSetHeader m_header;
+	/// Per tile: the reference it was written with, the offset of its data, the stored and uncompressed size and the
+	/// checksum of the stored data.
+	private long[] m_tileRefs;
+	private long[] m_offsets;
+	private int[] m_storedSizes;
+	private int[] m_rawSizes;
+	private int[] m_checksums;
+	/// Per tile: the tile location (x, y, layer).
+	private int[] m_tileLocs;
+	/// Tiles by location, chained in m_cellNext. Zero is the end of a chain, tile i is stored as i + 1.
+	private int[] m_cellFirst;
+	private int[] m_cellNext;
+	private int m_cellMask;
+
+	/**
+	 * Opens a set file. The file stays open until {@link #close()}.
+	 *
+	 * @param maxVertPerPoly
+	 *            The maximum number of vertices per polygon of the set.
+	 * @param compressor
+	 *            The compressor the set was written with, null if the tiles are not compressed.
+	 */
+	public CompactMeshSetReader(File file, int maxVertPerPoly, MeshDataCompressor compressor) throws IOException {
+		m_maxVertPerPoly = maxVertPerPoly;
+		m_compressor = compressor;
+		m_buffer = null;
+		m_channel = new RandomAccessFile(file, "r").getChannel();
+		try {
+			readIndex();
+		} catch (IOException | RuntimeException e) {
+			m_channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a set which is in memory. The tiles are read from the buffer when requested, so it must not be changed
+	 * afterwards.
+	 */
+	public CompactMeshSetReader(ByteBuffer bb, int maxVertPerPoly, MeshDataCompressor compressor) throws IOException {
+		m_maxVertPerPoly = maxVertPerPoly;
+		m_compressor = compressor;
+		m_buffer = bb.slice();
+		m_channel = null;
+		readIndex();
+	}
+
+	private void readIndex() throws IOException {
+		ByteBuffer bb = read(0, CompactMeshSetHeader.HEADER_SIZE);
+		CompactMeshSetHeader header = new CompactMeshSetHeader();
+		header.magic = bb.getInt();
+		if (header.magic != CompactMeshSetHeader.COMPACTSET_MAGIC) {
+			header.magic = IOUtils.swapEndianness(header.magic);
+			if (header.magic != CompactMeshSetHeader.COMPACTSET_MAGIC) {
+				throw new IOException("Invalid magic");
+			}
+			bb.order(bb.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		}
+		m_order = bb.order();
+		header.version = bb.getInt();
+		if (header.version != CompactMeshSetHeader.COMPACTSET_VERSION) {
+			throw new IOException("Invalid version");
+		}
+		header.numTiles = bb.getInt();
+		header.params = paramReader.read(bb);
+		header.cs = bb.getFloat();
+		header.ch = bb.getFloat();
+		if (header.numTiles < 0 || header.numTiles > (Integer.MAX_VALUE - CompactMeshSetHeader.HEADER_SIZE - 4)
+				/ CompactMeshSetHeader.TILE_ENTRY_SIZE) {
+			throw new IOException("Invalid tile count " + header.numTiles);
+		}
+		m_header = header;
+
+		int n = header.numTiles;
+		ByteBuffer table = read(CompactMeshSetHeader.HEADER_SIZE, n * CompactMeshSetHeader.TILE_ENTRY_SIZE + 4);
+		CRC32 crc = new CRC32();
+		bb.rewind();
+		crc.update(bb);
+		table.limit(table.limit() - 4);
+		crc.update(table);
+		table.limit(table.limit() + 4);
+		table.position(0);
+		if ((int) crc.getValue() != table.getInt(n * CompactMeshSetHeader.TILE_ENTRY_SIZE)) {
+			throw new IOException("Checksum mismatch in tile table");
+		}
+		m_tileRefs = new long[n];
+		m_offsets = new long[n];
+		m_storedSizes = new int[n];
+		m_rawSizes = new int[n];
+		m_checksums = new int[n];
+		m_tileLocs = new int[n * 3];
+		for (int i = 0; i < n; i++) {
+			m_tileLocs[i * 3] = table.getInt();
+			m_tileLocs[i * 3 + 1] = table.getInt();
+			m_tileLocs[i * 3 + 2] = table.getInt();
+			m_tileRefs[i] = table.getLong();
+			m_offsets[i] = table.getLong();
+			m_storedSizes[i] = table.getInt();
+			m_rawSizes[i] = table.getInt();
+			m_checksums[i] = table.getInt();
+		}
+		buildCellLookup();
+	}
+
+	/** Reads size bytes at the given position of the set into a buffer in the byte order of the set. */
+	private ByteBuffer read(long pos, int size) throws IOException {
+		ByteBuffer bb;
+		if (m_channel != null) {
+			bb = ByteBuffer.allocate(size);
+			while (bb.hasRemaining()) {
+				if (m_channel.read(bb, pos + bb.position()) < 0)
+					throw new IOException("Unexpected end of file");
+			}
+			bb.flip();
+		} else {
+			if (pos + size > m_buffer.capacity())
+				throw new IOException("Unexpected end of buffer");
+			bb = m_buffer.duplicate();
+			bb.position((int) pos);
+			bb.limit((int) pos + size);
+			bb = bb.slice();
+		}
+		return bb.order(m_order != null ? m_order : m_buffer != null ? m_buffer.order() : ByteOrder.BIG_ENDIAN);
+	}
+
+	private void buildCellLookup() {
+		int n = m_header.numTiles;
+		int size = nextPow2(Math.max(1, n));
+		m_cellMask = size - 1;
+		m_cellFirst = new int[size];
+		m_cellNext = new int[n];
+		for (int i = n - 1; i >= 0; i--) {
+			int h = NavMesh.computeTileHash(m_tileLocs[i * 3], m_tileLocs[i * 3 + 1], m_cellMask);
+			m_cellNext[i] = m_cellFirst[h];
+			m_cellFirst[h] = i + 1;
+		}
+	}
+
+	public NavMeshParams getParams() {
+		return m_header.params;
+	}
+
+	/** The number of tiles in the set. */
+	@Override
+	public int getTileCount() {
+		return m_header.numTiles;
+	}
+
+	/** The reference tile i was written with. */
+	@Override
+	public long getTileRef(int i) {
+		return m_tileRefs[i];
+	}
+
+	public int getTileX(int i) {
+		return m_tileLocs[i * 3];
+	}
+
+	public int getTileY(int i) {
+		return m_tileLocs[i * 3 + 1];
+	}
+
+	public int getTileLayer(int i) {
+		return m_tileLocs[i * 3 + 2];
+	}
+
+	/** Returns the index of the tile at the given location, or -1 if there is none. */
+	public int findTile(int x, int y, int layer) {
+		for (int i = m_cellFirst[NavMesh.computeTileHash(x, y, m_cellMask)]; i != 0; i = m_cellNext[i - 1]) {
+			int t = i - 1;
+			if (m_tileLocs[t * 3] == x && m_tileLocs[t * 3 + 1] == y && m_tileLocs[t * 3 + 2] == layer)
+				return t;
+		}
+		return -1;
+	}
+
+	@Override
+	public int findTilesAt(int x, int y, int[] tiles, int maxTiles) {
+		int n = 0;
+		for (int i = m_cellFirst[NavMesh.computeTileHash(x, y, m_cellMask)]; i != 0; i = m_cellNext[i - 1]) {
+			int t = i - 1;
+			if (m_tileLocs[t * 3] == x && m_tileLocs[t * 3 + 1] == y) {
+				if (n < maxTiles)
+					tiles[n] = t;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Reads and decodes tile i.
+	 *
+	 * @throws IOException
+	 *             If the tile can not be read, its checksum does not match or it is compressed and the reader has no
+	 *             compressor.
+	 */
+	@Override
+	public MeshData readTile(int i) throws IOException {
+		ByteBuffer bb = read(m_offsets[i], m_storedSizes[i]);
+		byte[] stored = new byte[m_storedSizes[i]];
+		bb.get(stored);
+		CRC32 crc = new CRC32();
+		crc.update(stored);
+		if ((int) crc.getValue() != m_checksums[i])
+			throw new IOException("Checksum mismatch in tile " + i);
+		byte[] raw = stored;
+		if (m_storedSizes[i] != m_rawSizes[i]) {
+			if (m_compressor == null)
+				throw new IOException("Tile " + i + " is compressed");
+			raw = m_compressor.decompress(stored, 0, stored.length, m_rawSizes[i]);
+		}
+		return meshReader.read(ByteBuffer.wrap(raw).order(m_order), m_maxVertPerPoly, false, m_header.cs,
+				m_header.ch);
+	}
+
+	/** Creates a navigation mesh with the parameters of the set and adds all tiles to it. */
+	public NavMesh readNavMesh() throws IOException {
+		NavMesh mesh = new NavMesh(m_header.params, m_maxVertPerPoly);
+		for (int i = 0; i < m_header.numTiles; i++) {
+			mesh.addTile(readTile(i), 0, m_tileRefs[i]);
+		}
+		return mesh;
+	}
+
+	/** Closes the file of the set. Tiles can not be read afterwards. */
+	@Override
+	public void close() throws IOException {
+		if (m_channel != null)
+			m_channel.close();
+	}
+
+}
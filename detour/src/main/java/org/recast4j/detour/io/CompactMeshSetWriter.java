@@ -0,0 +1,119 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.recast4j.detour.MeshHeader;
+import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
+
+/**
+ * Writes navigation mesh sets in the compact format read by {@link CompactMeshSetReader}.
+ *
+ * Unlike {@link MeshSetWriter}, the set starts with a table of the location, reference, offset, size and checksum of
+ * every tile, so any tile can be read without reading the tiles before it. Tiles can be compressed individually and
+ * their vertices can be stored as 16 bit cell coordinates.
+ */
+public class CompactMeshSetWriter extends DetourWriter {
+
+	private final MeshDataWriter writer = new MeshDataWriter();
+	private final NavMeshParamWriter paramWriter = new NavMeshParamWriter();
+
+	/** Writes the tiles uncompressed with float vertices. */
+	public void write(OutputStream stream, NavMesh mesh, ByteOrder order) throws IOException {
+		write(stream, mesh, order, null, 0, 0);
+	}
+
+	/**
+	 * @param compressor
+	 *            The compressor of the tile data, or null to store the tiles uncompressed. A tile that does not get
+	 *            smaller is stored uncompressed. The reader must be given a compatible compressor.
+	 * @param cs
+	 *            The cell size the mesh was built with, or zero to store the vertices as floats.
+	 * @param ch
+	 *            The cell height the mesh was built with. The vertex arrays of a tile which are all on the (cs, ch, cs)
+	 *            grid relative to the tile bounds are stored as cell coordinates. This is lossless, other vertex arrays,
+	 *            typically some of the detail meshes, are stored as floats.
+	 */
+	public void write(OutputStream stream, NavMesh mesh, ByteOrder order, MeshDataCompressor compressor, float cs,
+			float ch) throws IOException {
+		if (cs < 0 || ch < 0 || (cs > 0 && ch == 0))
+			throw new IllegalArgumentException("Invalid grid " + cs + ", " + ch);
+		List<MeshTile> tiles = new ArrayList<>();
+		for (int i = 0; i < mesh.getMaxTiles(); ++i) {
+			MeshTile tile = mesh.getTile(i);
+			if (tile == null || tile.data == null || tile.data.header == null)
+				continue;
+			tiles.add(tile);
+		}
+
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		write(index, CompactMeshSetHeader.COMPACTSET_MAGIC, order);
+		write(index, CompactMeshSetHeader.COMPACTSET_VERSION, order);
+		write(index, tiles.size(), order);
+		paramWriter.write(index, mesh.getParams(), order);
+		write(index, cs, order);
+		write(index, ch, order);
+
+		// Store the tile table, followed by the checksum of the header and the table, and the tiles.
+		byte[][] tileData = new byte[tiles.size()][];
+		long offset = CompactMeshSetHeader.HEADER_SIZE + tiles.size() * CompactMeshSetHeader.TILE_ENTRY_SIZE + 4;
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < tiles.size(); i++) {
+			MeshTile tile = tiles.get(i);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			writer.write(baos, tile.data, order, false, cs, ch);
+			byte[] raw = baos.toByteArray();
+			byte[] stored = raw;
+			if (compressor != null) {
+				byte[] compressed = compressor.compress(raw);
+				if (compressed.length < raw.length)
+					stored = compressed;
+			}
+			tileData[i] = stored;
+			crc.reset();
+			crc.update(stored);
+			MeshHeader header = tile.data.header;
+			write(index, header.x, order);
+			write(index, header.y, order);
+			write(index, header.layer, order);
+			write(index, mesh.getTileRef(tile), order);
+			write(index, offset, order);
+			write(index, stored.length, order);
+			write(index, raw.length, order);
+			write(index, (int) crc.getValue(), order);
+			offset += stored.length;
+		}
+		byte[] ba = index.toByteArray();
+		crc.reset();
+		crc.update(ba);
+		stream.write(ba);
+		write(stream, (int) crc.getValue(), order);
+		for (byte[] data : tileData) {
+			stream.write(data);
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour.io;
+
+import static org.recast4j.detour.DetourCommon.nextPow2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.recast4j.detour.MeshData;
+import org.recast4j.detour.MeshHeader;
+import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.NavMeshTileSource;
+
+/**
+ * Lazy loader of the navigation mesh sets read by {@link MeshSetReader}.
+ *
+ * The file is memory-mapped and only the set header and the position and location of each tile are read up front. A
+ * tile is decoded and added to the navigation mesh when it is requested by index, by tile location or by bounds, so
+ * opening a set does not depend on the size of its tiles and tiles that are never requested take no heap. Loaded tiles
+ * keep the references they had when the set was written, so a polygon reference is the same whether the set was
+ * loaded eagerly or lazily.
+ *
+ * Files larger than 2 GB are mapped in several windows. Tile data is copied out of the mapping when a tile is loaded,
+ * the mapping itself is released by the garbage collector.
+ *
+ * The reader is also a {@link NavMeshTileSource}, so the tiles can be streamed into a different navigation mesh by a
+ * {@link org.recast4j.detour.NavMeshStreamer}.
+ */
+public class MappedMeshSetReader implements NavMeshTileSource {
+
+	private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+	private final MeshSetReader setReader = new MeshSetReader();
+	private final MeshDataReader meshReader = new MeshDataReader();
+	private final NavMesh m_mesh;
+	private final boolean m_is32Bit;
+	private ByteBuffer[] m_windows = new ByteBuffer[1];
+	private int m_windowCount;
+	private int m_tileCount;
+	/// Per tile: the reference it was written with, the mapping window and the offset of its data in the window.
+	private long[] m_tileRefs;
+	private int[] m_tileWindows;
+	private int[] m_tileOffsets;
+	/// Per tile: the tile location (x, y, layer).
+	private int[] m_tileLocs;
+	/// Tiles by location, chained in m_cellNext. Zero is the end of a chain, tile i is stored as i + 1.
+	private int[] m_cellFirst;
+	private int[] m_cellNext;
+	private int m_cellMask;
+	private final int[] m_tileLoc = new int[2];
+
+	/**
+	 * Opens a set with 64 bit polygon references.
+	 *
+	 * @param maxVertPerPoly
+	 *            The maximum number of vertices per polygon of the set.
+	 */
+	public MappedMeshSetReader(File file, int maxVertPerPoly) throws IOException {
+		this(file, maxVertPerPoly, false, MAX_WINDOW);
+	}
+
+	/**
+	 * @param is32Bit
+	 *            True if the set was written with 32 bit polygon references.
+	 */
+	public MappedMeshSetReader(File file, int maxVertPerPoly, boolean is32Bit) throws IOException {
+		this(file, maxVertPerPoly, is32Bit, MAX_WINDOW);
+	}
+
+	MappedMeshSetReader(File file, int maxVertPerPoly, boolean is32Bit, long maxWindow) throws IOException {
+		m_is32Bit = is32Bit;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			m_mesh = index(channel, null, maxVertPerPoly, maxWindow);
+		}
+	}
+
+	/**
+	 * Indexes a set which is already in memory. The tiles are decoded from the buffer when they are loaded, so the
+	 * buffer must not be changed afterwards.
+	 */
+	public MappedMeshSetReader(ByteBuffer bb, int maxVertPerPoly, boolean is32Bit) throws IOException {
+		m_is32Bit = is32Bit;
+		m_mesh = index(null, bb.slice().order(bb.order()), maxVertPerPoly, MAX_WINDOW);
+	}
+
+	private NavMesh index(FileChannel channel, ByteBuffer bb, int maxVertPerPoly, long maxWindow) throws IOException {
+		long size = channel != null ? channel.size() : bb.capacity();
+		long windowStart = 0;
+		ByteBuffer window = channel != null ? map(channel, 0, Math.min(size, maxWindow)) : bb;
+		addWindow(window);
+		NavMeshSetHeader header = setReader.readHeader(window);
+		ByteOrder order = window.order();
+		boolean cCompatibility = header.version == NavMeshSetHeader.NAVMESHSET_VERSION;
+		NavMesh mesh = new NavMesh(header.params, maxVertPerPoly);
+
+		int numTiles = Math.max(0, header.numTiles);
+		m_tileRefs = new long[numTiles];
+		m_tileWindows = new int[numTiles];
+		m_tileOffsets = new int[numTiles];
+		m_tileLocs = new int[numTiles * 3];
+		int recordSize = (m_is32Bit ? 4 : 8) + 4 + (cCompatibility && !m_is32Bit ? 4 : 0);
+		long pos = window.position();
+		for (int i = 0; i < numTiles; ++i) {
+			if (pos + recordSize > size)
+				throw new IOException("Truncated tile " + i);
+			if (pos + recordSize > windowStart + window.capacity()) {
+				windowStart = pos;
+				window = addWindow(map(channel, pos, Math.min(size - pos, maxWindow)).order(order));
+			}
+			int offset = (int) (pos - windowStart);
+			long tileRef = m_is32Bit ? MeshSetReader.convert32BitRef(window.getInt(offset), header.params)
+					: window.getLong(offset);
+			int dataSize = window.getInt(offset + (m_is32Bit ? 4 : 8));
+			if (tileRef == 0 || dataSize == 0) {
+				break;
+			}
+			pos += recordSize;
+			if (dataSize < 0 || pos + dataSize > size)
+				throw new IOException("Truncated tile " + i);
+			if (pos + dataSize > windowStart + window.capacity()) {
+				if (channel == null || dataSize > maxWindow)
+					throw new IOException("Tile " + i + " does not fit into a mapping window");
+				windowStart = pos;
+				window = addWindow(map(channel, pos, Math.min(size - pos, maxWindow)).order(order));
+			}
+			offset = (int) (pos - windowStart);
+			m_tileRefs[i] = tileRef;
+			m_tileWindows[i] = m_windowCount - 1;
+			m_tileOffsets[i] = offset;
+			readTileLocation(window, offset, i);
+			m_tileCount = i + 1;
+			pos += dataSize;
+		}
+		buildCellLookup();
+		return mesh;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long pos, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+	}
+
+	private ByteBuffer addWindow(ByteBuffer window) {
+		if (m_windowCount == m_windows.length)
+			m_windows = Arrays.copyOf(m_windows, m_windowCount * 2);
+		m_windows[m_windowCount++] = window;
+		return window;
+	}
+
+	/** Reads the tile location from the header of the tile data without decoding the tile. */
+	private void readTileLocation(ByteBuffer window, int offset, int i) throws IOException {
+		boolean swap = false;
+		int magic = window.getInt(offset);
+		if (magic != MeshHeader.DT_NAVMESH_MAGIC) {
+			if (IOUtils.swapEndianness(magic) != MeshHeader.DT_NAVMESH_MAGIC)
+				throw new IOException("Invalid magic");
+			swap = true;
+		}
+		for (int j = 0; j < 3; j++) {
+			int v = window.getInt(offset + 8 + j * 4);
+			m_tileLocs[i * 3 + j] = swap ? IOUtils.swapEndianness(v) : v;
+		}
+	}
+
+	private void buildCellLookup() {
+		int size = nextPow2(Math.max(1, m_tileCount));
+		m_cellMask = size - 1;
+		m_cellFirst = new int[size];
+		m_cellNext = new int[m_tileCount];
+		for (int i = m_tileCount - 1; i >= 0; i--) {
+			int h = NavMesh.computeTileHash(m_tileLocs[i * 3], m_tileLocs[i * 3 + 1], m_cellMask);
+			m_cellNext[i] = m_cellFirst[h];
+			m_cellFirst[h] = i + 1;
+		}
+	}
+
+	/** The navigation mesh the tiles are loaded into. It is empty until tiles are loaded. */
+	public NavMesh getNavMesh() {
+		return m_mesh;
+	}
+
+	/** The number of tiles in the set. */
+	@Override
+	public int getTileCount() {
+		return m_tileCount;
+	}
+
+	/** The reference tile i was written with and has when it is loaded. */
+	@Override
+	public long getTileRef(int i) {
+		return m_tileRefs[i];
+	}
+
+	public int getTileX(int i) {
+		return m_tileLocs[i * 3];
+	}
+
+	public int getTileY(int i) {
+		return m_tileLocs[i * 3 + 1];
+	}
+
+	public int getTileLayer(int i) {
+		return m_tileLocs[i * 3 + 2];
+	}
+
+	public boolean isLoaded(int i) {
+		MeshTile tile = m_mesh.getTileByRef(m_tileRefs[i]);
+		return tile != null && tile.data != null;
+	}
+
+	/**
+	 * Decodes tile i and adds it to the navigation mesh, unless it is loaded already.
+	 *
+	 * @return The reference of the tile.
+	 */
+	public long loadTile(int i) throws IOException {
+		if (isLoaded(i))
+			return m_tileRefs[i];
+		return m_mesh.addTile(readTile(i), i, m_tileRefs[i]);
+	}
+
+	/** Decodes tile i without adding it to the navigation mesh. Can be called from any thread. */
+	@Override
+	public MeshData readTile(int i) throws IOException {
+		ByteBuffer buf = m_windows[m_tileWindows[i]].duplicate();
+		buf.order(m_windows[m_tileWindows[i]].order());
+		buf.position(m_tileOffsets[i]);
+		return meshReader.read(buf, m_mesh.getMaxVertsPerPoly(), m_is32Bit);
+	}
+
+	@Override
+	public int findTilesAt(int x, int y, int[] tiles, int maxTiles) {
+		int n = 0;
+		for (int i = m_cellFirst[NavMesh.computeTileHash(x, y, m_cellMask)]; i != 0; i = m_cellNext[i - 1]) {
+			int t = i - 1;
+			if (m_tileLocs[t * 3] == x && m_tileLocs[t * 3 + 1] == y) {
+				if (n < maxTiles)
+					tiles[n] = t;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Removes tile i from the navigation mesh. It can be loaded again later and then has the same reference.
+	 *
+	 * @return True if the tile was loaded.
+	 */
+	public boolean unloadTile(int i) {
+		if (!isLoaded(i))
+			return false;
+		m_mesh.removeTile(m_tileRefs[i]);
+		return true;
+	}
+
+	/**
+	 * Loads all layers at the given tile location.
+	 *
+	 * @return The number of tiles that were loaded by this call.
+	 */
+	public int loadTilesAt(int x, int y) throws IOException {
+		int n = 0;
+		for (int i = m_cellFirst[NavMesh.computeTileHash(x, y, m_cellMask)]; i != 0; i = m_cellNext[i - 1]) {
+			int t = i - 1;
+			if (m_tileLocs[t * 3] == x && m_tileLocs[t * 3 + 1] == y && !isLoaded(t)) {
+				loadTile(t);
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Loads the tiles at all tile locations overlapping the given bounds on the xz-plane.
+	 *
+	 * @return The number of tiles that were loaded by this call.
+	 */
+	public int loadTilesIn(float[] bmin, float[] bmax) throws IOException {
+		m_mesh.calcTileLoc(bmin, m_tileLoc);
+		int minx = m_tileLoc[0];
+		int miny = m_tileLoc[1];
+		m_mesh.calcTileLoc(bmax, m_tileLoc);
+		int n = 0;
+		for (int y = miny; y <= m_tileLoc[1]; y++) {
+			for (int x = minx; x <= m_tileLoc[0]; x++) {
+				n += loadTilesAt(x, y);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Loads the tiles at the tile location of the given position and the locations around it.
+	 *
+	 * @return The number of tiles that were loaded by this call.
+	 */
+	public int loadTilesAround(float[] pos, int range) throws IOException {
+		m_mesh.calcTileLoc(pos, m_tileLoc);
+		int tx = m_tileLoc[0];
+		int ty = m_tileLoc[1];
+		int n = 0;
+		for (int y = ty - range; y <= ty + range; y++) {
+			for (int x = tx - range; x <= tx + range; x++) {
+				n += loadTilesAt(x, y);
+			}
+		}
+		return n;
+	}
+
+	/** Loads all tiles of the set. */
+	public void loadAllTiles() throws IOException {
+		for (int i = 0; i < m_tileCount; i++) {
+			loadTile(i);
+		}
+	}
+
+}
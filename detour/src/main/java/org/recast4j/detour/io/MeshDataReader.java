@@ -52,6 +52,11 @@ public class MeshDataReader {
 	}
 
 	MeshData read(ByteBuffer buf, int maxVertPerPoly, boolean is32Bit) throws IOException {
+		return read(buf, maxVertPerPoly, is32Bit, 0, 0);
+	}
+
+	/** Reads a tile written with the vertex grid cs, ch by MeshDataWriter. Zero cs reads the plain format. */
+	MeshData read(ByteBuffer buf, int maxVertPerPoly, boolean is32Bit, float cs, float ch) throws IOException {
 		MeshData data = new MeshData();
 		MeshHeader header = new MeshHeader();
 		data.header = header;
@@ -93,13 +98,15 @@ public class MeshDataReader {
 			header.bmax[j] = buf.getFloat();
 		}
 		header.bvQuantFactor = buf.getFloat();
-		data.verts = readVerts(buf, header.vertCount);
+		data.verts = cs > 0 ? readQuantizedVerts(buf, header.vertCount, header.bmin, cs, ch)
+				: readVerts(buf, header.vertCount);
 		data.polys = readPolys(buf, header, maxVertPerPoly);
 		if (cCompatibility) {
 			buf.position(buf.position() + header.maxLinkCount * getSizeofLink(is32Bit));
 		}
 		data.detailMeshes = readPolyDetails(buf, header, cCompatibility);
-		data.detailVerts = readVerts(buf, header.detailVertCount);
+		data.detailVerts = cs > 0 ? readQuantizedVerts(buf, header.detailVertCount, header.bmin, cs, ch)
+				: readVerts(buf, header.detailVertCount);
 		data.detailTris = readDTris(buf, header);
 		data.bvTree = readBVTree(buf, header);
 		data.offMeshCons = readOffMeshCons(buf, header);
@@ -121,6 +128,17 @@ public class MeshDataReader {
 		return verts;
 	}
 
+	private float[] readQuantizedVerts(ByteBuffer buf, int count, float[] bmin, float cs, float ch) {
+		if (buf.get() == 0)
+			return readVerts(buf, count);
+		float[] verts = new float[count * 3];
+		for (int i = 0; i < verts.length; i++) {
+			int j = i % 3;
+			verts[i] = bmin[j] + (buf.getShort() & 0xFFFF) * (j == 1 ? ch : cs);
+		}
+		return verts;
+	}
+
 	private Poly[] readPolys(ByteBuffer buf, MeshHeader header, int maxVertPerPoly) {
 		Poly[] polys = new Poly[header.polyCount];
 		for (int i = 0; i < polys.length; i++) {
@@ -27,6 +27,15 @@ import org.recast4j.detour.MeshHeader;
 public class MeshDataWriter extends DetourWriter {
 
 	public void write(OutputStream stream, MeshData data, ByteOrder order, boolean cCompatibility) throws IOException {
+		write(stream, data, order, cCompatibility, 0, 0);
+	}
+
+	/**
+	 * Writes the tile with its vertices quantized to the given grid where that is lossless, see
+	 * {@link #writeQuantizedVerts}. Zero cs writes the plain format.
+	 */
+	void write(OutputStream stream, MeshData data, ByteOrder order, boolean cCompatibility, float cs, float ch)
+			throws IOException {
 		MeshHeader header = data.header;
 		write(stream, header.magic, order);
 		write(stream, cCompatibility ? MeshHeader.DT_NAVMESH_VERSION : MeshHeader.DT_NAVMESH_VERSION_RECAST4J, order);
@@ -53,14 +62,22 @@ public class MeshDataWriter extends DetourWriter {
 		write(stream, header.bmax[1], order);
 		write(stream, header.bmax[2], order);
 		write(stream, header.bvQuantFactor, order);
-		writeVerts(stream, data.verts, header.vertCount, order);
+		if (cs > 0) {
+			writeQuantizedVerts(stream, data.verts, header.vertCount, header.bmin, cs, ch, order);
+		} else {
+			writeVerts(stream, data.verts, header.vertCount, order);
+		}
 		writePolys(stream, data, order);
 		if (cCompatibility) {
 			byte[] linkPlaceholder = new byte[header.maxLinkCount * MeshDataReader.getSizeofLink(false)];
 			stream.write(linkPlaceholder);
 		}
 		writePolyDetails(stream, data, order, cCompatibility);
-		writeVerts(stream, data.detailVerts, header.detailVertCount, order);
+		if (cs > 0) {
+			writeQuantizedVerts(stream, data.detailVerts, header.detailVertCount, header.bmin, cs, ch, order);
+		} else {
+			writeVerts(stream, data.detailVerts, header.detailVertCount, order);
+		}
 		writeDTris(stream, data);
 		writeBVTree(stream, data, order);
 		writeOffMeshCons(stream, data, order);
@@ -72,6 +89,31 @@ public class MeshDataWriter extends DetourWriter {
 		}
 	}
 
+	/**
+	 * Writes the vertices as 16 bit cell coordinates relative to the tile bounds if every vertex is exactly on the grid,
+	 * i.e. decodes to the same float the same way the navmesh builder computes it. Otherwise the vertices are written as
+	 * floats. A leading byte tells which.
+	 */
+	private void writeQuantizedVerts(OutputStream stream, float[] verts, int count, float[] bmin, float cs, float ch,
+			ByteOrder order) throws IOException {
+		short[] q = new short[count * 3];
+		for (int i = 0; i < count * 3; i++) {
+			int j = i % 3;
+			float s = j == 1 ? ch : cs;
+			int c = Math.round((verts[i] - bmin[j]) / s);
+			if (c < 0 || c > 0xFFFF || bmin[j] + c * s != verts[i]) {
+				stream.write(0);
+				writeVerts(stream, verts, count, order);
+				return;
+			}
+			q[i] = (short) c;
+		}
+		stream.write(1);
+		for (int i = 0; i < q.length; i++) {
+			write(stream, q[i], order);
+		}
+	}
+
 	private void writePolys(OutputStream stream, MeshData data, ByteOrder order) throws IOException {
 		for (int i = 0; i < data.header.polyCount; i++) {
 			write(stream, data.polys[i].firstLink, order);
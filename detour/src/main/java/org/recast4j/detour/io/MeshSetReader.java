@@ -22,8 +22,12 @@ import static org.recast4j.detour.DetourCommon.nextPow2;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.recast4j.detour.MeshData;
 import org.recast4j.detour.NavMesh;
@@ -52,25 +56,89 @@ public class MeshSetReader {
 		return read(bb, maxVertPerPoly, true);
 	}
 
-	NavMesh read(ByteBuffer bb, int maxVertPerPoly, boolean is32Bit) throws IOException {
-		NavMeshSetHeader header = new NavMeshSetHeader();
-		header.magic = bb.getInt();
-		if (header.magic != NavMeshSetHeader.NAVMESHSET_MAGIC) {
-			header.magic = IOUtils.swapEndianness(header.magic);
-			if (header.magic != NavMeshSetHeader.NAVMESHSET_MAGIC) {
-				throw new IOException("Invalid magic");
+	/**
+	 * Reads the set decoding the tiles in parallel on the given executor. Only adding the decoded tiles to the
+	 * navigation mesh is done on the calling thread, in the order of the set, so the result is the same as of
+	 * {@link #read(InputStream, int)}.
+	 */
+	public NavMesh read(InputStream is, int maxVertPerPoly, Executor executor) throws IOException {
+		ByteBuffer bb = IOUtils.toByteBuffer(is);
+		return read(bb, maxVertPerPoly, false, executor);
+	}
+
+	public NavMesh read(ByteBuffer bb, int maxVertPerPoly, Executor executor) throws IOException {
+		return read(bb, maxVertPerPoly, false, executor);
+	}
+
+	public NavMesh read32Bit(InputStream is, int maxVertPerPoly, Executor executor) throws IOException {
+		ByteBuffer bb = IOUtils.toByteBuffer(is);
+		return read(bb, maxVertPerPoly, true, executor);
+	}
+
+	public NavMesh read32Bit(ByteBuffer bb, int maxVertPerPoly, Executor executor) throws IOException {
+		return read(bb, maxVertPerPoly, true, executor);
+	}
+
+	NavMesh read(ByteBuffer bb, int maxVertPerPoly, boolean is32Bit, Executor executor) throws IOException {
+		if (executor == null)
+			return read(bb, maxVertPerPoly, is32Bit);
+		NavMeshSetHeader header = readHeader(bb);
+		boolean cCompatibility = header.version == NavMeshSetHeader.NAVMESHSET_VERSION;
+		NavMesh mesh = new NavMesh(header.params, maxVertPerPoly);
+
+		// Find the tiles using their sizes and start decoding them.
+		int numTiles = Math.max(0, header.numTiles);
+		long[] tileRefs = new long[numTiles];
+		@SuppressWarnings("unchecked")
+		CompletableFuture<MeshData>[] tiles = new CompletableFuture[numTiles];
+		int n = 0;
+		for (int i = 0; i < numTiles; ++i) {
+			long tileRef = is32Bit ? convert32BitRef(bb.getInt(), header.params) : bb.getLong();
+			int dataSize = bb.getInt();
+			if (tileRef == 0 || dataSize == 0) {
+				break;
 			}
-			bb.order(bb.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			if (cCompatibility && !is32Bit) {
+				bb.getInt(); // C struct padding
+			}
+			if (dataSize < 0 || dataSize > bb.remaining()) {
+				throw new IOException("Truncated tile " + i);
+			}
+			ByteBuffer tileBuf = bb.slice().order(bb.order());
+			tileBuf.limit(dataSize);
+			bb.position(bb.position() + dataSize);
+			tileRefs[i] = tileRef;
+			tiles[i] = CompletableFuture.supplyAsync(() -> {
+				try {
+					return meshReader.read(tileBuf, mesh.getMaxVertsPerPoly(), is32Bit);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor);
+			n = i + 1;
 		}
-		header.version = bb.getInt();
-		if (header.version != NavMeshSetHeader.NAVMESHSET_VERSION) {
-			if (header.version != NavMeshSetHeader.NAVMESHSET_VERSION_RECAST4J) {
-				throw new IOException("Invalid version");
+
+		// Add them in order while the later ones are still decoded.
+		for (int i = 0; i < n; ++i) {
+			MeshData data;
+			try {
+				data = tiles[i].join();
+			} catch (CompletionException e) {
+				for (int j = i + 1; j < n; j++) {
+					tiles[j].cancel(false);
+				}
+				if (e.getCause() instanceof UncheckedIOException)
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				throw e;
 			}
+			mesh.addTile(data, i, tileRefs[i]);
 		}
+		return mesh;
+	}
+
+	NavMesh read(ByteBuffer bb, int maxVertPerPoly, boolean is32Bit) throws IOException {
+		NavMeshSetHeader header = readHeader(bb);
 		boolean cCompatibility = header.version == NavMeshSetHeader.NAVMESHSET_VERSION;
-		header.numTiles = bb.getInt();
-		header.params = paramReader.read(bb);
 		NavMesh mesh = new NavMesh(header.params, maxVertPerPoly);
 
 		// Read tiles.
@@ -94,7 +162,31 @@ public class MeshSetReader {
 		return mesh;
 	}
 
-	private long convert32BitRef(int ref, NavMeshParams params) {
+	/**
+	 * Reads the set header and switches the byte order of the buffer if the set was written with the other one.
+	 */
+	NavMeshSetHeader readHeader(ByteBuffer bb) throws IOException {
+		NavMeshSetHeader header = new NavMeshSetHeader();
+		header.magic = bb.getInt();
+		if (header.magic != NavMeshSetHeader.NAVMESHSET_MAGIC) {
+			header.magic = IOUtils.swapEndianness(header.magic);
+			if (header.magic != NavMeshSetHeader.NAVMESHSET_MAGIC) {
+				throw new IOException("Invalid magic");
+			}
+			bb.order(bb.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		}
+		header.version = bb.getInt();
+		if (header.version != NavMeshSetHeader.NAVMESHSET_VERSION) {
+			if (header.version != NavMeshSetHeader.NAVMESHSET_VERSION_RECAST4J) {
+				throw new IOException("Invalid version");
+			}
+		}
+		header.numTiles = bb.getInt();
+		header.params = paramReader.read(bb);
+		return header;
+	}
+
+	static long convert32BitRef(int ref, NavMeshParams params) {
 		int m_tileBits = ilog2(nextPow2(params.maxTiles));
 		int m_polyBits = ilog2(nextPow2(params.maxPolys));
 		// Only allow 31 salt bits, since the salt mask is calculated using 32bit uint and it will overflow.
@@ -49,13 +49,7 @@ public abstract class AbstractDetourTest {
 	}
 
 	protected NavMesh createNavMesh() {
-        InputStream in = null;
-        try {
-            in = new FileInputStream(new File("D:/Recast4j/recast4j/detour/src/test/resources/simple.obj"));
-        }catch (Exception e){
-            e.printStackTrace();
-        }
-        return new NavMesh(new RecastTestMeshBuilder(in).getMeshData(), 6, 0);
+		return new NavMesh(new RecastTestMeshBuilder().getMeshData(), 6, 0);
 	}
 
 }
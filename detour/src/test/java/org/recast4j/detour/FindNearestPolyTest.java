@@ -17,6 +17,9 @@ freely, subject to the following restrictions:
 */
 package org.recast4j.detour;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -44,4 +47,38 @@ public class FindNearestPolyTest extends AbstractDetourTest {
 		}
 
 	}
+
+	@Test
+	public void testFindNearestPolyToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		float[] extents = { 0, 0, 0 };
+		float[] nearestPt = new float[3];
+		for (int i = 0; i < startRefs.length; i++) {
+			long ref = query.findNearestPoly(startPoss[i], extents, filter, nearestPt);
+			Assert.assertEquals(polyRefs[i], ref);
+			for (int v = 0; v < polyPos[i].length; v++) {
+				Assert.assertEquals(polyPos[i][v], nearestPt[v], 0.001f);
+			}
+		}
+		float[] farAway = { 1000, 1000, 1000 };
+		float[] unchanged = { 1, 2, 3 };
+		Assert.assertEquals(0, query.findNearestPoly(farAway, extents, filter, unchanged));
+		Assert.assertArrayEquals(new float[] { 1, 2, 3 }, unchanged, 0f);
+	}
+
+	@Test
+	public void testQueryPolygonsVisitor() {
+		QueryFilter filter = new QueryFilter();
+		float[] extents = { 10, 10, 10 };
+		for (int i = 0; i < startRefs.length; i++) {
+			List<Long> expected = query.queryPolygons(startPoss[i], extents, filter);
+			List<Long> visited = new ArrayList<>();
+			query.queryPolygons(startPoss[i], extents, filter, (tile, poly, ref) -> {
+				Assert.assertSame(poly, navmesh.getTileAndPolyByRef(ref).second);
+				visited.add(ref);
+			});
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals(expected, visited);
+		}
+	}
 }
@@ -0,0 +1,133 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FindNearestPolysTest {
+
+	private final float[] extents = { 2, 4, 2 };
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private float[] positions;
+	private int count;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		// Random points around the mesh, some of them far from any polygon.
+		Random random = new Random(1);
+		count = 2000;
+		positions = new float[count * 3];
+		for (int i = 0; i < count; i++) {
+			positions[i * 3] = -50 + random.nextFloat() * 110;
+			positions[i * 3 + 1] = -5 + random.nextFloat() * 25;
+			positions[i * 3 + 2] = -80 + random.nextFloat() * 90;
+		}
+	}
+
+	@Test
+	public void testFindNearestPolys() {
+		QueryFilter filter = new QueryFilter();
+		long[] refs = new long[count];
+		float[] nearestPts = new float[count * 3];
+		query.findNearestPolys(positions, count, extents, filter, refs, nearestPts);
+		assertSameAsSingleQueries(filter, refs, nearestPts);
+	}
+
+	@Test
+	public void testFindNearestPolysInParallel() {
+		QueryFilter filter = new QueryFilter();
+		long[] refs = new long[count];
+		float[] nearestPts = new float[count * 3];
+		NavMeshQueryPool pool = new NavMeshQueryPool(navmesh, 4);
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			pool.findNearestPolys(positions, count, extents, filter, refs, nearestPts, forkJoinPool, 100);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+		Assert.assertEquals(0, pool.getLeasedCount());
+		assertSameAsSingleQueries(filter, refs, nearestPts);
+	}
+
+	@Test
+	public void testSortKeepsDistantTilesApart() {
+		// Every second point is moved by 256 tiles, which only changes the tile coordinates above their low 8 bits.
+		float shift = navmesh.getParams().tileWidth * 256;
+		int n = 200;
+		float[] points = new float[n * 3];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(positions, (i / 2) * 3, points, i * 3, 3);
+			if (i % 2 == 1)
+				points[i * 3] += shift;
+		}
+		int[] order = new int[n];
+		query.sortByTileRange(points, n, extents, new long[n], order);
+		// Each tile range forms a single run in the sorted order.
+		Set<String> seen = new HashSet<>();
+		String prev = null;
+		for (int i = 0; i < n; i++) {
+			String range = tileRange(points, order[i]);
+			if (!range.equals(prev)) {
+				Assert.assertTrue("Range " + range + " is split", seen.add(range));
+				prev = range;
+			}
+		}
+	}
+
+	private String tileRange(float[] points, int i) {
+		float[] bmin = new float[3];
+		float[] bmax = new float[3];
+		for (int k = 0; k < 3; k++) {
+			bmin[k] = points[i * 3 + k] - extents[k];
+			bmax[k] = points[i * 3 + k] + extents[k];
+		}
+		int[] min = new int[2];
+		int[] max = new int[2];
+		navmesh.calcTileLoc(bmin, min);
+		navmesh.calcTileLoc(bmax, max);
+		return min[0] + "," + min[1] + "," + max[0] + "," + max[1];
+	}
+
+	private void assertSameAsSingleQueries(QueryFilter filter, long[] refs, float[] nearestPts) {
+		int found = 0;
+		float[] pos = new float[3];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(positions, i * 3, pos, 0, 3);
+			FindNearestPolyResult expected = query.findNearestPoly(pos, extents, filter);
+			Assert.assertEquals(expected.getNearestRef(), refs[i]);
+			if (expected.getNearestRef() != 0) {
+				found++;
+				for (int v = 0; v < 3; v++) {
+					Assert.assertEquals(expected.getNearestPos()[v], nearestPts[i * 3 + v], 0f);
+				}
+			}
+		}
+		Assert.assertTrue(found > 100);
+		Assert.assertTrue(found < count);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FindPathBatchTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+
+	private NavMesh navmesh;
+	private QueryFilter filter;
+	private List<Long> expected;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		filter = new QueryFilter();
+		expected = new NavMeshQuery(navmesh).findPath(startRef, endRef, startPos, endPos, filter).getRefs();
+	}
+
+	@Test
+	public void testFindPaths() {
+		FindPathBatch batch = new FindPathBatch(1, 256);
+		batch.add(startRef, endRef, startPos, endPos, filter);
+		batch.add(endRef, endRef, endPos, endPos, filter);
+		batch.add(0, endRef, startPos, endPos, filter);
+		batch.add(startRef, endRef, startPos, endPos, filter);
+		new NavMeshQuery(navmesh).findPaths(batch);
+		assertPath(batch, 0);
+		Assert.assertEquals(Status.SUCCSESS, batch.getStatus(1));
+		Assert.assertEquals(1, batch.getPathCount(1));
+		Assert.assertEquals(endRef, batch.getPathRef(1, 0));
+		Assert.assertEquals(Status.FAILURE, batch.getStatus(2));
+		Assert.assertEquals(0, batch.getPathCount(2));
+		assertPath(batch, 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullFilter() {
+		new FindPathBatch(1, 256).add(startRef, endRef, startPos, endPos, null);
+	}
+
+	@Test
+	public void testTruncatedPath() {
+		FindPathBatch batch = new FindPathBatch(1, 10);
+		batch.add(startRef, endRef, startPos, endPos, filter);
+		new NavMeshQuery(navmesh).findPaths(batch);
+		Assert.assertEquals(Status.PARTIAL_RESULT, batch.getStatus(0));
+		Assert.assertEquals(10, batch.getPathCount(0));
+		for (int j = 0; j < 10; j++) {
+			Assert.assertEquals(expected.get(j).longValue(), batch.getPathRef(0, j));
+		}
+	}
+
+	@Test
+	public void testParallelFindPaths() {
+		FindPathBatch batch = new FindPathBatch(16, 256);
+		for (int i = 0; i < 64; i++) {
+			batch.add(startRef, endRef, startPos, endPos, filter);
+		}
+		NavMeshQueryPool pool = new NavMeshQueryPool(navmesh, 4);
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			pool.findPaths(batch, forkJoinPool, 8);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			assertPath(batch, i);
+		}
+		Assert.assertEquals(0, pool.getLeasedCount());
+	}
+
+	@Test
+	public void testParallelFindPathsOnSmallPool() {
+		FindPathBatch batch = new FindPathBatch(16, 256);
+		for (int i = 0; i < 64; i++) {
+			batch.add(startRef, endRef, startPos, endPos, filter);
+		}
+		// More workers than queries, the tasks wait for each other's queries.
+		NavMeshQueryPool pool = new NavMeshQueryPool(navmesh, 1);
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			pool.findPaths(batch, forkJoinPool, 2);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			assertPath(batch, i);
+		}
+		Assert.assertEquals(0, pool.getLeasedCount());
+		Assert.assertEquals(0, pool.getWaitingCount());
+	}
+
+	private void assertPath(FindPathBatch batch, int i) {
+		Assert.assertEquals(Status.SUCCSESS, batch.getStatus(i));
+		Assert.assertEquals(expected.size(), batch.getPathCount(i));
+		for (int j = 0; j < expected.size(); j++) {
+			Assert.assertEquals(expected.get(j).longValue(), batch.getPathRef(i, j));
+		}
+	}
+}
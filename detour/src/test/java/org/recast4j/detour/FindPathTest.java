@@ -107,6 +107,26 @@ public class FindPathTest extends AbstractDetourTest {
 		}
 	}
 
+	@Test
+	public void testFindPathOutOfNodes() {
+		QueryFilter filter = new QueryFilter();
+		// Pools smaller than the full search needs, the status only tells whether the end was reached.
+		boolean reachedOutOfNodes = false;
+		for (int i = 0; i < startRefs.length; i++) {
+			query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter);
+			int usedNodes = query.getNodePool().getNodeCount();
+			for (int maxNodes = 1; maxNodes < usedNodes; maxNodes++) {
+				NavMeshQuery smallQuery = new NavMeshQuery(navmesh, maxNodes);
+				FindPathResult path = smallQuery.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter);
+				List<Long> refs = path.getRefs();
+				boolean reached = refs.get(refs.size() - 1) == endRefs[i];
+				Assert.assertEquals(reached ? Status.SUCCSESS : Status.PARTIAL_RESULT, path.getStatus());
+				reachedOutOfNodes |= reached && smallQuery.isOutOfNodes();
+			}
+		}
+		Assert.assertTrue(reachedOutOfNodes);
+	}
+
 	@Test
 	public void testFindPathSliced() {
 		QueryFilter filter = new QueryFilter();
@@ -131,6 +151,32 @@ public class FindPathTest extends AbstractDetourTest {
 		}
 	}
 
+	@Test
+	public void testFindPathAnyAngleDuringSlicedQuery() {
+		QueryFilter filter = new QueryFilter();
+		query.initSlicedFindPath(startRefs[0], endRefs[0], startPoss[0], endPoss[0], filter,
+				NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+		Assert.assertEquals(Status.IN_PROGRESS, query.updateSlicedFindPath(10).getStatus());
+
+		// The one shot any-angle search must not disturb the sliced query.
+		FindPathResult anyAngle = query.findPath(startRefs[1], endRefs[1], startPoss[1], endPoss[1], filter,
+				NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+		FindPathResult expected = new NavMeshQuery(navmesh).findPath(startRefs[1], endRefs[1], startPoss[1],
+				endPoss[1], filter, NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+		Assert.assertEquals(expected.getRefs(), anyAngle.getRefs());
+
+		Status status = Status.IN_PROGRESS;
+		while (status == Status.IN_PROGRESS) {
+			status = query.updateSlicedFindPath(10).getStatus();
+		}
+		FindPathResult path = query.finalizeSlicedFindPath();
+		Assert.assertEquals(statuses[0], path.getStatus());
+		Assert.assertEquals(results[0].length, path.getRefs().size());
+		for (int j = 0; j < results[0].length; j++) {
+			Assert.assertEquals(results[0][j], path.getRefs().get(j).longValue());
+		}
+	}
+
 	@Test
 	public void testFindPathStraight() {
 		QueryFilter filter = new QueryFilter();
@@ -177,4 +223,196 @@ public class FindPathTest extends AbstractDetourTest {
 //		}
 	}
 
+
+	@Test
+	public void testFindPathBidirectional() {
+		QueryFilter filter = new QueryFilter();
+		for (int i = 0; i < startRefs.length; i++) {
+			FindPathResult path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter,
+					NavMeshQuery.DT_FINDPATH_BIDIRECTIONAL);
+			Assert.assertEquals(statuses[i], path.getStatus());
+			List<Long> refs = path.getRefs();
+			Assert.assertEquals(startRefs[i], refs.get(0).longValue());
+			if (statuses[i] == Status.SUCCSESS)
+				Assert.assertEquals(endRefs[i], refs.get(refs.size() - 1).longValue());
+			for (int j = 1; j < refs.size(); j++) {
+				Assert.assertTrue(isLinked(navmesh, refs.get(j - 1), refs.get(j)));
+			}
+			if (statuses[i] == Status.SUCCSESS) {
+				// Both searches find a cheapest path.
+				List<Long> expected = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter)
+						.getRefs();
+				float cost = pathCost(filter, expected, startPoss[i], endPoss[i]);
+				Assert.assertEquals(cost, pathCost(filter, refs, startPoss[i], endPoss[i]), cost * 1e-4f);
+			}
+		}
+	}
+
+	// The cost of a corridor as findPath() measures it, through the midpoints of the portal edges.
+	private float pathCost(QueryFilter filter, List<Long> refs, float[] startPos, float[] endPos) {
+		float cost = 0;
+		float[] pos = startPos;
+		for (int j = 0; j < refs.size(); j++) {
+			float[] next = endPos;
+			if (j + 1 < refs.size()) {
+				NavMeshQuery.PortalResult portal = query.getPortalPoints(refs.get(j), refs.get(j + 1));
+				next = DetourCommon.vLerp(portal.left, portal.right, 0.5f);
+			}
+			Tupple2<MeshTile, Poly> cur = navmesh.getTileAndPolyByRef(refs.get(j));
+			cost += filter.getCost(pos, next, 0, null, null, refs.get(j), cur.first, cur.second, 0, null, null);
+			pos = next;
+		}
+		return cost;
+	}
+
+	@Test
+	public void testFindPathBidirectionalOneWayOffMeshConnection() {
+		int i = 2;
+		float[] conVerts = { startPoss[i][0], startPoss[i][1], startPoss[i][2], endPoss[i][0], endPoss[i][1],
+				endPoss[i][2] };
+		NavMesh mesh = new NavMesh(new RecastTestMeshBuilder(conVerts, 0).getMeshData(), 6, 0);
+		NavMeshQuery query = new NavMeshQuery(mesh);
+		QueryFilter filter = new QueryFilter();
+		// The backward search has to find the connection from the polygon it lands on.
+		FindPathResult path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter,
+				NavMeshQuery.DT_FINDPATH_BIDIRECTIONAL);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertEquals(3, path.getRefs().size());
+		Assert.assertEquals(Poly.DT_POLYTYPE_OFFMESH_CONNECTION,
+				mesh.getTileAndPolyByRef(path.getRefs().get(1)).second.getType());
+		Assert.assertEquals(query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter).getRefs(),
+				path.getRefs());
+		// The connection can not be used in the opposite direction.
+		path = query.findPath(endRefs[i], startRefs[i], endPoss[i], startPoss[i], filter,
+				NavMeshQuery.DT_FINDPATH_BIDIRECTIONAL);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertEquals(results[i].length, path.getRefs().size());
+		for (long ref : path.getRefs()) {
+			Assert.assertNotEquals(Poly.DT_POLYTYPE_OFFMESH_CONNECTION, mesh.getTileAndPolyByRef(ref).second.getType());
+		}
+	}
+
+	@Test
+	public void testFindPathToNearestGoal() {
+		QueryFilter filter = new QueryFilter();
+		for (int i = 0; i < startRefs.length; i++) {
+			FindNearestGoalResult path = query.findPathToNearestGoal(startRefs[i], startPoss[i],
+					new long[] { endRefs[i] }, endPoss[i], null, 1, filter);
+			Assert.assertEquals(statuses[i], path.getStatus());
+			if (statuses[i] == Status.SUCCSESS) {
+				Assert.assertEquals(0, path.getGoal());
+				Assert.assertTrue(path.getCost() > 0);
+			} else {
+				Assert.assertEquals(-1, path.getGoal());
+			}
+			Assert.assertEquals(query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter).getRefs(),
+					path.getRefs());
+		}
+
+		// A goal on the way to another one is nearer.
+		long midRef = results[0][5];
+		float[] midPos = query.closestPointOnPoly(midRef, startPoss[0]).getClosest();
+		long[] goalRefs = { endRefs[0], midRef };
+		float[] goalPos = { endPoss[0][0], endPoss[0][1], endPoss[0][2], midPos[0], midPos[1], midPos[2] };
+		FindNearestGoalResult path = query.findPathToNearestGoal(startRefs[0], startPoss[0], goalRefs, goalPos, null, 2,
+				filter);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertEquals(1, path.getGoal());
+		List<Long> refs = path.getRefs();
+		Assert.assertEquals(startRefs[0], refs.get(0).longValue());
+		Assert.assertEquals(midRef, refs.get(refs.size() - 1).longValue());
+		for (int j = 1; j < refs.size(); j++) {
+			Assert.assertTrue(isLinked(navmesh, refs.get(j - 1), refs.get(j)));
+		}
+
+		// The cost offset makes the far goal the cheaper one.
+		float[] offsets = { 0, 1000 };
+		path = query.findPathToNearestGoal(startRefs[0], startPoss[0], goalRefs, goalPos, offsets, 2, filter);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertEquals(0, path.getGoal());
+		Assert.assertEquals(results[0].length, path.getRefs().size());
+		for (int j = 0; j < results[0].length; j++) {
+			Assert.assertEquals(results[0][j], path.getRefs().get(j).longValue());
+		}
+
+		// The start polygon can be a goal.
+		path = query.findPathToNearestGoal(startRefs[0], startPoss[0], new long[] { endRefs[0], startRefs[0] },
+				new float[] { endPoss[0][0], endPoss[0][1], endPoss[0][2], startPoss[0][0], startPoss[0][1],
+						startPoss[0][2] },
+				null, 2, filter);
+		Assert.assertEquals(1, path.getGoal());
+		Assert.assertEquals(1, path.getRefs().size());
+		Assert.assertEquals(0, path.getCost(), 0.0f);
+	}
+
+	@Test
+	public void testFindCostField() {
+		QueryFilter filter = new QueryFilter();
+		long[] goalRefs = { endRefs[0], endRefs[2] };
+		float[] goalPos = { endPoss[0][0], endPoss[0][1], endPoss[0][2], endPoss[2][0], endPoss[2][1], endPoss[2][2] };
+		float[] offsets = { 0, 5 };
+		FindPolysAroundResult field = query.findCostField(goalRefs, goalPos, offsets, 2, Float.MAX_VALUE, filter);
+		List<Long> refs = field.getRefs();
+		List<Long> next = field.getParentRefs();
+		List<Float> costs = field.getCosts();
+		Assert.assertEquals(endRefs[0], refs.get(0).longValue());
+		Assert.assertEquals(0, costs.get(0), 0.0f);
+		Assert.assertTrue(refs.contains(startRefs[0]));
+		Assert.assertTrue(costs.get(refs.indexOf(endRefs[2])) <= 5);
+		for (int j = 0; j < refs.size(); j++) {
+			if (j > 0)
+				Assert.assertTrue(costs.get(j - 1) <= costs.get(j));
+			if (next.get(j) == 0) {
+				Assert.assertTrue(refs.get(j) == goalRefs[0] || refs.get(j) == goalRefs[1]);
+			} else {
+				Assert.assertTrue(isLinked(navmesh, refs.get(j), next.get(j)));
+				Assert.assertTrue(costs.get(refs.indexOf(next.get(j))) <= costs.get(j));
+			}
+		}
+
+		// The path leads from the goal to the polygon.
+		float startCost = costs.get(refs.indexOf(startRefs[0]));
+		List<Long> path = query.getPathFromDijkstraSearch(startRefs[0]);
+		Assert.assertEquals(endRefs[0], path.get(0).longValue());
+		Assert.assertEquals(startRefs[0], path.get(path.size() - 1).longValue());
+
+		// The field ends at the maximum cost.
+		field = query.findCostField(goalRefs, goalPos, offsets, 2, startCost * 0.5f, filter);
+		Assert.assertFalse(field.getRefs().contains(startRefs[0]));
+		for (float cost : field.getCosts()) {
+			Assert.assertTrue(cost <= startCost * 0.5f);
+		}
+	}
+
+	@Test
+	public void testFindCostFieldOneWayOffMeshConnection() {
+		int i = 2;
+		float[] conVerts = { startPoss[i][0], startPoss[i][1], startPoss[i][2], endPoss[i][0], endPoss[i][1],
+				endPoss[i][2] };
+		NavMesh mesh = new NavMesh(new RecastTestMeshBuilder(conVerts, 0).getMeshData(), 6, 0);
+		NavMeshQuery query = new NavMeshQuery(mesh);
+		QueryFilter filter = new QueryFilter();
+		// The start of the connection leads to the goal at its end.
+		query.findCostField(new long[] { endRefs[i] }, endPoss[i], null, 1, Float.MAX_VALUE, filter);
+		List<Long> path = query.getPathFromDijkstraSearch(startRefs[i]);
+		Assert.assertEquals(3, path.size());
+		Assert.assertEquals(Poly.DT_POLYTYPE_OFFMESH_CONNECTION, mesh.getTileAndPolyByRef(path.get(1)).second.getType());
+		// The connection can not be used in the opposite direction.
+		query.findCostField(new long[] { startRefs[i] }, startPoss[i], null, 1, Float.MAX_VALUE, filter);
+		path = query.getPathFromDijkstraSearch(endRefs[i]);
+		Assert.assertTrue(path.size() > 3);
+		for (long ref : path) {
+			Assert.assertNotEquals(Poly.DT_POLYTYPE_OFFMESH_CONNECTION, mesh.getTileAndPolyByRef(ref).second.getType());
+		}
+	}
+
+	private static boolean isLinked(NavMesh mesh, long from, long to) {
+		Tupple2<MeshTile, Poly> tileAndPoly = mesh.getTileAndPolyByRef(from);
+		MeshTile tile = tileAndPoly.first;
+		for (int i = tileAndPoly.second.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.linkNext[i]) {
+			if (tile.linkRefs[i] == to)
+				return true;
+		}
+		return false;
+	}
 }
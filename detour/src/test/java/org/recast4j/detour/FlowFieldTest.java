@@ -0,0 +1,156 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlowFieldTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testFollowField() {
+		FlowField field = new FlowField(query, endRef, endPos, Float.MAX_VALUE, filter);
+		Assert.assertTrue(field.isValid());
+		Assert.assertTrue(field.contains(startRef));
+		Assert.assertEquals(0, field.getCost(endRef), 0.0f);
+		Assert.assertEquals(0, field.getNextPoly(endRef));
+
+		// Following the field leads to the goal with decreasing cost.
+		long[] path = new long[256];
+		int npath = field.getPath(startRef, path, path.length);
+		Assert.assertEquals(startRef, path[0]);
+		Assert.assertEquals(endRef, path[npath - 1]);
+		for (int i = 1; i < npath; i++) {
+			Assert.assertTrue(field.getCost(path[i]) < field.getCost(path[i - 1]));
+			Assert.assertEquals(path[i], field.getNextPoly(path[i - 1]));
+		}
+
+		// The same field matches the result of the Dijkstra search.
+		FindPolysAroundResult costs = query.findCostField(new long[] { endRef }, endPos, null, 1, Float.MAX_VALUE,
+				filter);
+		Assert.assertEquals(costs.getRefs().size(), field.getPolyCount());
+		for (int i = 0; i < costs.getRefs().size(); i++) {
+			long ref = costs.getRefs().get(i);
+			Assert.assertEquals(costs.getCosts().get(i), field.getCost(ref), 0.0f);
+			Assert.assertEquals(costs.getParentRefs().get(i).longValue(), field.getNextPoly(ref));
+		}
+
+		// The first corner is the one of the straight path along the field.
+		float[] cornerVerts = new float[256 * 3];
+		int[] cornerFlags = new int[256];
+		long[] cornerPolys = new long[256];
+		int ncorners = field.findCorners(startRef, startPos, cornerVerts, cornerFlags, cornerPolys, 256, query);
+		Assert.assertTrue(ncorners > 0);
+		float[] straightPath = new float[256 * 3];
+		int[] straightPathFlags = new int[256];
+		long[] straightPathRefs = new long[256];
+		int[] straightPathCount = new int[1];
+		query.findStraightPath(startPos, endPos, path, npath, straightPath, straightPathFlags, straightPathRefs,
+				straightPathCount, 256, 0);
+		int n = straightPathCount[0];
+		Assert.assertTrue(n > 2);
+		for (int v = 0; v < 3; v++) {
+			Assert.assertEquals(straightPath[3 + v], cornerVerts[v], 1e-4f);
+		}
+		Assert.assertEquals(straightPathRefs[1], cornerPolys[0]);
+		// The end flag is only set when the corners reach the goal.
+		boolean end = (cornerFlags[ncorners - 1] & NavMeshQuery.DT_STRAIGHTPATH_END) != 0;
+		Assert.assertEquals(npath <= 32, end);
+		// The scratch buffers belong to the query, another query finds the same corners.
+		float[] otherVerts = new float[256 * 3];
+		int[] otherFlags = new int[256];
+		long[] otherPolys = new long[256];
+		Assert.assertEquals(ncorners, field.findCorners(startRef, startPos, otherVerts, otherFlags, otherPolys, 256,
+				new NavMeshQuery(navmesh)));
+		for (int i = 0; i < ncorners; i++) {
+			Assert.assertEquals(cornerPolys[i], otherPolys[i]);
+			Assert.assertEquals(cornerFlags[i], otherFlags[i]);
+		}
+		// At the goal there are no corners left.
+		Assert.assertEquals(0, field.findCorners(endRef, endPos, cornerVerts, cornerFlags, cornerPolys, 256, query));
+	}
+
+	@Test
+	public void testMaxCost() {
+		FlowField full = new FlowField(query, endRef, endPos, Float.MAX_VALUE, filter);
+		float maxCost = full.getCost(startRef) * 0.5f;
+		FlowField field = new FlowField(query, endRef, endPos, maxCost, filter);
+		Assert.assertFalse(field.contains(startRef));
+		Assert.assertEquals(-1, field.getCost(startRef), 0.0f);
+		Assert.assertEquals(0, field.getPath(startRef, new long[8], 8));
+		Assert.assertTrue(field.getPolyCount() > 0 && field.getPolyCount() < full.getPolyCount());
+	}
+
+	@Test
+	public void testCacheInvalidation() {
+		FlowFieldCache cache = new FlowFieldCache(navmesh, filter, Float.MAX_VALUE, 2);
+		FlowField field = cache.getField(endRef, endPos);
+		Assert.assertSame(field, cache.getField(endRef, endPos));
+		Assert.assertEquals(1, cache.getBuildCount());
+
+		// Rebuilding a tile the field covers invalidates it.
+		MeshTile tile = navmesh.getTileByRef(startRef);
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		Assert.assertFalse(field.isValid());
+		long tileRef = navmesh.addTile(data, 0, 0);
+		Assert.assertFalse(field.isValid());
+		long ref = navmesh.getPolyRefBase(navmesh.getTileByRef(tileRef)) | NavMesh.decodePolyIdPoly(startRef);
+		FlowField rebuilt = cache.getField(endRef, endPos);
+		Assert.assertNotSame(field, rebuilt);
+		Assert.assertTrue(rebuilt.isValid());
+		Assert.assertTrue(rebuilt.contains(ref));
+		Assert.assertFalse(rebuilt.contains(startRef));
+		Assert.assertEquals(2, cache.getBuildCount());
+
+		// Adding tiles drops the fields around them.
+		cache.invalidateTilesAt(data.header.x, data.header.y);
+		Assert.assertEquals(0, cache.size());
+
+		// The least recently used field is dropped.
+		long[] path = new long[256];
+		long midRef = path[rebuilt.getPath(ref, path, path.length) / 2];
+		float[] midPos = query.closestPointOnPoly(midRef, startPos).getClosest();
+		cache.getField(endRef, endPos);
+		cache.getField(ref, startPos);
+		cache.getField(endRef, endPos);
+		cache.getField(midRef, midPos);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(5, cache.getBuildCount());
+		cache.getField(endRef, endPos);
+		Assert.assertEquals(5, cache.getBuildCount());
+		cache.getField(ref, startPos);
+		Assert.assertEquals(6, cache.getBuildCount());
+	}
+
+}
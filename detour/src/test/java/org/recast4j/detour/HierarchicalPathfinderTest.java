@@ -0,0 +1,132 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalPathfinderTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testFindPath() {
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(query, filter);
+		Assert.assertTrue(pathfinder.getPortalCount() > 0);
+		FindPathResult path = pathfinder.findPath(startRef, endRef, startPos, endPos);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		assertConnected(path.getRefs());
+		// The route through the portals is close to the optimal one.
+		FindPathResult direct = query.findPath(startRef, endRef, startPos, endPos, filter);
+		Assert.assertTrue(path.getRefs().size() <= direct.getRefs().size() * 2);
+	}
+
+	@Test
+	public void testUpdateTiles() {
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(query, filter);
+		int portalCount = pathfinder.getPortalCount();
+		List<Long> refs = pathfinder.findPath(startRef, endRef, startPos, endPos).getRefs();
+
+		// Reload a tile in the middle of the path.
+		long midRef = refs.get(refs.size() / 2);
+		MeshTile tile = navmesh.getTileByRef(midRef);
+		Assert.assertNotEquals(tile, navmesh.getTileByRef(startRef));
+		Assert.assertNotEquals(tile, navmesh.getTileByRef(endRef));
+		int x = tile.data.header.x;
+		int y = tile.data.header.y;
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		pathfinder.updateTilesAt(x, y);
+		Assert.assertTrue(pathfinder.getPortalCount() < portalCount);
+		navmesh.addTile(data, 0, 0);
+		pathfinder.updateTilesAt(x, y);
+		Assert.assertEquals(portalCount, pathfinder.getPortalCount());
+
+		FindPathResult path = pathfinder.findPath(startRef, endRef, startPos, endPos);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		assertConnected(path.getRefs());
+		Assert.assertFalse(path.getRefs().contains(midRef));
+	}
+
+	@Test
+	public void testDetectChangedTiles() {
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(query, filter);
+		int portalCount = pathfinder.getPortalCount();
+		List<Long> refs = pathfinder.findPath(startRef, endRef, startPos, endPos).getRefs();
+
+		// Reload a tile in the middle of the path without telling the path finder.
+		long midRef = refs.get(refs.size() / 2);
+		MeshTile tile = navmesh.getTileByRef(midRef);
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		Assert.assertTrue(pathfinder.getPortalCount() < portalCount);
+		navmesh.addTile(data, 0, 0);
+
+		FindPathResult path = pathfinder.findPath(startRef, endRef, startPos, endPos);
+		Assert.assertEquals(portalCount, pathfinder.getPortalCount());
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		assertConnected(path.getRefs());
+		Assert.assertFalse(path.getRefs().contains(midRef));
+	}
+
+	@Test
+	public void testOutOfNodes() {
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(query, filter);
+		// The route search needs a node per portal.
+		Assert.assertTrue(pathfinder.getPortalCount() > NodePool.DT_TINY_MAX_NODES);
+		FindPathResult path = pathfinder.findPath(startRef, endRef, startPos, endPos);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertFalse(pathfinder.isOutOfNodes());
+
+		// The refinement runs out of nodes in a query with a small pool.
+		pathfinder = new HierarchicalPathfinder(new NavMeshQuery(navmesh, 4), filter);
+		path = pathfinder.findPath(startRef, endRef, startPos, endPos);
+		Assert.assertTrue(pathfinder.isOutOfNodes());
+	}
+
+	private void assertConnected(List<Long> refs) {
+		Assert.assertEquals(startRef, refs.get(0).longValue());
+		Assert.assertEquals(endRef, refs.get(refs.size() - 1).longValue());
+		for (int i = 0; i + 1 < refs.size(); i++) {
+			Tupple2<MeshTile, Poly> tileAndPoly = navmesh.getTileAndPolyByRef(refs.get(i));
+			MeshTile tile = tileAndPoly.first;
+			boolean linked = false;
+			for (int j = tileAndPoly.second.firstLink; j != NavMesh.DT_NULL_LINK; j = tile.linkNext[j]) {
+				if (tile.linkRefs[j] == refs.get(i + 1)) {
+					linked = true;
+				}
+			}
+			Assert.assertTrue("Polygons " + i + " and " + (i + 1) + " are not linked", linked);
+		}
+	}
+}
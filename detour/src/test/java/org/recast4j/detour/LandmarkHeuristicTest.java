@@ -0,0 +1,110 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LandmarkHeuristicTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testFindPath() {
+		List<Long> expected = query.findPath(startRef, endRef, startPos, endPos, filter).getRefs();
+		LandmarkHeuristic heuristic = new LandmarkHeuristic(navmesh, filter, new long[] { startRef, endRef });
+		Assert.assertEquals(0, heuristic.getDistance(0, startRef), 0);
+		Assert.assertEquals(0, heuristic.getDistance(1, endRef), 0);
+		// Both landmarks are on the path, so the bound is the full distance.
+		float h = heuristic.getCost(startRef, startPos, endRef, endPos);
+		Assert.assertEquals(heuristic.getDistance(0, endRef) * LandmarkHeuristic.DEFAULT_SCALE, h, 0.001f);
+		Assert.assertTrue(h > DetourCommon.vDist(startPos, endPos) * NavMeshQuery.H_SCALE);
+
+		query.setHeuristic(heuristic);
+		FindPathResult path = query.findPath(startRef, endRef, startPos, endPos, filter);
+		Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+		Assert.assertEquals(expected, path.getRefs());
+	}
+
+	@Test
+	public void testNotAdmissible() {
+		LandmarkHeuristic landmarks = new LandmarkHeuristic(navmesh, filter, new long[] { startRef, endRef });
+		Assert.assertFalse(landmarks.isAdmissible());
+
+		FindPathResult expected = query.findPath(startRef, endRef, startPos, endPos, filter,
+				NavMeshQuery.DT_FINDPATH_BIDIRECTIONAL);
+		FindNearestGoalResult expectedGoal = query.findPathToNearestGoal(startRef, startPos, new long[] { endRef },
+				endPos, null, 1, filter);
+		// Grossly overestimates, the searches that stop early must not use it.
+		query.setHeuristic(new PathHeuristic() {
+			@Override
+			public float getCost(long ref, float[] pos, long endRef, float[] endPos) {
+				return DetourCommon.vDist(pos, endPos) * 100;
+			}
+
+			@Override
+			public boolean isAdmissible() {
+				return false;
+			}
+		});
+		FindPathResult path = query.findPath(startRef, endRef, startPos, endPos, filter,
+				NavMeshQuery.DT_FINDPATH_BIDIRECTIONAL);
+		Assert.assertEquals(expected.getRefs(), path.getRefs());
+		FindNearestGoalResult goal = query.findPathToNearestGoal(startRef, startPos, new long[] { endRef }, endPos,
+				null, 1, filter);
+		Assert.assertEquals(expectedGoal.getRefs(), goal.getRefs());
+		Assert.assertEquals(expectedGoal.getCost(), goal.getCost(), 0);
+	}
+
+	@Test
+	public void testUpdateTiles() {
+		List<Long> refs = query.findPath(startRef, endRef, startPos, endPos, filter).getRefs();
+		long midRef = refs.get(refs.size() / 2);
+		LandmarkHeuristic heuristic = new LandmarkHeuristic(navmesh, filter, new long[] { startRef, endRef });
+		float d = heuristic.getDistance(0, midRef);
+		Assert.assertTrue(d < Float.MAX_VALUE);
+
+		MeshTile tile = navmesh.getTileByRef(midRef);
+		int x = tile.data.header.x;
+		int y = tile.data.header.y;
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		Assert.assertEquals(2, heuristic.updateTilesAt(x, y));
+		Assert.assertEquals(Float.MAX_VALUE, heuristic.getDistance(0, midRef), 0);
+		long tileRef = navmesh.addTile(data, 0, 0);
+		Assert.assertEquals(2, heuristic.updateTilesAt(x, y));
+		long newMidRef = tileRef | NavMesh.decodePolyIdPoly(midRef);
+		Assert.assertEquals(d, heuristic.getDistance(0, newMidRef), 0.001f);
+	}
+}
@@ -60,5 +60,28 @@ public class MoveAlongSurfaceTest extends AbstractDetourTest {
 		}
 	}
 
-
+	@Test
+	public void testMoveAlongSurfaceToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		MoveAlongSurfaceBuffer result = new MoveAlongSurfaceBuffer(32);
+		MoveAlongSurfaceBuffer small = new MoveAlongSurfaceBuffer(3);
+		for (int i = 0; i < startRefs.length; i++) {
+			Status status = query.moveAlongSurface(startRefs[i], startPoss[i], endPoss[i], filter, result);
+			Assert.assertEquals(Status.SUCCSESS, status);
+			for (int v = 0; v < 3; v++) {
+				Assert.assertEquals(position[i][v], result.resultPos[v], 0.01f);
+			}
+			Assert.assertEquals(visited[i].length, result.visitedCount);
+			for (int j = 0; j < visited[i].length; j++) {
+				Assert.assertEquals(visited[i][j], result.visited[j]);
+			}
+			// A short buffer keeps the polygons nearest to the start.
+			status = query.moveAlongSurface(startRefs[i], startPoss[i], endPoss[i], filter, small);
+			Assert.assertEquals(Status.PARTIAL_RESULT, status);
+			Assert.assertEquals(3, small.visitedCount);
+			for (int j = 0; j < 3; j++) {
+				Assert.assertEquals(visited[i][j], small.visited[j]);
+			}
+		}
+	}
 }
@@ -0,0 +1,101 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NavMeshQueryServiceTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+
+	private NavMesh navmesh;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+	}
+
+	@Test
+	public void testConcurrentFindPath() {
+		QueryFilter filter = new QueryFilter();
+		List<Long> expected = new NavMeshQuery(navmesh).findPath(startRef, endRef, startPos, endPos, filter).getRefs();
+		NavMeshQueryService service = new NavMeshQueryService(navmesh, 4);
+		try {
+			List<CompletableFuture<FindPathResult>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(service.findPathAsync(startRef, endRef, startPos, endPos, filter));
+			}
+			for (CompletableFuture<FindPathResult> future : futures) {
+				FindPathResult path = future.join();
+				Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+				Assert.assertEquals(expected, path.getRefs());
+			}
+			NavMeshQueryPool pool = service.getPool();
+			Assert.assertEquals(0, pool.getLeasedCount());
+			Assert.assertEquals(100, pool.getAcquireCount());
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testPoolCapacity() {
+		NavMeshQueryPool pool = new NavMeshQueryPool(navmesh, 2);
+		NavMeshQuery q1 = pool.acquire();
+		NavMeshQuery q2 = pool.acquire();
+		Assert.assertNotSame(q1, q2);
+		Assert.assertEquals(1.0f, pool.getUtilization(), 0);
+		pool.release(q1);
+		Assert.assertSame(q1, pool.acquire());
+		pool.release(q1);
+		pool.release(q2);
+		Assert.assertEquals(0, pool.getLeasedCount());
+	}
+
+	@Test
+	public void testPoolRejectsInvalidRelease() {
+		NavMeshQueryPool pool = new NavMeshQueryPool(navmesh, 2);
+		NavMeshQuery q1 = pool.acquire();
+		pool.acquire();
+		pool.release(q1);
+		try {
+			pool.release(q1);
+			Assert.fail("Double release accepted");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			pool.release(new NavMeshQuery(navmesh));
+			Assert.fail("Foreign query accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertEquals(1, pool.getLeasedCount());
+		Assert.assertSame(q1, pool.acquire());
+		Assert.assertEquals(2, pool.getLeasedCount());
+	}
+}
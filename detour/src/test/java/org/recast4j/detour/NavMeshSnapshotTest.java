@@ -0,0 +1,128 @@
+package org.recast4j.detour;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.recast4j.detour.io.MeshSetReader;
+
+public class NavMeshSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final NavMeshSnapshotWriter writer = new NavMeshSnapshotWriter();
+	private final NavMeshSnapshotReader reader = new NavMeshSnapshotReader();
+	private NavMesh mesh;
+
+	@Before
+	public void setUp() throws IOException {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream("dungeon_all_tiles_navmesh.bin")) {
+			mesh = new MeshSetReader().read(is, 6);
+		}
+		// Move a tile to a new slot, so that the salts and the free list are not the initial ones.
+		MeshTile tile = mesh.getTilesAt(6, 9).get(0);
+		mesh.addTile(mesh.removeTile(mesh.getTileRef(tile)), 0, 0);
+	}
+
+	private byte[] write(NavMesh mesh, ByteOrder order) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writer.write(os, mesh, order);
+		return os.toByteArray();
+	}
+
+	@Test
+	public void testRestoreIdenticalMesh() throws IOException {
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			NavMesh restored = reader.read(ByteBuffer.wrap(write(mesh, order)));
+			assertSameMesh(mesh, restored);
+		}
+	}
+
+	@Test
+	public void testRestoreFromFileInParallel() throws IOException {
+		File file = folder.newFile("navmesh.snapshot");
+		try (OutputStream os = new FileOutputStream(file)) {
+			writer.write(os, mesh, ByteOrder.nativeOrder());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertSameMesh(mesh, reader.read(file, executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void assertSameMesh(NavMesh expected, NavMesh actual) {
+		assertEquals(expected.getTileCount(), actual.getTileCount());
+		int tiles = 0;
+		for (int i = 0; i < expected.getMaxTiles(); i++) {
+			MeshTile e = expected.getTile(i);
+			MeshTile a = actual.getTile(i);
+			assertEquals(e.salt, a.salt);
+			assertEquals(e.data == null, a.data == null);
+			if (e.data == null)
+				continue;
+			tiles++;
+			assertEquals(e.flags, a.flags);
+			assertArrayEquals(e.data.verts, a.data.verts, 0);
+			for (int j = 0; j < e.data.polys.length; j++) {
+				assertEquals(e.data.polys[j].firstLink, a.data.polys[j].firstLink);
+			}
+			assertEquals(e.linkCount, a.linkCount);
+			assertEquals(e.linksFreeList, a.linksFreeList);
+			assertArrayEquals(Arrays.copyOf(e.linkRefs, e.linkCount), a.linkRefs);
+			assertArrayEquals(Arrays.copyOf(e.linkNext, e.linkCount), a.linkNext);
+			assertArrayEquals(Arrays.copyOf(e.linkEdges, e.linkCount), a.linkEdges);
+			assertArrayEquals(Arrays.copyOf(e.linkSides, e.linkCount), a.linkSides);
+			assertArrayEquals(Arrays.copyOf(e.linkBmins, e.linkCount), a.linkBmins);
+			assertArrayEquals(Arrays.copyOf(e.linkBmaxs, e.linkCount), a.linkBmaxs);
+			// The tile lookup has the same order.
+			List<MeshTile> el = expected.getTilesAt(e.data.header.x, e.data.header.y);
+			List<MeshTile> al = actual.getTilesAt(e.data.header.x, e.data.header.y);
+			assertEquals(el.size(), al.size());
+			for (int j = 0; j < el.size(); j++) {
+				assertEquals(expected.getTileRef(el.get(j)), actual.getTileRef(al.get(j)));
+			}
+		}
+		assertTrue(tiles > 1);
+
+		// Paths across the tiles are the same.
+		float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+		float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+		float[] extents = { 2, 4, 2 };
+		QueryFilter filter = new QueryFilter();
+		NavMeshQuery eq = new NavMeshQuery(expected);
+		NavMeshQuery aq = new NavMeshQuery(actual);
+		long startRef = eq.findNearestPoly(startPos, extents, filter).getNearestRef();
+		long endRef = eq.findNearestPoly(endPos, extents, filter).getNearestRef();
+		assertEquals(startRef, aq.findNearestPoly(startPos, extents, filter).getNearestRef());
+		FindPathResult ep = eq.findPath(startRef, endRef, startPos, endPos, filter);
+		assertTrue(ep.getRefs().size() > 1);
+		assertEquals(ep.getRefs(), aq.findPath(startRef, endRef, startPos, endPos, filter).getRefs());
+
+		// Tiles added later get the same slots and references.
+		MeshTile tile = expected.getTilesAt(2, 9).get(0);
+		MeshData data = expected.removeTile(expected.getTileRef(tile));
+		actual.removeTile(actual.getTileRefAt(2, 9, 0));
+		assertEquals(expected.addTile(data, 0, 0), actual.addTile(data, 0, 0));
+	}
+
+}
@@ -0,0 +1,157 @@
+package org.recast4j.detour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.recast4j.detour.io.MappedMeshSetReader;
+
+public class NavMeshStreamerTest {
+
+	private MappedMeshSetReader source;
+	private NavMesh mesh;
+
+	@Before
+	public void setUp() throws IOException, URISyntaxException {
+		source = new MappedMeshSetReader(
+				new File(getClass().getClassLoader().getResource("dungeon_all_tiles_navmesh.bin").toURI()), 6);
+		mesh = new NavMesh(source.getNavMesh().getParams(), 6);
+	}
+
+	private float[] center(int i) {
+		NavMeshParams params = mesh.getParams();
+		return new float[] { params.orig[0] + (source.getTileX(i) + 0.5f) * params.tileWidth, params.orig[1],
+				params.orig[2] + (source.getTileY(i) + 0.5f) * params.tileHeight };
+	}
+
+	private boolean within(int i, int j, int range) {
+		return Math.abs(source.getTileX(i) - source.getTileX(j)) <= range
+				&& Math.abs(source.getTileY(i) - source.getTileY(j)) <= range;
+	}
+
+	@Test
+	public void testLoadAroundPoints() throws IOException {
+		NavMeshStreamer streamer = new NavMeshStreamer(mesh, source, 1, 0, 1000, null);
+		int a = 0;
+		int b = source.getTileCount() - 1;
+		float[] points = new float[6];
+		System.arraycopy(center(a), 0, points, 0, 3);
+		System.arraycopy(center(b), 0, points, 3, 3);
+		streamer.update(points, 2);
+		int resident = 0;
+		for (int i = 0; i < source.getTileCount(); i++) {
+			assertEquals(within(i, a, 1) || within(i, b, 1), streamer.isResident(i));
+			if (streamer.isResident(i)) {
+				resident++;
+				// The tiles keep the references of the source.
+				assertEquals(source.getTileRef(i),
+						mesh.getTileRefAt(source.getTileX(i), source.getTileY(i), source.getTileLayer(i)));
+			}
+		}
+		assertTrue(resident > 1);
+		assertEquals(resident, streamer.getResidentTileCount());
+		assertEquals(resident, streamer.getLoadCount());
+
+		// Nothing is loaded twice.
+		streamer.update(points, 2);
+		assertEquals(resident, streamer.getLoadCount());
+
+		streamer.clear();
+		assertEquals(0, streamer.getResidentTileCount());
+		assertTrue(mesh.getTilesAt(source.getTileX(a), source.getTileY(a)).isEmpty());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws IOException {
+		int budget = 3;
+		NavMeshStreamer streamer = new NavMeshStreamer(mesh, source, 0, 0, budget, null);
+		int n = source.getTileCount();
+		for (int i = 0; i < n; i++) {
+			streamer.update(center(i), 1);
+			assertTrue(streamer.isResident(i));
+			assertTrue(streamer.getResidentTileCount() <= budget);
+		}
+		// The tiles visited last are kept.
+		for (int i = n - budget; i < n; i++) {
+			assertTrue(streamer.isResident(i));
+		}
+		assertFalse(streamer.isResident(0));
+		assertEquals(n - budget, streamer.getEvictionCount());
+
+		// Tiles required by a point are kept even above the budget.
+		NavMeshStreamer wide = new NavMeshStreamer(new NavMesh(mesh.getParams(), 6), source, 100, 0, 1, null);
+		wide.update(center(0), 1);
+		assertEquals(n, wide.getResidentTileCount());
+		assertEquals(0, wide.getEvictionCount());
+	}
+
+	@Test
+	public void testTouchKeepsTile() throws IOException {
+		NavMeshStreamer streamer = new NavMeshStreamer(mesh, source, 0, 0, 3, null);
+		streamer.update(center(0), 1);
+		long ref = mesh.getPolyRefBase(mesh.getTileByRef(source.getTileRef(0)));
+		streamer.update(center(1), 1);
+		streamer.update(center(2), 1);
+		// A query on the first tile while the point is elsewhere.
+		streamer.touch(ref);
+		streamer.update(center(3), 1);
+		assertTrue(streamer.isResident(0));
+		assertFalse(streamer.isResident(1));
+		assertTrue(mesh.isValidPolyRef(ref));
+
+		// Without the query the first tile is the oldest one.
+		streamer.update(center(4), 1);
+		streamer.update(center(5), 1);
+		assertFalse(streamer.isResident(0));
+		assertFalse(mesh.isValidPolyRef(ref));
+	}
+
+	@Test
+	public void testPrefetch() throws IOException {
+		NavMeshStreamer streamer = new NavMeshStreamer(mesh, source, 0, 1, 1000, Runnable::run);
+		streamer.update(center(0), 1);
+		assertEquals(1, streamer.getResidentTileCount());
+		int neighbours = 0;
+		int next = -1;
+		for (int i = 1; i < source.getTileCount(); i++) {
+			if (within(i, 0, 1)) {
+				neighbours++;
+				next = i;
+			}
+		}
+		assertTrue(next > 0);
+		assertEquals(neighbours, streamer.getPrefetchedTileCount());
+
+		// Moving to a neighbour uses the decoded tile.
+		streamer.update(center(next), 1);
+		assertTrue(streamer.isResident(next));
+		assertEquals(1, streamer.getPrefetchHitCount());
+		streamer.shutdown();
+		assertEquals(0, streamer.getPrefetchedTileCount());
+	}
+
+	@Test
+	public void testBackgroundPrefetch() throws IOException {
+		NavMeshStreamer streamer = new NavMeshStreamer(mesh, source, 1, 2, 1000);
+		try {
+			for (int i = 0; i < source.getTileCount(); i++) {
+				streamer.update(center(i), 1);
+				assertTrue(streamer.isResident(i));
+			}
+			assertEquals(source.getTileCount(), streamer.getLoadCount());
+		} finally {
+			streamer.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBudget() {
+		new NavMeshStreamer(mesh, source, 1, 1, 0, null);
+	}
+}
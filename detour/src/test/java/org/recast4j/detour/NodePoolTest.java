@@ -0,0 +1,64 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NodePoolTest {
+
+	@Test
+	public void testGetNode() {
+		NodePool pool = new NodePool(256);
+		Node a = pool.getNode(281474976710696L, 0);
+		Node b = pool.getNode(281474976710696L, 1);
+		Node c = pool.getNode(281474976710773L);
+		Assert.assertNotSame(a, b);
+		Assert.assertSame(a, pool.getNode(281474976710696L, 0));
+		Assert.assertSame(b, pool.findNode(281474976710696L, 1));
+		Assert.assertSame(c, pool.getNodeAtIdx(pool.getNodeIdx(c)));
+		Assert.assertEquals(2, pool.findNodes(281474976710696L).size());
+		Assert.assertEquals(3, pool.getNodeCount());
+	}
+
+	@Test
+	public void testMaxNodes() {
+		NodePool pool = new NodePool(100);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertNotNull(pool.getNode(i + 1));
+		}
+		Assert.assertNull(pool.getNode(1000));
+		Assert.assertNotNull(pool.getNode(50));
+	}
+
+	@Test
+	public void testClearReusesNodes() {
+		NodePool pool = new NodePool(100);
+		Node node = pool.getNode(42);
+		node.flags = Node.DT_NODE_CLOSED;
+		node.total = 10;
+		pool.clear();
+		Assert.assertEquals(0, pool.getNodeCount());
+		Assert.assertNull(pool.findNode(42));
+		Node reused = pool.getNode(7);
+		Assert.assertSame(node, reused);
+		Assert.assertEquals(7, reused.id);
+		Assert.assertEquals(0, reused.flags);
+		Assert.assertEquals(0, reused.total, 0);
+	}
+}
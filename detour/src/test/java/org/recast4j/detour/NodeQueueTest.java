@@ -0,0 +1,86 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NodeQueueTest {
+
+	@Test
+	public void testPopOrder() {
+		NodePool pool = new NodePool(1000);
+		NodeQueue queue = new NodeQueue();
+		Random r = new Random(1);
+		for (int i = 0; i < 500; i++) {
+			Node node = pool.getNode(i + 1);
+			node.total = r.nextFloat() * 100;
+			queue.push(node);
+		}
+		// Decrease some keys.
+		for (int i = 0; i < 500; i += 3) {
+			Node node = pool.getNode(i + 1);
+			node.total *= 0.5f;
+			queue.modify(node);
+		}
+		float last = -1;
+		int count = 0;
+		while (!queue.isEmpty()) {
+			Node node = queue.pop();
+			Assert.assertTrue(node.total >= last);
+			last = node.total;
+			count++;
+		}
+		Assert.assertEquals(500, count);
+	}
+
+	@Test
+	public void testClear() {
+		NodePool pool = new NodePool(100);
+		NodeQueue queue = new NodeQueue();
+		Node a = pool.getNode(1);
+		a.total = 5;
+		queue.push(a);
+		queue.clear();
+		pool.clear();
+		Assert.assertTrue(queue.isEmpty());
+		Node b = pool.getNode(2);
+		b.total = 3;
+		queue.modify(b);
+		Assert.assertEquals(1, queue.size());
+		Assert.assertSame(b, queue.top());
+	}
+
+	@Test
+	public void testNodesWithoutPool() {
+		NodeQueue queue = new NodeQueue();
+		Node a = new Node(1);
+		a.total = 5;
+		Node b = new Node(200);
+		b.total = 7;
+		queue.push(a);
+		queue.push(b);
+		b.total = 1;
+		queue.modify(b);
+		Assert.assertSame(b, queue.pop());
+		Assert.assertSame(a, queue.pop());
+		Assert.assertTrue(queue.isEmpty());
+	}
+}
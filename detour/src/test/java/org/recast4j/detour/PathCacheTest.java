@@ -0,0 +1,86 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PathCacheTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private final float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+	private final float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		PathCache cache = new PathCache(navmesh, 10);
+		List<Long> expected = query.findPath(startRef, endRef, startPos, endPos, filter).getRefs();
+		Assert.assertEquals(expected, cache.findPath(query, startRef, endRef, startPos, endPos, filter).getRefs());
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		FindPathResult cached = cache.findPath(query, startRef, endRef, startPos, endPos, filter);
+		Assert.assertEquals(Status.SUCCSESS, cached.getStatus());
+		Assert.assertEquals(expected, cached.getRefs());
+		Assert.assertEquals(1, cache.getHitCount());
+		// A different filter instance is a different key.
+		cache.findPath(query, startRef, endRef, startPos, endPos, new QueryFilter());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		PathCache cache = new PathCache(navmesh, 1);
+		cache.findPath(query, startRef, endRef, startPos, endPos, filter);
+		cache.findPath(query, endRef, startRef, endPos, startPos, filter);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		cache.findPath(query, endRef, startRef, endPos, startPos, filter);
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testTileInvalidation() {
+		PathCache cache = new PathCache(navmesh, 10);
+		List<Long> refs = cache.findPath(query, startRef, endRef, startPos, endPos, filter).getRefs();
+		MeshTile tile = navmesh.getTileByRef(refs.get(refs.size() / 2));
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		navmesh.addTile(data, 0, 0);
+		FindPathResult path = cache.findPath(query, startRef, endRef, startPos, endPos, filter);
+		Assert.assertEquals(1, cache.getInvalidationCount());
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertNotEquals(refs, path.getRefs());
+		Assert.assertEquals(path.getRefs(), cache.findPath(query, startRef, endRef, startPos, endPos, filter).getRefs());
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+}
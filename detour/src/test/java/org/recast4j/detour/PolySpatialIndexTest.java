@@ -0,0 +1,136 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolySpatialIndexTest {
+
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testFindNearestPolys() {
+		PolySpatialIndex index = new PolySpatialIndex(navmesh);
+		Random random = new Random(1);
+		int k = 5;
+		long[] refs = new long[k];
+		float[] points = new float[k * 3];
+		float[] distances = new float[k];
+		for (int i = 0; i < 200; i++) {
+			// Points around and far outside of the mesh.
+			float[] pos = { -100 + random.nextFloat() * 220, -20 + random.nextFloat() * 60,
+					-140 + random.nextFloat() * 210 };
+			int n = index.findNearestPolys(pos, k, Float.POSITIVE_INFINITY, filter, refs, points, distances);
+			float[] expected = bruteForceDistances(pos);
+			Assert.assertEquals(k, n);
+			for (int j = 0; j < k; j++) {
+				Assert.assertEquals(expected[j], distances[j], 1e-3f);
+				float[] closest = query.closestPointOnPoly(refs[j], pos).getClosest();
+				Assert.assertEquals(distances[j], (float) Math.sqrt(DetourCommon.vDistSqr(pos, closest)), 1e-3f);
+				for (int v = 0; v < 3; v++) {
+					Assert.assertEquals(closest[v], points[j * 3 + v], 0f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFindNearestPolyWithinRadius() {
+		PolySpatialIndex index = new PolySpatialIndex(navmesh);
+		float[] pos = { 200, 10, 200 };
+		float[] nearestPt = new float[3];
+		float nearest = bruteForceDistances(pos)[0];
+		Assert.assertEquals(0, index.findNearestPoly(pos, nearest * 0.99f, filter, nearestPt));
+		long ref = index.findNearestPoly(pos, nearest * 1.01f, filter, nearestPt);
+		Assert.assertNotEquals(0, ref);
+		Assert.assertEquals(nearest, (float) Math.sqrt(DetourCommon.vDistSqr(pos, nearestPt)), 1e-3f);
+		// The box query of findNearestPoly() does not reach the mesh.
+		Assert.assertEquals(0, query.findNearestPoly(pos, new float[] { 2, 4, 2 }, filter).getNearestRef());
+	}
+
+	@Test
+	public void testReplacedTile() {
+		PolySpatialIndex index = new PolySpatialIndex(navmesh);
+		float[] pos = { 39.447338f, 9.998177f, -0.784811f };
+		float[] nearestPt = new float[3];
+		long ref = index.findNearestPoly(pos, Float.POSITIVE_INFINITY, filter, nearestPt);
+		MeshTile tile = navmesh.getTileByRef(ref);
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		long other = index.findNearestPoly(pos, Float.POSITIVE_INFINITY, filter, nearestPt);
+		Assert.assertNotEquals(tile, navmesh.getTileByRef(other));
+		navmesh.addTile(data, 0, 0);
+		index.updateTilesAt(data.header.x, data.header.y);
+		long readded = index.findNearestPoly(pos, Float.POSITIVE_INFINITY, filter, nearestPt);
+		Assert.assertNotEquals(ref, readded);
+		Assert.assertEquals(NavMesh.decodePolyIdPoly(ref), NavMesh.decodePolyIdPoly(readded));
+	}
+
+	@Test
+	public void testSkipOffMeshConnections() {
+		NavMesh mesh = new NavMesh(new RecastTestMeshBuilder().getMeshData(), 6, 0);
+		PolySpatialIndex index = new PolySpatialIndex(mesh);
+		MeshTile tile = mesh.getTile(0);
+		int polyCount = tile.data.header.polyCount;
+		int groundCount = tile.data.header.offMeshBase;
+		Assert.assertTrue(groundCount < polyCount);
+		long[] refs = new long[polyCount];
+		float[] points = new float[polyCount * 3];
+		// Ask for more polygons than there are, from the start of the off-mesh connection.
+		float[] pos = tile.data.offMeshCons[0].pos.clone();
+		int n = index.findNearestPolys(pos, polyCount, Float.POSITIVE_INFINITY, filter, refs, points, null);
+		Assert.assertEquals(groundCount, n);
+		for (int i = 0; i < n; i++) {
+			Poly poly = mesh.getTileAndPolyByRef(refs[i]).second;
+			Assert.assertNotEquals(Poly.DT_POLYTYPE_OFFMESH_CONNECTION, poly.getType());
+		}
+	}
+
+	private float[] bruteForceDistances(float[] pos) {
+		float[] distances = new float[0];
+		for (int t = 0; t < navmesh.getMaxTiles(); t++) {
+			MeshTile tile = navmesh.getTile(t);
+			if (tile.data == null || tile.data.header == null)
+				continue;
+			long base = navmesh.getPolyRefBase(tile);
+			for (int i = 0; i < tile.data.header.polyCount; i++) {
+				Poly poly = tile.data.polys[i];
+				if (poly.getType() == Poly.DT_POLYTYPE_OFFMESH_CONNECTION || !filter.passFilter(base | i, tile, poly))
+					continue;
+				float[] closest = query.closestPointOnPoly(base | i, pos).getClosest();
+				distances = Arrays.copyOf(distances, distances.length + 1);
+				distances[distances.length - 1] = (float) Math.sqrt(DetourCommon.vDistSqr(pos, closest));
+			}
+		}
+		Arrays.sort(distances);
+		return distances;
+	}
+}
@@ -0,0 +1,146 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolyVisibilityCacheTest {
+
+	private final long startRef = 281475015507969L;
+	private final long endRef = 281474985099266L;
+	private NavMesh navmesh;
+	private NavMeshQuery query;
+	private QueryFilter filter;
+
+	@Before
+	public void setUp() {
+		navmesh = new TestTiledNavMeshBuilder().getNavMesh();
+		query = new NavMeshQuery(navmesh);
+		filter = new QueryFilter();
+	}
+
+	@Test
+	public void testMatchesRaycast() {
+		PolyVisibilityCache cache = new PolyVisibilityCache(navmesh, filter, 1 << 20);
+		List<Long> refs = groundPolys(navmesh.getTileByRef(startRef));
+		refs.addAll(groundPolys(navmesh.getTileByRef(endRef)));
+		Random random = new Random(1);
+		long[][] pairs = new long[500][];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = new long[] { refs.get(random.nextInt(refs.size())), refs.get(random.nextInt(refs.size())) };
+		}
+		int visible = 0;
+		for (long[] pair : pairs) {
+			boolean expected = raycastVisible(pair[0], pair[1]);
+			Assert.assertEquals(expected, cache.isVisible(pair[0], pair[1]));
+			visible += expected ? 1 : 0;
+		}
+		Assert.assertTrue(visible > 0 && visible < pairs.length);
+		int misses = cache.getMissCount();
+		for (long[] pair : pairs) {
+			Assert.assertEquals(raycastVisible(pair[0], pair[1]), cache.isVisible(pair[0], pair[1]));
+		}
+		Assert.assertEquals(misses, cache.getMissCount());
+	}
+
+	@Test
+	public void testPrecompute() {
+		PolyVisibilityCache cache = new PolyVisibilityCache(navmesh, filter, 1 << 20);
+		MeshTile tile = navmesh.getTileByRef(startRef);
+		cache.precompute(tile, tile);
+		List<Long> refs = groundPolys(tile);
+		for (long a : refs) {
+			for (long b : refs) {
+				Assert.assertEquals(a == b || raycastVisible(a, b), cache.isVisible(a, b));
+			}
+		}
+		Assert.assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void testMemoryBudget() {
+		PolyVisibilityCache cache = new PolyVisibilityCache(navmesh, filter, 1024);
+		List<Long> refs = new ArrayList<>();
+		for (int t = 0; t < navmesh.getMaxTiles(); t++) {
+			if (navmesh.getTile(t).data != null && navmesh.getTile(t).data.header != null)
+				refs.addAll(groundPolys(navmesh.getTile(t)));
+		}
+		Random random = new Random(2);
+		for (int i = 0; i < 300; i++) {
+			long a = refs.get(random.nextInt(refs.size()));
+			long b = refs.get(random.nextInt(refs.size()));
+			Assert.assertEquals(raycastVisible(a, b), cache.isVisible(a, b));
+			Assert.assertTrue(cache.getMemoryUsage() <= 2048);
+		}
+	}
+
+	@Test
+	public void testReplacedTile() {
+		PolyVisibilityCache cache = new PolyVisibilityCache(navmesh, filter, 1 << 20);
+		MeshTile tile = navmesh.getTileByRef(startRef);
+		List<Long> refs = groundPolys(tile);
+		long a = refs.get(0);
+		long b = refs.get(refs.size() - 1);
+		boolean visible = cache.isVisible(a, b);
+		Assert.assertEquals(visible, cache.isVisible(a, b));
+		Assert.assertEquals(1, cache.getMissCount());
+		MeshData data = navmesh.removeTile(navmesh.getTileRef(tile));
+		navmesh.addTile(data, 0, 0);
+		cache.invalidateTilesAt(data.header.x, data.header.y);
+		long base = navmesh.getPolyRefBase(navmesh.getTilesAt(data.header.x, data.header.y).get(0));
+		long ra = base | NavMesh.decodePolyIdPoly(a);
+		long rb = base | NavMesh.decodePolyIdPoly(b);
+		Assert.assertNotEquals(a, ra);
+		Assert.assertEquals(visible, cache.isVisible(ra, rb));
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+
+	private List<Long> groundPolys(MeshTile tile) {
+		List<Long> refs = new ArrayList<>();
+		long base = navmesh.getPolyRefBase(tile);
+		for (int i = 0; i < tile.data.header.polyCount; i++) {
+			if (tile.data.polys[i].getType() != Poly.DT_POLYTYPE_OFFMESH_CONNECTION)
+				refs.add(base | i);
+		}
+		return refs;
+	}
+
+	private boolean raycastVisible(long a, long b) {
+		RaycastHit hit = query.raycast(a, center(a), center(b), filter, 0, 0);
+		return hit.t == Float.MAX_VALUE && hit.path.get(hit.path.size() - 1) == b;
+	}
+
+	private float[] center(long ref) {
+		Tupple2<MeshTile, Poly> tileAndPoly = navmesh.getTileAndPolyByRef(ref);
+		float[] center = new float[3];
+		Poly poly = tileAndPoly.second;
+		for (int i = 0; i < poly.vertCount; i++) {
+			for (int v = 0; v < 3; v++)
+				center[v] += tileAndPoly.first.data.verts[poly.verts[i] * 3 + v];
+		}
+		for (int v = 0; v < 3; v++)
+			center[v] /= poly.vertCount;
+		return center;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RaycastTest extends AbstractDetourTest {
+
+	@Test
+	public void testRaycastToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		RaycastHitBuffer hit = new RaycastHitBuffer(256);
+		RaycastHitBuffer small = new RaycastHitBuffer(1);
+		for (int i = 0; i < startRefs.length; i++) {
+			RaycastHit expected = query.raycast(startRefs[i], startPoss[i], endPoss[i], filter,
+					NavMeshQuery.DT_RAYCAST_USE_COSTS, 0);
+			Status status = query.raycast(startRefs[i], startPoss[i], endPoss[i], filter,
+					NavMeshQuery.DT_RAYCAST_USE_COSTS, 0, hit);
+			Assert.assertEquals(Status.SUCCSESS, status);
+			Assert.assertEquals(expected.t, hit.t, 0f);
+			Assert.assertEquals(expected.pathCost, hit.pathCost, 0f);
+			Assert.assertEquals(expected.hitEdgeIndex, hit.hitEdgeIndex);
+			Assert.assertArrayEquals(expected.hitNormal, hit.hitNormal, 0f);
+			Assert.assertEquals(expected.path.size(), hit.pathCount);
+			for (int j = 0; j < hit.pathCount; j++) {
+				Assert.assertEquals(expected.path.get(j).longValue(), hit.path[j]);
+			}
+			// The holder is reused and a short path keeps the polygons nearest to the start.
+			status = query.raycast(startRefs[i], startPoss[i], endPoss[i], filter, 0, 0, small);
+			Assert.assertEquals(expected.path.size() > 1 ? Status.PARTIAL_RESULT : Status.SUCCSESS, status);
+			Assert.assertEquals(1, small.pathCount);
+			Assert.assertEquals(startRefs[i], small.path[0]);
+			Assert.assertEquals(expected.t, small.t, 0f);
+		}
+	}
+}
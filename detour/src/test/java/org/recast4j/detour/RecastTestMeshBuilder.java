@@ -61,10 +61,34 @@ public class RecastTestMeshBuilder {
                 m_detailSampleMaxError);
     }
 
+	/**
+	 * Builds the dungeon mesh with a single off-mesh connection.
+	 * 
+	 * @param offMeshConVerts
+	 *            Start and end point of the connection. [(ax, ay, az, bx, by, bz)]
+	 * @param offMeshConDir
+	 *            1 for a bidirectional connection, 0 for a one way connection.
+	 */
+	public RecastTestMeshBuilder(float[] offMeshConVerts, int offMeshConDir) {
+		this(new ObjImporter().load(ObjImporter.class.getResourceAsStream("dungeon.obj")), PartitionType.WATERSHED,
+				m_cellSize, m_cellHeight, m_agentHeight, m_agentRadius, m_agentMaxClimb, m_agentMaxSlope,
+				m_regionMinSize, m_regionMergeSize, m_edgeMaxLen, m_edgeMaxError, m_vertsPerPoly, m_detailSampleDist,
+				m_detailSampleMaxError, offMeshConVerts, offMeshConDir);
+	}
+
 	public RecastTestMeshBuilder(InputGeom m_geom, PartitionType m_partitionType, float m_cellSize, float m_cellHeight,
 			float m_agentHeight, float m_agentRadius, float m_agentMaxClimb, float m_agentMaxSlope, int m_regionMinSize,
 			int m_regionMergeSize, float m_edgeMaxLen, float m_edgeMaxError, int m_vertsPerPoly,
 			float m_detailSampleDist, float m_detailSampleMaxError) {
+		this(m_geom, m_partitionType, m_cellSize, m_cellHeight, m_agentHeight, m_agentRadius, m_agentMaxClimb,
+				m_agentMaxSlope, m_regionMinSize, m_regionMergeSize, m_edgeMaxLen, m_edgeMaxError, m_vertsPerPoly,
+				m_detailSampleDist, m_detailSampleMaxError, new float[] { 0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f }, 1);
+	}
+
+	private RecastTestMeshBuilder(InputGeom m_geom, PartitionType m_partitionType, float m_cellSize,
+			float m_cellHeight, float m_agentHeight, float m_agentRadius, float m_agentMaxClimb, float m_agentMaxSlope,
+			int m_regionMinSize, int m_regionMergeSize, float m_edgeMaxLen, float m_edgeMaxError, int m_vertsPerPoly,
+			float m_detailSampleDist, float m_detailSampleMaxError, float[] offMeshConVerts, int offMeshConDir) {
 		RecastConfig cfg = new RecastConfig(m_partitionType, m_cellSize, m_cellHeight, m_agentHeight, m_agentRadius,
 				m_agentMaxClimb, m_agentMaxSlope, m_regionMinSize, m_regionMergeSize, m_edgeMaxLen, m_edgeMaxError,
 				m_vertsPerPoly, m_detailSampleDist, m_detailSampleMaxError, 0, SampleAreaModifications.SAMPLE_AREAMOD_GROUND);
@@ -101,17 +125,11 @@ public class RecastTestMeshBuilder {
 		params.ch = m_cellHeight;
 		params.buildBvTree = true;
 
-		params.offMeshConVerts = new float[6];
-		params.offMeshConVerts[0] = 0.1f;
-		params.offMeshConVerts[1] = 0.2f;
-		params.offMeshConVerts[2] = 0.3f;
-		params.offMeshConVerts[3] = 0.4f;
-		params.offMeshConVerts[4] = 0.5f;
-		params.offMeshConVerts[5] = 0.6f;
+		params.offMeshConVerts = offMeshConVerts;
 		params.offMeshConRad = new float[1];
 		params.offMeshConRad[0] = 0.1f;
 		params.offMeshConDir = new int[1];
-		params.offMeshConDir[0] = 1;
+		params.offMeshConDir[0] = offMeshConDir;
 		params.offMeshConAreas = new int[1];
 		params.offMeshConAreas[0] = 2;
 		params.offMeshConFlags = new int[1];
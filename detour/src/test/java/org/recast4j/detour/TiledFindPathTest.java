@@ -1,5 +1,8 @@
 package org.recast4j.detour;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,4 +50,230 @@ public class TiledFindPathTest {
 			}
 		}
 	}
+
+	@Test
+	public void testFindPathToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		long[] path = new long[256];
+		int[] pathCount = new int[1];
+		for (int i = 0; i < startRefs.length; i++) {
+			Status status = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter, path, pathCount,
+					path.length);
+			Assert.assertEquals(statuses[i], status);
+			Assert.assertEquals(results[i].length, pathCount[0]);
+			for (int j = 0; j < results[i].length; j++) {
+				Assert.assertEquals(results[i][j], path[j]);
+			}
+			// Truncated path keeps the start.
+			status = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter, path, pathCount, 5);
+			Assert.assertEquals(Status.PARTIAL_RESULT, status);
+			Assert.assertEquals(5, pathCount[0]);
+			for (int j = 0; j < 5; j++) {
+				Assert.assertEquals(results[i][j], path[j]);
+			}
+		}
+	}
+
+	@Test
+	public void testFindPathAnyAngle() {
+		QueryFilter filter = new QueryFilter();
+		for (int i = 0; i < startRefs.length; i++) {
+			FindPathResult path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter,
+					NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+			Assert.assertEquals(Status.SUCCSESS, path.getStatus());
+			List<Long> refs = path.getRefs();
+			Assert.assertEquals(startRefs[i], refs.get(0).longValue());
+			Assert.assertEquals(endRefs[i], refs.get(refs.size() - 1).longValue());
+			// The corridor is connected.
+			for (int j = 1; j < refs.size(); j++) {
+				Assert.assertTrue(isNeighbour(refs.get(j - 1), refs.get(j)));
+			}
+			// Same result as the sliced query.
+			query.initSlicedFindPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter,
+					NavMeshQuery.DT_FINDPATH_ANY_ANGLE);
+			query.updateSlicedFindPath(Integer.MAX_VALUE);
+			Assert.assertEquals(refs, query.finalizeSlicedFindPath().getRefs());
+			// Without the option the regular search is used.
+			Assert.assertEquals(results[i].length,
+					query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter, 0).getRefs().size());
+		}
+	}
+
+	@Test
+	public void testRepairPathAfterTileRebuild() {
+		QueryFilter filter = new QueryFilter();
+		long[] path = results[0];
+		// Rebuild the tile of a polygon in the middle of the path.
+		int k = path.length / 2;
+		MeshTile tile = navmesh.getTileByRef(path[k]);
+		long tileRef = navmesh.getTileRef(tile);
+		Assert.assertNotEquals(tile, navmesh.getTileByRef(path[0]));
+		Assert.assertNotEquals(tile, navmesh.getTileByRef(path[path.length - 1]));
+		MeshData data = navmesh.removeTile(tileRef);
+		navmesh.addTile(data, 0, 0);
+		Assert.assertFalse(navmesh.isValidPolyRef(path[k]));
+
+		long[] result = new long[256];
+		int[] resultCount = new int[1];
+		Status status = query.repairPath(path, path.length, new long[] { tileRef }, 1, startPoss[0], endPoss[0],
+				filter, result, resultCount, result.length);
+		Assert.assertEquals(Status.SUCCSESS, status);
+		int n = resultCount[0];
+		Assert.assertEquals(path[0], result[0]);
+		Assert.assertEquals(path[path.length - 1], result[n - 1]);
+		for (int j = 1; j < n; j++) {
+			Assert.assertTrue(isNeighbour(result[j - 1], result[j]));
+		}
+		// The part of the path before the rebuilt tile is kept.
+		int first = 0;
+		while (navmesh.isValidPolyRef(path[first]))
+			first++;
+		for (int j = 0; j < first; j++) {
+			Assert.assertEquals(path[j], result[j]);
+		}
+
+		// A short buffer keeps the start of the repaired path.
+		status = query.repairPath(path, path.length, new long[] { tileRef }, 1, startPoss[0], endPoss[0], filter,
+				result, resultCount, first + 1);
+		Assert.assertEquals(Status.PARTIAL_RESULT, status);
+		Assert.assertEquals(first + 1, resultCount[0]);
+	}
+
+	@Test
+	public void testRepairPathAroundClosedPolygon() {
+		long[] path = results[0];
+		long[] closed = new long[1];
+		QueryFilter filter = new QueryFilter() {
+			@Override
+			public boolean passFilter(long ref, MeshTile tile, Poly poly) {
+				return ref != closed[0] && super.passFilter(ref, tile, poly);
+			}
+		};
+		long[] result = new long[256];
+		int[] resultCount = new int[1];
+		int repaired = 0;
+		for (int k = 1; k < path.length - 1; k++) {
+			closed[0] = path[k];
+			FindPathResult expected = query.findPath(path[0], path[path.length - 1], startPoss[0], endPoss[0], filter);
+			Status status = query.repairPath(path, path.length, null, 0, startPoss[0], endPoss[0], filter, result,
+					resultCount, result.length);
+			// The repair reaches the end whenever a full search does.
+			Assert.assertEquals(expected.getStatus(), status);
+			int n = resultCount[0];
+			Assert.assertEquals(path[0], result[0]);
+			if (status == Status.SUCCSESS) {
+				Assert.assertEquals(path[path.length - 1], result[n - 1]);
+				repaired++;
+			}
+			for (int j = 0; j < n; j++) {
+				Assert.assertNotEquals(closed[0], result[j]);
+				if (j > 0)
+					Assert.assertTrue(isNeighbour(result[j - 1], result[j]));
+			}
+		}
+		Assert.assertTrue(repaired > 0);
+		// A broken start can not be repaired.
+		Assert.assertEquals(Status.FAILURE, query.repairPath(path, path.length, new long[] {
+				navmesh.getTileRef(navmesh.getTileByRef(path[0])) }, 1, startPoss[0], endPoss[0], filter, result,
+				resultCount, result.length));
+	}
+
+	@Test
+	public void testRepairPathWithBudget() {
+		long[] path = results[0];
+		long[] closed = new long[1];
+		QueryFilter filter = new QueryFilter() {
+			@Override
+			public boolean passFilter(long ref, MeshTile tile, Poly poly) {
+				return ref != closed[0] && super.passFilter(ref, tile, poly);
+			}
+		};
+		long[] result = new long[256];
+		int[] resultCount = new int[1];
+		int[] iterations = new int[1];
+		int repaired = 0;
+		for (int k = 1; k < path.length - 1; k++) {
+			closed[0] = path[k];
+			// A single iteration rarely bridges the gap and never falls back to a search to the end.
+			Status status = query.repairPath(path, path.length, null, 0, startPoss[0], endPoss[0], filter, 1,
+					iterations, result, resultCount, result.length);
+			Assert.assertEquals(1, iterations[0]);
+			if (status != Status.SUCCSESS) {
+				Assert.assertEquals(Status.PARTIAL_RESULT, status);
+				Assert.assertEquals(k, resultCount[0]);
+				for (int j = 0; j < k; j++) {
+					Assert.assertEquals(path[j], result[j]);
+				}
+			}
+
+			status = query.repairPath(path, path.length, null, 0, startPoss[0], endPoss[0], filter, 64, iterations,
+					result, resultCount, result.length);
+			Assert.assertTrue(iterations[0] <= 64);
+			if (status == Status.SUCCSESS) {
+				Assert.assertEquals(path[path.length - 1], result[resultCount[0] - 1]);
+				Assert.assertEquals(Status.SUCCSESS, query.repairPath(path, path.length, null, 0, startPoss[0],
+						endPoss[0], filter, result, resultCount, result.length));
+				repaired++;
+			}
+		}
+		Assert.assertTrue(repaired > 0);
+	}
+
+	private boolean isNeighbour(long from, long to) {
+		Tupple2<MeshTile, Poly> tileAndPoly = navmesh.getTileAndPolyByRef(from);
+		MeshTile tile = tileAndPoly.first;
+		for (int i = tileAndPoly.second.firstLink; i != NavMesh.DT_NULL_LINK; i = tile.linkNext[i]) {
+			if (tile.linkRefs[i] == to)
+				return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testFindStraightPathToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		long[] path = new long[256];
+		float[] straightPath = new float[256 * 3];
+		int[] straightPathFlags = new int[256];
+		long[] straightPathRefs = new long[256];
+		int[] straightPathCount = new int[1];
+		for (int options : new int[] { 0, NavMeshQuery.DT_STRAIGHTPATH_ALL_CROSSINGS }) {
+			for (int i = 0; i < startRefs.length; i++) {
+				FindPathResult result = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter);
+				List<StraightPathItem> expected = query.findStraightPath(startPoss[i], endPoss[i], result.getRefs(),
+						256, options);
+				int npath = result.getRefs(path);
+				Status status = query.findStraightPath(startPoss[i], endPoss[i], path, npath, straightPath,
+						straightPathFlags, straightPathRefs, straightPathCount, 256, options);
+				Assert.assertEquals(Status.SUCCSESS, status);
+				int n = straightPathCount[0];
+				Assert.assertEquals(expected.size(), n);
+				Assert.assertEquals(n, query.findStraightPath(startPoss[i], endPoss[i], path, npath, straightPath,
+						straightPathFlags, straightPathRefs, 256, options));
+				Assert.assertEquals(NavMeshQuery.DT_STRAIGHTPATH_START, straightPathFlags[0]);
+				Assert.assertEquals(NavMeshQuery.DT_STRAIGHTPATH_END, straightPathFlags[n - 1]);
+				for (int j = 0; j < n; j++) {
+					Assert.assertEquals(expected.get(j).getRef(), straightPathRefs[j]);
+					Assert.assertEquals(expected.get(j).getFlags(), straightPathFlags[j]);
+					for (int v = 0; v < 3; v++) {
+						Assert.assertEquals(expected.get(j).getPos()[v], straightPath[j * 3 + v], 0.0f);
+					}
+				}
+
+				// A short buffer keeps the start of the straight path and reports the truncation.
+				Assert.assertTrue(n > 2 && npath > 2);
+				status = query.findStraightPath(startPoss[i], endPoss[i], path, npath, straightPath,
+						straightPathFlags, straightPathRefs, straightPathCount, n - 1, options);
+				Assert.assertEquals(Status.PARTIAL_RESULT, status);
+				Assert.assertEquals(n - 1, straightPathCount[0]);
+				Assert.assertEquals(expected.get(n - 2).getRef(), straightPathRefs[n - 2]);
+				// So does a broken corridor.
+				long[] broken = Arrays.copyOf(path, npath);
+				broken[npath / 2] = 0;
+				status = query.findStraightPath(startPoss[i], endPoss[i], broken, npath, straightPath,
+						straightPathFlags, straightPathRefs, straightPathCount, 256, options);
+				Assert.assertEquals(Status.PARTIAL_RESULT, status);
+			}
+		}
+	}
 }
@@ -0,0 +1,172 @@
+package org.recast4j.detour.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.recast4j.detour.MeshData;
+import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
+
+public class CompactMeshSetReaderWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final CompactMeshSetWriter writer = new CompactMeshSetWriter();
+	private final MeshDataWriter dataWriter = new MeshDataWriter();
+
+	private static class DeflateCompressor implements MeshDataCompressor {
+
+		@Override
+		public byte[] decompress(byte[] buf, int offset, int len, int outputlen) {
+			Inflater inflater = new Inflater();
+			inflater.setInput(buf, offset, len);
+			byte[] output = new byte[outputlen];
+			try {
+				inflater.inflate(output);
+			} catch (DataFormatException e) {
+				throw new IllegalArgumentException(e);
+			}
+			return output;
+		}
+
+		@Override
+		public byte[] compress(byte[] buf) {
+			Deflater deflater = new Deflater();
+			deflater.setInput(buf);
+			deflater.finish();
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] chunk = new byte[4096];
+			while (!deflater.finished()) {
+				baos.write(chunk, 0, deflater.deflate(chunk));
+			}
+			return baos.toByteArray();
+		}
+	}
+
+	private NavMesh readMeshSet() throws IOException {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream("dungeon_all_tiles_navmesh.bin")) {
+			return new MeshSetReader().read(is, 6);
+		}
+	}
+
+	private byte[] write(NavMesh mesh, ByteOrder order, MeshDataCompressor compressor, float cs, float ch)
+			throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writer.write(os, mesh, order, compressor, cs, ch);
+		return os.toByteArray();
+	}
+
+	private byte[] toBytes(MeshData data) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		dataWriter.write(os, data, ByteOrder.BIG_ENDIAN, false);
+		return os.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		NavMesh mesh = readMeshSet();
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			byte[] plain = write(mesh, order, null, 0, 0);
+			byte[] compact = write(mesh, order, new DeflateCompressor(), 0.3f, 0.2f);
+			assertTrue(compact.length < plain.length);
+			for (byte[] set : new byte[][] { plain, compact }) {
+				CompactMeshSetReader reader = new CompactMeshSetReader(ByteBuffer.wrap(set), 6, new DeflateCompressor());
+				assertEquals(mesh.getParams().tileWidth, reader.getParams().tileWidth, 0);
+				int tiles = 0;
+				for (int i = 0; i < mesh.getMaxTiles(); i++) {
+					MeshTile tile = mesh.getTile(i);
+					if (tile.data == null)
+						continue;
+					int t = reader.findTile(tile.data.header.x, tile.data.header.y, tile.data.header.layer);
+					assertTrue(t >= 0);
+					assertEquals(mesh.getTileRef(tile), reader.getTileRef(t));
+					// Quantization is lossless.
+					assertArrayEquals(toBytes(tile.data), toBytes(reader.readTile(t)));
+					tiles++;
+				}
+				assertEquals(tiles, reader.getTileCount());
+				assertEquals(-1, reader.findTile(100, 100, 0));
+
+				NavMesh read = reader.readNavMesh();
+				for (int i = 0; i < reader.getTileCount(); i++) {
+					assertEquals(reader.getTileRef(i),
+							read.getTileRefAt(reader.getTileX(i), reader.getTileY(i), reader.getTileLayer(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadFile() throws IOException {
+		NavMesh mesh = readMeshSet();
+		File file = folder.newFile("compact.bin");
+		try (OutputStream os = new FileOutputStream(file)) {
+			writer.write(os, mesh, ByteOrder.LITTLE_ENDIAN, new DeflateCompressor(), 0.3f, 0.2f);
+		}
+		try (CompactMeshSetReader reader = new CompactMeshSetReader(file, 6, new DeflateCompressor())) {
+			int[] tiles = new int[4];
+			assertEquals(1, reader.findTilesAt(6, 9, tiles, tiles.length));
+			MeshData data = reader.readTile(tiles[0]);
+			assertEquals(6, data.header.x);
+			assertEquals(9, data.header.y);
+			assertArrayEquals(toBytes(mesh.getTilesAt(6, 9).get(0).data), toBytes(data));
+		}
+	}
+
+	@Test
+	public void testChecksum() throws IOException {
+		byte[] set = write(readMeshSet(), ByteOrder.BIG_ENDIAN, new DeflateCompressor(), 0.3f, 0.2f);
+		CompactMeshSetReader reader = new CompactMeshSetReader(ByteBuffer.wrap(set), 6, new DeflateCompressor());
+		int last = reader.getTileCount() - 1;
+
+		// A damaged tile fails on its own, the other tiles can still be read.
+		byte[] damaged = set.clone();
+		damaged[damaged.length - 1] ^= 1;
+		reader = new CompactMeshSetReader(ByteBuffer.wrap(damaged), 6, new DeflateCompressor());
+		reader.readTile(0);
+		try {
+			reader.readTile(last);
+			fail();
+		} catch (IOException e) {
+			assertEquals("Checksum mismatch in tile " + last, e.getMessage());
+		}
+
+		// A damaged table fails on open.
+		damaged = set.clone();
+		damaged[CompactMeshSetHeader.HEADER_SIZE + 1] ^= 1;
+		try {
+			new CompactMeshSetReader(ByteBuffer.wrap(damaged), 6, new DeflateCompressor());
+			fail();
+		} catch (IOException e) {
+			assertEquals("Checksum mismatch in tile table", e.getMessage());
+		}
+
+		// Compressed tiles need a compressor.
+		reader = new CompactMeshSetReader(ByteBuffer.wrap(set), 6, null);
+		try {
+			reader.readTile(0);
+			fail();
+		} catch (IOException e) {
+			assertEquals("Tile 0 is compressed", e.getMessage());
+		}
+	}
+
+}
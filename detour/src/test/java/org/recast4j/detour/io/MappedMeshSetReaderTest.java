@@ -0,0 +1,156 @@
+package org.recast4j.detour.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+import org.recast4j.detour.FindNearestPolyResult;
+import org.recast4j.detour.FindPathResult;
+import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.NavMeshQuery;
+import org.recast4j.detour.QueryFilter;
+
+public class MappedMeshSetReaderTest {
+
+	private final MeshSetReader reader = new MeshSetReader();
+
+	private File resource(String name) throws URISyntaxException {
+		return new File(getClass().getClassLoader().getResource(name).toURI());
+	}
+
+	private NavMesh readEager(String name, boolean is32Bit) throws IOException {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+			return is32Bit ? reader.read32Bit(is, 6) : reader.read(is, 6);
+		}
+	}
+
+	@Test
+	public void testLoadOnDemand() throws Exception {
+		MappedMeshSetReader lazy = new MappedMeshSetReader(resource("dungeon_all_tiles_navmesh.bin"), 6);
+		NavMesh mesh = lazy.getNavMesh();
+		assertEquals(128, mesh.getMaxTiles());
+		assertEquals(9.6, mesh.getParams().tileWidth, 0.001);
+		assertTrue(lazy.getTileCount() > 0);
+		assertTrue(mesh.getTilesAt(6, 9).isEmpty());
+
+		assertEquals(1, lazy.loadTilesAt(6, 9));
+		assertEquals(0, lazy.loadTilesAt(6, 9));
+		List<MeshTile> tiles = mesh.getTilesAt(6, 9);
+		assertEquals(1, tiles.size());
+		assertEquals(2, tiles.get(0).data.polys.length);
+		assertEquals(7 * 3, tiles.get(0).data.verts.length);
+		assertTrue(mesh.getTilesAt(2, 9).isEmpty());
+
+		// Loaded tiles keep their references.
+		NavMesh eager = readEager("dungeon_all_tiles_navmesh.bin", false);
+		assertEquals(eager.getTileRefAt(6, 9, 0), mesh.getTileRefAt(6, 9, 0));
+		for (int i = 0; i < lazy.getTileCount(); i++) {
+			assertEquals(eager.getTileRefAt(lazy.getTileX(i), lazy.getTileY(i), lazy.getTileLayer(i)),
+					lazy.getTileRef(i));
+		}
+
+		// Unloaded tiles come back with the same reference.
+		int i = 0;
+		while (lazy.getTileX(i) != 6 || lazy.getTileY(i) != 9)
+			i++;
+		assertTrue(lazy.isLoaded(i));
+		assertTrue(lazy.unloadTile(i));
+		assertFalse(lazy.isLoaded(i));
+		assertTrue(mesh.getTilesAt(6, 9).isEmpty());
+		assertEquals(lazy.getTileRef(i), lazy.loadTile(i));
+		assertTrue(lazy.isLoaded(i));
+	}
+
+	@Test
+	public void testLoadByRegion() throws Exception {
+		MappedMeshSetReader lazy = new MappedMeshSetReader(resource("dungeon_all_tiles_navmesh.bin"), 6);
+		NavMesh eager = readEager("dungeon_all_tiles_navmesh.bin", false);
+		MeshTile tile = eager.getTilesAt(2, 8).get(0);
+		float[] bmin = tile.data.header.bmin.clone();
+		float[] bmax = tile.data.header.bmax.clone();
+		bmin[0] += 0.1f;
+		bmin[2] += 0.1f;
+		bmax[0] -= 0.1f;
+		bmax[2] -= 0.1f;
+		assertEquals(1, lazy.loadTilesIn(bmin, bmax));
+		assertEquals(1, lazy.getNavMesh().getTilesAt(2, 8).size());
+
+		float[] center = { (bmin[0] + bmax[0]) * 0.5f, bmin[1], (bmin[2] + bmax[2]) * 0.5f };
+		int n = lazy.loadTilesAround(center, 1);
+		int expected = 0;
+		for (int y = 7; y <= 9; y++) {
+			for (int x = 1; x <= 3; x++) {
+				expected += eager.getTilesAt(x, y).size();
+			}
+		}
+		assertEquals(expected - 1, n);
+	}
+
+	@Test
+	public void testSameAsEagerLoad() throws Exception {
+		NavMesh eager = readEager("dungeon_all_tiles_navmesh.bin", false);
+		// Small mapping windows force the tiles to be spread over several windows.
+		MappedMeshSetReader lazy = new MappedMeshSetReader(resource("dungeon_all_tiles_navmesh.bin"), 6, false, 4096);
+		lazy.loadAllTiles();
+		assertSameMesh(eager, lazy.getNavMesh());
+
+		byte[] bytes = Files.readAllBytes(resource("dungeon_all_tiles_navmesh.bin").toPath());
+		lazy = new MappedMeshSetReader(ByteBuffer.wrap(bytes), 6, false);
+		lazy.loadAllTiles();
+		assertSameMesh(eager, lazy.getNavMesh());
+	}
+
+	@Test
+	public void testDungeon32Bit() throws Exception {
+		NavMesh eager = readEager("dungeon_all_tiles_navmesh_32bit.bin", true);
+		MappedMeshSetReader lazy = new MappedMeshSetReader(resource("dungeon_all_tiles_navmesh_32bit.bin"), 6, true);
+		lazy.loadAllTiles();
+		assertSameMesh(eager, lazy.getNavMesh());
+	}
+
+	private void assertSameMesh(NavMesh expected, NavMesh actual) {
+		int tiles = 0;
+		for (int i = 0; i < expected.getMaxTiles(); i++) {
+			MeshTile e = expected.getTile(i);
+			MeshTile a = actual.getTile(i);
+			assertEquals(e.data == null, a.data == null);
+			if (e.data == null)
+				continue;
+			tiles++;
+			assertEquals(expected.getTileRef(e), actual.getTileRef(a));
+			assertEquals(e.data.polys.length, a.data.polys.length);
+			assertEquals(e.data.verts.length, a.data.verts.length);
+			for (int j = 0; j < e.data.polys.length; j++) {
+				assertEquals(e.data.polys[j].vertCount, a.data.polys[j].vertCount);
+			}
+		}
+		assertTrue(tiles > 1);
+
+		// Paths across the tiles are the same.
+		float[] startPos = { 39.447338f, 9.998177f, -0.784811f };
+		float[] endPos = { 19.292645f, 11.611748f, -57.750366f };
+		float[] extents = { 2, 4, 2 };
+		QueryFilter filter = new QueryFilter();
+		NavMeshQuery eq = new NavMeshQuery(expected);
+		NavMeshQuery aq = new NavMeshQuery(actual);
+		FindNearestPolyResult es = eq.findNearestPoly(startPos, extents, filter);
+		FindNearestPolyResult ee = eq.findNearestPoly(endPos, extents, filter);
+		assertEquals(es.getNearestRef(), aq.findNearestPoly(startPos, extents, filter).getNearestRef());
+		assertEquals(ee.getNearestRef(), aq.findNearestPoly(endPos, extents, filter).getNearestRef());
+		FindPathResult ep = eq.findPath(es.getNearestRef(), ee.getNearestRef(), startPos, endPos, filter);
+		FindPathResult ap = aq.findPath(es.getNearestRef(), ee.getNearestRef(), startPos, endPos, filter);
+		assertTrue(ep.getRefs().size() > 1);
+		assertEquals(ep.getRefs(), ap.getRefs());
+	}
+
+}
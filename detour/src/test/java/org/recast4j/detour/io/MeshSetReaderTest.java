@@ -1,10 +1,15 @@
 package org.recast4j.detour.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteOrder;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.recast4j.detour.MeshTile;
@@ -88,4 +93,38 @@ public class MeshSetReaderTest {
 		assertEquals(5, tiles.get(0).data.polys.length);
 		assertEquals(17 * 3, tiles.get(0).data.verts.length);
 	}
+	@Test
+	public void testParallel() throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (String name : new String[] { "all_tiles_navmesh.bin", "dungeon_all_tiles_navmesh.bin",
+					"dungeon_all_tiles_navmesh_32bit.bin" }) {
+				boolean is32Bit = name.endsWith("32bit.bin");
+				NavMesh expected;
+				NavMesh actual;
+				try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+					expected = is32Bit ? reader.read32Bit(is, 6) : reader.read(is, 6);
+				}
+				try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+					actual = is32Bit ? reader.read32Bit(is, 6, executor) : reader.read(is, 6, executor);
+				}
+				MeshDataWriter writer = new MeshDataWriter();
+				for (int i = 0; i < expected.getMaxTiles(); i++) {
+					MeshTile e = expected.getTile(i);
+					MeshTile a = actual.getTile(i);
+					assertEquals(e.data == null, a.data == null);
+					if (e.data == null)
+						continue;
+					assertEquals(expected.getTileRef(e), actual.getTileRef(a));
+					ByteArrayOutputStream eb = new ByteArrayOutputStream();
+					ByteArrayOutputStream ab = new ByteArrayOutputStream();
+					writer.write(eb, e.data, ByteOrder.BIG_ENDIAN, false);
+					writer.write(ab, a.data, ByteOrder.BIG_ENDIAN, false);
+					assertArrayEquals(eb.toByteArray(), ab.toByteArray());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
@@ -362,6 +362,10 @@ public class Crowd {
 
 	NavMeshQuery m_navquery;
 
+	long[] m_changedTiles = new long[0];
+	int m_changedTileCount;
+	int[] m_repairIters = new int[1];
+
 	float tween(float t, float t0, float t1) {
 		return clamp((t - t0) / (t1 - t0), 0.0f, 1.0f);
 	}
@@ -638,6 +642,20 @@ public class Crowd {
 		return true;
 	}
 
+	/// Marks tiles of the navigation mesh as rebuilt.
+	///  @param[in]		tileRefs	References of the changed tiles. [(tileRef) * count]
+	///  @param[in]		count		The number of tile references.
+	///
+	/// Corridors crossing the tiles are repaired during the next #update(), or replanned if the repair does not
+	/// fit into the per update search budget.
+	public void notifyTilesChanged(long[] tileRefs, int count) {
+		if (m_changedTiles.length < m_changedTileCount + count)
+			m_changedTiles = Arrays.copyOf(m_changedTiles,
+					Math.max(m_changedTileCount + count, m_changedTiles.length * 2));
+		System.arraycopy(tileRefs, 0, m_changedTiles, m_changedTileCount, count);
+		m_changedTileCount += count;
+	}
+
 	/// Gets the active agents int the agent pool.
 	///  @param[out]	agents		An array of agent pointers. [(#dtCrowdAgent *) * maxAgents]
 	///  @param[in]		maxAgents	The size of the crowd agent array.
@@ -871,10 +889,13 @@ public class Crowd {
 	}
 
 	static final int CHECK_LOOKAHEAD = 10;
+	static final int MAX_REPAIR_PATH = 256;
+	static final int MAX_REPAIR_ITERS_PER_UPDATE = 100;
 	static final float TARGET_REPLAN_DELAY = 1.0f; // seconds
 
 	void checkPathValidity(List<CrowdAgent> agents, float dt) {
 
+		int repairIters = MAX_REPAIR_ITERS_PER_UPDATE;
 		for (int i = 0; i < agents.size(); ++i) {
 			CrowdAgent ag = agents.get(i);
 
@@ -947,13 +968,22 @@ public class Crowd {
 				}
 			}
 
-			// If nearby corridor is not valid, replan.
-			if (!ag.corridor.isValid(CHECK_LOOKAHEAD, m_navquery, m_filters[ag.params.queryFilterType])) {
+			// If nearby corridor is not valid or crosses rebuilt tiles, repair it around the broken polygons within
+			// the search budget of this update and replan through the path queue if that fails.
+			if ((m_changedTileCount > 0 && ag.corridor.crossesTiles(m_changedTiles, m_changedTileCount))
+					|| !ag.corridor.isValid(CHECK_LOOKAHEAD, m_navquery, m_filters[ag.params.queryFilterType])) {
 				// Fix current path.
 				// ag.corridor.trimInvalidPath(agentRef, agentPos, m_navquery,
 				// &m_filter);
 				// ag.boundary.reset();
-				replan = true;
+				if (replan || repairIters == 0)
+					replan = true;
+				else {
+					if (!ag.corridor.repair(m_changedTiles, m_changedTileCount, MAX_REPAIR_PATH, repairIters,
+							m_repairIters, m_navquery, m_filters[ag.params.queryFilterType]))
+						replan = true;
+					repairIters -= m_repairIters[0];
+				}
 			}
 
 			// If the end of the path is near and it is not the requested
@@ -971,6 +1001,7 @@ public class Crowd {
 				}
 			}
 		}
+		m_changedTileCount = 0;
 	}
 	
 	static final float COLLISION_RESOLVE_FACTOR = 0.7f;
@@ -25,16 +25,19 @@ import static org.recast4j.detour.DetourCommon.vDist2DSqr;
 import static org.recast4j.detour.DetourCommon.vMad;
 import static org.recast4j.detour.DetourCommon.vSub;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 import org.recast4j.detour.FindPathResult;
-import org.recast4j.detour.MoveAlongSurfaceResult;
+import org.recast4j.detour.MoveAlongSurfaceBuffer;
 import org.recast4j.detour.NavMesh;
 import org.recast4j.detour.NavMeshQuery;
+import org.recast4j.detour.NodePool;
 import org.recast4j.detour.QueryFilter;
-import org.recast4j.detour.RaycastHit;
+import org.recast4j.detour.RaycastHitBuffer;
+import org.recast4j.detour.Status;
 import org.recast4j.detour.StraightPathItem;
 import org.recast4j.detour.Tupple2;
 
@@ -90,19 +93,83 @@ import org.recast4j.detour.Tupple2;
  */
 public class PathCorridor {
 
+	static final int MAX_RAYCAST_PATH = 32;
+
 	final float[] m_pos = new float[3];
 	final float[] m_target = new float[3];
-	List<Long> m_path;
-	
-	protected List<Long> mergeCorridorStartMoved(List<Long> path, List<Long> visited) {
+	/** The polygons of the corridor, grown on demand. [(polyRef) * m_npath] */
+	long[] m_path = new long[8];
+	int m_npath;
+	private final MoveAlongSurfaceBuffer m_moveResult = new MoveAlongSurfaceBuffer(NodePool.DT_TINY_MAX_NODES);
+	private final RaycastHitBuffer m_raycastHit = new RaycastHitBuffer(MAX_RAYCAST_PATH);
+	private final int[] m_cornerCount = new int[1];
+	/** Corner buffers of the list based findCorners(), grown on demand. */
+	private float[] m_cornerVerts = new float[0];
+	private int[] m_cornerFlags = new int[0];
+	private long[] m_cornerPolys = new long[0];
+	private long[] m_topologyPath = new long[0];
+	/** Receives the path repaired by repair(). */
+	private long[] m_repairBuffer = new long[0];
+	private final int[] m_repairCount = new int[1];
+	/** Live list view of m_path returned by getPath(). */
+	private final List<Long> m_pathView = new PathView();
+
+	/** List over the corridor polygons, changes write through to m_path. */
+	private class PathView extends AbstractList<Long> {
+		@Override
+		public Long get(int index) {
+			if (index < 0 || index >= m_npath)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + m_npath);
+			return m_path[index];
+		}
+
+		@Override
+		public int size() {
+			return m_npath;
+		}
+
+		@Override
+		public Long set(int index, Long ref) {
+			long old = get(index);
+			m_path[index] = ref;
+			return old;
+		}
+
+		@Override
+		public void add(int index, Long ref) {
+			if (index < 0 || index > m_npath)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + m_npath);
+			ensureCapacity(m_npath + 1);
+			System.arraycopy(m_path, index, m_path, index + 1, m_npath - index);
+			m_path[index] = ref;
+			m_npath++;
+			modCount++;
+		}
+
+		@Override
+		public Long remove(int index) {
+			long old = get(index);
+			System.arraycopy(m_path, index + 1, m_path, index, m_npath - index - 1);
+			m_npath--;
+			modCount++;
+			return old;
+		}
+	}
+
+	private void ensureCapacity(int npath) {
+		if (m_path.length < npath)
+			m_path = Arrays.copyOf(m_path, Math.max(npath, m_path.length * 2));
+	}
+
+	private void mergeCorridorStartMoved(long[] visited, int nvisited) {
 		int furthestPath = -1;
 		int furthestVisited = -1;
 
 		// Find furthest common polygon.
-		for (int i = path.size() - 1; i >= 0; --i) {
+		for (int i = m_npath - 1; i >= 0; --i) {
 			boolean found = false;
-			for (int j = visited.size() - 1; j >= 0; --j) {
-				if (path.get(i).longValue() == visited.get(j).longValue()) {
+			for (int j = nvisited - 1; j >= 0; --j) {
+				if (m_path[i] == visited[j]) {
 					furthestPath = i;
 					furthestVisited = j;
 					found = true;
@@ -114,28 +181,30 @@ public class PathCorridor {
 
 		// If no intersection found just return current path.
 		if (furthestPath == -1 || furthestVisited == -1)
-			return path;
+			return;
 
 		// Concatenate paths.
 
 		// Adjust beginning of the buffer to include the visited.
-		List<Long> result = new ArrayList<>();
+		int req = nvisited - 1 - furthestVisited;
+		int size = m_npath - furthestPath;
+		ensureCapacity(req + size);
+		System.arraycopy(m_path, furthestPath, m_path, req, size);
 		// Store visited
-		for (int i = visited.size() - 1; i > furthestVisited; --i)
-			result.add(visited.get(i));
-		result.addAll(path.subList(furthestPath, path.size()));
-		return result;
+		for (int i = 0; i < req; ++i)
+			m_path[i] = visited[nvisited - 1 - i];
+		m_npath = req + size;
 	}
 
-	protected List<Long> mergeCorridorEndMoved(List<Long> path, List<Long> visited) {
+	private void mergeCorridorEndMoved(long[] visited, int nvisited) {
 		int furthestPath = -1;
 		int furthestVisited = -1;
 
 		// Find furthest common polygon.
-		for (int i = 0; i < path.size(); ++i) {
+		for (int i = 0; i < m_npath; ++i) {
 			boolean found = false;
-			for (int j = visited.size() - 1; j >= 0; --j) {
-				if (path.get(i) == visited.get(j)) {
+			for (int j = nvisited - 1; j >= 0; --j) {
+				if (m_path[i] == visited[j]) {
 					furthestPath = i;
 					furthestVisited = j;
 					found = true;
@@ -147,24 +216,25 @@ public class PathCorridor {
 
 		// If no intersection found just return current path.
 		if (furthestPath == -1 || furthestVisited == -1)
-			return path;
+			return;
 
 		// Concatenate paths.
-		List<Long> result = path.subList(0, furthestPath);
-		result.addAll(visited.subList(furthestVisited, visited.size()));
-		return result;
+		int size = nvisited - furthestVisited;
+		ensureCapacity(furthestPath + size);
+		System.arraycopy(visited, furthestVisited, m_path, furthestPath, size);
+		m_npath = furthestPath + size;
 	}
 
-	protected List<Long> mergeCorridorStartShortcut(List<Long> path, List<Long> visited) {
+	private void mergeCorridorStartShortcut(long[] visited, int nvisited) {
 
 		int furthestPath = -1;
 		int furthestVisited = -1;
 
 		// Find furthest common polygon.
-		for (int i = path.size() - 1; i >= 0; --i) {
+		for (int i = m_npath - 1; i >= 0; --i) {
 			boolean found = false;
-			for (int j = visited.size() - 1; j >= 0; --j) {
-				if (path.get(i) == visited.get(j)) {
+			for (int j = nvisited - 1; j >= 0; --j) {
+				if (m_path[i] == visited[j]) {
 					furthestPath = i;
 					furthestVisited = j;
 					found = true;
@@ -176,21 +246,23 @@ public class PathCorridor {
 
 		// If no intersection found just return current path.
 		if (furthestPath == -1 || furthestVisited <= 0)
-			return path;
+			return;
 
 		// Concatenate paths.
 
 		// Adjust beginning of the buffer to include the visited.
-		List<Long> result = visited.subList(0, furthestVisited);
-		result.addAll(path.subList(furthestPath, path.size()));
-		return result;
+		int req = furthestVisited;
+		int size = m_npath - furthestPath;
+		ensureCapacity(req + size);
+		System.arraycopy(m_path, furthestPath, m_path, req, size);
+		System.arraycopy(visited, 0, m_path, 0, req);
+		m_npath = req + size;
 	}
 	
 	/**
 	 * Allocates the corridor's path buffer.
 	 */
 	public PathCorridor() {
-		m_path = new ArrayList<>();
 	}
 
 	/**
@@ -199,8 +271,8 @@ public class PathCorridor {
 	 * @param pos The new position in the corridor. [(x, y, z)]
 	 */
 	public void reset(long ref, float[] pos) {
-		m_path.clear();
-		m_path.add(ref);
+		m_path[0] = ref;
+		m_npath = 1;
 		vCopy(m_pos, pos);
 		vCopy(m_target, pos);
 	}
@@ -226,22 +298,66 @@ public class PathCorridor {
 	 * @return Corners
 	 */
 	public List<StraightPathItem> findCorners(int maxCorners, NavMeshQuery navquery, QueryFilter filter) {
+		List<StraightPathItem> path = new ArrayList<>();
+		if (maxCorners <= 0)
+			return path;
+		if (m_cornerFlags.length < maxCorners) {
+			m_cornerVerts = new float[maxCorners * 3];
+			m_cornerFlags = new int[maxCorners];
+			m_cornerPolys = new long[maxCorners];
+		}
+		int ncorners = findCorners(m_cornerVerts, m_cornerFlags, m_cornerPolys, maxCorners, navquery, filter);
+		for (int i = 0; i < ncorners; i++) {
+			path.add(new StraightPathItem(Arrays.copyOfRange(m_cornerVerts, i * 3, i * 3 + 3), m_cornerFlags[i],
+					m_cornerPolys[i]));
+		}
+		return path;
+	}
+
+	/**
+	 * Finds the corners in the corridor from the position toward the target and writes them into the provided
+	 * buffers. Works like {@link #findCorners(int, NavMeshQuery, QueryFilter)}, which delegates to this method, without
+	 * allocating.
+	 * 
+	 * @param cornerVerts
+	 *            The corner vertices. [(x, y, z) * cornerCount] [Size: <= maxCorners]
+	 * @param cornerFlags
+	 *            The flag for each corner. [(flag) * cornerCount] [Size: <= maxCorners]
+	 * @param cornerPolys
+	 *            The polygon reference for each corner. [(polyRef) * cornerCount] [Size: <= maxCorners]
+	 * @param maxCorners
+	 *            The maximum number of corners the buffers can hold.
+	 * @param navquery
+	 *            The query object used to build the corridor.
+	 * @param filter
+	 *            The filter to apply to the operation.
+	 * @return The number of corners.
+	 */
+	public int findCorners(float[] cornerVerts, int[] cornerFlags, long[] cornerPolys, int maxCorners,
+			NavMeshQuery navquery, QueryFilter filter) {
 		final float MIN_TARGET_DIST = sqr(0.01f);
 
-		List<StraightPathItem> path = navquery.findStraightPath(m_pos, m_target, m_path, maxCorners, 0);
+		navquery.findStraightPath(m_pos, m_target, m_path, m_npath, cornerVerts, cornerFlags, cornerPolys,
+				m_cornerCount, maxCorners, 0);
+		int ncorners = m_cornerCount[0];
+
 		// Prune points in the beginning of the path which are too close.
-		for (Iterator<StraightPathItem> iter = path.iterator(); iter.hasNext();) {
-			StraightPathItem spi = iter.next();
-			if ((spi.getFlags() & NavMeshQuery.DT_STRAIGHTPATH_OFFMESH_CONNECTION) != 0
-					|| vDist2DSqr(spi.getPos(), m_pos) > MIN_TARGET_DIST) {
+		int pruned = 0;
+		while (pruned < ncorners) {
+			if ((cornerFlags[pruned] & NavMeshQuery.DT_STRAIGHTPATH_OFFMESH_CONNECTION) != 0
+					|| vDist2DSqr(m_pos, cornerVerts, pruned * 3) > MIN_TARGET_DIST)
 				break;
-			}
-			iter.remove();
+			pruned++;
 		}
-		return path;
+		ncorners -= pruned;
+		if (pruned > 0 && ncorners > 0) {
+			System.arraycopy(cornerFlags, pruned, cornerFlags, 0, ncorners);
+			System.arraycopy(cornerPolys, pruned, cornerPolys, 0, ncorners);
+			System.arraycopy(cornerVerts, pruned * 3, cornerVerts, 0, ncorners * 3);
+		}
+		return ncorners;
 	}
 
-
 	/**
 	 * Attempts to optimize the path if the specified point is visible from the
 	 * current position.
@@ -291,9 +407,10 @@ public class PathCorridor {
 		float[] delta = vSub(next, m_pos);
 		float[] goal = vMad(m_pos, delta, pathOptimizationRange / dist);
 
-		RaycastHit rc = navquery.raycast(m_path.get(0), m_pos, goal, filter, 0, 0);
-		if (rc.path.size() > 1 && rc.t > 0.99f) {
-			m_path = mergeCorridorStartShortcut(m_path, rc.path);
+		RaycastHitBuffer rc = m_raycastHit;
+		navquery.raycast(m_path[0], m_pos, goal, filter, 0, 0, rc);
+		if (rc.pathCount > 1 && rc.t > 0.99f) {
+			mergeCorridorStartShortcut(rc.path, rc.pathCount);
 		}
 	}
 
@@ -315,17 +432,19 @@ public class PathCorridor {
 	 * 
 	 */
 	boolean optimizePathTopology(NavMeshQuery navquery, QueryFilter filter) {
-		if (m_path.size() < 3)
+		if (m_npath < 3)
 			return false;
 
 		final int MAX_ITER = 32;
 
-		navquery.initSlicedFindPath(m_path.get(0), m_path.get(m_path.size() - 1), m_pos, m_target, filter, 0);
+		navquery.initSlicedFindPath(m_path[0], m_path[m_npath - 1], m_pos, m_target, filter, 0);
 		navquery.updateSlicedFindPath(MAX_ITER);
-		FindPathResult fpr = navquery.finalizeSlicedFindPathPartial(m_path);
+		FindPathResult fpr = navquery.finalizeSlicedFindPathPartial(getPath());
 
 		if (fpr.getStatus().isSuccess() && fpr.getRefs().size() > 0) {
-			m_path = mergeCorridorStartShortcut(m_path, fpr.getRefs());
+			if (m_topologyPath.length < fpr.getRefs().size())
+				m_topologyPath = new long[fpr.getRefs().size()];
+			mergeCorridorStartShortcut(m_topologyPath, fpr.getRefs(m_topologyPath));
 			return true;
 		}
 
@@ -334,20 +453,21 @@ public class PathCorridor {
 
 	public boolean moveOverOffmeshConnection(long offMeshConRef, long[] refs, float[] start, float[]end, NavMeshQuery navquery) {
 		// Advance the path up to and over the off-mesh connection.
-		long prevRef = 0, polyRef = m_path.get(0);
+		long prevRef = 0, polyRef = m_path[0];
 		int npos = 0;
-		while (npos < m_path.size() && polyRef != offMeshConRef) {
+		while (npos < m_npath && polyRef != offMeshConRef) {
 			prevRef = polyRef;
-			polyRef = m_path.get(npos);
+			polyRef = m_path[npos];
 			npos++;
 		}
-		if (npos == m_path.size()) {
+		if (npos == m_npath) {
 			// Could not find offMeshConRef
 			return false;
 		}
 
 		// Prune path
-		m_path = m_path.subList(npos, m_path.size());
+		System.arraycopy(m_path, npos, m_path, 0, m_npath - npos);
+		m_npath -= npos;
 		refs[0] = prevRef;
 		refs[1] = polyRef;
 
@@ -387,11 +507,12 @@ public class PathCorridor {
 	 */
 	public void movePosition(float[] npos, NavMeshQuery navquery, QueryFilter filter) {
 		// Move along navmesh and update new position.
-		MoveAlongSurfaceResult masResult = navquery.moveAlongSurface(m_path.get(0), m_pos, npos, filter);
-		m_path = mergeCorridorStartMoved(m_path, masResult.getVisited());
+		MoveAlongSurfaceBuffer masResult = m_moveResult;
+		navquery.moveAlongSurface(m_path[0], m_pos, npos, filter, masResult);
+		mergeCorridorStartMoved(masResult.visited, masResult.visitedCount);
 		// Adjust the position to stay on top of the navmesh.
-		vCopy(m_pos, masResult.getResultPos());
-		m_pos[1] = navquery.getPolyHeight(m_path.get(0), masResult.getResultPos());
+		vCopy(m_pos, masResult.resultPos);
+		m_pos[1] = navquery.getPolyHeight(m_path[0], masResult.resultPos);
 	}
 
 	/**
@@ -417,16 +538,16 @@ public class PathCorridor {
 	 */
 	public void moveTargetPosition(float[] npos, NavMeshQuery navquery, QueryFilter filter) {
 		// Move along navmesh and update new position.
-		MoveAlongSurfaceResult masResult = navquery.moveAlongSurface(m_path.get(m_path.size() - 1), m_target, npos,
-				filter);
-		m_path = mergeCorridorEndMoved(m_path, masResult.getVisited());
+		MoveAlongSurfaceBuffer masResult = m_moveResult;
+		navquery.moveAlongSurface(m_path[m_npath - 1], m_target, npos, filter, masResult);
+		mergeCorridorEndMoved(masResult.visited, masResult.visitedCount);
 		// TODO: should we do that?
 		// Adjust the position to stay on top of the navmesh.
 		/*
 		 * float h = m_target[1]; navquery->getPolyHeight(m_path[m_npath-1],
 		 * result, &h); result[1] = h;
 		 */
-		vCopy(m_target, masResult.getResultPos());
+		vCopy(m_target, masResult.resultPos);
 	}
 
 	/**
@@ -445,21 +566,44 @@ public class PathCorridor {
 
 	public void setCorridor(float[] target, List<Long> path) {
 		vCopy(m_target, target);
-		m_path = new ArrayList<>(path);
+		ensureCapacity(path.size());
+		for (int i = 0; i < path.size(); i++) {
+			m_path[i] = path.get(i);
+		}
+		m_npath = path.size();
+	}
+
+	/**
+	 * Loads a new path and target into the corridor.
+	 * 
+	 * @param target
+	 *            The target location within the last polygon of the path. [(x, y, z)]
+	 * @param path
+	 *            The path corridor. [(polyRef) * npath]
+	 * @param npath
+	 *            The number of polygons in the path.
+	 * @see #setCorridor(float[], List)
+	 */
+	public void setCorridor(float[] target, long[] path, int npath) {
+		vCopy(m_target, target);
+		ensureCapacity(npath);
+		System.arraycopy(path, 0, m_path, 0, npath);
+		m_npath = npath;
 	}
 
 	public void fixPathStart(long safeRef, float[] safePos) {
 		vCopy(m_pos, safePos);
-		if (m_path.size() < 3 && m_path.size() > 0) {
-			Long p = m_path.get(m_path.size() - 1);
-			m_path.clear();
-			m_path.add(safeRef);
-			m_path.add(0L);
-			m_path.add(p);
+		if (m_npath < 3 && m_npath > 0) {
+			long p = m_path[m_npath - 1];
+			ensureCapacity(3);
+			m_path[0] = safeRef;
+			m_path[1] = 0L;
+			m_path[2] = p;
+			m_npath = 3;
 		} else {
-			m_path.clear();
-			m_path.add(safeRef);
-			m_path.add(0L);
+			m_path[0] = safeRef;
+			m_path[1] = 0L;
+			m_npath = 2;
 		}
 
 	}
@@ -467,21 +611,111 @@ public class PathCorridor {
 	public void trimInvalidPath(long safeRef, float[] safePos, NavMeshQuery navquery, QueryFilter filter) {
 		// Keep valid path as far as possible.
 		int n = 0;
-		while (n < m_path.size() && navquery.isValidPolyRef(m_path.get(n), filter)) {
+		while (n < m_npath && navquery.isValidPolyRef(m_path[n], filter)) {
 			n++;
 		}
 
 		if (n == 0) {
 			// The first polyref is bad, use current safe values.
 			vCopy(m_pos, safePos);
-			m_path.clear();
-			m_path.add(safeRef);
-		} else if (n < m_path.size()) {
-			m_path = m_path.subList(0, n);
+			m_path[0] = safeRef;
+			m_npath = 1;
+		} else if (n < m_npath) {
 			// The path is partially usable.
+			m_npath = n;
 		}
 		// Clamp target pos to last poly
-		vCopy(m_target, navquery.closestPointOnPolyBoundary(m_path.get(m_path.size() - 1), m_target));
+		vCopy(m_target, navquery.closestPointOnPolyBoundary(m_path[m_npath - 1], m_target));
+	}
+
+	/**
+	 * Repairs the corridor after tiles of the navigation mesh have changed. The broken parts of the path are replaced
+	 * by local searches around them, so the intact parts, and the search work that found them, are kept.
+	 * 
+	 * @param changedTiles
+	 *            References of the rebuilt tiles. [opt]
+	 * @param nchanged
+	 *            The number of changed tile references.
+	 * @param maxPath
+	 *            The maximum number of polygons in the repaired corridor.
+	 * @param navquery
+	 *            The query object used to build the corridor.
+	 * @param filter
+	 *            The filter to apply to the operation.
+	 * @return True if the repaired corridor reaches its last polygon again. Otherwise the corridor is left unchanged
+	 *         and needs to be replanned.
+	 * @see NavMeshQuery#repairPath(long[], int, long[], int, float[], float[], QueryFilter, long[], int[], int)
+	 */
+	public boolean repair(long[] changedTiles, int nchanged, int maxPath, NavMeshQuery navquery, QueryFilter filter) {
+		if (m_repairBuffer.length < maxPath)
+			m_repairBuffer = new long[maxPath];
+		Status status = navquery.repairPath(m_path, m_npath, changedTiles, nchanged, m_pos, m_target, filter,
+				m_repairBuffer, m_repairCount, maxPath);
+		if (status != Status.SUCCSESS)
+			return false;
+		applyRepair();
+		return true;
+	}
+
+	/**
+	 * Repairs the corridor after tiles of the navigation mesh have changed, expanding at most maxIterations search
+	 * nodes. Broken runs that can not be bridged within the budget are left to a replan.
+	 * 
+	 * @param changedTiles
+	 *            References of the rebuilt tiles. [opt]
+	 * @param nchanged
+	 *            The number of changed tile references.
+	 * @param maxPath
+	 *            The maximum number of polygons in the repaired corridor.
+	 * @param maxIterations
+	 *            The maximum number of search nodes to expand. [Limit: > 0]
+	 * @param doneIterations
+	 *            Receives the number of search nodes expanded. [out, opt, length >= 1]
+	 * @param navquery
+	 *            The query object used to build the corridor.
+	 * @param filter
+	 *            The filter to apply to the operation.
+	 * @return True if the repaired corridor reaches its last polygon again. Otherwise the corridor is left unchanged
+	 *         and needs to be replanned.
+	 * @see NavMeshQuery#repairPath(long[], int, long[], int, float[], float[], QueryFilter, int, int[], long[], int[],
+	 *      int)
+	 */
+	public boolean repair(long[] changedTiles, int nchanged, int maxPath, int maxIterations, int[] doneIterations,
+			NavMeshQuery navquery, QueryFilter filter) {
+		if (m_repairBuffer.length < maxPath)
+			m_repairBuffer = new long[maxPath];
+		Status status = navquery.repairPath(m_path, m_npath, changedTiles, nchanged, m_pos, m_target, filter,
+				maxIterations, doneIterations, m_repairBuffer, m_repairCount, maxPath);
+		if (status != Status.SUCCSESS)
+			return false;
+		applyRepair();
+		return true;
+	}
+
+	/**
+	 * Tells whether the corridor passes through one of the given tiles. This is much cheaper than repair() and can be
+	 * used to skip the corridors that a tile change does not affect.
+	 * 
+	 * @param tileRefs
+	 *            References of the tiles. [(tileRef) * count]
+	 * @param count
+	 *            The number of tile references.
+	 */
+	public boolean crossesTiles(long[] tileRefs, int count) {
+		for (int i = 0; i < m_npath; i++) {
+			int tileIndex = NavMesh.decodePolyIdTile(m_path[i]);
+			for (int j = 0; j < count; j++) {
+				if (NavMesh.decodePolyIdTile(tileRefs[j]) == tileIndex)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private void applyRepair() {
+		ensureCapacity(m_repairCount[0]);
+		System.arraycopy(m_repairBuffer, 0, m_path, 0, m_repairCount[0]);
+		m_npath = m_repairCount[0];
 	}
 
 	/**
@@ -502,9 +736,9 @@ public class PathCorridor {
 	 */
 	boolean isValid(int maxLookAhead, NavMeshQuery navquery, QueryFilter filter) {
 		// Check that all polygons still pass query filter.
-		int n = Math.min(m_path.size(), maxLookAhead);
+		int n = Math.min(m_npath, maxLookAhead);
 		for (int i = 0; i < n; ++i) {
-			if (!navquery.isValidPolyRef(m_path.get(i), filter))
+			if (!navquery.isValidPolyRef(m_path[i], filter))
 				return false;
 		}
 
@@ -527,22 +761,33 @@ public class PathCorridor {
 	 * The polygon reference id of the first polygon in the corridor, the polygon containing the position.
 	 * @return The polygon reference id of the first polygon in the corridor. (Or zero if there is no path.)
 	 */
-	public long getFirstPoly() { return m_path.isEmpty() ? 0 : m_path.get(0); }
+	public long getFirstPoly() { return m_npath == 0 ? 0 : m_path[0]; }
 
 	/**
 	 * The polygon reference id of the last polygon in the corridor, the polygon containing the target.
 	 * @return The polygon reference id of the last polygon in the corridor. (Or zero if there is no path.)
 	 */
-	public long getLastPoly() { return m_path.isEmpty() ? 0 : m_path.get(m_path.size() - 1); }
+	public long getLastPoly() { return m_npath == 0 ? 0 : m_path[m_npath - 1]; }
 	
 	/**
-	 * The corridor's path. 
+	 * The corridor's path. The list is a live view of the corridor, changes made through it update the corridor. Use
+	 * {@link #getPath(long[])} to take a snapshot.
 	 */
-	public List<Long> getPath() { return m_path; }
+	public List<Long> getPath() { return m_pathView; }
+
+	/**
+	 * Copies the corridor's path into the provided buffer.
+	 * @return The number of polygons copied. At most path.length.
+	 */
+	public int getPath(long[] path) {
+		int n = Math.min(m_npath, path.length);
+		System.arraycopy(m_path, 0, path, 0, n);
+		return n;
+	}
 
 	/**
 	 * The number of polygons in the current corridor path.
 	 * @return The number of polygons in the current corridor path.
 	 */
-	public int getPathCount() { return m_path.size(); } 	
+	public int getPathCount() { return m_npath; } 	
 }
@@ -0,0 +1,153 @@
+/*
+Recast4J Copyright (c) 2015 Piotr Piastucki piotr@jtilia.org
+
+This software is provided 'as-is', without any express or implied
+warranty.  In no event will the authors be held liable for any damages
+arising from the use of this software.
+Permission is granted to anyone to use this software for any purpose,
+including commercial applications, and to alter it and redistribute it
+freely, subject to the following restrictions:
+1. The origin of this software must not be misrepresented; you must not
+ claim that you wrote the original software. If you use this software
+ in a product, an acknowledgment in the product documentation would be
+ appreciated but is not required.
+2. Altered source versions must be plainly marked as such, and must not be
+ misrepresented as being the original software.
+3. This notice may not be removed or altered from any source distribution.
+*/
+package org.recast4j.detour.crowd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.recast4j.detour.FindPathResult;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.QueryFilter;
+import org.recast4j.detour.StraightPathItem;
+
+public class PathCorridorTest extends AbstractCrowdTest {
+
+	@Test
+	public void testFindCornersToBuffer() {
+		QueryFilter filter = new QueryFilter();
+		float[] cornerVerts = new float[Crowd.DT_CROWDAGENT_MAX_CORNERS * 3];
+		int[] cornerFlags = new int[Crowd.DT_CROWDAGENT_MAX_CORNERS];
+		long[] cornerPolys = new long[Crowd.DT_CROWDAGENT_MAX_CORNERS];
+		for (int i = 0; i < startRefs.length; i++) {
+			FindPathResult path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter);
+			PathCorridor corridor = new PathCorridor();
+			corridor.reset(startRefs[i], startPoss[i]);
+			corridor.setCorridor(endPoss[i], path.getRefs());
+			List<StraightPathItem> expected = corridor.findCorners(Crowd.DT_CROWDAGENT_MAX_CORNERS, query, filter);
+			int n = corridor.findCorners(cornerVerts, cornerFlags, cornerPolys, Crowd.DT_CROWDAGENT_MAX_CORNERS, query,
+					filter);
+			Assert.assertEquals(expected.size(), n);
+			for (int j = 0; j < n; j++) {
+				Assert.assertEquals(expected.get(j).getRef(), cornerPolys[j]);
+				Assert.assertEquals(expected.get(j).getFlags(), cornerFlags[j]);
+				for (int v = 0; v < 3; v++) {
+					Assert.assertEquals(expected.get(j).getPos()[v], cornerVerts[j * 3 + v], 0.0f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSetCorridorFromBuffer() {
+		long[] path = { startRefs[0], endRefs[0] };
+		PathCorridor corridor = new PathCorridor();
+		corridor.reset(startRefs[0], startPoss[0]);
+		corridor.setCorridor(endPoss[0], path, path.length);
+		Assert.assertEquals(2, corridor.getPathCount());
+		long[] copy = new long[1];
+		Assert.assertEquals(1, corridor.getPath(copy));
+		Assert.assertEquals(startRefs[0], copy[0]);
+		Assert.assertEquals(endRefs[0], corridor.getLastPoly());
+	}
+
+	@Test
+	public void testRepair() {
+		QueryFilter filter = new QueryFilter();
+		for (int i = 0; i < startRefs.length; i++) {
+			List<Long> path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter).getRefs();
+			for (int k = 1; k < path.size() - 1; k++) {
+				// Break one polygon of the corridor, the repair has to bridge the gap again.
+				List<Long> broken = new ArrayList<>(path);
+				broken.set(k, 0L);
+				PathCorridor corridor = new PathCorridor();
+				corridor.reset(startRefs[i], startPoss[i]);
+				corridor.setCorridor(endPoss[i], broken);
+				Assert.assertFalse(corridor.isValid(path.size(), query, filter));
+				Assert.assertTrue(corridor.repair(null, 0, 256, query, filter));
+				Assert.assertTrue(corridor.isValid(path.size(), query, filter));
+				long[] refs = new long[256];
+				int n = corridor.getPath(refs);
+				Assert.assertEquals(path.size(), n);
+				for (int j = 0; j < n; j++) {
+					Assert.assertEquals(path.get(j).longValue(), refs[j]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPathView() {
+		QueryFilter filter = new QueryFilter();
+		List<Long> path = query.findPath(startRefs[0], endRefs[0], startPoss[0], endPoss[0], filter).getRefs();
+		PathCorridor corridor = new PathCorridor();
+		corridor.reset(startRefs[0], startPoss[0]);
+		corridor.setCorridor(endPoss[0], path);
+		// The list is a live view which writes through to the corridor.
+		List<Long> view = corridor.getPath();
+		Assert.assertEquals(path, view);
+		view.remove(view.size() - 1);
+		Assert.assertEquals(path.size() - 1, corridor.getPathCount());
+		view.addAll(path.subList(path.size() - 1, path.size()));
+		Assert.assertEquals(path, view);
+		Assert.assertEquals(endRefs[0], corridor.getLastPoly());
+		corridor.reset(startRefs[0], startPoss[0]);
+		Assert.assertEquals(1, view.size());
+		Assert.assertEquals(startRefs[0], view.get(0).longValue());
+	}
+
+	@Test
+	public void testCrossesTiles() {
+		QueryFilter filter = new QueryFilter();
+		List<Long> path = query.findPath(startRefs[0], endRefs[0], startPoss[0], endPoss[0], filter).getRefs();
+		PathCorridor corridor = new PathCorridor();
+		corridor.reset(startRefs[0], startPoss[0]);
+		corridor.setCorridor(endPoss[0], path);
+		int tileIndex = NavMesh.decodePolyIdTile(path.get(path.size() / 2));
+		long tileRef = NavMesh.encodePolyId(1, tileIndex, 0);
+		long otherTileRef = NavMesh.encodePolyId(1, tileIndex + 1, 0);
+		Assert.assertTrue(corridor.crossesTiles(new long[] { otherTileRef, tileRef }, 2));
+		Assert.assertFalse(corridor.crossesTiles(new long[] { otherTileRef, tileRef }, 1));
+		Assert.assertFalse(corridor.crossesTiles(null, 0));
+	}
+
+	@Test
+	public void testRepairWithBudget() {
+		QueryFilter filter = new QueryFilter();
+		int[] iterations = new int[1];
+		for (int i = 0; i < startRefs.length; i++) {
+			List<Long> path = query.findPath(startRefs[i], endRefs[i], startPoss[i], endPoss[i], filter).getRefs();
+			for (int k = 1; k < path.size() - 1; k++) {
+				List<Long> broken = new ArrayList<>(path);
+				broken.set(k, 0L);
+				PathCorridor corridor = new PathCorridor();
+				corridor.reset(startRefs[i], startPoss[i]);
+				corridor.setCorridor(endPoss[i], broken);
+				// A failed repair leaves the corridor as it was.
+				if (!corridor.repair(null, 0, 256, 1, iterations, query, filter))
+					Assert.assertFalse(corridor.isValid(path.size(), query, filter));
+				Assert.assertEquals(1, iterations[0]);
+				corridor.setCorridor(endPoss[i], broken);
+				Assert.assertTrue(corridor.repair(null, 0, 256, 64, iterations, query, filter));
+				Assert.assertTrue(iterations[0] <= 64);
+				Assert.assertTrue(corridor.isValid(path.size(), query, filter));
+			}
+		}
+	}
+}
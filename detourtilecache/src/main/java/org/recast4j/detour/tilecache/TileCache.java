@@ -478,15 +478,17 @@ public class TileCache {
 	}
 
 	public void buildNavMeshTile(long ref) {
-		int idx = decodeTileIdTile(ref);
-		if (idx > m_params.maxTiles) {
-            throw new RuntimeException("Invalid tile index");
-        }
-		CompressedTile tile = m_tiles[idx];
-		int salt = decodeTileIdSalt(ref);
-		if (tile.salt != salt) {
-            throw new RuntimeException("Invalid tile salt");
-        }
+		addNavMeshTile(ref, buildNavMeshData(ref));
+	}
+
+	/**
+	 * Builds the navmesh tile of a compressed tile without adding it to the navmesh. Several tiles can be built in
+	 * parallel as long as the tile cache is not changed meanwhile; the mesh process must be thread-safe then.
+	 *
+	 * @return The tile, or null if it has no polygons.
+	 */
+	public MeshData buildNavMeshData(long ref) {
+		CompressedTile tile = getTileForBuild(ref);
 		int walkableClimbVx = (int) (m_params.walkableClimb / m_params.ch);
 
 		// Decompress tile layer data.
@@ -517,8 +519,7 @@ public class TileCache {
 		TileCachePolyMesh polyMesh = builder.buildTileCachePolyMesh(lcset, m_navmesh.getMaxVertsPerPoly());
 		// Early out if the mesh tile is empty.
 		if (polyMesh.npolys == 0) {
-			m_navmesh.removeTile(m_navmesh.getTileRefAt(tile.header.tx, tile.header.ty, tile.header.tlayer));
-			return;
+			return null;
 		}
 		NavMeshDataCreateParams params = new NavMeshDataCreateParams();
 		params.verts = polyMesh.verts;
@@ -542,7 +543,18 @@ public class TileCache {
 		if (m_tmproc != null) {
 			m_tmproc.process(params);
 		}
-		MeshData meshData = NavMeshBuilder.createNavMeshData(params);
+		return NavMeshBuilder.createNavMeshData(params);
+	}
+
+	/**
+	 * Replaces the navmesh tile at the location of a compressed tile with a tile built by
+	 * {@link #buildNavMeshData(long)}.
+	 *
+	 * @param meshData
+	 *            The new tile, or null to leave the location empty.
+	 */
+	public void addNavMeshTile(long ref, MeshData meshData) {
+		CompressedTile tile = getTileForBuild(ref);
 		// Remove existing tile.
 		m_navmesh.removeTile(m_navmesh.getTileRefAt(tile.header.tx, tile.header.ty, tile.header.tlayer));
 		// Add new tile, or leave the location empty. if (navData) { // Let the
@@ -551,6 +563,19 @@ public class TileCache {
 		}
 	}
 
+	private CompressedTile getTileForBuild(long ref) {
+		int idx = decodeTileIdTile(ref);
+		if (idx > m_params.maxTiles) {
+            throw new RuntimeException("Invalid tile index");
+        }
+		CompressedTile tile = m_tiles[idx];
+		int salt = decodeTileIdSalt(ref);
+		if (tile.salt != salt) {
+            throw new RuntimeException("Invalid tile salt");
+        }
+		return tile;
+	}
+
 	public TileCacheLayer decompressTile(CompressedTile tile) {
 		TileCacheLayer layer = builder.decompressTileCacheLayer(m_tcomp, tile.data, m_storageParams.byteOrder,
 				m_storageParams.cCompatibility);
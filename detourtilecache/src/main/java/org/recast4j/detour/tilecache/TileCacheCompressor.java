@@ -18,9 +18,13 @@ freely, subject to the following restrictions:
 */
 package org.recast4j.detour.tilecache;
 
-public interface TileCacheCompressor {
+import org.recast4j.detour.io.MeshDataCompressor;
 
+public interface TileCacheCompressor extends MeshDataCompressor {
+
+	@Override
 	byte[] decompress(byte[] buf, int offset, int len, int outputlen);
 
+	@Override
 	byte[] compress(byte[] buf);
 }
@@ -4,7 +4,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import org.recast4j.detour.MeshData;
 import org.recast4j.detour.NavMesh;
 import org.recast4j.detour.io.IOUtils;
 import org.recast4j.detour.io.NavMeshParamReader;
@@ -25,6 +30,24 @@ public class TileCacheReader {
 	}
 
 	public TileCache read(ByteBuffer bb, int maxVertPerPoly, TileCacheMeshProcess meshProcessor) throws IOException {
+		return read(bb, maxVertPerPoly, meshProcessor, null);
+	}
+
+	/**
+	 * Reads the tile cache building the navmesh tiles in parallel on the given executor. Only adding the tiles to the
+	 * navmesh is done on the calling thread, in the order of the set. The mesh processor must be thread-safe.
+	 *
+	 * @param executor
+	 *            The executor building the tiles, or null to build them on the calling thread.
+	 */
+	public TileCache read(InputStream is, int maxVertPerPoly, TileCacheMeshProcess meshProcessor, Executor executor)
+			throws IOException {
+		ByteBuffer bb = IOUtils.toByteBuffer(is);
+		return read(bb, maxVertPerPoly, meshProcessor, executor);
+	}
+
+	public TileCache read(ByteBuffer bb, int maxVertPerPoly, TileCacheMeshProcess meshProcessor, Executor executor)
+			throws IOException {
 		TileCacheSetHeader header = new TileCacheSetHeader();
 		header.magic = bb.getInt();
 		if (header.magic != TileCacheSetHeader.TILECACHESET_MAGIC) {
@@ -49,6 +72,7 @@ public class TileCacheReader {
 		TileCache tc = new TileCache(header.cacheParams, new TileCacheStorageParams(bb.order(), cCompatibility), mesh,
 				compressor, meshProcessor);
 		// Read tiles.
+		List<Long> tiles = new ArrayList<>();
 		for (int i = 0; i < header.numTiles; ++i) {
 			long tileRef = bb.getInt();
 			int dataSize = bb.getInt();
@@ -59,8 +83,20 @@ public class TileCacheReader {
 			bb.get(data);
 			long tile = tc.addTile(data, 0);
 			if (tile != 0) {
-                tc.buildNavMeshTile(tile);
-            }
+				if (executor == null) {
+					tc.buildNavMeshTile(tile);
+				} else {
+					tiles.add(tile);
+				}
+			}
+		}
+		// The compressed tiles are all added, so the tile cache does not change while the tiles are built.
+		List<CompletableFuture<MeshData>> meshes = new ArrayList<>();
+		for (long tile : tiles) {
+			meshes.add(CompletableFuture.supplyAsync(() -> tc.buildNavMeshData(tile), executor));
+		}
+		for (int i = 0; i < tiles.size(); i++) {
+			tc.addNavMeshTile(tiles.get(i), meshes.get(i).join());
 		}
 		return tc;
 	}
@@ -0,0 +1,62 @@
+package org.recast4j.detour.tilecache.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+import org.recast4j.detour.MeshData;
+import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
+import org.recast4j.detour.io.CompactMeshSetReader;
+import org.recast4j.detour.io.CompactMeshSetWriter;
+import org.recast4j.detour.tilecache.TileCache;
+import org.recast4j.detour.tilecache.TileCacheCompressor;
+import org.recast4j.detour.tilecache.io.compress.FastLzTileCacheCompressor;
+import org.recast4j.detour.tilecache.io.compress.LZ4TileCacheCompressor;
+
+public class CompactMeshSetCompressionTest {
+
+	private final CompactMeshSetWriter writer = new CompactMeshSetWriter();
+
+	@Test
+	public void testTileCacheCompressors() throws IOException {
+		TileCache tc;
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream("all_tiles_tilecache.bin")) {
+			tc = new TileCacheReader().read(is, 6, null);
+		}
+		NavMesh mesh = tc.getNavMesh();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writer.write(os, mesh, ByteOrder.LITTLE_ENDIAN);
+		int plainSize = os.size();
+
+		for (TileCacheCompressor compressor : new TileCacheCompressor[] { new LZ4TileCacheCompressor(),
+				new FastLzTileCacheCompressor() }) {
+			os = new ByteArrayOutputStream();
+			writer.write(os, mesh, ByteOrder.LITTLE_ENDIAN, compressor, tc.getParams().cs, tc.getParams().ch);
+			assertTrue(os.size() < plainSize);
+			CompactMeshSetReader reader = new CompactMeshSetReader(ByteBuffer.wrap(os.toByteArray()), 6, compressor);
+			int tiles = 0;
+			for (int i = 0; i < mesh.getMaxTiles(); i++) {
+				MeshTile tile = mesh.getTile(i);
+				if (tile.data == null)
+					continue;
+				tiles++;
+				int t = reader.findTile(tile.data.header.x, tile.data.header.y, tile.data.header.layer);
+				MeshData data = reader.readTile(t);
+				assertEquals(mesh.getTileRef(tile), reader.getTileRef(t));
+				assertEquals(tile.data.polys.length, data.polys.length);
+				assertArrayEquals(tile.data.verts, data.verts, 0);
+				assertArrayEquals(tile.data.detailVerts, data.detailVerts, 0);
+			}
+			assertEquals(tiles, reader.getTileCount());
+		}
+	}
+
+}
@@ -1,14 +1,18 @@
 package org.recast4j.detour.tilecache.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.recast4j.detour.MeshData;
 import org.recast4j.detour.MeshHeader;
 import org.recast4j.detour.MeshTile;
+import org.recast4j.detour.NavMesh;
 import org.recast4j.detour.tilecache.TileCache;
 
 public class TileCacheReaderTest {
@@ -204,4 +208,37 @@ public class TileCacheReaderTest {
 		assertEquals(48.484783f, data.verts[9], 0.0001f);
 	}
 
+	@Test
+	public void testParallel() throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (String name : new String[] { "all_tiles_tilecache.bin", "dungeon_all_tiles_tilecache.bin" }) {
+				NavMesh expected;
+				NavMesh actual;
+				try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+					expected = reader.read(is, 6, null).getNavMesh();
+				}
+				try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+					actual = reader.read(is, 6, null, executor).getNavMesh();
+				}
+				for (int i = 0; i < expected.getMaxTiles(); i++) {
+					MeshTile e = expected.getTile(i);
+					MeshTile a = actual.getTile(i);
+					assertEquals(e.data == null, a.data == null);
+					if (e.data == null)
+						continue;
+					assertEquals(expected.getTileRef(e), actual.getTileRef(a));
+					assertEquals(e.data.polys.length, a.data.polys.length);
+					assertArrayEquals(e.data.verts, a.data.verts, 0);
+					for (int j = 0; j < e.data.polys.length; j++) {
+						assertEquals(e.data.polys[j].firstLink, a.data.polys[j].firstLink);
+						assertArrayEquals(e.data.polys[j].neis, a.data.polys[j].neis);
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 }